@@ -28,6 +28,92 @@ public abstract class AbstractJFlexTokenMaker extends TokenMakerBase {
 	protected int start;		// Just for states.
 	protected int offsetShift;	// As parser always starts at 0, but our line doesn't.
 
+	/**
+	 * Whether we're only scanning to determine the lexer state at the end
+	 * of a line, in which case no tokens are actually created.
+	 */
+	private boolean stateOnly;
+
+	/**
+	 * When scanning in "state-only" mode, the type of the token most
+	 * recently identified.
+	 */
+	private int stateOnlyLastTokenType;
+
+	/**
+	 * When scanning in "state-only" mode, whether any tokens have been
+	 * identified yet.
+	 */
+	private boolean stateOnlyTokensIdentified;
+
+
+	/**
+	 * Overridden to do nothing but remember the token's type when we're
+	 * only determining the lexer state at the end of a line.
+	 */
+	@Override
+	public void addNullToken() {
+		if (stateOnly) {
+			stateOnlyLastTokenType = Token.NULL;
+			stateOnlyTokensIdentified = true;
+			return;
+		}
+		super.addNullToken();
+	}
+
+
+	/**
+	 * Overridden to do nothing but remember the token's type when we're
+	 * only determining the lexer state at the end of a line.
+	 */
+	@Override
+	public void addToken(char[] array, int start, int end, int tokenType,
+						int startOffset, boolean hyperlink) {
+		if (stateOnly) {
+			stateOnlyLastTokenType = tokenType;
+			stateOnlyTokensIdentified = true;
+			return;
+		}
+		super.addToken(array, start, end, tokenType, startOffset, hyperlink);
+	}
+
+
+	/**
+	 * Returns the last token type on a line.  This implementation runs the
+	 * scanner over the line as usual, but without creating, linking or
+	 * otherwise materializing any tokens, since only the type of the last
+	 * one is needed.  This makes it considerably cheaper than
+	 * {@link #getTokenList(Segment, int, int)}, which matters since this
+	 * method is called for every line whenever a document is loaded or its
+	 * syntax style changes.<p>
+	 *
+	 * Subclasses whose scanning logic inspects the tokens identified so far
+	 * (e.g. via <code>currentToken</code>) should override this method.
+	 *
+	 * @param text The line.
+	 * @param initialTokenType The token type the previous line ended with.
+	 * @return The type of the last token on the line.
+	 */
+	@Override
+	public int getLastTokenTypeOnLine(Segment text, int initialTokenType) {
+		stateOnly = true;
+		stateOnlyLastTokenType = Token.NULL;
+		stateOnlyTokensIdentified = false;
+		try {
+			getTokenList(text, initialTokenType, 0);
+			return stateOnlyLastTokenType;
+		} finally {
+			stateOnly = false;
+		}
+	}
+
+
+	@Override
+	protected boolean getNoTokensIdentifiedYet() {
+		return stateOnly ? !stateOnlyTokensIdentified :
+				super.getNoTokensIdentifiedYet();
+	}
+
 
 	/**
 	 * Declared here so we can define overloads that refer to this method.
@@ -83,17 +83,18 @@ class DefaultOccurrenceMarker implements OccurrenceMarker {
 		int lineCount = doc.getDefaultRootElement().getElementCount();
 
 		for (int i=0; i<lineCount; i++) {
-			Token temp = doc.getTokenListForLine(i);
-			while (temp!=null && temp.isPaintable()) {
-				if (temp.is(type, lexeme)) {
+			TokenBuffer tokens = doc.getTokenBufferForLine(i);
+			int count = tokens==null ? 0 : tokens.getTokenCount();
+			for (int j=0; j<count && tokens.isPaintable(j); j++) {
+				if (tokens.is(j, type, lexeme)) {
 					try {
-						int end = temp.getEndOffset();
-						h.addMarkedOccurrenceHighlight(temp.getOffset(),end,p);
+						int end = tokens.getEndOffset(j);
+						h.addMarkedOccurrenceHighlight(tokens.getOffset(j),
+								end, p);
 					} catch (BadLocationException ble) {
 						ble.printStackTrace(); // Never happens
 					}
 				}
-				temp = temp.getNextToken();
 			}
 		}
 
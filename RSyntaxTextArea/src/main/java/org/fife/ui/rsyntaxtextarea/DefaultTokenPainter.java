@@ -9,8 +9,10 @@
 package org.fife.ui.rsyntaxtextarea;
 
 import java.awt.Color;
+import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
+import java.awt.font.GlyphVector;
 import java.awt.geom.Rectangle2D;
 
 import javax.swing.text.TabExpander;
@@ -42,6 +44,53 @@ class DefaultTokenPainter implements TokenPainter {
 	}
 
 
+	/**
+	 * Returns the width of a run of characters, none of which are tabs.
+	 *
+	 * @param fm The font metrics of the characters.
+	 * @param charWidth The width of each character if they're monospaced,
+	 *        or <code>0</code> if <code>fm</code> must be used.
+	 * @param text The characters.
+	 * @param offs The offset of the first character.
+	 * @param len The number of characters.
+	 * @return The width of the characters.
+	 */
+	private static int charsWidth(FontMetrics fm, int charWidth, char[] text,
+			int offs, int len) {
+		return charWidth>0 ? len*charWidth : fm.charsWidth(text, offs, len);
+	}
+
+
+	/**
+	 * Draws a run of characters, none of which are tabs.  If the host text
+	 * area has its glyph cache enabled, the run is drawn as a cached glyph
+	 * vector when possible.
+	 *
+	 * @param g The graphics context, with <code>font</code> set on it.
+	 * @param font The font to draw with.
+	 * @param host The text area.
+	 * @param text The characters.
+	 * @param offs The offset of the first character.
+	 * @param len The number of characters.
+	 * @param x The x-coordinate to draw at.
+	 * @param y The baseline to draw at.
+	 * @see RSyntaxTextArea#getGlyphCacheEnabled()
+	 */
+	static void drawChars(Graphics2D g, Font font,
+			RSyntaxTextArea host, char[] text, int offs, int len, int x,
+			int y) {
+		if (host.getGlyphCacheEnabled()) {
+			GlyphVector gv = host.getSyntaxScheme().getGlyphVectorCache().
+					get(font, g.getFontRenderContext(), text, offs, len);
+			if (gv!=null) {
+				g.drawGlyphVector(gv, x, y);
+				return;
+			}
+		}
+		g.drawChars(text, offs, len, x, y);
+	}
+
+
 	@Override
 	public final float paint(Token token, Graphics2D g, float x, float y,
 						RSyntaxTextArea host, TabExpander e) {
@@ -104,21 +153,25 @@ class DefaultTokenPainter implements TokenPainter {
 		Color fg = useSTC ? host.getSelectedTextColor() :
 			host.getForegroundForToken(token);
 		Color bg = selected ? null : host.getBackgroundForToken(token);
-		g.setFont(host.getFontForTokenType(token.getType()));
+		Font font = host.getFontForTokenType(token.getType());
+		g.setFont(font);
 		FontMetrics fm = host.getFontMetricsForTokenType(token.getType());
+		int charWidth = RSyntaxUtilities.getMonospacedCharWidth(host, text,
+				textOffs, end);
 
 		for (int i=textOffs; i<end; i++) {
 			switch (text[i]) {
 				case '\t':
 					nextX = e.nextTabStop(
-						x + fm.charsWidth(text, flushIndex,flushLen), 0);
+						x + charsWidth(fm, charWidth, text, flushIndex,flushLen), 0);
 					if (bg!=null) {
 						paintBackground(x,y, nextX-x,fm.getHeight(),
 									g, fm.getAscent(), host, bg);
 					}
 					if (flushLen > 0) {
 						g.setColor(fg);
-						g.drawChars(text, flushIndex, flushLen, (int)x,(int)y);
+						drawChars(g, font, host, text, flushIndex, flushLen,
+								(int)x,(int)y);
 						flushLen = 0;
 					}
 					flushIndex = i + 1;
@@ -130,7 +183,7 @@ class DefaultTokenPainter implements TokenPainter {
 			}
 		}
 
-		nextX = x+fm.charsWidth(text, flushIndex,flushLen);
+		nextX = x+charsWidth(fm, charWidth, text, flushIndex,flushLen);
 java.awt.Rectangle r = host.getMatchRectangle();
 
 		if (flushLen>0 && nextX>=clipStart) {
@@ -143,7 +196,7 @@ java.awt.Rectangle r = host.getMatchRectangle();
 				}
 			}
 			g.setColor(fg);
-			g.drawChars(text, flushIndex, flushLen, (int)x,(int)y);
+			drawChars(g, font, host, text, flushIndex, flushLen, (int)x,(int)y);
 		}
 
 		if (host.getUnderlineForToken(token)) {
@@ -0,0 +1,225 @@
+/*
+ * 10/17/2026
+ *
+ * DocumentSnapshot.java - A copy of an RSyntaxDocument kept up to date for
+ * a background thread.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+
+
+/**
+ * A copy of an {@link RSyntaxDocument} for use by background threads, such
+ * as asynchronous parsers.<p>
+ *
+ * Copying a large document each time it is parsed is expensive.  Instead,
+ * the copy is made once, and the edits made to the document afterward are
+ * recorded (only the inserted text is copied) and applied to the copy the
+ * next time it's needed.  The copy re-lexes only the lines affected by
+ * those edits, just as the document itself does.  If the document's
+ * language or tab size changes, or the pending edits grow larger than half
+ * the document, a fresh copy is made instead.<p>
+ *
+ * {@link #getCopy()} may be called from any thread, but only one thread may
+ * use the copy at a time, and it must be done with it before calling
+ * <code>getCopy()</code> again.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see RSyntaxDocument#createSnapshot()
+ */
+class DocumentSnapshot implements DocumentListener {
+
+	private RSyntaxDocument doc;
+
+	/**
+	 * The copy of {@link #doc}, or <code>null</code> if it hasn't been
+	 * created yet, or must be created again.  Guarded by <code>this</code>.
+	 */
+	private RSyntaxDocument copy;
+
+	/**
+	 * The document's token maker "generation" when {@link #copy} was created.
+	 */
+	private int tokenMakerGeneration;
+
+	/**
+	 * Edits made to the document since {@link #copy} was last brought up to
+	 * date, in order.  Guarded by <code>this</code>.
+	 */
+	private List<Edit> pendingEdits;
+
+	/**
+	 * The number of characters inserted by {@link #pendingEdits}, plus the
+	 * number of edits.  Guarded by <code>this</code>.
+	 */
+	private int pendingSize;
+
+	private static final String TAB_SIZE = PlainDocument.tabSizeAttribute;
+
+
+	/**
+	 * Constructor.  The document is listened to until {@link #dispose()}
+	 * is called.
+	 *
+	 * @param doc The document to copy.
+	 */
+	DocumentSnapshot(RSyntaxDocument doc) {
+		this.doc = doc;
+		pendingEdits = new ArrayList<>();
+		doc.addDocumentListener(this);
+	}
+
+
+	/**
+	 * Records an edit to apply to the copy later.  If the pending edits have
+	 * grown larger than half the document, they're discarded, and the
+	 * document is copied again the next time it's needed.
+	 *
+	 * @param edit The edit.
+	 * @param size The number of characters inserted.
+	 */
+	private synchronized void addEdit(Edit edit, int size) {
+		if (copy!=null) {
+			pendingSize += size + 1;
+			if (pendingSize>doc.getLength()/2) {
+				copy = null;
+				pendingEdits.clear();
+			}
+			else {
+				pendingEdits.add(edit);
+			}
+		}
+	}
+
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+		// Attribute changes don't affect the copy.  Language changes are
+		// caught via the token maker generation.
+	}
+
+
+	/**
+	 * Stops listening to the document, and releases the copy.
+	 */
+	synchronized void dispose() {
+		doc.removeDocumentListener(this);
+		copy = null;
+		pendingEdits.clear();
+	}
+
+
+	/**
+	 * Returns the document being copied.
+	 *
+	 * @return The document.
+	 */
+	RSyntaxDocument getDocument() {
+		return doc;
+	}
+
+
+	/**
+	 * Returns the copy of the document, brought up to date with any edits
+	 * made since the last call.  This method may be called from any thread.
+	 *
+	 * @return The copy.
+	 */
+	RSyntaxDocument getCopy() {
+
+		RSyntaxDocument toUpdate;
+		List<Edit> edits;
+
+		// Holding the read lock ensures all edits made so far were recorded
+		doc.readLock();
+		try {
+			synchronized (this) {
+				int generation = doc.getTokenMakerGeneration();
+				if (copy==null || generation!=tokenMakerGeneration ||
+						!Objects.equals(doc.getProperty(TAB_SIZE),
+							copy.getProperty(TAB_SIZE))) {
+					copy = doc.createSnapshot();
+					tokenMakerGeneration = generation;
+					pendingEdits.clear();
+					pendingSize = 0;
+					return copy;
+				}
+				toUpdate = copy;
+				edits = pendingEdits;
+				pendingEdits = new ArrayList<>();
+				pendingSize = 0;
+			}
+		} finally {
+			doc.readUnlock();
+		}
+
+		try {
+			for (Edit edit : edits) {
+				edit.apply(toUpdate);
+			}
+		} catch (BadLocationException ble) { // Never happens
+			throw new InternalError(ble.getMessage());
+		}
+		return toUpdate;
+
+	}
+
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		int offs = e.getOffset();
+		int len = e.getLength();
+		try {
+			addEdit(new Edit(offs, 0, doc.getText(offs, len)), len);
+		} catch (BadLocationException ble) { // Never happens
+			ble.printStackTrace();
+		}
+	}
+
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		addEdit(new Edit(e.getOffset(), e.getLength(), null), 0);
+	}
+
+
+	/**
+	 * An insertion or removal made to the document.
+	 */
+	private static class Edit {
+
+		private int offset;
+		private int removedLength;
+		private String insertedText;
+
+		Edit(int offset, int removedLength, String insertedText) {
+			this.offset = offset;
+			this.removedLength = removedLength;
+			this.insertedText = insertedText;
+		}
+
+		void apply(RSyntaxDocument copy) throws BadLocationException {
+			if (removedLength>0) {
+				copy.remove(offset, removedLength);
+			}
+			if (insertedText!=null) {
+				copy.insertString(offset, insertedText, null);
+			}
+		}
+
+	}
+
+
+}
@@ -0,0 +1,355 @@
+/*
+ * 10/17/2026
+ *
+ * DocumentTokenizer.java - Tokenizes lines of an RSyntaxDocument from any
+ * thread.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+
+
+/**
+ * Tokenizes lines of an {@link RSyntaxDocument} off of the EDT.<p>
+ *
+ * {@link RSyntaxDocument#getTokenListForLine(int)} shares a single
+ * {@link TokenMaker}, and a single buffer for line text, across all callers,
+ * so it may only be called on the EDT.  A <code>DocumentTokenizer</code> has
+ * its own <code>TokenMaker</code> and its own copy of each line's text, so
+ * background tasks such as parsers can tokenize a document while the EDT is
+ * painting it:
+ *
+ * <pre>
+ * DocumentTokenizer tokenizer = doc.newTokenizer();
+ * for (int line=0; line&lt;lineCount; line++) {
+ *    Token t = tokenizer.getTokenListForLine(line);
+ *    ...
+ * }
+ * </pre>
+ *
+ * Each line is read under the document's read lock, so it is consistent
+ * with the document's other lines at the time it was read.  Tokens returned
+ * are only valid until the next call to {@link #getTokenListForLine(int)};
+ * they are not affected by later edits to the document.<p>
+ *
+ * A <code>DocumentTokenizer</code> itself is not thread-safe; each thread
+ * should create its own.  If the document's syntax style changes, the
+ * tokenizer picks up the new language on its next call.  Tokenizing lines
+ * in order is cheapest, as the lexer state at the end of one line is
+ * remembered for the next.<p>
+ *
+ * If the document uses a custom token maker set via
+ * {@link RSyntaxDocument#setSyntaxStyle(TokenMaker)}, there is no way to
+ * create a private copy of it, so lines are tokenized by the document on
+ * the EDT instead, and the tokens copied.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see RSyntaxDocument#newTokenizer()
+ */
+public class DocumentTokenizer {
+
+	private RSyntaxDocument doc;
+
+	/**
+	 * Our private token maker, or <code>null</code> if the document's token
+	 * maker can't be copied.
+	 */
+	private TokenMaker tokenMaker;
+
+	/**
+	 * The value of the document's token maker "generation" when
+	 * {@link #tokenMaker} was created.  If these differ, the document's
+	 * language has changed.
+	 */
+	private int tokenMakerGeneration;
+
+	/**
+	 * A private copy of the text of the line last tokenized.
+	 */
+	private char[] text;
+
+	/**
+	 * Points to {@link #text}.
+	 */
+	private Segment line;
+
+	/**
+	 * Used when reading text from the document.  Will point into the
+	 * document's content, so it is only valid while the read lock is held.
+	 */
+	private Segment docText;
+
+	/**
+	 * The last line tokenized, or <code>-1</code> if none.
+	 */
+	private int prevLine;
+
+	/**
+	 * The type of the last token on {@link #prevLine}.
+	 */
+	private int prevLineEndTokenType;
+
+	/**
+	 * The document's modification count when {@link #prevLine} was read.
+	 */
+	private int prevModificationCount;
+
+	/**
+	 * Holds a copy of tokens created on the EDT, if {@link #tokenMaker} is
+	 * <code>null</code>.
+	 */
+	private TokenBuffer edtTokens;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param doc The document to tokenize.
+	 * @see RSyntaxDocument#newTokenizer()
+	 */
+	DocumentTokenizer(RSyntaxDocument doc) {
+		this.doc = doc;
+		text = new char[80];
+		line = new Segment();
+		docText = new Segment();
+		tokenMakerGeneration = -1;
+		prevLine = -1;
+	}
+
+
+	/**
+	 * Copies the document's tokens for a line.  This is called on the EDT,
+	 * since the document's token maker can only be used there.
+	 *
+	 * @param lineIndex The line.
+	 * @return Whether the line exists.
+	 */
+	private boolean copyTokensOnEdt(int lineIndex) {
+		doc.readLock();
+		try {
+			Element map = doc.getDefaultRootElement();
+			if (lineIndex<0 || lineIndex>=map.getElementCount()) {
+				return false;
+			}
+			Element elem = map.getElement(lineIndex);
+			int startOffset = elem.getStartOffset();
+			int endOffset = elem.getEndOffset() - 1;
+			doc.getText(startOffset, endOffset-startOffset, docText);
+			if (edtTokens==null) {
+				edtTokens = new TokenBuffer();
+			}
+			edtTokens.set(docText, doc.getTokenListForLine(lineIndex));
+			return true;
+		} catch (BadLocationException ble) { // Never happens
+			ble.printStackTrace();
+			return false;
+		} finally {
+			doc.readUnlock();
+		}
+	}
+
+
+	/**
+	 * Returns the document being tokenized.
+	 *
+	 * @return The document.
+	 */
+	public RSyntaxDocument getDocument() {
+		return doc;
+	}
+
+
+	/**
+	 * Returns the token type a line starts in, remembered from the previous
+	 * call if possible.  The caller should hold the document's read lock.
+	 *
+	 * @param lineIndex The line.
+	 * @param modificationCount The document's modification count.
+	 * @return The token type the line starts in.
+	 */
+	private int getLineStartTokenType(int lineIndex, int modificationCount) {
+		if (lineIndex==prevLine+1 && prevLine>-1 &&
+				modificationCount==prevModificationCount) {
+			return prevLineEndTokenType;
+		}
+		return doc.getLineStartTokenType(lineIndex, tokenMaker, docText);
+	}
+
+
+	/**
+	 * Returns a token list for a line in the document.  This method may be
+	 * called from any thread.
+	 *
+	 * @param lineIndex The line to tokenize.
+	 * @return The tokens on the line, or <code>null</code> if the line does
+	 *         not exist (e.g. if the document was modified by another thread
+	 *         since the caller computed the line count).  The tokens will be
+	 *         overwritten by the next call to this method.
+	 */
+	public Token getTokenListForLine(int lineIndex) {
+		return getTokenListForLineImpl(lineIndex, false, Token.NULL);
+	}
+
+
+	/**
+	 * Returns a token list for a line in the document, given the token type
+	 * the line starts in (i.e. the type of the last token on the previous
+	 * line).  This is useful for callers that remember the lexer state at
+	 * the end of each line, as it saves the document from working it out,
+	 * which may mean lexing the lines before this one.  This method may be
+	 * called from any thread.<p>
+	 *
+	 * If the document uses a custom token maker, lines are tokenized by the
+	 * document itself, so <code>initialTokenType</code> is ignored.
+	 *
+	 * @param lineIndex The line to tokenize.
+	 * @param initialTokenType The token type the line starts in.
+	 * @return The tokens on the line, or <code>null</code> if the line does
+	 *         not exist.  The tokens will be overwritten by the next call to
+	 *         this method.
+	 * @see #getTokenListForLine(int)
+	 */
+	public Token getTokenListForLine(int lineIndex, int initialTokenType) {
+		return getTokenListForLineImpl(lineIndex, true, initialTokenType);
+	}
+
+
+	/**
+	 * Returns a token list for a line in the document.
+	 *
+	 * @param lineIndex The line to tokenize.
+	 * @param initialTokenTypeKnown Whether the caller knows the token type
+	 *        the line starts in.
+	 * @param initialTokenType The token type the line starts in, if known.
+	 * @return The tokens on the line, or <code>null</code> if the line does
+	 *         not exist.
+	 */
+	private Token getTokenListForLineImpl(int lineIndex,
+			boolean initialTokenTypeKnown, int initialTokenType) {
+
+		boolean copied;
+		int startOffset = 0;
+		int modificationCount = 0;
+
+		doc.readLock();
+		try {
+
+			if (tokenMakerGeneration!=doc.getTokenMakerGeneration()) {
+				tokenMakerGeneration = doc.getTokenMakerGeneration();
+				tokenMaker = doc.createTokenMaker();
+				prevLine = -1;
+			}
+
+			copied = tokenMaker!=null;
+			if (copied) {
+				startOffset = readLine(lineIndex);
+				if (startOffset==-1) {
+					return null;
+				}
+				modificationCount = doc.getModificationCount();
+				if (!initialTokenTypeKnown) {
+					initialTokenType = getLineStartTokenType(lineIndex,
+							modificationCount);
+				}
+			}
+
+		} finally {
+			doc.readUnlock();
+		}
+
+		// Not done while holding the read lock, since it waits for the EDT
+		if (!copied) {
+			return getTokenListForLineOnEdt(lineIndex);
+		}
+
+		// The text is our own copy, so we can lex without holding the lock
+		Token tokenList = tokenMaker.getTokenList(line, initialTokenType,
+				startOffset);
+
+		Token last = tokenList;
+		while (last.getNextToken()!=null) {
+			last = last.getNextToken();
+		}
+		prevLine = lineIndex;
+		prevLineEndTokenType = last.getType();
+		prevModificationCount = modificationCount;
+		return tokenList;
+
+	}
+
+
+	/**
+	 * Returns a copy of the document's own tokens for a line, computed on
+	 * the EDT (or by the document itself, if it's a snapshot).
+	 *
+	 * @param lineIndex The line to tokenize.
+	 * @return The tokens, or <code>null</code> if the line does not exist.
+	 */
+	private Token getTokenListForLineOnEdt(int lineIndex) {
+
+		// Snapshots are only used by one thread, and lex on the EDT
+		// themselves, a batch of lines at a time
+		if (SwingUtilities.isEventDispatchThread() || doc.isSnapshot()) {
+			return copyTokensOnEdt(lineIndex) ? edtTokens.getTokenList() : null;
+		}
+
+		boolean[] exists = new boolean[1];
+		try {
+			SwingUtilities.invokeAndWait(() ->
+					exists[0] = copyTokensOnEdt(lineIndex));
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (InvocationTargetException ite) {
+			throw new IllegalStateException(ite.getCause());
+		}
+		return exists[0] ? edtTokens.getTokenList() : null;
+
+	}
+
+
+	/**
+	 * Copies the text of a line into {@link #line}.  The caller should hold
+	 * the document's read lock.
+	 *
+	 * @param lineIndex The line to read.
+	 * @return The line's start offset, or <code>-1</code> if the line does
+	 *         not exist.
+	 */
+	private int readLine(int lineIndex) {
+
+		Element map = doc.getDefaultRootElement();
+		if (lineIndex<0 || lineIndex>=map.getElementCount()) {
+			return -1;
+		}
+		Element elem = map.getElement(lineIndex);
+		int startOffset = elem.getStartOffset();
+		int endOffset = elem.getEndOffset() - 1;
+		int len = endOffset - startOffset;
+		try {
+			doc.getText(startOffset, len, docText);
+		} catch (BadLocationException ble) { // Never happens
+			ble.printStackTrace();
+			return -1;
+		}
+		if (len>text.length) {
+			text = new char[Math.max(len, text.length*2)];
+		}
+		System.arraycopy(docText.array, docText.offset, text, 0, len);
+		line.array = text;
+		line.offset = 0;
+		line.count = len;
+		return startOffset;
+
+	}
+
+}
@@ -0,0 +1,362 @@
+/*
+ * 10/17/2026
+ *
+ * EdtTokenMaker.java - Lets a background thread use a token maker that may
+ * only be used on the EDT.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.Action;
+import javax.swing.SwingUtilities;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+
+
+/**
+ * A token maker that lexes text on the EDT, using another token maker.<p>
+ *
+ * Custom token makers installed via
+ * {@link RSyntaxDocument#setSyntaxStyle(TokenMaker)} are owned by their
+ * document, which uses them on the EDT.  They may be anonymous classes, or
+ * have settings applied by the application, so they can't be copied for use
+ * by another thread.  A snapshot of such a document, being read by a
+ * background thread, uses one of these instead.  Lines are lexed by the
+ * document's token maker on the EDT, and the tokens are copied before being
+ * handed back, since the token maker recycles them on its next call.
+ * Methods that don't lex are called directly on the calling thread.<p>
+ *
+ * Waiting for the EDT once per line would make lexing a large snapshot
+ * crawl, so the snapshot asks for lines by index via
+ * {@link #getLastTokenTypeOnLine(int, int)} and
+ * {@link #getTokenListForLine(int, int)}.  Each trip to the EDT lexes a
+ * batch of consecutive lines, each starting in the state the previous one
+ * ended in, and the results for the lines after the one asked for are
+ * kept in case they're asked for next, as they usually are.<p>
+ *
+ * The methods inherited from <code>TokenMakerBase</code> for building a
+ * token list are only used by the delegate; this class doesn't build token
+ * lists itself.<p>
+ *
+ * This class is not thread-safe; it should only be used by a single
+ * thread.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see RSyntaxDocument#createSnapshot()
+ */
+class EdtTokenMaker extends TokenMakerBase {
+
+	private TokenMaker delegate;
+
+	/**
+	 * The document whose lines are lexed.
+	 */
+	private RSyntaxDocument doc;
+
+	/**
+	 * A copy of the last token list created by
+	 * {@link #getTokenList(Segment, int, int)}.
+	 */
+	private TokenBuffer tokens;
+
+	/**
+	 * The last token types of a batch of lines, starting at
+	 * {@link #typesStart}.
+	 */
+	private int[] lastTokenTypes;
+
+	/**
+	 * The first line in {@link #lastTokenTypes}, or <code>-1</code> if it
+	 * holds nothing valid.
+	 */
+	private int typesStart;
+
+	private int typesCount;
+
+	/**
+	 * The token type the first line in {@link #lastTokenTypes} started in.
+	 */
+	private int typesInitialTokenType;
+
+	/**
+	 * The document's modification count when {@link #lastTokenTypes} was
+	 * filled.
+	 */
+	private int typesModificationCount;
+
+	/**
+	 * The token lists of a batch of lines, starting at {@link #listsStart}.
+	 */
+	private TokenBuffer[] tokenLists;
+
+	/**
+	 * The first line in {@link #tokenLists}, or <code>-1</code> if it holds
+	 * nothing valid.
+	 */
+	private int listsStart;
+
+	private int listsCount;
+
+	/**
+	 * The token type the first line in {@link #tokenLists} started in.
+	 */
+	private int listsInitialTokenType;
+
+	/**
+	 * The document's modification count when {@link #tokenLists} was
+	 * filled.
+	 */
+	private int listsModificationCount;
+
+	/**
+	 * The maximum number of lines lexed per trip to the EDT.
+	 */
+	static final int BATCH_LINE_COUNT = 64;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate The token maker to use on the EDT.
+	 * @param doc The document whose lines will be lexed.
+	 */
+	EdtTokenMaker(TokenMaker delegate, RSyntaxDocument doc) {
+		this.delegate = delegate;
+		this.doc = doc;
+		tokens = new TokenBuffer();
+		lastTokenTypes = new int[BATCH_LINE_COUNT];
+		tokenLists = new TokenBuffer[BATCH_LINE_COUNT];
+		for (int i=0; i<tokenLists.length; i++) {
+			tokenLists[i] = new TokenBuffer();
+		}
+		typesStart = listsStart = -1;
+	}
+
+
+	@Override
+	public int getClosestStandardTokenTypeForInternalType(int type) {
+		return delegate.getClosestStandardTokenTypeForInternalType(type);
+	}
+
+
+	@Override
+	public boolean getCurlyBracesDenoteCodeBlocks(int languageIndex) {
+		return delegate.getCurlyBracesDenoteCodeBlocks(languageIndex);
+	}
+
+
+	@Override
+	public Action getInsertBreakAction() {
+		return delegate.getInsertBreakAction();
+	}
+
+
+	/**
+	 * Returns the type of the last token on a line of the document.  If it
+	 * wasn't lexed along with a previous line, it's lexed on the EDT along
+	 * with the lines after it.  The caller should hold the document's read
+	 * lock, if the document may be modified by other threads.
+	 *
+	 * @param line The line.
+	 * @param initialTokenType The token type the line starts in.
+	 * @return The type of the last token on the line.
+	 * @see #getTokenListForLine(int, int)
+	 */
+	int getLastTokenTypeOnLine(int line, int initialTokenType) {
+
+		int index = line - typesStart;
+		if (typesStart==-1 || index<0 || index>=typesCount ||
+				typesModificationCount!=doc.getModificationCount() ||
+				initialTokenType!=(index==0 ? typesInitialTokenType :
+					lastTokenTypes[index-1])) {
+
+			// Nothing's valid if lexing fails part way through
+			typesStart = -1;
+			Segment[] lines = readLines(line);
+			runOnEdt(() -> {
+				int type = initialTokenType;
+				for (int i=0; i<lines.length; i++) {
+					type = delegate.getLastTokenTypeOnLine(lines[i], type);
+					lastTokenTypes[i] = type;
+				}
+			});
+			typesStart = line;
+			typesCount = lines.length;
+			typesInitialTokenType = initialTokenType;
+			typesModificationCount = doc.getModificationCount();
+			index = 0;
+		}
+
+		return lastTokenTypes[index];
+
+	}
+
+
+	@Override
+	public int getLastTokenTypeOnLine(Segment text, int initialTokenType) {
+		int[] type = new int[1];
+		runOnEdt(() -> type[0] = delegate.getLastTokenTypeOnLine(text,
+				initialTokenType));
+		return type[0];
+	}
+
+
+	@Override
+	public String[] getLineCommentStartAndEnd(int languageIndex) {
+		return delegate.getLineCommentStartAndEnd(languageIndex);
+	}
+
+
+	@Override
+	public boolean getMarkOccurrencesOfTokenType(int type) {
+		return delegate.getMarkOccurrencesOfTokenType(type);
+	}
+
+
+	@Override
+	public OccurrenceMarker getOccurrenceMarker() {
+		return delegate.getOccurrenceMarker();
+	}
+
+
+	@Override
+	public boolean getShouldIndentNextLineAfter(Token token) {
+		return delegate.getShouldIndentNextLineAfter(token);
+	}
+
+
+	@Override
+	public Token getTokenList(Segment text, int initialTokenType,
+							int startOffset) {
+		runOnEdt(() -> tokens.set(text, delegate.getTokenList(text,
+				initialTokenType, startOffset)));
+		return tokens.getTokenList();
+	}
+
+
+	/**
+	 * Returns the tokens on a line of the document.  If the line wasn't
+	 * lexed along with a previous line, it's lexed on the EDT along with
+	 * the lines after it.  The caller should hold the document's read lock,
+	 * if the document may be modified by other threads.
+	 *
+	 * @param line The line.
+	 * @param initialTokenType The token type the line starts in.
+	 * @return The tokens.  These are only valid until the next call to
+	 *         this method.
+	 * @see #getLastTokenTypeOnLine(int, int)
+	 */
+	Token getTokenListForLine(int line, int initialTokenType) {
+
+		int index = line - listsStart;
+		if (listsStart==-1 || index<0 || index>=listsCount ||
+				listsModificationCount!=doc.getModificationCount() ||
+				initialTokenType!=(index==0 ? listsInitialTokenType :
+					getLastTokenType(tokenLists[index-1]))) {
+
+			// Nothing's valid if lexing fails part way through
+			listsStart = -1;
+			Segment[] lines = readLines(line);
+			Element map = doc.getDefaultRootElement();
+			int[] startOffsets = new int[lines.length];
+			for (int i=0; i<lines.length; i++) {
+				startOffsets[i] = map.getElement(line + i).getStartOffset();
+			}
+			runOnEdt(() -> {
+				int type = initialTokenType;
+				for (int i=0; i<lines.length; i++) {
+					tokenLists[i].set(lines[i], delegate.getTokenList(
+							lines[i], type, startOffsets[i]));
+					type = getLastTokenType(tokenLists[i]);
+				}
+			});
+			listsStart = line;
+			listsCount = lines.length;
+			listsInitialTokenType = initialTokenType;
+			listsModificationCount = doc.getModificationCount();
+			index = 0;
+		}
+
+		return tokenLists[index].getTokenList();
+
+	}
+
+
+	/**
+	 * Returns the type of the last token in a buffer.
+	 *
+	 * @param buffer The buffer.
+	 * @return The type of the last token, or {@link Token#NULL} if the
+	 *         buffer is empty.
+	 */
+	private static int getLastTokenType(TokenBuffer buffer) {
+		int count = buffer.getTokenCount();
+		return count>0 ? buffer.getType(count-1) : Token.NULL;
+	}
+
+
+	@Override
+	public boolean isIdentifierChar(int languageIndex, char ch) {
+		return delegate.isIdentifierChar(languageIndex, ch);
+	}
+
+
+	@Override
+	public boolean isMarkupLanguage() {
+		return delegate.isMarkupLanguage();
+	}
+
+
+	/**
+	 * Reads the text of a batch of lines of the document.  The segments
+	 * point into the document's content, so they're only valid until the
+	 * document is next modified.
+	 *
+	 * @param line The first line to read.
+	 * @return The text of the line and up to
+	 *         <code>BATCH_LINE_COUNT - 1</code> lines after it.
+	 */
+	private Segment[] readLines(int line) {
+		int lineCount = doc.getDefaultRootElement().getElementCount();
+		Segment[] lines = new Segment[Math.min(BATCH_LINE_COUNT,
+				lineCount - line)];
+		for (int i=0; i<lines.length; i++) {
+			lines[i] = new Segment();
+			doc.getLineText(line + i, lines[i]);
+		}
+		return lines;
+	}
+
+
+	/**
+	 * Runs a task on the EDT and waits for it to complete.
+	 *
+	 * @param task The task to run.
+	 * @throws IllegalStateException If this thread is interrupted while
+	 *         waiting, or the task throws an exception.
+	 */
+	private static void runOnEdt(Runnable task) {
+
+		if (SwingUtilities.isEventDispatchThread()) {
+			task.run();
+			return;
+		}
+
+		try {
+			SwingUtilities.invokeAndWait(task);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while lexing", ie);
+		} catch (InvocationTargetException ite) {
+			throw new IllegalStateException(ite.getCause());
+		}
+
+	}
+
+
+}
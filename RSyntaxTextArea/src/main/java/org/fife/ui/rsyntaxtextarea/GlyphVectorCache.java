@@ -0,0 +1,291 @@
+/*
+ * 10/17/2026
+ *
+ * GlyphVectorCache.java - A bounded, LRU cache of laid-out runs of text.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+
+/**
+ * A bounded, least-recently-used cache of {@link GlyphVector}s for runs of
+ * text painted by a {@link TokenPainter}.<p>
+ *
+ * Drawing characters with <code>Graphics.drawChars()</code> maps them to
+ * glyphs and positions those glyphs every time they're painted, even though
+ * scrolling back and forth repaints the same tokens over and over.  Caching
+ * the glyph vectors lets this work be done once per distinct run of text.
+ * Entries are keyed by the characters, the font and the
+ * <code>FontRenderContext</code>, which captures the anti-aliasing and
+ * fractional metrics rendering hints; so a cache can be shared by all text
+ * areas using the same {@link SyntaxScheme}, whatever their settings.<p>
+ *
+ * The cache is bounded by the total number of characters in the cached runs,
+ * since the memory used by a glyph vector is roughly proportional to its
+ * length.  Runs that need complex text layout (e.g. right-to-left text or
+ * combining characters) aren't cached, as <code>Font.createGlyphVector()</code>
+ * does not shape text.<p>
+ *
+ * This class is thread-safe, though painting normally only happens on the
+ * EDT.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see RSyntaxTextArea#setGlyphCacheEnabled(boolean)
+ */
+class GlyphVectorCache {
+
+	/**
+	 * Cached glyph vectors in access order.
+	 */
+	private LinkedHashMap<Key, GlyphVector> glyphVectors;
+
+	/**
+	 * Reused to look up entries without allocating a key.
+	 */
+	private Key lookupKey;
+
+	/**
+	 * The total number of characters in all cached runs.
+	 */
+	private int charCount;
+
+	/**
+	 * The maximum value of {@link #charCount}.
+	 */
+	private int maxCharCount;
+
+	private int hitCount;
+	private int missCount;
+
+	/**
+	 * The default maximum number of characters cached.  Glyph vectors take
+	 * somewhere around 16 bytes per character, so this is a few megabytes.
+	 */
+	static final int DEFAULT_MAX_CHAR_COUNT = 256 * 1024;
+
+	/**
+	 * Runs longer than this aren't cached.  Long runs are usually comments
+	 * or strings, which are less likely to be repeated than keywords,
+	 * identifiers and whitespace, and would evict many shorter ones.
+	 */
+	static final int MAX_RUN_LENGTH = 256;
+
+	/**
+	 * Characters below this value never need complex text layout.
+	 */
+	private static final char MIN_LAYOUT_CHAR = '\u0300';
+
+
+	/**
+	 * Constructor.
+	 */
+	GlyphVectorCache() {
+		this(DEFAULT_MAX_CHAR_COUNT);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxCharCount The maximum number of characters to cache.
+	 */
+	GlyphVectorCache(int maxCharCount) {
+		glyphVectors = new LinkedHashMap<>(16, 0.75f, true);
+		lookupKey = new Key();
+		this.maxCharCount = Math.max(0, maxCharCount);
+	}
+
+
+	/**
+	 * Removes all cached glyph vectors.  Hit and miss counts are not reset.
+	 */
+	synchronized void clear() {
+		glyphVectors.clear();
+		charCount = 0;
+	}
+
+
+	/**
+	 * Returns a glyph vector for a run of text, creating and caching it if
+	 * necessary.
+	 *
+	 * @param font The font to render with.
+	 * @param frc The font render context of the graphics context to render
+	 *        into.
+	 * @param text The text.
+	 * @param offs The offset of the run in <code>text</code>.
+	 * @param len The length of the run.
+	 * @return The glyph vector, or <code>null</code> if this run can't be
+	 *         cached and should be drawn some other way.
+	 */
+	synchronized GlyphVector get(Font font, FontRenderContext frc,
+			char[] text, int offs, int len) {
+
+		if (!isCacheable(font, text, offs, len)) {
+			return null;
+		}
+
+		lookupKey.set(font, frc, text, offs, len);
+		GlyphVector gv = glyphVectors.get(lookupKey);
+		lookupKey.set(null, null, null, 0, 0);
+		if (gv!=null) {
+			hitCount++;
+			return gv;
+		}
+		missCount++;
+
+		char[] chars = Arrays.copyOfRange(text, offs, offs + len);
+		gv = font.createGlyphVector(frc, chars);
+		Key key = new Key();
+		key.set(font, frc, chars, 0, len);
+		glyphVectors.put(key, gv);
+		charCount += len;
+
+		Iterator<Key> i = glyphVectors.keySet().iterator();
+		while (charCount>maxCharCount && i.hasNext()) {
+			charCount -= i.next().len;
+			i.remove();
+		}
+
+		return gv;
+
+	}
+
+
+	/**
+	 * Returns the number of characters in all cached runs.
+	 *
+	 * @return The character count.
+	 * @see #getMaxCharCount()
+	 */
+	synchronized int getCharCount() {
+		return charCount;
+	}
+
+
+	/**
+	 * Returns the number of times {@link #get(Font, FontRenderContext,
+	 * char[], int, int)} returned a cached value.
+	 *
+	 * @return The hit count.
+	 * @see #getMissCount()
+	 */
+	synchronized int getHitCount() {
+		return hitCount;
+	}
+
+
+	/**
+	 * Returns the maximum number of characters cached.
+	 *
+	 * @return The maximum character count.
+	 * @see #getCharCount()
+	 */
+	int getMaxCharCount() {
+		return maxCharCount;
+	}
+
+
+	/**
+	 * Returns the number of times {@link #get(Font, FontRenderContext,
+	 * char[], int, int)} created a new glyph vector.
+	 *
+	 * @return The miss count.
+	 * @see #getHitCount()
+	 */
+	synchronized int getMissCount() {
+		return missCount;
+	}
+
+
+	/**
+	 * Returns whether a run of text can be cached.
+	 *
+	 * @param font The font to render with.
+	 * @param text The text.
+	 * @param offs The offset of the run in <code>text</code>.
+	 * @param len The length of the run.
+	 * @return Whether the run can be cached.
+	 */
+	private boolean isCacheable(Font font, char[] text, int offs, int len) {
+		if (len==0 || len>MAX_RUN_LENGTH || len>maxCharCount ||
+				font.hasLayoutAttributes()) {
+			return false;
+		}
+		int end = offs + len;
+		for (int i=offs; i<end; i++) {
+			if (text[i]>=MIN_LAYOUT_CHAR) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * A cache key.  Lookups use a key that points into the text being
+	 * painted; keys stored in the cache have their own copy of it.
+	 */
+	private static final class Key {
+
+		private Font font;
+		private FontRenderContext frc;
+		private char[] text;
+		private int offs;
+		private int len;
+		private int hash;
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)o;
+			if (len!=other.len || hash!=other.hash) {
+				return false;
+			}
+			for (int i=0; i<len; i++) {
+				if (text[offs + i]!=other.text[other.offs + i]) {
+					return false;
+				}
+			}
+			return font.equals(other.font) && frc.equals(other.frc);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		void set(Font font, FontRenderContext frc, char[] text, int offs,
+				int len) {
+			this.font = font;
+			this.frc = frc;
+			this.text = text;
+			this.offs = offs;
+			this.len = len;
+			int h = 0;
+			for (int i=0; i<len; i++) {
+				h = 31*h + text[offs + i];
+			}
+			if (font!=null) {
+				h = 31*h + font.hashCode();
+				h = 31*h + frc.hashCode();
+			}
+			hash = h;
+		}
+
+	}
+
+
+}
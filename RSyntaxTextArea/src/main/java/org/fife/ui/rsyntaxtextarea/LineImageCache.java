@@ -0,0 +1,265 @@
+/*
+ * 10/17/2026
+ *
+ * LineImageCache.java - Images of rendered lines of text in a SyntaxView.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A bounded, least-recently-used cache of images of rendered lines, used by
+ * {@link SyntaxView} when {@link RSyntaxTextArea#getLineImageCacheEnabled()}
+ * is <code>true</code>.<p>
+ *
+ * Each image holds everything the view paints for one line: layered
+ * highlights such as the selection and "mark all" results, the text itself,
+ * parser notice squiggles and collapsed fold indicators.  Images are
+ * translucent so they can be drawn over the text area's background, current
+ * line highlight and margin line, which change independently of the text and
+ * are always painted live.<p>
+ *
+ * An image is only reused if the line is still painted at the same location
+ * and size, and it hasn't been invalidated since.  Images are invalidated
+ * explicitly by whatever changes how lines are rendered: the view for
+ * document changes, the highlighter for highlight and selection changes,
+ * and the text area for property changes, folding and hyperlink hovering.
+ * Repainting the text area alone never invalidates images.<p>
+ *
+ * Images are bounded by their total pixel count.  Invalidated images are
+ * kept and reused for the same line when possible, to limit garbage when a
+ * line is repeatedly edited.<p>
+ *
+ * This class is thread-safe, since the text area may be asked to repaint
+ * regions from any thread.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class LineImageCache {
+
+	/**
+	 * Cached images keyed by line, in access order.
+	 */
+	private LinkedHashMap<Integer, LineImage> images;
+
+	/**
+	 * The total number of pixels in all cached images.
+	 */
+	private long pixelCount;
+
+	/**
+	 * The maximum value of {@link #pixelCount}.
+	 */
+	private long maxPixelCount;
+
+	private int hitCount;
+	private int missCount;
+
+	/**
+	 * The default maximum number of pixels cached; 16 MB of 32-bit pixels.
+	 * This is a few screens' worth of lines on most displays.
+	 */
+	static final long DEFAULT_MAX_PIXEL_COUNT = 4L * 1024 * 1024;
+
+
+	/**
+	 * Constructor.
+	 */
+	LineImageCache() {
+		this(DEFAULT_MAX_PIXEL_COUNT);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxPixelCount The maximum number of pixels to cache.
+	 */
+	LineImageCache(long maxPixelCount) {
+		images = new LinkedHashMap<>(16, 0.75f, true);
+		this.maxPixelCount = Math.max(0, maxPixelCount);
+	}
+
+
+	/**
+	 * Removes all cached images.  Hit and miss counts are not reset.
+	 */
+	synchronized void clear() {
+		images.clear();
+		pixelCount = 0;
+	}
+
+
+	/**
+	 * Returns a cleared image to render a line into, and caches it.  The
+	 * image is considered valid until {@link #invalidate(int, int)} is called
+	 * for its line, or {@link #clear()} is called.
+	 *
+	 * @param line The line.
+	 * @param bounds The bounds of the line in the text area.
+	 * @param scale The scale of the graphics context the image will be drawn
+	 *        into.  The image is <code>scale</code> times larger than
+	 *        <code>bounds</code>, so it can be drawn without resampling.
+	 * @param gc The graphics configuration to create a compatible image for.
+	 *        This may be <code>null</code>.
+	 * @return The image.
+	 * @see #get(int, Rectangle, int)
+	 */
+	synchronized BufferedImage create(int line, Rectangle bounds, int scale,
+			GraphicsConfiguration gc) {
+
+		missCount++;
+		int w = bounds.width * scale;
+		int h = bounds.height * scale;
+
+		LineImage lineImage = images.remove(line);
+		BufferedImage image = null;
+		if (lineImage!=null) {
+			pixelCount -= lineImage.getPixelCount();
+			image = lineImage.image;
+			if (image.getWidth()==w && image.getHeight()==h) {
+				Graphics2D g = image.createGraphics();
+				g.setComposite(AlphaComposite.Clear);
+				g.fillRect(0, 0, w, h);
+				g.dispose();
+			}
+			else {
+				image = null;
+			}
+		}
+		if (image==null) {
+			image = gc!=null ?
+				gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT) :
+				new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+
+		lineImage = new LineImage(image, bounds, scale);
+		images.put(line, lineImage);
+		pixelCount += lineImage.getPixelCount();
+
+		// Evict least recently used images, but never the one just created
+		Iterator<LineImage> i = images.values().iterator();
+		while (pixelCount>maxPixelCount && i.hasNext()) {
+			LineImage li = i.next();
+			if (li!=lineImage) {
+				pixelCount -= li.getPixelCount();
+				i.remove();
+			}
+		}
+
+		return image;
+
+	}
+
+
+	/**
+	 * Returns the cached image of a line, if it's still valid.
+	 *
+	 * @param line The line.
+	 * @param bounds The bounds of the line in the text area.
+	 * @param scale The scale of the graphics context the image will be drawn
+	 *        into.
+	 * @return The image, or <code>null</code> if there isn't a valid one.
+	 * @see #create(int, Rectangle, int, GraphicsConfiguration)
+	 */
+	synchronized BufferedImage get(int line, Rectangle bounds, int scale) {
+		LineImage lineImage = images.get(line);
+		if (lineImage!=null && lineImage.valid &&
+				lineImage.scale==scale && lineImage.bounds.equals(bounds)) {
+			hitCount++;
+			return lineImage.image;
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the number of times {@link #get(int, Rectangle, int)} returned
+	 * a cached image.
+	 *
+	 * @return The hit count.
+	 * @see #getMissCount()
+	 */
+	synchronized int getHitCount() {
+		return hitCount;
+	}
+
+
+	/**
+	 * Returns the number of images created or re-rendered by
+	 * {@link #create(int, Rectangle, int, GraphicsConfiguration)}.
+	 *
+	 * @return The miss count.
+	 * @see #getHitCount()
+	 */
+	synchronized int getMissCount() {
+		return missCount;
+	}
+
+
+	/**
+	 * Returns the total number of pixels in all cached images.
+	 *
+	 * @return The pixel count.
+	 */
+	synchronized long getPixelCount() {
+		return pixelCount;
+	}
+
+
+	/**
+	 * Invalidates the images of a range of lines.
+	 *
+	 * @param firstLine The first line to invalidate.
+	 * @param lastLine The last line to invalidate, inclusive.  Use
+	 *        <code>Integer.MAX_VALUE</code> to invalidate all lines from
+	 *        <code>firstLine</code> on.
+	 */
+	synchronized void invalidate(int firstLine, int lastLine) {
+		for (Map.Entry<Integer, LineImage> entry : images.entrySet()) {
+			int line = entry.getKey();
+			if (line>=firstLine && line<=lastLine) {
+				entry.getValue().valid = false;
+			}
+		}
+	}
+
+
+	/**
+	 * The image of a line.
+	 */
+	private static final class LineImage {
+
+		private BufferedImage image;
+		private Rectangle bounds;
+		private int scale;
+		private boolean valid;
+
+		LineImage(BufferedImage image, Rectangle bounds, int scale) {
+			this.image = image;
+			this.bounds = new Rectangle(bounds);
+			this.scale = scale;
+			valid = true;
+		}
+
+		long getPixelCount() {
+			return (long)image.getWidth() * image.getHeight();
+		}
+
+	}
+
+
+}
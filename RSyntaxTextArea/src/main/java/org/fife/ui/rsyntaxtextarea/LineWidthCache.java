@@ -0,0 +1,228 @@
+/*
+ * 10/17/2026
+ *
+ * LineWidthCache.java - The widths of the lines in a SyntaxView, with fast
+ * access to the widest one.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.util.Arrays;
+
+
+/**
+ * The measured width of every line displayed by a {@link SyntaxView}, so
+ * the view's preferred width can be found without measuring every line
+ * again when its longest line gets shorter or is removed.<p>
+ *
+ * Widths are stored as the leaves of a segment tree whose inner nodes hold
+ * the largest width below them.  Changing a line's width thus updates the
+ * maximum in <code>O(log n)</code> time.  Adding or removing lines shifts
+ * the leaves, after which the inner nodes are rebuilt the next time the
+ * maximum is asked for; this is linear in the number of lines, but is only
+ * a pass over an array, without any tokenizing or measuring of text.<p>
+ *
+ * Lines that have been added but not yet measured have a width of
+ * <code>0</code>.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class LineWidthCache {
+
+	/**
+	 * The segment tree.  The root is at index <code>1</code>, the children
+	 * of node <code>i</code> are at <code>2i</code> and <code>2i+1</code>,
+	 * and line <code>n</code>'s width is at <code>leafCount + n</code>.
+	 */
+	private float[] tree;
+
+	/**
+	 * The number of leaves in the tree.  This is a power of two that is
+	 * <code>&gt;= lineCount</code>.
+	 */
+	private int leafCount;
+
+	private int lineCount;
+
+	/**
+	 * Whether the inner nodes of the tree are up to date.
+	 */
+	private boolean treeValid;
+
+
+	/**
+	 * Constructor.
+	 */
+	LineWidthCache() {
+		this(0);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param lineCount The initial number of lines, all with width
+	 *        <code>0</code>.
+	 */
+	LineWidthCache(int lineCount) {
+		reset(lineCount);
+	}
+
+
+	private static void checkLine(int line, int limit) {
+		if (line<0 || line>=limit) {
+			throw new IndexOutOfBoundsException("Invalid line: " + line);
+		}
+	}
+
+
+	/**
+	 * Makes sure the tree has room for a number of lines.
+	 *
+	 * @param count The number of lines.
+	 */
+	private void ensureCapacity(int count) {
+		if (count>leafCount) {
+			int newLeafCount = leafCount;
+			while (newLeafCount<count) {
+				newLeafCount *= 2;
+			}
+			float[] newTree = new float[2 * newLeafCount];
+			System.arraycopy(tree, leafCount, newTree, newLeafCount,
+					lineCount);
+			tree = newTree;
+			leafCount = newLeafCount;
+			treeValid = false;
+		}
+	}
+
+
+	/**
+	 * Returns the number of lines.
+	 *
+	 * @return The number of lines.
+	 */
+	int getLineCount() {
+		return lineCount;
+	}
+
+
+	/**
+	 * Returns the width of the widest line.
+	 *
+	 * @return The largest width, or <code>0</code> if there are no lines.
+	 */
+	float getMaxWidth() {
+		if (!treeValid) {
+			for (int i=leafCount-1; i>0; i--) {
+				tree[i] = Math.max(tree[2*i], tree[2*i+1]);
+			}
+			treeValid = true;
+		}
+		return tree[1];
+	}
+
+
+	/**
+	 * Returns the width of a line.
+	 *
+	 * @param line The line.
+	 * @return The line's width.
+	 * @throws IndexOutOfBoundsException If <code>line</code> is invalid.
+	 * @see #setWidth(int, float)
+	 */
+	float getWidth(int line) {
+		checkLine(line, lineCount);
+		return tree[leafCount + line];
+	}
+
+
+	/**
+	 * Adds lines, with width <code>0</code>, to be measured later.
+	 *
+	 * @param line The index at which to add the lines.
+	 * @param count The number of lines to add.
+	 * @throws IndexOutOfBoundsException If <code>line</code> is invalid.
+	 */
+	void insertLines(int line, int count) {
+		checkLine(line, lineCount + 1);
+		if (count>0) {
+			ensureCapacity(lineCount + count);
+			int leaf = leafCount + line;
+			System.arraycopy(tree, leaf, tree, leaf + count,
+					lineCount - line);
+			Arrays.fill(tree, leaf, leaf + count, 0);
+			lineCount += count;
+			treeValid = false;
+		}
+	}
+
+
+	/**
+	 * Removes lines.
+	 *
+	 * @param line The first line to remove.
+	 * @param count The number of lines to remove.
+	 * @throws IndexOutOfBoundsException If the range is invalid.
+	 */
+	void removeLines(int line, int count) {
+		checkLine(line, lineCount + 1);
+		if (count<0 || line+count>lineCount) {
+			throw new IndexOutOfBoundsException("Invalid count: " + count);
+		}
+		if (count>0) {
+			int leaf = leafCount + line;
+			System.arraycopy(tree, leaf + count, tree, leaf,
+					lineCount - line - count);
+			lineCount -= count;
+			Arrays.fill(tree, leafCount + lineCount,
+					leafCount + lineCount + count, 0);
+			treeValid = false;
+		}
+	}
+
+
+	/**
+	 * Discards all widths.
+	 *
+	 * @param lineCount The new number of lines, all with width
+	 *        <code>0</code>.
+	 */
+	void reset(int lineCount) {
+		leafCount = 16;
+		this.lineCount = 0;
+		tree = new float[2 * leafCount];
+		ensureCapacity(lineCount);
+		this.lineCount = lineCount;
+		treeValid = true; // All zeros
+	}
+
+
+	/**
+	 * Sets the width of a line.
+	 *
+	 * @param line The line.
+	 * @param width The line's width.
+	 * @throws IndexOutOfBoundsException If <code>line</code> is invalid.
+	 * @see #getWidth(int)
+	 */
+	void setWidth(int line, float width) {
+		checkLine(line, lineCount);
+		int i = leafCount + line;
+		tree[i] = width;
+		if (treeValid) {
+			for (i/=2; i>0; i/=2) {
+				float max = Math.max(tree[2*i], tree[2*i+1]);
+				if (tree[i]==max) {
+					break;
+				}
+				tree[i] = max;
+			}
+		}
+	}
+
+
+}
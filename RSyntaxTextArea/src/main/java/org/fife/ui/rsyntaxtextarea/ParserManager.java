@@ -22,7 +22,10 @@ import java.security.AccessControlException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.ToolTipManager;
 import javax.swing.event.DocumentEvent;
@@ -34,6 +37,7 @@ import javax.swing.text.Document;
 import javax.swing.text.Element;
 import javax.swing.text.Position;
 
+import org.fife.ui.rsyntaxtextarea.parser.IncrementalParser;
 import org.fife.ui.rsyntaxtextarea.parser.ParseResult;
 import org.fife.ui.rsyntaxtextarea.parser.Parser;
 import org.fife.ui.rsyntaxtextarea.parser.ParserNotice;
@@ -44,7 +48,12 @@ import org.fife.ui.rtextarea.RTextAreaHighlighter.HighlightInfo;
 
 
 /**
- * Manages running a parser object for an <code>RSyntaxTextArea</code>.
+ * Manages running a parser object for an <code>RSyntaxTextArea</code>.<p>
+ *
+ * By default, parsers are run on the EDT while holding the document's read
+ * lock.  If asynchronous parsing is enabled, they are instead run on a
+ * worker thread against a snapshot of the document, and their results are
+ * applied on the EDT only if the document hasn't changed in the meantime.
  *
  * @author Robert Futrell
  * @version 0.9
@@ -60,6 +69,46 @@ class ParserManager implements DocumentListener, ActionListener,
 	private Position firstOffsetModded;
 	private Position lastOffsetModded;
 
+	/**
+	 * The {@link IncrementalParser}s that parsed the document the last time
+	 * it was parsed.  These only need to re-parse the lines modified since.
+	 */
+	private List<Parser> upToDateParsers;
+
+	/**
+	 * Whether parsers run on a worker thread.
+	 */
+	private boolean asynchronous;
+
+	/**
+	 * Incremented each time the document is modified.  Used to discard
+	 * results of asynchronous parsing that are out of date.
+	 */
+	private volatile int documentVersion;
+
+	/**
+	 * The asynchronous parsing currently running, if any.  Only one runs at
+	 * a time, since parsers aren't required to be reentrant.
+	 */
+	private volatile ParseRound currentRound;
+
+	/**
+	 * The copy of the document given to parsers when parsing
+	 * asynchronously.  Created lazily.
+	 */
+	private DocumentSnapshot snapshot;
+
+	/**
+	 * Whether the timer fired while {@link #currentRound} was running, so
+	 * the document should be parsed again when it finishes.
+	 */
+	private boolean parsePending;
+
+	/**
+	 * Runs asynchronous parsing for all text areas.  Created lazily.
+	 */
+	private static ExecutorService executor;
+
 	/**
 	 * Mapping of notices to their highlights in the editor.  Can't use a Map
 	 * since parsers could return two <code>ParserNotice</code>s that compare
@@ -117,6 +166,7 @@ class ParserManager implements DocumentListener, ActionListener,
 		textArea.getDocument().addDocumentListener(this);
 		textArea.addPropertyChangeListener("document", this);
 		parsers = new ArrayList<>(1); // Usually small
+		upToDateParsers = new ArrayList<>(1);
 		timer = new Timer(delay, this);
 		timer.setRepeats(false);
 		running = true;
@@ -142,6 +192,12 @@ class ParserManager implements DocumentListener, ActionListener,
 			begin = System.currentTimeMillis();
 		}
 
+		if (asynchronous && currentRound!=null) {
+			// Leave the modified range alone for the next parsing
+			parsePending = true;
+			return;
+		}
+
 		RSyntaxDocument doc = (RSyntaxDocument)textArea.getDocument();
 
 		Element root = doc.getDefaultRootElement();
@@ -149,24 +205,36 @@ class ParserManager implements DocumentListener, ActionListener,
 			root.getElementIndex(firstOffsetModded.getOffset());
 		int lastLine = lastOffsetModded==null ? root.getElementCount()-1 :
 			root.getElementIndex(lastOffsetModded.getOffset());
-		firstOffsetModded = lastOffsetModded = null;
 		if (DEBUG_PARSING) {
 			System.out.println("[DEBUG]: Minimum lines to parse: " + firstLine + "-" + lastLine);
 		}
 
 		String style = textArea.getSyntaxEditingStyle();
+		if (asynchronous) {
+			parseAsynchronously(doc, style, firstLine, lastLine);
+			firstOffsetModded = lastOffsetModded = null;
+			return;
+		}
+		firstOffsetModded = lastOffsetModded = null;
+
 		doc.readLock();
 		try {
+			List<Parser> nowUpToDate = new ArrayList<>(1);
 			for (int i=0; i<parserCount; i++) {
 				Parser parser = getParser(i);
 				if (parser.isEnabled()) {
-					ParseResult res = parser.parse(doc, style);
+					ParseResult res = parse(parser, doc, style, firstLine,
+							lastLine, upToDateParsers.contains(parser));
 					addParserNoticeHighlights(res);
+					if (parser instanceof IncrementalParser) {
+						nowUpToDate.add(parser);
+					}
 				}
 				else {
 					clearParserNoticeHighlights(parser);
 				}
 			}
+			upToDateParsers = nowUpToDate;
 			textArea.fireParserNoticesChange();
 		} finally {
 			doc.readUnlock();
@@ -315,6 +383,18 @@ class ParserManager implements DocumentListener, ActionListener,
 	}
 
 
+	/**
+	 * Stops keeping a copy of the document for asynchronous parsing, if
+	 * one is being kept.
+	 */
+	private void disposeSnapshot() {
+		if (snapshot!=null) {
+			snapshot.dispose();
+			snapshot = null;
+		}
+	}
+
+
 	/**
 	 * Forces the given {@link Parser} to re-parse the content of this text
 	 * area.<p>
@@ -334,9 +414,13 @@ class ParserManager implements DocumentListener, ActionListener,
 		String style = textArea.getSyntaxEditingStyle();
 		doc.readLock();
 		try {
+			upToDateParsers.remove(p);
 			if (p.isEnabled()) {
 				ParseResult res = p.parse(doc, style);
 				addParserNoticeHighlights(res);
+				if (p instanceof IncrementalParser) {
+					upToDateParsers.add(p);
+				}
 			}
 			else {
 				clearParserNoticeHighlights(p);
@@ -348,6 +432,17 @@ class ParserManager implements DocumentListener, ActionListener,
 	}
 
 
+	/**
+	 * Returns whether parsers are run on a worker thread.
+	 *
+	 * @return Whether parsing is asynchronous.
+	 * @see #setAsynchronous(boolean)
+	 */
+	public boolean getAsynchronous() {
+		return asynchronous;
+	}
+
+
 	/**
 	 * Returns the delay between the last "concurrent" edit and when the
 	 * document is re-parsed.
@@ -467,6 +562,11 @@ class ParserManager implements DocumentListener, ActionListener,
 	 * @param e The document event.
 	 */
 	public void handleDocumentEvent(DocumentEvent e) {
+		documentVersion++;
+		ParseRound round = currentRound;
+		if (round!=null) {
+			round.cancel();
+		}
 		if (running && parsers.size()>0) {
 			timer.restart();
 		}
@@ -596,6 +696,127 @@ class ParserManager implements DocumentListener, ActionListener,
 	}
 
 
+	/**
+	 * Runs a parser.  May be called from any thread.
+	 *
+	 * @param parser The parser to run.
+	 * @param doc The document to parse.
+	 * @param style The document's syntax style.
+	 * @param firstLine The first line modified since the last parsing.
+	 * @param lastLine The last line modified since the last parsing.
+	 * @param incremental Whether the parser is an {@link IncrementalParser}
+	 *        that parsed the document the last time it was parsed.  If this
+	 *        is <code>false</code>, the entire document is parsed.
+	 * @return The parser's result.
+	 */
+	private static ParseResult parse(Parser parser, RSyntaxDocument doc,
+			String style, int firstLine, int lastLine, boolean incremental) {
+		if (incremental) {
+			return ((IncrementalParser)parser).parse(doc, style, firstLine,
+					lastLine);
+		}
+		return parser.parse(doc, style);
+	}
+
+
+	/**
+	 * Starts running all enabled parsers on a worker thread.  If parsers are
+	 * already running, they are run again once they finish.
+	 *
+	 * @param doc The document to parse.
+	 * @param style The document's syntax style.
+	 * @param firstLine The first line modified since the last parsing.
+	 * @param lastLine The last line modified since the last parsing.
+	 */
+	private void parseAsynchronously(RSyntaxDocument doc, String style,
+			int firstLine, int lastLine) {
+
+		List<Parser> enabled = new ArrayList<>(parsers.size());
+		boolean noticesChanged = false;
+		for (Parser parser : parsers) {
+			if (parser.isEnabled()) {
+				enabled.add(parser);
+			}
+			else {
+				clearParserNoticeHighlights(parser);
+				upToDateParsers.remove(parser);
+				noticesChanged = true;
+			}
+		}
+		if (noticesChanged) {
+			textArea.fireParserNoticesChange();
+		}
+
+		if (!enabled.isEmpty()) {
+			boolean[] incremental = new boolean[enabled.size()];
+			for (int i=0; i<incremental.length; i++) {
+				incremental[i] = upToDateParsers.contains(enabled.get(i));
+			}
+			if (snapshot==null || snapshot.getDocument()!=doc) {
+				disposeSnapshot();
+				snapshot = new DocumentSnapshot(doc);
+			}
+			currentRound = new ParseRound(doc, snapshot, style, enabled,
+					incremental, firstLine, lastLine, documentVersion);
+			currentRound.firstOffsetModded = firstOffsetModded;
+			currentRound.lastOffsetModded = lastOffsetModded;
+			getExecutor().execute(currentRound);
+		}
+
+	}
+
+
+	/**
+	 * Called on the EDT when an asynchronous parsing finishes.  Its results
+	 * are applied if they are still current.
+	 *
+	 * @param round The parsing that finished.
+	 * @param results The results, or <code>null</code> if the parsing was
+	 *        cancelled or failed.  Parsers that threw an exception have no
+	 *        result, so they keep their old notices and parse the entire
+	 *        document next time.
+	 */
+	private void parseRoundFinished(ParseRound round,
+			List<ParseResult> results) {
+
+		currentRound = null;
+
+		boolean sameDoc = round.doc==textArea.getDocument();
+		if (results!=null && round.version==documentVersion && sameDoc) {
+			List<Parser> nowUpToDate = new ArrayList<>(1);
+			for (ParseResult res : results) {
+				// Parsers may have been removed while this was running
+				if (res!=null && parsers.contains(res.getParser())) {
+					addParserNoticeHighlights(res);
+					if (res.getParser() instanceof IncrementalParser) {
+						nowUpToDate.add(res.getParser());
+					}
+				}
+			}
+			upToDateParsers = nowUpToDate;
+			textArea.fireParserNoticesChange();
+		}
+		else {
+			if (DEBUG_PARSING) {
+				System.out.println("[DEBUG]: Discarding stale parse results");
+			}
+			if (sameDoc) {
+				// Some parsers may not have seen the lines modified before
+				// this parsing started, so they must be parsed again
+				restoreModifiedRange(round);
+			}
+		}
+
+		if (parsePending) {
+			parsePending = false;
+			if (running) {
+				actionPerformed(null);
+			}
+		}
+
+	}
+
+
 	/**
 	 * Called when a property we're interested in changes.
 	 *
@@ -616,6 +837,9 @@ class ParserManager implements DocumentListener, ActionListener,
 			if (newDoc != null) {
 				newDoc.addDocumentListener(this);
 			}
+			firstOffsetModded = lastOffsetModded = null;
+			upToDateParsers.clear();
+			disposeSnapshot();
 		}
 
 	}
@@ -631,6 +855,7 @@ class ParserManager implements DocumentListener, ActionListener,
 	 */
 	public boolean removeParser(Parser parser) {
 		removeParserNotices(parser);
+		upToDateParsers.remove(parser);
 		boolean removed = parsers.remove(parser);
 		if (removed) {
 			textArea.fireParserNoticesChange();
@@ -722,6 +947,26 @@ class ParserManager implements DocumentListener, ActionListener,
 	}
 
 
+	/**
+	 * Adds the range of text covered by a discarded parsing back to the
+	 * range of text modified since the last parsing.
+	 *
+	 * @param round The discarded parsing.
+	 */
+	private void restoreModifiedRange(ParseRound round) {
+		Position first = round.firstOffsetModded;
+		if (first!=null && (firstOffsetModded==null ||
+				first.getOffset()<firstOffsetModded.getOffset())) {
+			firstOffsetModded = first;
+		}
+		Position last = round.lastOffsetModded;
+		if (last!=null && (lastOffsetModded==null ||
+				last.getOffset()>lastOffsetModded.getOffset())) {
+			lastOffsetModded = last;
+		}
+	}
+
+
 	/**
 	 * Restarts parsing the document.
 	 *
@@ -733,6 +978,35 @@ class ParserManager implements DocumentListener, ActionListener,
 	}
 
 
+	/**
+	 * Sets whether parsers are run on a worker thread.<p>
+	 *
+	 * When this is enabled, parsers run on a worker thread, and are passed
+	 * a copy of the document rather than the text area's document.  The copy
+	 * is kept between parsings and brought up to date by applying the edits
+	 * made since the last one, so parsers are usually passed the same copy
+	 * each time.  The text area
+	 * remains responsive while parsers run.  If the document is modified
+	 * while parsing, the parsing is interrupted (parsers that check
+	 * <code>Thread.interrupted()</code> will stop early), its results are
+	 * discarded, and the document is parsed again.  Results are applied to
+	 * the text area on the EDT.<p>
+	 *
+	 * Parsers used in this mode must not assume the document they're given
+	 * is the one in the text area, and must not access the text area or
+	 * other Swing components while parsing.
+	 *
+	 * @param asynchronous Whether to parse asynchronously.
+	 * @see #getAsynchronous()
+	 */
+	public void setAsynchronous(boolean asynchronous) {
+		this.asynchronous = asynchronous;
+		if (!asynchronous) {
+			disposeSnapshot();
+		}
+	}
+
+
 	/**
 	 * Sets the delay between the last "concurrent" edit and when the document
 	 * is re-parsed.
@@ -792,6 +1066,157 @@ class ParserManager implements DocumentListener, ActionListener,
 	}
 
 
+	/**
+	 * Returns the executor that runs asynchronous parsing, creating it if
+	 * necessary.  Virtual threads are used if the JVM supports them.
+	 *
+	 * @return The executor.
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (executor==null) {
+			try {
+				executor = (ExecutorService)Executors.class.
+					getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				executor = Executors.newCachedThreadPool(r -> {
+					Thread t = new Thread(r, "RSyntaxTextArea Parser");
+					t.setDaemon(true);
+					t.setPriority(Thread.NORM_PRIORITY - 1);
+					return t;
+				});
+			}
+		}
+		return executor;
+	}
+
+
+	/**
+	 * Runs the parsers on a worker thread, then hands their results back to
+	 * the EDT.
+	 */
+	private class ParseRound implements Runnable {
+
+		private RSyntaxDocument doc;
+		private DocumentSnapshot snapshot;
+		private String style;
+		private List<Parser> toRun;
+		private boolean[] incremental;
+		private int firstLine;
+		private int lastLine;
+		private int version;
+
+		/**
+		 * The modified range this parsing covers, restored if its results
+		 * are discarded.  Only accessed on the EDT.
+		 */
+		private Position firstOffsetModded;
+		private Position lastOffsetModded;
+
+		/**
+		 * The thread running this parsing, or <code>null</code> if it is not
+		 * running.  Guarded by <code>this</code>.
+		 */
+		private Thread thread;
+
+		ParseRound(RSyntaxDocument doc, DocumentSnapshot snapshot,
+				String style, List<Parser> parsers, boolean[] incremental,
+				int firstLine, int lastLine, int version) {
+			this.doc = doc;
+			this.snapshot = snapshot;
+			this.style = style;
+			this.toRun = parsers;
+			this.incremental = incremental;
+			this.firstLine = firstLine;
+			this.lastLine = lastLine;
+			this.version = version;
+		}
+
+		/**
+		 * Interrupts this parsing, if it is running.  May be called from any
+		 * thread.
+		 */
+		synchronized void cancel() {
+			if (thread!=null) {
+				thread.interrupt();
+			}
+		}
+
+		/**
+		 * Returns whether this parsing is out of date.
+		 *
+		 * @return Whether to stop parsing.
+		 */
+		private boolean isCancelled() {
+			return version!=documentVersion ||
+					Thread.currentThread().isInterrupted();
+		}
+
+		/**
+		 * Reports an exception thrown while parsing to this thread's
+		 * uncaught exception handler, as it would be if parsing were done
+		 * on the EDT.  Exceptions caused by this parsing being cancelled
+		 * are ignored.
+		 *
+		 * @param re The exception.
+		 */
+		private void reportFailure(RuntimeException re) {
+			if (isCancelled()) {
+				return;
+			}
+			if (DEBUG_PARSING) {
+				System.out.println("[DEBUG]: Parsing failed: " + re);
+			}
+			Thread t = Thread.currentThread();
+			t.getUncaughtExceptionHandler().uncaughtException(t, re);
+		}
+
+		@Override
+		public void run() {
+
+			synchronized (this) {
+				thread = Thread.currentThread();
+			}
+
+			List<ParseResult> results = null;
+			try {
+				if (!isCancelled()) {
+					RSyntaxDocument copy = snapshot.getCopy();
+					results = new ArrayList<>(toRun.size());
+					for (int i=0; i<toRun.size(); i++) {
+						if (isCancelled()) {
+							results = null;
+							break;
+						}
+						try {
+							results.add(parse(toRun.get(i), copy, style,
+									firstLine, lastLine, incremental[i]));
+						} catch (RuntimeException re) {
+							// Other parsers' results are still used
+							reportFailure(re);
+						}
+					}
+				}
+			} catch (RuntimeException re) {
+				reportFailure(re);
+				results = null;
+			} finally {
+				synchronized (this) {
+					thread = null;
+					// Clear any interrupt meant for us, since this thread
+					// may be reused
+					Thread.interrupted();
+				}
+			}
+
+			List<ParseResult> finalResults = results;
+			SwingUtilities.invokeLater(() ->
+					parseRoundFinished(this, finalResults));
+
+		}
+
+	}
+
+
 	/**
 	 * Mapping of a parser notice to its highlight in the editor.
 	 */
@@ -12,9 +12,14 @@ package org.fife.ui.rsyntaxtextarea;
 import java.awt.event.ActionEvent;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.swing.Action;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Element;
@@ -67,6 +72,34 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	 */
 	private String syntaxStyle;
 
+	/**
+	 * The style key {@link #tokenMaker} was created for, or <code>null</code>
+	 * if it is a custom token maker.  Used to create additional token makers
+	 * for {@link DocumentTokenizer}s.
+	 */
+	private transient String tokenMakerStyleKey;
+
+	/**
+	 * Incremented each time the token maker changes, so
+	 * {@link DocumentTokenizer}s know to create a new one.
+	 */
+	private transient int tokenMakerGeneration;
+
+	/**
+	 * Incremented whenever text is inserted or removed.  This lets a
+	 * {@link DocumentTokenizer} know whether the lexer state it saved at the
+	 * end of the previous line is still valid.
+	 */
+	private transient int modificationCount;
+
+	/**
+	 * Guards {@link #lastTokensOnLines} and the stale line range against
+	 * concurrent access by {@link DocumentTokenizer}s.  Edits don't need to
+	 * acquire this, as tokenizers hold the document's read lock, but other
+	 * updates to those values (which are done without the write lock) do.
+	 */
+	private transient Object tokenStateLock;
+
 	/**
 	 * Array of values representing the "last token type" on each line.  This
 	 * is used in cases such as multi-line comments:  if the previous line
@@ -76,18 +109,98 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	 */
 	protected transient DynamicIntArray lastTokensOnLines;
 
-	private transient int lastLine = -1;
-	private transient Token cachedTokenList;
-	private transient int useCacheCount = 0;
-	private transient int tokenRetrievalCount = 0;
+	/**
+	 * Caches the token lists of recently-requested lines.
+	 */
+	private transient TokenListCache tokenListCache;
 
 	private transient Segment s;
 
 	/**
-	 * If this is set to <code>true</code>, debug information about how much
-	 * token caching is helping is printed to stdout.
+	 * Whether "last token on line" values are only updated synchronously for
+	 * a limited number of lines, with the rest being updated a chunk at a
+	 * time on a timer.
+	 */
+	private transient boolean lazyTokenStateUpdates;
+
+	/**
+	 * If lazy token state updates are enabled, this is the first line whose
+	 * value in {@link #lastTokensOnLines} may be stale, or <code>-1</code> if
+	 * all values are known to be accurate.
+	 */
+	private transient int dirtyLinesStart;
+
+	/**
+	 * The last line at which stale values in {@link #lastTokensOnLines} may
+	 * begin.  Updates must not stop early before passing this line, even if
+	 * a line's value stops changing.  Only meaningful if
+	 * {@link #dirtyLinesStart} is not <code>-1</code>.
 	 */
-	private static final boolean DEBUG_TOKEN_CACHING = false;
+	private transient int dirtyLinesEnd;
+
+	/**
+	 * The first line whose "last token" value was brought up to date on
+	 * demand, but for which no change event has been fired yet, or
+	 * <code>-1</code> if there are none.  This happens in getters that may
+	 * be called while painting, where listeners shouldn't be notified, so
+	 * {@link #dirtyLinesTimer} fires the event later.
+	 */
+	private transient int changedLinesStart;
+
+	/**
+	 * The last line awaiting a change event.  Only meaningful if
+	 * {@link #changedLinesStart} is not <code>-1</code>.
+	 */
+	private transient int changedLinesEnd;
+
+	/**
+	 * Updates stale "last token on line" values in the background when lazy
+	 * token state updates are enabled.
+	 */
+	private transient Timer dirtyLinesTimer;
+
+	/**
+	 * Whether this document is a copy created by {@link #createSnapshot()}.
+	 * Snapshots are only read by a single background thread, so their stale
+	 * "last token" values are only updated on demand, not on a timer.
+	 */
+	private transient boolean snapshot;
+
+	/**
+	 * The number of lines whose "last token" values are updated immediately
+	 * after an edit when lazy token state updates are enabled.
+	 */
+	private static final int LAZY_UPDATE_SYNC_LINE_COUNT = 200;
+
+	/**
+	 * The number of lines updated at a time by {@link #dirtyLinesTimer}
+	 * between checks of its time slice.
+	 */
+	private static final int LAZY_UPDATE_CHUNK_LINE_COUNT = 256;
+
+	/**
+	 * The maximum time, in milliseconds, {@link #dirtyLinesTimer} spends
+	 * updating stale lines each time it fires.
+	 */
+	private static final int LAZY_UPDATE_TIME_SLICE_MILLIS = 8;
+
+	/**
+	 * The delay, in milliseconds, between runs of {@link #dirtyLinesTimer},
+	 * leaving the EDT free to handle input in between.
+	 */
+	private static final int LAZY_UPDATE_DELAY_MILLIS = 10;
+
+	/**
+	 * Documents with at least this many lines are tokenized in parallel when
+	 * their syntax style changes, if possible.
+	 */
+	private static final int PARALLEL_TOKENIZATION_MIN_LINES = 20000;
+
+	/**
+	 * The minimum number of lines in each chunk of a document tokenized in
+	 * parallel.
+	 */
+	private static final int PARALLEL_TOKENIZATION_MIN_CHUNK_LINES = 2000;
 
 
 	/**
@@ -114,11 +227,111 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 		lastTokensOnLines = new DynamicIntArray(400);
 		lastTokensOnLines.add(Token.NULL); // Initial (empty) line.
 		s = new Segment();
+		tokenListCache = new TokenListCache();
+		dirtyLinesStart = dirtyLinesEnd = -1;
+		changedLinesStart = changedLinesEnd = -1;
+		tokenStateLock = new Object();
 		setTokenMakerFactory(tmf);
 		setSyntaxStyle(syntaxStyle);
 	}
 
 
+	/**
+	 * Creates a copy of this document's text and language, for use by a
+	 * single background thread.  This method may be called from any thread.
+	 * <p>
+	 *
+	 * The text and the "last token" values of its lines are copied while
+	 * holding the read lock, so nothing is lexed up front.  Values that are
+	 * stale in this document are stale in the copy too, and like a document
+	 * with lazy token state updates, the copy computes them as they're
+	 * needed, so callers only pay for the lines they look at.  If this
+	 * document uses a custom token maker, the copy lexes its lines with it
+	 * on the EDT.<p>
+	 *
+	 * The copy can be kept up to date by applying later edits to this
+	 * document to it; see {@link DocumentSnapshot}.
+	 *
+	 * @return The copy.
+	 */
+	RSyntaxDocument createSnapshot() {
+
+		String text;
+		String styleKey;
+		TokenMaker tm;
+		int[] lastTokens;
+		int dirtyStart;
+		int dirtyEnd;
+
+		readLock();
+		try {
+			text = getText(0, getLength());
+			synchronized (tokenStateLock) {
+				styleKey = tokenMakerStyleKey;
+				tm = tokenMaker;
+				lastTokens = new int[lastTokensOnLines.getSize()];
+				for (int i=0; i<lastTokens.length; i++) {
+					lastTokens[i] = lastTokensOnLines.get(i);
+				}
+				dirtyStart = dirtyLinesStart;
+				dirtyEnd = dirtyLinesEnd;
+			}
+		} catch (BadLocationException ble) { // Never happens
+			throw new InternalError(ble.getMessage());
+		} finally {
+			readUnlock();
+		}
+
+		// The text is inserted as plain text, so at most a handful of lines
+		// are lexed, and cheaply.  The copy then takes on our language and
+		// "last token" values.
+		RSyntaxDocument snapshot = new RSyntaxDocument(tokenMakerFactory,
+				SYNTAX_STYLE_NONE);
+		snapshot.snapshot = true;
+		snapshot.lazyTokenStateUpdates = true;
+		snapshot.putProperty(tabSizeAttribute, getProperty(tabSizeAttribute));
+		try {
+			snapshot.insertString(0, text, null);
+		} catch (BadLocationException ble) { // Never happens
+			throw new InternalError(ble.getMessage());
+		}
+		snapshot.tokenMaker = styleKey!=null ?
+				tokenMakerFactory.getTokenMaker(styleKey) :
+				new EdtTokenMaker(tm, snapshot);
+		snapshot.syntaxStyle = styleKey!=null ? styleKey : "text/unknown";
+		synchronized (snapshot.tokenStateLock) {
+			snapshot.tokenMakerStyleKey = styleKey;
+			snapshot.tokenMakerGeneration++;
+			snapshot.lastTokensOnLines = new DynamicIntArray(lastTokens);
+			snapshot.dirtyLinesStart = dirtyStart;
+			snapshot.dirtyLinesEnd = dirtyEnd;
+			snapshot.changedLinesStart = snapshot.changedLinesEnd = -1;
+		}
+		snapshot.tokenListCache.clear();
+		return snapshot;
+
+	}
+
+
+	/**
+	 * Creates a new token maker for the current language, for use by a
+	 * {@link DocumentTokenizer} or a snapshot of this document.
+	 *
+	 * @return The token maker, or <code>null</code> if a custom token maker
+	 *         was installed via {@link #setSyntaxStyle(TokenMaker)}.  Such
+	 *         token makers may be anonymous classes, or have state set by
+	 *         the application, so they can't safely be copied.
+	 */
+	TokenMaker createTokenMaker() {
+		String styleKey;
+		synchronized (tokenStateLock) {
+			styleKey = tokenMakerStyleKey;
+		}
+		return styleKey!=null ? tokenMakerFactory.getTokenMaker(styleKey) :
+				null;
+	}
+
+
 	/**
 	 * Alerts all listeners to this document of an insertion.  This is
 	 * overridden so we can update our syntax highlighting stuff.<p>
@@ -131,20 +344,21 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	@Override
 	protected void fireInsertUpdate(DocumentEvent e) {
 
-		cachedTokenList = null;
-
 		/*
 		 * Now that the text is actually inserted into the content and
 		 * element structure, we can update our token elements and "last
 		 * tokens on lines" structure.
 		 */
 
+		modificationCount++;
 		Element lineMap = getDefaultRootElement();
 		DocumentEvent.ElementChange change = e.getChange(lineMap);
 		Element[] added = change==null ? null : change.getChildrenAdded();
 
 		int numLines = lineMap.getElementCount();
 		int line = lineMap.getElementIndex(e.getOffset());
+		tokenListCache.invalidateFrom(line);
+		ensureLastTokensUpdatedThrough(line - 1);
 		int previousLine = line - 1;
 		int previousTokenType = (previousLine>-1 ?
 					lastTokensOnLines.get(previousLine) : Token.NULL);
@@ -156,13 +370,19 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 			int numRemoved = removed!=null ? removed.length : 0;
 
 			int endBefore = line + added.length - numRemoved;
+			shiftDirtyLines(line, endBefore - line);
 			//System.err.println("... adding lines: " + line + " - " + (endBefore-1));
 			//System.err.println("... ... added: " + added.length + ", removed:" + numRemoved);
-			for (int i=line; i<endBefore; i++) {
-
-				setSharedSegment(i); // Loads line i's text into s.
+			// If updating lazily, lines past the first few are marked as
+			// stale rather than lexed now
+			int syncEnd = endBefore;
+			if (lazyTokenStateUpdates) {
+				syncEnd = Math.min(endBefore,
+						line + LAZY_UPDATE_SYNC_LINE_COUNT);
+			}
+			for (int i=line; i<syncEnd; i++) {
 
-				int tokenType = tokenMaker.getLastTokenTypeOnLine(s, previousTokenType);
+				int tokenType = lexLastTokenTypeOnLine(i, previousTokenType);
 				lastTokensOnLines.add(i, tokenType);
 				//System.err.println("--------- lastTokensOnLines.size() == " + lastTokensOnLines.getSize());
 
@@ -170,8 +390,21 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 
 			} // End of for (int i=line; i<endBefore; i++).
 
-			// Update last tokens for lines below until they stop changing.
-			updateLastTokensBelow(endBefore, numLines, previousTokenType);
+			if (syncEnd<endBefore) {
+				lastTokensOnLines.insertRange(syncEnd, endBefore - syncEnd,
+						Token.NULL);
+				synchronized (tokenStateLock) {
+					// Any stale lines already present are below the new ones
+					dirtyLinesEnd = dirtyLinesStart>-1 ?
+							Math.max(dirtyLinesEnd, endBefore) : endBefore;
+					dirtyLinesStart = syncEnd;
+				}
+				startDirtyLinesTimer();
+			}
+			else {
+				// Update last tokens for lines below until they stop changing.
+				updateLastTokensBelow(endBefore, numLines, previousTokenType);
+			}
 
 		} // End of if (added!=null && added.length>0).
 
@@ -206,9 +439,11 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	@Override
 	protected void fireRemoveUpdate(DocumentEvent chng) {
 
-		cachedTokenList =  null;
+		modificationCount++;
 		Element lineMap = getDefaultRootElement();
 		int numLines = lineMap.getElementCount();
+		tokenListCache.invalidateFrom(
+				lineMap.getElementIndex(chng.getOffset()));
 
 		DocumentEvent.ElementChange change = chng.getChange(lineMap);
 		Element[] removed = change==null ? null : change.getChildrenRemoved();
@@ -217,6 +452,7 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 		if (removed!=null && removed.length>0) {
 
 			int line = change.getIndex();	// First line entirely removed.
+			ensureLastTokensUpdatedThrough(line - 1);
 			int previousLine = line - 1;	// Line before that.
 			int previousTokenType = (previousLine>-1 ?
 					lastTokensOnLines.get(previousLine) : Token.NULL);
@@ -230,6 +466,7 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 			//System.err.println("... added: " + numAdded + ", removed: " + removed.length);
 
 			lastTokensOnLines.removeRange(line, endBefore); // Removing values for lines [line-(endBefore-1)].
+			shiftDirtyLines(line, line - endBefore);
 			//System.err.println("--------- lastTokensOnLines.size() == " + lastTokensOnLines.getSize());
 
 			// Update last tokens for lines below until they've stopped changing.
@@ -244,6 +481,7 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 			if (line>=lastTokensOnLines.getSize()) {
 				return;	// If we're editing the last line in a document...
 			}
+			ensureLastTokensUpdatedThrough(line - 1);
 
 			int previousLine = line - 1;
 			int previousTokenType = (previousLine>-1 ?
@@ -315,17 +553,77 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 
 
 	/**
-	 * Returns the token type of the last token on the given line.
+	 * Returns the token type of the last token on the given line.<p>
+	 *
+	 * If lazy token state updates are enabled and this line's value has not
+	 * yet been brought up to date, it (and any stale lines above it) are
+	 * updated before returning.
 	 *
 	 * @param line The line to inspect.
 	 * @return The token type of the last token on the specified line.  If
 	 *         the line is invalid, an exception is thrown.
 	 */
 	public int getLastTokenTypeOnLine(int line) {
+		ensureLastTokensUpdatedThrough(line);
 		return lastTokensOnLines.get(line);
 	}
 
 
+	/**
+	 * Returns the token type that the specified line starts in, i.e. the
+	 * last token type on the line before it.  Unlike
+	 * {@link #getLastTokenTypeOnLine(int)}, this method does not modify this
+	 * document's state, unless it's a snapshot.  If the value is stale
+	 * because lazy token state updates are enabled, it is computed using the
+	 * caller's token maker.  Snapshots are only used by a single thread, so
+	 * they instead bring their values up to date with their own token maker,
+	 * and later calls don't have to lex the same lines again.  The caller
+	 * must hold the read lock.
+	 *
+	 * @param line The line.
+	 * @param tm The token maker to use, if lines must be lexed.
+	 * @param seg A segment to use, if lines must be lexed.
+	 * @return The initial token type for the line.
+	 */
+	int getLineStartTokenType(int line, TokenMaker tm, Segment seg) {
+
+		if (line==0) {
+			return Token.NULL;
+		}
+		if (snapshot) {
+			return getLastTokenTypeOnLine(line-1);
+		}
+
+		int start;
+		int tokenType;
+		synchronized (tokenStateLock) {
+			if (dirtyLinesStart==-1 || dirtyLinesStart>=line) {
+				return lastTokensOnLines.get(line-1);
+			}
+			start = dirtyLinesStart;
+			tokenType = start>0 ? lastTokensOnLines.get(start-1) : Token.NULL;
+		}
+
+		for (int i=start; i<line; i++) {
+			getLineText(i, seg);
+			tokenType = tm.getLastTokenTypeOnLine(seg, tokenType);
+		}
+		return tokenType;
+
+	}
+
+
+	/**
+	 * Returns whether "last token on line" values are updated lazily.
+	 *
+	 * @return Whether lazy updates are enabled.
+	 * @see #setLazyTokenStateUpdates(boolean)
+	 */
+	public boolean getLazyTokenStateUpdates() {
+		return lazyTokenStateUpdates;
+	}
+
+
 	/**
 	 * Returns the text to place at the beginning and end of a
 	 * line to "comment" it in this programming language.
@@ -354,6 +652,17 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	}
 
 
+	/**
+	 * Returns a value that changes whenever text is inserted into or removed
+	 * from this document.  The caller should hold the read lock.
+	 *
+	 * @return The modification count.
+	 */
+	int getModificationCount() {
+		return modificationCount;
+	}
+
+
 	/**
 	 * Returns the occurrence marker for the current language.
 	 *
@@ -389,28 +698,121 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	}
 
 
+	/**
+	 * Returns the number of lines whose token lists are cached by this
+	 * document.
+	 *
+	 * @return The maximum number of lines cached.
+	 * @see #setTokenListCacheSize(int)
+	 */
+	public int getTokenListCacheSize() {
+		return tokenListCache.getCapacity();
+	}
+
+
+	/**
+	 * Returns the number of calls to {@link #getTokenListForLine(int)} that
+	 * were served from the token list cache.  This is useful for profiling.
+	 *
+	 * @return The number of cache hits.
+	 * @see #getTokenListCacheMissCount()
+	 */
+	int getTokenListCacheHitCount() {
+		return tokenListCache.getHitCount();
+	}
+
+
+	/**
+	 * Returns the number of calls to {@link #getTokenListForLine(int)} that
+	 * required the line to be re-tokenized.  This is useful for profiling.
+	 *
+	 * @return The number of cache misses.
+	 * @see #getTokenListCacheHitCount()
+	 */
+	int getTokenListCacheMissCount() {
+		return tokenListCache.getMissCount();
+	}
+
+
+	/**
+	 * Returns the tokens on the specified line, stored compactly in a
+	 * {@link TokenBuffer}.  Code that just walks each token on a line (such
+	 * as painting or scanning the whole document) should prefer this method
+	 * over {@link #getTokenListForLine(int)}, as it avoids creating a linked
+	 * list of tokens.  Token buffers share the cache used for token lists,
+	 * and should be treated as immutable.
+	 *
+	 * @param line The line number, &gt;= 0.
+	 * @return The tokens on the line, or <code>null</code> if the line's
+	 *         text could not be read.
+	 * @see #getTokenListForLine(int)
+	 * @see #setTokenListCacheSize(int)
+	 */
+	public final TokenBuffer getTokenBufferForLine(int line) {
+		TokenBuffer buffer = tokenListCache.getBuffer(line);
+		return buffer!=null ? buffer : tokenizeLine(line);
+	}
+
+
+	/**
+	 * Returns a value that changes whenever this document's token maker
+	 * does.
+	 *
+	 * @return The token maker's "generation."
+	 */
+	int getTokenMakerGeneration() {
+		synchronized (tokenStateLock) {
+			return tokenMakerGeneration;
+		}
+	}
+
+
 	/**
 	 * Returns a token list for the specified segment of text representing
 	 * the specified line number.  This method is basically a wrapper for
 	 * <code>tokenMaker.getTokenList</code> that takes into account the last
 	 * token on the previous line to assure token accuracy.
 	 *
+	 * The token lists of recently-requested lines are cached, so repeated
+	 * requests for the same lines (e.g. during painting, or when marking
+	 * occurrences) do not re-tokenize them.  Returned token lists should
+	 * be treated as immutable.<p>
+	 *
+	 * This method should only be called on the EDT.  To tokenize lines from
+	 * other threads, use a {@link #newTokenizer() DocumentTokenizer}.
+	 *
 	 * @param line The line number of <code>text</code> in the document,
 	 *        &gt;= 0.
 	 * @return A token list representing the specified line.
+	 * @see #getTokenBufferForLine(int)
+	 * @see #newTokenizer()
+	 * @see #setTokenListCacheSize(int)
 	 */
 	public final Token getTokenListForLine(int line) {
 
-		tokenRetrievalCount++;
-		if (line==lastLine && cachedTokenList!=null) {
-			if (DEBUG_TOKEN_CACHING) {
-				useCacheCount++;
-				System.err.println("--- Using cached line; ratio now: " +
-						useCacheCount + "/" + tokenRetrievalCount);
-			}
-			return cachedTokenList;
+		Token cached = tokenListCache.get(line);
+		if (cached!=null) {
+			return cached;
 		}
-		lastLine = line;
+
+		TokenBuffer buffer = tokenizeLine(line);
+		return buffer!=null ? tokenListCache.getTokenList(line, buffer) : null;
+
+	}
+
+
+	/**
+	 * Tokenizes a line and caches the result.
+	 *
+	 * @param line The line to tokenize.
+	 * @return The line's tokens, or <code>null</code> if its text could not
+	 *         be read.
+	 */
+	private TokenBuffer tokenizeLine(int line) {
+
+		// Done first, since updating stale lines reuses our segment
+		int initialTokenType = line==0 ? Token.NULL :
+								getLastTokenTypeOnLine(line-1);
 
 		Element map = getDefaultRootElement();
 		Element elem = map.getElement(line);
@@ -424,13 +826,52 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 			ble.printStackTrace();
 			return null;
 		}
-		int initialTokenType = line==0 ? Token.NULL :
-								getLastTokenTypeOnLine(line-1);
 
-		//return tokenMaker.getTokenList(s, initialTokenType, startOffset);
-		cachedTokenList = tokenMaker.getTokenList(s, initialTokenType, startOffset);
-		return cachedTokenList;
+		Token t = tokenMaker instanceof EdtTokenMaker ?
+				((EdtTokenMaker)tokenMaker).getTokenListForLine(line,
+						initialTokenType) :
+				tokenMaker.getTokenList(s, initialTokenType, startOffset);
+		return tokenListCache.put(line, s, t);
+
+	}
+
 
+	/**
+	 * If lazy token state updates are enabled, makes sure the "last token"
+	 * values of all lines up to and including the specified line are up to
+	 * date.  Since the text area requests the token lists of the lines it
+	 * paints, this is what keeps the visible region accurate while the rest
+	 * of the document is updated in the background.<p>
+	 *
+	 * No change event is fired for the lines updated, since this is called
+	 * from getters, e.g. while painting.  {@link #dirtyLinesTimer} fires it
+	 * instead.
+	 *
+	 * @param line The last line that must be up to date.
+	 */
+	private void ensureLastTokensUpdatedThrough(int line) {
+		synchronized (tokenStateLock) {
+			if (dirtyLinesStart==-1 || dirtyLinesStart>line) {
+				return;
+			}
+			int start = dirtyLinesStart;
+			int numLines = getDefaultRootElement().getElementCount();
+			int previousTokenType = start>0 ?
+					lastTokensOnLines.get(start-1) : Token.NULL;
+			int last = updateLastTokensBelowImpl(start, numLines,
+					previousTokenType, line - start + 1);
+			if (last>=start) {
+				if (changedLinesStart==-1) {
+					changedLinesStart = start;
+					changedLinesEnd = last;
+				}
+				else {
+					changedLinesStart = Math.min(changedLinesStart, start);
+					changedLinesEnd = Math.max(changedLinesEnd, last);
+				}
+				startDirtyLinesTimer();
+			}
+		}
 	}
 
 
@@ -458,6 +899,17 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	}
 
 
+	/**
+	 * Returns whether this document is a copy created by
+	 * {@link #createSnapshot()}.
+	 *
+	 * @return Whether this is a snapshot.
+	 */
+	boolean isSnapshot() {
+		return snapshot;
+	}
+
+
 	/**
 	 * Returns an iterator over the paintable tokens in this document.  Results
 	 * are undefined if this document is modified while the iterator is being
@@ -474,6 +926,40 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	}
 
 
+	/**
+	 * Lexes a line to find the type of its last token.  Snapshots of
+	 * documents with custom token makers lex on the EDT, several lines at a
+	 * time.
+	 *
+	 * @param line The line.
+	 * @param previousTokenType The type of the last token on the previous
+	 *        line.
+	 * @return The type of the last token on the line.
+	 */
+	private int lexLastTokenTypeOnLine(int line, int previousTokenType) {
+		if (tokenMaker instanceof EdtTokenMaker) {
+			return ((EdtTokenMaker)tokenMaker).getLastTokenTypeOnLine(line,
+					previousTokenType);
+		}
+		setSharedSegment(line);
+		return tokenMaker.getLastTokenTypeOnLine(s, previousTokenType);
+	}
+
+
+	/**
+	 * Returns a tokenizer for this document that can be used from any
+	 * thread.  This is the way to tokenize lines of this document outside
+	 * of the EDT, for example in a background parser.  Each thread should
+	 * create its own tokenizer.
+	 *
+	 * @return The tokenizer.
+	 * @see #getTokenListForLine(int)
+	 */
+	public DocumentTokenizer newTokenizer() {
+		return new DocumentTokenizer(this);
+	}
+
+
 	/**
 	 * Deserializes a document.
 	 *
@@ -493,6 +979,10 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 
 		// Handle other transient stuff
 		this.s = new Segment();
+		tokenListCache = new TokenListCache();
+		dirtyLinesStart = dirtyLinesEnd = -1;
+		changedLinesStart = changedLinesEnd = -1;
+		tokenStateLock = new Object();
 		int lineCount = getDefaultRootElement().getElementCount();
 		lastTokensOnLines = new DynamicIntArray(lineCount);
 		setSyntaxStyle(syntaxStyle); // Actually install (transient) TokenMaker
@@ -508,6 +998,18 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	 * @param line The line number you want to get.
 	 */
 	private void setSharedSegment(int line) {
+		getLineText(line, s);
+	}
+
+
+	/**
+	 * Makes a <code>Segment</code> point to the text of a line.  Note that
+	 * <code>line</code> MUST be a valid line number in the document.
+	 *
+	 * @param line The line number you want to get.
+	 * @param seg The segment to modify.
+	 */
+	void getLineText(int line, Segment seg) {
 
 		Element map = getDefaultRootElement();
 		//int numLines = map.getElementCount();
@@ -521,7 +1023,7 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 		//			element.getEndOffset()-1 : element.getEndOffset() - 1);
 		int endOffset = element.getEndOffset()-1; // Why always "-1"?
 		try {
-			getText(startOffset, endOffset-startOffset, s);
+			getText(startOffset, endOffset-startOffset, seg);
 		} catch (BadLocationException ble) {
 			throw new InternalError("Text range not in document: " +
 								startOffset + "-" + endOffset);
@@ -530,6 +1032,60 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	}
 
 
+	/**
+	 * Toggles whether "last token on line" values are updated lazily.<p>
+	 *
+	 * By default, an edit that changes the lexer state at the end of a line
+	 * (such as typing "<code>/*</code>" in C or Java) synchronously updates
+	 * every following line until their states stop changing, which can mean
+	 * re-lexing the rest of a large document before the edit completes.<p>
+	 *
+	 * If lazy updates are enabled, only a small number of lines below the
+	 * edit are updated immediately.  The remaining lines are marked as
+	 * stale, and are updated a chunk at a time on the EDT, firing a change
+	 * event for each range of lines as it is updated.  Stale lines are also
+	 * updated on demand whenever their token lists are requested, so the
+	 * text painted is always accurate.  This keeps typing latency constant
+	 * regardless of document size.
+	 *
+	 * @param lazy Whether to update lazily.
+	 * @see #getLazyTokenStateUpdates()
+	 */
+	public void setLazyTokenStateUpdates(boolean lazy) {
+		if (lazy!=lazyTokenStateUpdates) {
+			lazyTokenStateUpdates = lazy;
+			if (!lazy) {
+				ensureLastTokensUpdatedThrough(Integer.MAX_VALUE - 1);
+			}
+		}
+	}
+
+
+	/**
+	 * Adjusts the ranges of stale lines, and of lines awaiting a change
+	 * event, after lines are added to or removed from
+	 * {@link #lastTokensOnLines}.
+	 *
+	 * @param line The line at which lines were added or removed.
+	 * @param delta The number of lines added (if positive) or removed (if
+	 *        negative).
+	 */
+	private void shiftDirtyLines(int line, int delta) {
+		if (dirtyLinesStart>=line) {
+			dirtyLinesStart = Math.max(line, dirtyLinesStart + delta);
+		}
+		if (dirtyLinesEnd>=line) {
+			dirtyLinesEnd = Math.max(line, dirtyLinesEnd + delta);
+		}
+		if (changedLinesStart>=line) {
+			changedLinesStart = Math.max(line, changedLinesStart + delta);
+		}
+		if (changedLinesEnd>=line) {
+			changedLinesEnd = Math.max(line, changedLinesEnd + delta);
+		}
+	}
+
+
 	/**
 	 * Sets the syntax style being used for syntax highlighting in this
 	 * document.  What styles are supported by a document is determined by its
@@ -545,7 +1101,7 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	 */
 	public void setSyntaxStyle(String styleKey) {
 		tokenMaker = tokenMakerFactory.getTokenMaker(styleKey);
-		updateSyntaxHighlightingInformation();
+		updateSyntaxHighlightingInformation(styleKey);
 		this.syntaxStyle = styleKey;
 	}
 
@@ -561,11 +1117,25 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	 */
 	public void setSyntaxStyle(TokenMaker tokenMaker) {
 		this.tokenMaker = tokenMaker;
-		updateSyntaxHighlightingInformation();
+		updateSyntaxHighlightingInformation(null);
 		this.syntaxStyle = "text/unknown"; // TODO: Make me public?
 	}
 
 
+	/**
+	 * Sets the number of lines whose token lists are cached by this
+	 * document.  Larger values trade memory for less re-tokenizing when
+	 * painting and scanning large documents.
+	 *
+	 * @param size The maximum number of lines to cache.  A value of
+	 *        <code>0</code> disables caching.
+	 * @see #getTokenListCacheSize()
+	 */
+	public void setTokenListCacheSize(int size) {
+		tokenListCache.setCapacity(size);
+	}
+
+
 	/**
 	 * Sets the token maker factory used by this document.
 	 *
@@ -582,7 +1152,11 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	 * Loops through the last-tokens-on-lines array from a specified point
 	 * onward, updating last-token values until they stop changing.  This
 	 * should be called when lines are updated/inserted/removed, as doing
-	 * so may cause lines below to change color.
+	 * so may cause lines below to change color.<p>
+	 *
+	 * If lazy token state updates are enabled, only a limited number of
+	 * lines are updated; any remaining lines are marked as stale and updated
+	 * later.
 	 *
 	 * @param line The first line to check for a change in last-token value.
 	 * @param numLines The number of lines in the document.
@@ -593,19 +1167,74 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	private int updateLastTokensBelow(int line, int numLines, int previousTokenType) {
 
 		int firstLine = line;
+		int maxLines = lazyTokenStateUpdates ? LAZY_UPDATE_SYNC_LINE_COUNT :
+				Integer.MAX_VALUE;
+		line = updateLastTokensBelowImpl(line, numLines, previousTokenType,
+				maxLines);
+
+		// If any lines had their token types changed, fire a changed update
+		// for them.  The view will repaint the area covered by the lines.
+		// FIXME:  We currently cheat and send the line range that needs to be
+		// repainted as the "offset and length" of the change, since this is
+		// what the view needs.  We really should send the actual offset and
+		// length.
+		if (line>=firstLine) {
+			//System.err.println("... ... ... repainting lines " + firstLine + "-" + line);
+			fireChangedUpdate(new DefaultDocumentEvent(firstLine, line,
+								DocumentEvent.EventType.CHANGE));
+		}
+
+		return line;
+
+	}
+
+
+	/**
+	 * Does the actual work of updating last-token values, without firing any
+	 * events.  If this method runs out of lines to update before the values
+	 * stop changing, the remaining lines are marked as stale and the
+	 * background update timer is started.
+	 *
+	 * @param line The first line to check for a change in last-token value.
+	 * @param numLines The number of lines in the document.
+	 * @param previousTokenType The last-token value of the line just before
+	 *        <code>line</code>.
+	 * @param maxLines The maximum number of lines to update.
+	 * @return The last line that needs repainting.  This will be less than
+	 *         <code>line</code> if no lines need repainting.
+	 */
+	private int updateLastTokensBelowImpl(int line, int numLines,
+			int previousTokenType, int maxLines) {
+
+		int firstLine = line;
+
+		// Any stale lines are now our responsibility.  We can't stop early
+		// while within that range, since the values there aren't known to
+		// be consistent with one another.
+		int pendingStart = dirtyLinesStart;
+		int pendingEnd = dirtyLinesEnd;
+		dirtyLinesStart = dirtyLinesEnd = -1;
 
 		// Loop through all lines past our starting point.  Update even the last
 		// line's info, even though there aren't any lines after it that depend
 		// on it changing for them to be changed, as its state may be used
 		// elsewhere in the library.
 		int end = numLines;
+		int budgetEnd = (int)Math.min((long)line + maxLines, end);
 		//System.err.println("--- end==" + end + " (numLines==" + numLines + ")");
 		while (line<end) {
 
-			setSharedSegment(line); // Sets s's text to that of line 'line' in the document.
+			// If we've updated as many lines as we're allowed, remember where
+			// we stopped and finish later.
+			if (line==budgetEnd) {
+				dirtyLinesStart = line;
+				dirtyLinesEnd = pendingStart>-1 ? Math.max(line, pendingEnd) : line;
+				startDirtyLinesTimer();
+				return line - 1;
+			}
 
 			int oldTokenType = lastTokensOnLines.get(line);
-			int newTokenType = tokenMaker.getLastTokenTypeOnLine(s, previousTokenType);
+			int newTokenType = lexLastTokenTypeOnLine(line, previousTokenType);
 			//System.err.println("---------------- line " + line + "; oldTokenType==" +
 			//		oldTokenType + ", newTokenType==" + newTokenType + ", s=='" + s + "'");
 
@@ -614,9 +1243,15 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 			// the beginning of this line did indeed change color, but the
 			// end didn't.
 			if (oldTokenType==newTokenType) {
-				//System.err.println("... ... ... repainting lines " + firstLine + "-" + line);
-				fireChangedUpdate(new DefaultDocumentEvent(firstLine, line, DocumentEvent.EventType.CHANGE));
-				return line;
+				if (pendingStart==-1 || line>=pendingEnd) {
+					return line;
+				}
+				if (line<pendingStart) {
+					// Stale lines further down are left as they were
+					dirtyLinesStart = pendingStart;
+					dirtyLinesEnd = pendingEnd;
+					return line;
+				}
 			}
 
 			// If the line's end-token value did change, update it and
@@ -629,19 +1264,196 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 
 		} // End of while (line<numLines).
 
-		// If any lines had their token types changed, fire a changed update
-		// for them.  The view will repaint the area covered by the lines.
-		// FIXME:  We currently cheat and send the line range that needs to be
-		// repainted as the "offset and length" of the change, since this is
-		// what the view needs.  We really should send the actual offset and
-		// length.
-		if (line>firstLine) {
-			//System.err.println("... ... ... repainting lines " + firstLine + "-" + line);
-			fireChangedUpdate(new DefaultDocumentEvent(firstLine, line,
-								DocumentEvent.EventType.CHANGE));
+		return line>firstLine ? line : firstLine - 1;
+
+	}
+
+
+	/**
+	 * Starts the timer that updates stale "last token" values, if it isn't
+	 * already running.
+	 */
+	private void startDirtyLinesTimer() {
+		if (snapshot) {
+			return;
+		}
+		if (dirtyLinesTimer==null) {
+			dirtyLinesTimer = new Timer(LAZY_UPDATE_DELAY_MILLIS,
+					e -> updateDirtyLinesChunk());
+			dirtyLinesTimer.setRepeats(true);
+		}
+		if (!dirtyLinesTimer.isRunning()) {
+			dirtyLinesTimer.start();
 		}
+	}
 
-		return line;
+
+	/**
+	 * Called on the EDT to update stale "last token" values for as many lines
+	 * as fit in a single time slice.  A single change event is fired for the
+	 * lines updated, including any updated on demand since the last call,
+	 * and the timer stops once no stale lines remain.
+	 */
+	private void updateDirtyLinesChunk() {
+
+		int firstLine;
+		int lastLine = -1;
+		long deadline = System.nanoTime() +
+				LAZY_UPDATE_TIME_SLICE_MILLIS * 1000000L;
+
+		readLock();
+		try {
+			int numLines = getDefaultRootElement().getElementCount();
+			synchronized (tokenStateLock) {
+				firstLine = dirtyLinesStart;
+				while (dirtyLinesStart>-1 && System.nanoTime()<deadline) {
+					int start = dirtyLinesStart;
+					int previousTokenType = start>0 ?
+							lastTokensOnLines.get(start-1) : Token.NULL;
+					lastLine = Math.max(lastLine, updateLastTokensBelowImpl(
+							start, numLines, previousTokenType,
+							LAZY_UPDATE_CHUNK_LINE_COUNT));
+				}
+				if (changedLinesStart>-1) {
+					if (firstLine==-1 || lastLine<firstLine) {
+						firstLine = changedLinesStart;
+						lastLine = changedLinesEnd;
+					}
+					else {
+						firstLine = Math.min(firstLine, changedLinesStart);
+						lastLine = Math.max(lastLine, changedLinesEnd);
+					}
+					lastLine = Math.min(lastLine, numLines - 1);
+					changedLinesStart = changedLinesEnd = -1;
+				}
+				if (dirtyLinesStart==-1 && dirtyLinesTimer!=null) {
+					dirtyLinesTimer.stop();
+				}
+			}
+		} finally {
+			readUnlock();
+		}
+
+		// Fired outside of the read lock, in case a listener wants to modify
+		// the document in response.
+		if (firstLine>-1 && lastLine>=firstLine) {
+			fireChangedUpdate(new DefaultDocumentEvent(firstLine, lastLine,
+					DocumentEvent.EventType.CHANGE));
+		}
+
+	}
+
+
+	/**
+	 * Computes the "last token" values of a range of lines, starting from
+	 * the {@link Token#NULL} state.  This is called on worker threads when
+	 * tokenizing a document in parallel, so it does not touch any shared
+	 * state other than the document's text.
+	 *
+	 * @param tm The token maker to use.  This should be used by no other
+	 *        thread.
+	 * @param start The first line to tokenize.
+	 * @param end The line to stop at, exclusive.
+	 * @param lastTokens The array to store the "last token" values in.
+	 */
+	private void tokenizeChunk(TokenMaker tm, int start, int end,
+			int[] lastTokens) {
+
+		Element map = getDefaultRootElement();
+		Segment seg = new Segment();
+		int lastTokenType = Token.NULL;
+
+		for (int line=start; line<end; line++) {
+			Element elem = map.getElement(line);
+			int startOffset = elem.getStartOffset();
+			int endOffset = elem.getEndOffset()-1;
+			try {
+				getText(startOffset, endOffset-startOffset, seg);
+			} catch (BadLocationException ble) {
+				throw new InternalError("Text range not in document: " +
+						startOffset + "-" + endOffset);
+			}
+			lastTokenType = tm.getLastTokenTypeOnLine(seg, lastTokenType);
+			lastTokens[line] = lastTokenType;
+		}
+
+	}
+
+
+	/**
+	 * Computes the "last token" values for all lines in the document using
+	 * multiple threads.  The document is split into chunks that are each
+	 * tokenized concurrently, speculatively assuming they start in the
+	 * {@link Token#NULL} state.  The chunks are then reconciled in order,
+	 * re-lexing the start of a chunk only when the previous chunk turned out
+	 * to end in a different state, and only until the values agree with the
+	 * speculative ones.
+	 *
+	 * @param styleKey The syntax style, used to create a token maker for
+	 *        each chunk.
+	 * @param numLines The number of lines in the document.
+	 * @return Whether the values were computed.  If this is
+	 *         <code>false</code>, the caller should compute them serially.
+	 */
+	private boolean updateLastTokensInParallel(String styleKey, int numLines) {
+
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		int chunkCount = Math.min(parallelism * 4,
+				numLines / PARALLEL_TOKENIZATION_MIN_CHUNK_LINES);
+		if (parallelism<2 || chunkCount<2) {
+			return false;
+		}
+
+		int[] chunkStarts = new int[chunkCount + 1];
+		for (int i=0; i<chunkCount; i++) {
+			chunkStarts[i] = (int)((long)numLines * i / chunkCount);
+		}
+		chunkStarts[chunkCount] = numLines;
+
+		int[] lastTokens = new int[numLines];
+		List<ForkJoinTask<?>> tasks = new ArrayList<>(chunkCount);
+		for (int i=0; i<chunkCount; i++) {
+			// Each worker gets its own TokenMaker, since they aren't
+			// thread-safe
+			TokenMaker tm = tokenMakerFactory.getTokenMaker(styleKey);
+			int start = chunkStarts[i];
+			int end = chunkStarts[i+1];
+			tasks.add(ForkJoinTask.adapt(() ->
+					tokenizeChunk(tm, start, end, lastTokens)));
+		}
+
+		readLock();
+		try {
+
+			ForkJoinTask.invokeAll(tasks);
+
+			// The first chunk really does start in the NULL state.  Fix up
+			// the start of each following chunk if its guess was wrong.
+			int previousTokenType = lastTokens[chunkStarts[1] - 1];
+			for (int i=1; i<chunkCount; i++) {
+				int assumed = Token.NULL;
+				int end = chunkStarts[i+1];
+				for (int line=chunkStarts[i];
+						line<end && previousTokenType!=assumed; line++) {
+					assumed = lastTokens[line];
+					setSharedSegment(line);
+					previousTokenType = tokenMaker.getLastTokenTypeOnLine(s,
+							previousTokenType);
+					lastTokens[line] = previousTokenType;
+				}
+				previousTokenType = lastTokens[end - 1];
+			}
+
+		} finally {
+			readUnlock();
+		}
+
+		synchronized (tokenStateLock) {
+			for (int i=0; i<numLines; i++) {
+				lastTokensOnLines.set(i, lastTokens[i]);
+			}
+		}
+		return true;
 
 	}
 
@@ -651,25 +1463,41 @@ public class RSyntaxDocument extends RDocument implements Iterable<Token>,
 	 * data.  After this, a changed update is fired to let listeners know that
 	 * the document's structure has changed.<p>
 	 *
-	 * This is called internally whenever the syntax style changes.
+	 * This is called internally whenever the syntax style changes.  Large
+	 * documents are tokenized in parallel if possible.
+	 *
+	 * @param styleKey The new syntax style, or <code>null</code> if a custom
+	 *        {@link TokenMaker} was installed.  Parallel tokenization is only
+	 *        possible if this is non-<code>null</code>, since it requires
+	 *        creating additional token makers.
 	 */
-	private void updateSyntaxHighlightingInformation() {
+	private void updateSyntaxHighlightingInformation(String styleKey) {
 
 		// Reinitialize the "last token on each line" array.  Note that since
 		// the actual text in the document isn't changing, the number of lines
 		// is the same.
 		Element map = getDefaultRootElement();
 		int numLines = map.getElementCount();
-		int lastTokenType = Token.NULL;
-		for (int i=0; i<numLines; i++) {
-			setSharedSegment(i);
-			lastTokenType = tokenMaker.getLastTokenTypeOnLine(s, lastTokenType);
-			lastTokensOnLines.set(i, lastTokenType);
+		if (styleKey==null || numLines<PARALLEL_TOKENIZATION_MIN_LINES ||
+				!updateLastTokensInParallel(styleKey, numLines)) {
+			synchronized (tokenStateLock) {
+				int lastTokenType = Token.NULL;
+				for (int i=0; i<numLines; i++) {
+					setSharedSegment(i);
+					lastTokenType = tokenMaker.getLastTokenTypeOnLine(s, lastTokenType);
+					lastTokensOnLines.set(i, lastTokenType);
+				}
+			}
 		}
 
 		// Clear our token cache to force re-painting
-		lastLine = -1;
-		cachedTokenList = null;
+		tokenListCache.clear();
+		synchronized (tokenStateLock) {
+			dirtyLinesStart = dirtyLinesEnd = -1;
+			changedLinesStart = changedLinesEnd = -1;
+			tokenMakerStyleKey = styleKey;
+			tokenMakerGeneration++;
+		}
 
 		// Let everybody know that syntax styles have (probably) changed.
 		fireChangedUpdate(new DefaultDocumentEvent(
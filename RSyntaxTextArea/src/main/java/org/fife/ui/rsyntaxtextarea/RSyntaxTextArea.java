@@ -22,6 +22,7 @@ import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
 import java.awt.font.FontRenderContext;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
@@ -48,6 +49,7 @@ import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 import javax.swing.text.Element;
 import javax.swing.text.Highlighter;
+import javax.swing.text.View;
 
 import org.fife.ui.rsyntaxtextarea.focusabletip.FocusableTip;
 import org.fife.ui.rsyntaxtextarea.folding.DefaultFoldManager;
@@ -152,8 +154,10 @@ public class RSyntaxTextArea extends RTextArea implements SyntaxConstants {
 	public static final String EOL_VISIBLE_PROPERTY						= "RSTA.eolMarkersVisible";
 	public static final String FOCUSABLE_TIPS_PROPERTY					= "RSTA.focusableTips";
 	public static final String FRACTIONAL_FONTMETRICS_PROPERTY			= "RSTA.fractionalFontMetrics";
+	public static final String GLYPH_CACHE_PROPERTY						= "RSTA.glyphCache";
 	public static final String HIGHLIGHT_SECONDARY_LANGUAGES_PROPERTY	= "RSTA.highlightSecondaryLanguages";
 	public static final String HYPERLINKS_ENABLED_PROPERTY				= "RSTA.hyperlinksEnabled";
+	public static final String LINE_IMAGE_CACHE_PROPERTY				= "RSTA.lineImageCache";
 	public static final String MARK_OCCURRENCES_PROPERTY				= "RSTA.markOccurrences";
 	public static final String MARKED_OCCURRENCES_CHANGED_PROPERTY		= "RSTA.markedOccurrencesChanged";
 	public static final String PAINT_MATCHED_BRACKET_PAIR_PROPERTY		= "RSTA.paintMatchedBracketPair";
@@ -171,6 +175,13 @@ public class RSyntaxTextArea extends RTextArea implements SyntaxConstants {
 
 	private static final String MSG	= "org.fife.ui.rsyntaxtextarea.RSyntaxTextArea";
 
+	/**
+	 * The range of characters whose widths are checked for
+	 * {@link #getMonospacedCharWidth()}.
+	 */
+	static final char MIN_MONOSPACED_CHAR = ' ';
+	static final char MAX_MONOSPACED_CHAR = '~';
+
 	private JMenu foldingMenu;
 	private static RecordableTextAction toggleCurrentFoldAction;
 	private static RecordableTextAction collapseAllCommentFoldsAction;
@@ -302,6 +313,13 @@ public class RSyntaxTextArea extends RTextArea implements SyntaxConstants {
 	/** Metrics of the text area's font. */
 	private FontMetrics defaultFontMetrics;
 
+	/**
+	 * The advance of each character from {@link #MIN_MONOSPACED_CHAR} to
+	 * {@link #MAX_MONOSPACED_CHAR} in every token style, or <code>0</code>
+	 * if they aren't all the same.
+	 */
+	private int monospacedCharWidth;
+
 	/** Manages running the parser. */
 	private ParserManager parserManager;
 
@@ -336,6 +354,15 @@ public class RSyntaxTextArea extends RTextArea implements SyntaxConstants {
 	/** Renders tokens. */
 	private TokenPainter tokenPainter;
 
+	/** Whether painted text is cached in the syntax scheme's glyph cache. */
+	private boolean glyphCacheEnabled;
+
+	/** Images of rendered lines, or <code>null</code> if not enabled. */
+	private LineImageCache lineImageCache;
+
+	/** Discards all line images when a property of this text area changes. */
+	private PropertyChangeListener lineImageCacheListener;
+
 	/** Whether a popup showing matched bracket lines when they're off-screen. */
 	private boolean showMatchedBracketPopup;
 
@@ -972,6 +999,7 @@ private boolean fractionalFontMetricsEnabled;
 		else {
 			possiblyUpdateCurrentLineHighlightLocation();
 		}
+		invalidateLineImages();
 		revalidate();
 		repaint();
 	}
@@ -1250,6 +1278,17 @@ private boolean fractionalFontMetricsEnabled;
 	}
 
 
+	/**
+	 * Returns whether laid-out text is cached when painting.
+	 *
+	 * @return Whether the glyph cache is enabled.
+	 * @see #setGlyphCacheEnabled(boolean)
+	 */
+	public boolean getGlyphCacheEnabled() {
+		return glyphCacheEnabled;
+	}
+
+
 	/**
 	 * Returns a <code>Graphics2D</code> version of the specified graphics
 	 * that has been initialized with the proper rendering hints.
@@ -1344,6 +1383,29 @@ private boolean fractionalFontMetricsEnabled;
 	}
 
 
+	/**
+	 * Returns the cache of rendered lines.
+	 *
+	 * @return The cache, or <code>null</code> if it isn't enabled.
+	 * @see #getLineImageCacheEnabled()
+	 */
+	LineImageCache getLineImageCache() {
+		return lineImageCache;
+	}
+
+
+	/**
+	 * Returns whether images of rendered lines are cached and reused when
+	 * repainting.
+	 *
+	 * @return Whether the line image cache is enabled.
+	 * @see #setLineImageCacheEnabled(boolean)
+	 */
+	public boolean getLineImageCacheEnabled() {
+		return lineImageCache!=null;
+	}
+
+
 	public LinkGenerator getLinkGenerator() {
 		return linkGenerator;
 	}
@@ -1473,6 +1535,23 @@ private boolean fractionalFontMetricsEnabled;
 	}
 
 
+	/**
+	 * Returns the width of every printable ASCII character, if it's the same
+	 * in all fonts used to paint tokens, including bold and italic ones.
+	 * When it is, text made up of only those characters (and tabs) can be
+	 * measured by counting characters rather than through
+	 * <code>FontMetrics</code>.  Any other character, such as one from a CJK
+	 * script, may have a different width.
+	 *
+	 * @return The width of each character, or <code>0</code> if the widths
+	 *         differ or the fonts haven't been measured yet.
+	 * @see RSyntaxUtilities#getMonospacedCharWidth(RSyntaxTextArea, char[], int, int)
+	 */
+	int getMonospacedCharWidth() {
+		return monospacedCharWidth;
+	}
+
+
 	/**
 	 * Overridden to return the max ascent for any font used in the editor.
 	 *
@@ -1556,6 +1635,17 @@ private boolean fractionalFontMetricsEnabled;
 	}
 
 
+	/**
+	 * Returns whether registered {@link Parser}s are run on a worker thread.
+	 *
+	 * @return Whether parsing is asynchronous.
+	 * @see #setAsynchronousParsing(boolean)
+	 */
+	public boolean getAsynchronousParsing() {
+		return parserManager!=null && parserManager.getAsynchronous();
+	}
+
+
 	/**
 	 * Returns the currently set parser delay.  This is the delay that must
 	 * occur between edits for any registered {@link Parser}s to run.
@@ -2043,6 +2133,41 @@ private boolean fractionalFontMetricsEnabled;
 	}
 
 
+	/**
+	 * Discards all cached images of lines, if the line image cache is
+	 * enabled.  This should be called whenever something changes how lines
+	 * are rendered without going through the document, the highlighter or
+	 * a property change event.
+	 *
+	 * @see #invalidateLineImages(int, int)
+	 */
+	void invalidateLineImages() {
+		LineImageCache cache = lineImageCache;
+		if (cache!=null) {
+			cache.clear();
+		}
+	}
+
+
+	/**
+	 * Discards the cached images of the lines containing a range of text,
+	 * if the line image cache is enabled.  This may be called on any
+	 * thread.
+	 *
+	 * @param start The start offset of the range.
+	 * @param end The end offset of the range.
+	 * @see #invalidateLineImages()
+	 */
+	void invalidateLineImages(int start, int end) {
+		LineImageCache cache = lineImageCache;
+		if (cache!=null) {
+			Element root = getDocument().getDefaultRootElement();
+			cache.invalidate(root.getElementIndex(start),
+					root.getElementIndex(end));
+		}
+	}
+
+
 	/**
 	 * Returns whether or not auto-indent is enabled.
 	 *
@@ -2103,6 +2228,24 @@ private boolean fractionalFontMetricsEnabled;
 	}
 
 
+	/**
+	 * Returns whether every character in an array has a specific width.
+	 * With fractional metrics, characters may have widths that round to the
+	 * same value but aren't whole pixels, so the width of all of them
+	 * together is checked as well.
+	 */
+	private static boolean isMonospaced(FontMetrics fm, char[] chars,
+			int width) {
+		for (char ch : chars) {
+			if (fm.charWidth(ch)!=width) {
+				return false;
+			}
+		}
+		return width>0 && fm.charsWidth(chars, 0, chars.length)==
+				width*chars.length;
+	}
+
+
 	/**
 	 * Returns the token at the specified position in the model.
 	 *
@@ -2151,12 +2294,50 @@ private boolean fractionalFontMetricsEnabled;
 		// It is assumed that any rendering hints are already applied to g2d.
 		defaultFontMetrics = g2d.getFontMetrics(getFont());
 		syntaxScheme.refreshFontMetrics(g2d);
+		refreshMonospacedCharWidth();
 		if (!getLineWrap()) {
 			// HORRIBLE HACK!  The un-wrapped view needs to refresh its cached
 			// longest line information.
 			SyntaxView sv = (SyntaxView)getUI().getRootView(this).getView(0);
 			sv.calculateLongestLine();
 		}
+		else {
+			// Likewise, the wrapped view caches line counts computed with
+			// the old metrics.
+			View v = getUI().getRootView(this).getView(0);
+			if (v instanceof WrappedSyntaxView) {
+				((WrappedSyntaxView)v).fontMetricsChanged();
+			}
+		}
+	}
+
+
+	/**
+	 * Checks whether all token styles' fonts give printable ASCII characters
+	 * the same, whole-pixel width.
+	 *
+	 * @see #getMonospacedCharWidth()
+	 */
+	private void refreshMonospacedCharWidth() {
+
+		char[] chars = new char[MAX_MONOSPACED_CHAR - MIN_MONOSPACED_CHAR + 1];
+		for (int i=0; i<chars.length; i++) {
+			chars[i] = (char)(MIN_MONOSPACED_CHAR + i);
+		}
+
+		int width = defaultFontMetrics.charWidth(MIN_MONOSPACED_CHAR);
+		boolean monospaced = isMonospaced(defaultFontMetrics, chars, width);
+		for (Style style : syntaxScheme.getStyles()) {
+			if (!monospaced) {
+				break;
+			}
+			if (style!=null && style.fontMetrics!=null) {
+				monospaced = isMonospaced(style.fontMetrics, chars, width);
+			}
+		}
+
+		monospacedCharWidth = monospaced ? width : 0;
+
 	}
 
 
@@ -2630,6 +2811,30 @@ private boolean fractionalFontMetricsEnabled;
 	}
 
 
+	/**
+	 * Sets whether laid-out text is cached when painting.  When enabled, the
+	 * glyphs for runs of text in tokens are created once and reused on
+	 * subsequent paints, rather than being looked up and positioned each
+	 * time.  This speeds up scrolling through text that's already been
+	 * displayed, at the cost of some memory.  The cache is bounded and is
+	 * shared by all text areas using the same {@link SyntaxScheme}, and is
+	 * cleared when their fonts or rendering hints change.<p>
+	 *
+	 * This method fires a property change event of type
+	 * {@link #GLYPH_CACHE_PROPERTY}.
+	 *
+	 * @param enabled Whether the glyph cache is enabled.
+	 * @see #getGlyphCacheEnabled()
+	 */
+	public void setGlyphCacheEnabled(boolean enabled) {
+		if (enabled!=glyphCacheEnabled) {
+			glyphCacheEnabled = enabled;
+			repaint();
+			firePropertyChange(GLYPH_CACHE_PROPERTY, !enabled, enabled);
+		}
+	}
+
+
 	/**
 	 * Sets the highlighter used by this text area.
 	 *
@@ -2710,6 +2915,64 @@ private boolean fractionalFontMetricsEnabled;
 	}
 
 
+	/**
+	 * Sets whether images of rendered lines are cached and reused when
+	 * repainting.  When enabled, each line's text, along with its layered
+	 * and parser highlights, is rendered into an image that's reused until
+	 * the line changes.  The caret blinking or moving then only composites
+	 * these images over the background and current line highlight, rather
+	 * than tokenizing and painting the lines again.<p>
+	 *
+	 * This uses memory for up to a few screens' worth of images.  It also
+	 * has some limitations:
+	 * <ul>
+	 *    <li>It only applies when line wrap is disabled.
+	 *    <li>Since the images are translucent, subpixel (LCD) text
+	 *        antialiasing is rendered as greyscale antialiasing.
+	 *    <li>It isn't used when painting with fractional scaling, or for
+	 *        printing.
+	 *    <li>Images are only discarded when the document, highlights,
+	 *        folds or a property of this text area change.  Calling
+	 *        <code>repaint()</code> alone doesn't re-render lines, so
+	 *        changes made to the syntax scheme in place should be applied
+	 *        by calling {@link #setSyntaxScheme(SyntaxScheme)}.
+	 * </ul>
+	 * This method fires a property change event of type
+	 * {@link #LINE_IMAGE_CACHE_PROPERTY}.
+	 *
+	 * @param enabled Whether the line image cache is enabled.
+	 * @see #getLineImageCacheEnabled()
+	 */
+	public void setLineImageCacheEnabled(boolean enabled) {
+		if (enabled!=getLineImageCacheEnabled()) {
+			if (enabled) {
+				lineImageCache = new LineImageCache();
+				// Anything from the font to folding can change how lines
+				// are rendered
+				lineImageCacheListener = e -> {
+					String name = e.getPropertyName();
+					// Covered by the highlighter
+					if (!MARKED_OCCURRENCES_CHANGED_PROPERTY.equals(name) &&
+							!PARSER_NOTICES_PROPERTY.equals(name)) {
+						invalidateLineImages();
+					}
+				};
+				addPropertyChangeListener(lineImageCacheListener);
+				foldManager.addPropertyChangeListener(lineImageCacheListener);
+			}
+			else {
+				removePropertyChangeListener(lineImageCacheListener);
+				foldManager.removePropertyChangeListener(
+						lineImageCacheListener);
+				lineImageCacheListener = null;
+				lineImageCache = null;
+			}
+			repaint();
+			firePropertyChange(LINE_IMAGE_CACHE_PROPERTY, !enabled, enabled);
+		}
+	}
+
+
 	public void setLinkGenerator(LinkGenerator generator) {
 		this.linkGenerator = generator;
 	}
@@ -2896,6 +3159,27 @@ private boolean fractionalFontMetricsEnabled;
 	}
 
 
+	/**
+	 * Sets whether registered {@link Parser}s are run on a worker thread
+	 * instead of the EDT.  This keeps the editor responsive when using slow
+	 * parsers.<p>
+	 *
+	 * When enabled, parsers are passed a snapshot of the document rather
+	 * than the document itself, and their results are discarded if the
+	 * document is modified before they finish.  Parsers used this way must
+	 * not access this text area or other Swing components while parsing.
+	 *
+	 * @param asynchronous Whether to parse asynchronously.
+	 * @see #getAsynchronousParsing()
+	 */
+	public void setAsynchronousParsing(boolean asynchronous) {
+		if (parserManager==null) {
+			parserManager = new ParserManager(this);
+		}
+		parserManager.setAsynchronous(asynchronous);
+	}
+
+
 	/**
 	 * Sets the parser delay.  This is the delay that must occur between edits
 	 * for any registered {@link Parser}s to run.
@@ -2950,6 +3234,7 @@ private boolean fractionalFontMetricsEnabled;
 		if ((color==null && old!=null) || (color!=null && !color.equals(old))) {
 			secondaryLanguageBackgrounds[index] = color;
 			if (getHighlightSecondaryLanguages()) {
+				invalidateLineImages();
 				repaint();
 			}
 		}
@@ -3208,6 +3493,7 @@ private boolean fractionalFontMetricsEnabled;
 			if (c!=null && c.getType()==Cursor.HAND_CURSOR) {
 				fireHyperlinkUpdate(HyperlinkEvent.EventType.EXITED);
 				setCursor(Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR));
+				invalidateLineImages();
 				repaint(); // TODO: Repaint just the affected line.
 			}
 		}
@@ -3440,6 +3726,7 @@ private boolean fractionalFontMetricsEnabled;
 					if (hoveredOverLinkOffset==-1 ||
 							hoveredOverLinkOffset!=t.getOffset()) {
 						hoveredOverLinkOffset = t.getOffset();
+						invalidateLineImages();
 						repaint();
 					}
 					c2 = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR);
@@ -3452,6 +3739,7 @@ private boolean fractionalFontMetricsEnabled;
 						// Repaint if we're at a new link now.
 						if (linkGeneratorResult==null ||
 								!equal(newResult, linkGeneratorResult)) {
+							invalidateLineImages();
 							repaint();
 						}
 						linkGeneratorResult = newResult;
@@ -3461,6 +3749,7 @@ private boolean fractionalFontMetricsEnabled;
 					else {
 						// Repaint if we've moved off of a link.
 						if (linkGeneratorResult!=null) {
+							invalidateLineImages();
 							repaint();
 						}
 						c2 = Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR);
@@ -3479,6 +3768,7 @@ private boolean fractionalFontMetricsEnabled;
 
 					setCursor(c2);
 					// TODO: Repaint just the affected line(s).
+					invalidateLineImages();
 					repaint(); // Link either left or went into.
 
 					// Here we know for sure if they are changing to hovering over a link
@@ -45,13 +45,19 @@ public class RSyntaxTextAreaHighlighter extends RTextAreaHighlighter {
 	 * Marked occurrences in the document (to be painted separately from
 	 * other highlights).
 	 */
-	private List<SyntaxLayeredHighlightInfoImpl> markedOccurrences;
+	private HighlightList<SyntaxLayeredHighlightInfoImpl> markedOccurrences;
+
+	/**
+	 * Tracks the offsets of the marked occurrences, or <code>null</code> if
+	 * there are none.
+	 */
+	private PositionTracker markedOccurrencePositions;
 
 	/**
 	 * Highlights from document parsers.  These should be painted "on top of"
 	 * all other highlights to ensure they are always above the selection.
 	 */
-	private List<SyntaxLayeredHighlightInfoImpl> parserHighlights;
+	private HighlightList<SyntaxLayeredHighlightInfoImpl> parserHighlights;
 
 	/**
 	 * The default color used for parser notices when none is specified.
@@ -63,8 +69,8 @@ public class RSyntaxTextAreaHighlighter extends RTextAreaHighlighter {
 	 * Constructor.
 	 */
 	public RSyntaxTextAreaHighlighter() {
-		markedOccurrences = new ArrayList<>();
-		parserHighlights = new ArrayList<>(0); // Often unused
+		markedOccurrences = new HighlightList<>();
+		parserHighlights = new HighlightList<>();
 	}
 
 
@@ -82,15 +88,21 @@ public class RSyntaxTextAreaHighlighter extends RTextAreaHighlighter {
 			SmartHighlightPainter p) throws BadLocationException {
 		Document doc = textArea.getDocument();
 		TextUI mapper = textArea.getUI();
+		if (markedOccurrencePositions==null ||
+				markedOccurrencePositions.getDocument()!=doc) {
+			disposeMarkedOccurrencePositions();
+			markedOccurrencePositions = new PositionTracker(doc);
+		}
 		// Always layered highlights for marked occurrences.
 		SyntaxLayeredHighlightInfoImpl i = new SyntaxLayeredHighlightInfoImpl();
 		i.setPainter(p);
-		i.setStartOffset(doc.createPosition(start));
+		i.setStartOffset(markedOccurrencePositions.createPosition(start));
 		// HACK: Use "end-1" to prevent chars the user types at the "end" of
 		// the highlight to be absorbed into the highlight (default Highlight
 		// behavior).
-		i.setEndOffset(doc.createPosition(end-1));
+		i.setEndOffset(markedOccurrencePositions.createPosition(end-1));
 		markedOccurrences.add(i);
+		highlightChanged(start, end);
 		mapper.damageRange(textArea, start, end);
 		return i;
 	}
@@ -137,6 +149,7 @@ public class RSyntaxTextAreaHighlighter extends RTextAreaHighlighter {
 		i.notice = notice;//i.color = notice.getColor();
 
 		parserHighlights.add(i);
+		highlightChanged(start, end);
 		mapper.damageRange(textArea, start, end);
 		return i;
 
@@ -149,12 +162,9 @@ public class RSyntaxTextAreaHighlighter extends RTextAreaHighlighter {
 	 * @see #addMarkedOccurrenceHighlight(int, int, SmartHighlightPainter)
 	 */
 	void clearMarkOccurrencesHighlights() {
-		// Don't remove via an iterator; since our List is an ArrayList, this
-		// implies tons of System.arrayCopy()s
-		for (HighlightInfo info : markedOccurrences) {
-			repaintListHighlight(info);
-		}
+		repaintListHighlights(markedOccurrences);
 		markedOccurrences.clear();
+		disposeMarkedOccurrencePositions();
 	}
 
 
@@ -164,11 +174,7 @@ public class RSyntaxTextAreaHighlighter extends RTextAreaHighlighter {
 	 * @see #addParserHighlight(ParserNotice, javax.swing.text.Highlighter.HighlightPainter)
 	 */
 	void clearParserHighlights() {
-		// Don't remove via an iterator; since our List is an ArrayList, this
-		// implies tons of System.arrayCopy()s
-		for (SyntaxLayeredHighlightInfoImpl parserHighlight : parserHighlights) {
-			repaintListHighlight(parserHighlight);
-		}
+		repaintListHighlights(parserHighlights);
 		parserHighlights.clear();
 	}
 
@@ -186,6 +192,7 @@ public class RSyntaxTextAreaHighlighter extends RTextAreaHighlighter {
 			SyntaxLayeredHighlightInfoImpl info = i.next();
 
 			if (info.notice.getParser()==parser) {
+				highlightChanged(info.getStartOffset(), info.getEndOffset());
 			    if (info.width > 0 && info.height > 0) {
 			    	textArea.repaint(info.x, info.y, info.width, info.height);
 			    }
@@ -201,10 +208,22 @@ public class RSyntaxTextAreaHighlighter extends RTextAreaHighlighter {
 	public void deinstall(JTextComponent c) {
 		super.deinstall(c);
 		markedOccurrences.clear();
+		disposeMarkedOccurrencePositions();
 		parserHighlights.clear();
 	}
 
 
+	/**
+	 * Stops tracking the offsets of the current marked occurrences.
+	 */
+	private void disposeMarkedOccurrencePositions() {
+		if (markedOccurrencePositions!=null) {
+			markedOccurrencePositions.dispose();
+			markedOccurrencePositions = null;
+		}
+	}
+
+
 	/**
 	 * Returns a list of "marked occurrences" in the text area.  If there are
 	 * no marked occurrences, this will be an empty list.
@@ -230,6 +249,16 @@ public class RSyntaxTextAreaHighlighter extends RTextAreaHighlighter {
 	}
 
 
+	/**
+	 * Overridden to discard the text area's cached images of the lines
+	 * whose highlights changed.
+	 */
+	@Override
+	protected void highlightChanged(int start, int end) {
+		((RSyntaxTextArea)textArea).invalidateLineImages(start, end);
+	}
+
+
 	/**
 	 * Paints the "marked occurrences" highlights, then any other standard
 	 * layered highlights (e.g. the text selection).
@@ -570,6 +570,35 @@ public final class RSyntaxUtilities implements SwingConstants {
 	}
 
 
+	/**
+	 * Returns the width of each character in a range of text, if the text
+	 * area's fonts are monospaced and the text contains only tabs and
+	 * characters known to have that width.  Such text can be measured by
+	 * counting characters instead of through <code>FontMetrics</code>.
+	 *
+	 * @param textArea The text area.
+	 * @param text The text.
+	 * @param start The start of the range.
+	 * @param end The end of the range, exclusive.
+	 * @return The width of each character, or <code>0</code> if the text
+	 *         must be measured with <code>FontMetrics</code>.
+	 * @see RSyntaxTextArea#getMonospacedCharWidth()
+	 */
+	static int getMonospacedCharWidth(RSyntaxTextArea textArea, char[] text,
+			int start, int end) {
+		int charWidth = textArea.getMonospacedCharWidth();
+		if (charWidth>0) {
+			for (int i=start; i<end; i++) {
+				char ch = text[i];
+				if (ch!='\t' && !isMonospacedChar(ch)) {
+					return 0;
+				}
+			}
+		}
+		return charWidth;
+	}
+
+
 	/**
 	 * Returns the next non-whitespace, non-comment token in a text area.
 	 *
@@ -1100,6 +1129,29 @@ return c.getLineStartOffset(line);
 	}
 
 
+	/**
+	 * Determines the width of the tokens in a token buffer taking tabs
+	 * into consideration.
+	 *
+	 * @param tokens The tokens representing the text.
+	 * @param textArea The text area in which the tokens reside.
+	 * @param e The tab expander.  This value cannot be <code>null</code>.
+	 * @param x0 The x-pixel coordinate of the start of the tokens.
+	 * @return The width of the tokens, in pixels.
+	 * @see #getTokenListWidth(Token, RSyntaxTextArea, TabExpander, float)
+	 */
+	public static float getTokenListWidth(TokenBuffer tokens,
+									RSyntaxTextArea textArea,
+									TabExpander e, float x0) {
+		float width = x0;
+		int count = tokens.getTokenCount();
+		for (int i=0; i<count && tokens.isPaintable(i); i++) {
+			width += tokens.getToken(i).getWidth(textArea, e, width);
+		}
+		return width - x0;
+	}
+
+
 	/**
 	 * Determines the width of the given token list taking tabs into
 	 * consideration and only up to the given index in the document
@@ -1234,6 +1286,20 @@ return c.getLineStartOffset(line);
 	}
 
 
+	/**
+	 * Returns whether a character is one that has the width returned by
+	 * {@link RSyntaxTextArea#getMonospacedCharWidth()}, if that width isn't
+	 * <code>0</code>.
+	 *
+	 * @param ch The character.
+	 * @return Whether the character is printable ASCII.
+	 */
+	static boolean isMonospacedChar(char ch) {
+		return ch>=RSyntaxTextArea.MIN_MONOSPACED_CHAR &&
+				ch<=RSyntaxTextArea.MAX_MONOSPACED_CHAR;
+	}
+
+
 	/**
 	 * Returns whether the specified token is a single non-word char (e.g. not
 	 * in <code>[A-Za-z]</code>.  This is a HACK to work around the fact that
@@ -42,6 +42,12 @@ public class SyntaxScheme implements Cloneable, TokenTypes {
 
 	private Style[] styles;
 
+	/**
+	 * Glyph vectors for text painted with this scheme's fonts, shared by all
+	 * text areas using this scheme.  Lazily created.
+	 */
+	private GlyphVectorCache glyphVectorCache;
+
 	private static final String VERSION			= "*ver1";
 
 
@@ -128,6 +134,7 @@ public class SyntaxScheme implements Cloneable, TokenTypes {
 			cnse.printStackTrace();
 			return null;
 		}
+		shcs.glyphVectorCache = null;
 		shcs.styles = new Style[styles.length];
 		for (int i=0; i<styles.length; i++) {
 			Style s = styles[i];
@@ -174,6 +181,20 @@ public class SyntaxScheme implements Cloneable, TokenTypes {
 	}
 
 
+	/**
+	 * Returns the cache of glyph vectors for text painted with this scheme.
+	 *
+	 * @return The cache.
+	 * @see RSyntaxTextArea#getGlyphCacheEnabled()
+	 */
+	GlyphVectorCache getGlyphVectorCache() {
+		if (glyphVectorCache==null) {
+			glyphVectorCache = new GlyphVectorCache();
+		}
+		return glyphVectorCache;
+	}
+
+
 	/**
 	 * Returns a hex string representing an RGB color, of the form
 	 * <code>"$rrggbb"</code>.
@@ -385,6 +406,11 @@ public class SyntaxScheme implements Cloneable, TokenTypes {
 
 
 	void refreshFontMetrics(Graphics2D g2d) {
+		// Fonts or rendering hints may have changed, so cached glyphs for
+		// the old ones would just take up space until evicted.
+		if (glyphVectorCache!=null) {
+			glyphVectorCache.clear();
+		}
 		// It is assumed that any rendering hints are already applied to g2d.
 		for (Style s : styles) {
 			if (s != null) {
@@ -10,6 +10,9 @@
 package org.fife.ui.rsyntaxtextarea;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.print.PrinterGraphics;
 import javax.swing.event.*;
 import javax.swing.text.*;
 
@@ -48,12 +51,11 @@ public class SyntaxView extends View implements TabExpander,
 	private FontMetrics metrics;
 
 	/**
-	 * The current longest line.  This is used to calculate the preferred width
-	 * of the view.  Since the calculation is potentially expensive, we try to
-	 * avoid it by stashing which line is currently the longest.
+	 * The width of each line.  This is used to calculate the preferred width
+	 * of the view.  Since measuring a line is potentially expensive, only the
+	 * lines that are edited are measured again.
 	 */
-	private Element longLine;
-	private float longLineWidth;
+	private LineWidthCache lineWidths;
 
 	private int tabSize;
 	private int tabBase;
@@ -87,16 +89,16 @@ public class SyntaxView extends View implements TabExpander,
 	public SyntaxView(Element elem) {
 		super(elem);
 		tempToken = new TokenImpl();
+		lineWidths = new LineWidthCache();
 	}
 
 
 	/**
-	 * Iterate over the lines represented by the child elements
-	 * of the element this view represents, looking for the line
-	 * that is the longest.  The <em>longLine</em> variable is updated to
-	 * represent the longest line contained.  The <em>font</em> variable
-	 * is updated to indicate the font used to calculate the
-	 * longest line.
+	 * Measures every line represented by the child elements of the element
+	 * this view represents, so the longest one is known.  The
+	 * <em>font</em> variable is updated to indicate the font used to
+	 * measure the lines.  This is only needed when the font or tab size
+	 * changes; edits only measure the lines they touch.
 	 */
 	void calculateLongestLine() {
 		Component c = getContainer();
@@ -105,13 +107,9 @@ public class SyntaxView extends View implements TabExpander,
 		tabSize = getTabSize() * metrics.charWidth(' ');
 		Element lines = getElement();
 		int n = lines.getElementCount();
+		lineWidths.reset(n);
 		for (int i=0; i<n; i++) {
-			Element line = lines.getElement(i);
-			float w = getLineWidth(i);
-			if (w > longLineWidth) {
-				longLineWidth = w;
-				longLine = line;
-			}
+			lineWidths.setWidth(i, getLineWidth(i));
 		}
 	}
 
@@ -131,6 +129,29 @@ public class SyntaxView extends View implements TabExpander,
 	}
 
 
+	/**
+	 * Returns a graphics context for rendering a line into its cached image.
+	 * It uses the same coordinate space and rendering hints as the one the
+	 * image will be drawn into.
+	 *
+	 * @param image The image of the line.
+	 * @param g The graphics context the image will be drawn into.
+	 * @param bounds The bounds of the line.
+	 * @param scale The scale of <code>g</code>.
+	 * @return The graphics context.  Callers should dispose of it.
+	 */
+	private static Graphics2D createLineImageGraphics(BufferedImage image,
+			Graphics2D g, Rectangle bounds, int scale) {
+		Graphics2D g2d = image.createGraphics();
+		g2d.setRenderingHints(g.getRenderingHints());
+		g2d.scale(scale, scale);
+		g2d.translate(-bounds.x, -bounds.y);
+		g2d.clip(bounds);
+		g2d.setFont(g.getFont());
+		return g2d;
+	}
+
+
 	/**
 	 * Repaint the given line range.
 	 *
@@ -164,22 +185,22 @@ public class SyntaxView extends View implements TabExpander,
 	 * off.
 	 *
 	 * @param painter The painter to render the tokens.
-	 * @param token The list of tokens to draw.
+	 * @param tokens The tokens to draw.
 	 * @param g The graphics context in which to draw.
 	 * @param x The x-coordinate at which to draw.
 	 * @param y The y-coordinate at which to draw.
 	 * @return The x-coordinate representing the end of the painted text.
 	 */
-	private float drawLine(TokenPainter painter, Token token, Graphics2D g,
-			float x, float y, int line) {
+	private float drawLine(TokenPainter painter, TokenBuffer tokens,
+			Graphics2D g, float x, float y, int line) {
 
 		float nextX = x;	// The x-value at the end of our text.
 		boolean paintBG = host.getPaintTokenBackgrounds(line, y);
 
-		while (token!=null && token.isPaintable() && nextX<clipEnd) {
-			nextX = painter.paint(token, g, nextX,y, host, this, clipStart,
-					paintBG);
-			token = token.getNextToken();
+		int count = tokens==null ? 0 : tokens.getTokenCount();
+		for (int i=0; i<count && tokens.isPaintable(i) && nextX<clipEnd; i++) {
+			nextX = painter.paint(tokens.getToken(i), g, nextX,y, host, this,
+					clipStart, paintBG);
 		}
 
 		// NOTE: We should re-use code from Token (paintBackground()) here,
@@ -294,6 +315,32 @@ public class SyntaxView extends View implements TabExpander,
 	}
 
 
+	/**
+	 * Returns the scale of a graphics context if cached images of lines can
+	 * be drawn into it.  They can't be if it's being used for printing, or if
+	 * drawing them would require resampling; i.e. if it's rotated, or scaled
+	 * by something other than a whole number.
+	 *
+	 * @param g The graphics context.
+	 * @return The scale, or <code>0</code> if images of lines shouldn't be
+	 *         used.
+	 */
+	private int getLineImageScale(Graphics2D g) {
+		if (host.isPaintingForPrint() || g instanceof PrinterGraphics) {
+			return 0;
+		}
+		AffineTransform tx = g.getTransform();
+		double scale = tx.getScaleX();
+		if (tx.getScaleY()!=scale || tx.getShearX()!=0 || tx.getShearY()!=0 ||
+				scale<1 || scale!=Math.rint(scale) ||
+				tx.getTranslateX()!=Math.rint(tx.getTranslateX()) ||
+				tx.getTranslateY()!=Math.rint(tx.getTranslateY())) {
+			return 0;
+		}
+		return (int)scale;
+	}
+
+
 	/**
 	 * Calculates the width of the line represented by the given element.
 	 *
@@ -301,11 +348,11 @@ public class SyntaxView extends View implements TabExpander,
 	 * @return The width of the line.
 	 */
 	private float getLineWidth(int lineNumber) {
-		Token tokenList = ((RSyntaxDocument)getDocument()).
-									getTokenListForLine(lineNumber);
-		return RSyntaxUtilities.getTokenListWidth(tokenList,
+		TokenBuffer tokens = ((RSyntaxDocument)getDocument()).
+									getTokenBufferForLine(lineNumber);
+		return RSyntaxUtilities.getTokenListWidth(tokens,
 								(RSyntaxTextArea)getContainer(),
-								this);
+								this, 0);
 	}
 
 
@@ -351,7 +398,7 @@ public class SyntaxView extends View implements TabExpander,
 		updateMetrics();
 		switch (axis) {
 			case View.X_AXIS:
-				float span = longLineWidth + getRhsCorrection(); // fudge factor
+				float span = lineWidths.getMaxWidth() + getRhsCorrection(); // fudge factor
 				if (host.getEOLMarkersVisible()) {
 					span += metrics.charWidth('\u00B6');
 				}
@@ -671,8 +718,6 @@ else {
 	@Override
 	public void paint(Graphics g, Shape a) {
 
-		RSyntaxDocument document = (RSyntaxDocument)getDocument();
-
 		Rectangle alloc = a.getBounds();
 
 		tabBase = alloc.x;
@@ -702,53 +747,51 @@ else {
 		int selStart = host.getSelectionStart();
 		int selEnd = host.getSelectionEnd();
 
-		RSyntaxTextAreaHighlighter h =
-					(RSyntaxTextAreaHighlighter)host.getHighlighter();
-
 		Graphics2D g2d = (Graphics2D)g;
-		Token token;
 		//System.err.println("Painting lines: " + linesAbove + " to " + (endLine-1));
 
+		// Lines are rendered across the entire visible width if their images
+		// are cached, so they can be reused for any clip
+		LineImageCache lineImages = host.getLineImageCache();
+		Rectangle visibleRect = host.getVisibleRect();
+		int scale = lineImages!=null ? getLineImageScale(g2d) : 0;
+		if (scale==0 || visibleRect.isEmpty()) {
+			lineImages = null;
+		}
+		else {
+			clipStart = visibleRect.x;
+			clipEnd = visibleRect.x + visibleRect.width;
+		}
+
 		TokenPainter painter = host.getTokenPainter();
 		int line = linesAbove;
 		//int count = 0;
 		while (y<clip.y+clip.height+ascent && line<lineCount) {
 
 			Fold fold = fm.getFoldForLine(line);
-			Element lineElement = map.getElement(line);
-			int startOffset = lineElement.getStartOffset();
-			//int endOffset = (line==lineCount ? lineElement.getEndOffset()-1 :
-			//							lineElement.getEndOffset()-1);
-			int endOffset = lineElement.getEndOffset()-1; // Why always "-1"?
-			h.paintLayeredHighlights(g2d, startOffset, endOffset,
-								a, host, this);
-
-			// Paint a line of text.
-			token = document.getTokenListForLine(line);
-			if (selStart==selEnd || startOffset>=selEnd ||
-					endOffset<selStart) {
-				drawLine(painter, token, g2d, x,y, line);
+
+			if (lineImages!=null) {
+				Rectangle bounds = new Rectangle(visibleRect.x, y - ascent,
+						visibleRect.width, lineHeight);
+				BufferedImage image = lineImages.get(line, bounds, scale);
+				if (image==null) {
+					image = lineImages.create(line, bounds, scale,
+							g2d.getDeviceConfiguration());
+					Graphics2D imageG = createLineImageGraphics(image, g2d,
+							bounds, scale);
+					paintLine(imageG, a, painter, line, fold, x, y, selStart,
+							selEnd);
+					imageG.dispose();
+				}
+				g2d.drawImage(image, bounds.x, bounds.y, bounds.width,
+						bounds.height, null);
 			}
 			else {
-				//System.out.println("Drawing line with selection: " + line);
-				drawLineWithSelection(painter,token,g2d, x,y, selStart, selEnd);
+				paintLine(g2d, a, painter, line, fold, x, y, selStart, selEnd);
 			}
 
-			// Paint parser highlights (typically squiggle-underlines) after
-			// text and selection
-			h.paintParserHighlights(g2d, startOffset, endOffset,
-				a, host, this);
-
 			if (fold!=null && fold.isCollapsed()) {
 
-				// Visible indicator of collapsed lines
-				Color c = RSyntaxUtilities.getFoldedLineBottomColor(host);
-				if (c!=null) {
-					g.setColor(c);
-					g.drawLine(x,y+lineHeight-ascent-1,
-							host.getWidth(),y+lineHeight-ascent-1);
-				}
-
 				// Skip to next line to paint, taking extra care for lines with
 				// block ends and begins together, e.g. "} else {"
 				do {
@@ -777,21 +820,62 @@ else {
 
 
 	/**
-	 * If the passed-in line is longer than the current longest line, then
-	 * the longest line is updated.
+	 * Paints a single line: its layered highlights, its text, its parser
+	 * highlights, and an indicator if it begins a collapsed fold.
 	 *
-	 * @param line The line to test against the current longest.
-	 * @param lineNumber The line number of the passed-in line.
-	 * @return <code>true</code> iff the current longest line was updated.
-	 */
-	private boolean possiblyUpdateLongLine(Element line, int lineNumber) {
-		float w = getLineWidth(lineNumber);
-		if (w > longLineWidth) {
-			longLineWidth = w;
-			longLine = line;
-			return true;
+	 * @param g The graphics context with which to paint.
+	 * @param a The allocated region in which to render.
+	 * @param painter The painter to render the tokens.
+	 * @param line The line to paint.
+	 * @param fold The fold beginning on the line, or <code>null</code> if
+	 *        none.
+	 * @param x The x-coordinate at which to paint.
+	 * @param y The baseline of the line.
+	 * @param selStart The start of the selection.
+	 * @param selEnd The end of the selection.
+	 */
+	private void paintLine(Graphics2D g, Shape a, TokenPainter painter,
+			int line, Fold fold, int x, int y, int selStart, int selEnd) {
+
+		RSyntaxDocument document = (RSyntaxDocument)getDocument();
+		RSyntaxTextAreaHighlighter h =
+					(RSyntaxTextAreaHighlighter)host.getHighlighter();
+
+		Element lineElement = getElement().getElement(line);
+		int startOffset = lineElement.getStartOffset();
+		//int endOffset = (line==lineCount ? lineElement.getEndOffset()-1 :
+		//							lineElement.getEndOffset()-1);
+		int endOffset = lineElement.getEndOffset()-1; // Why always "-1"?
+		h.paintLayeredHighlights(g, startOffset, endOffset,
+							a, host, this);
+
+		// Paint a line of text.
+		if (selStart==selEnd || startOffset>=selEnd ||
+				endOffset<selStart) {
+			drawLine(painter, document.getTokenBufferForLine(line), g,
+					x,y, line);
+		}
+		else {
+			//System.out.println("Drawing line with selection: " + line);
+			Token token = document.getTokenListForLine(line);
+			drawLineWithSelection(painter,token,g, x,y, selStart, selEnd);
+		}
+
+		// Paint parser highlights (typically squiggle-underlines) after
+		// text and selection
+		h.paintParserHighlights(g, startOffset, endOffset,
+			a, host, this);
+
+		if (fold!=null && fold.isCollapsed()) {
+			// Visible indicator of collapsed lines
+			Color c = RSyntaxUtilities.getFoldedLineBottomColor(host);
+			if (c!=null) {
+				g.setColor(c);
+				g.drawLine(x,y+lineHeight-ascent-1,
+						host.getWidth(),y+lineHeight-ascent-1);
+			}
 		}
-		return false;
+
 	}
 
 
@@ -821,11 +905,12 @@ else {
 	 * event.  Damages the line that begins the range to cover
 	 * the case when the insert/remove is only on one line.
 	 * If lines are added or removed, damages the whole
-	 * view.  The longest line is checked to see if it has
-	 * changed.
+	 * view.  The modified lines are measured again, in case
+	 * the longest line has changed.
 	 */
 	protected void updateDamage(DocumentEvent changes, Shape a, ViewFactory f) {
 		Component host = getContainer();
+		LineImageCache lineImages = ((RSyntaxTextArea)host).getLineImageCache();
 		updateMetrics();
 		Element elem = getElement();
 		DocumentEvent.ElementChange ec = changes.getChange(elem);
@@ -834,20 +919,23 @@ else {
 		if (((added != null) && (added.length > 0)) ||
 			((removed != null) && (removed.length > 0))) {
 			// lines were added or removed...
-			if (added != null) {
-				int addedAt = ec.getIndex(); // FIXME: Is this correct?????
-				for (int i = 0; i < added.length; i++) {
-					possiblyUpdateLongLine(added[i], addedAt+i);
+			int index = ec.getIndex();
+			int addedCount = added != null ? added.length : 0;
+			int removedCount = removed != null ? removed.length : 0;
+			if (lineWidths.getLineCount() ==
+					elem.getElementCount() - addedCount + removedCount) {
+				lineWidths.removeLines(index, removedCount);
+				lineWidths.insertLines(index, addedCount);
+				for (int i = 0; i < addedCount; i++) {
+					lineWidths.setWidth(index+i, getLineWidth(index+i));
 				}
 			}
-			if (removed != null) {
-				for (Element element : removed) {
-					if (element == longLine) {
-						longLineWidth = -1; // Must do this!!
-						calculateLongestLine();
-						break;
-					}
-				}
+			else if (lineWidths.getLineCount() != elem.getElementCount()) {
+				calculateLongestLine();
+			}
+			if (lineImages!=null) {
+				// All following lines have moved to new line indices
+				lineImages.invalidate(index, Integer.MAX_VALUE);
 			}
 			preferenceChanged(null, true, true);
 			host.repaint();
@@ -859,37 +947,24 @@ else {
 			//System.err.println("Updating the damage due to a CHANGE event...");
 			int startLine = changes.getOffset();
 			int endLine = changes.getLength();
+			if (lineImages!=null) {
+				lineImages.invalidate(startLine, endLine);
+			}
 			damageLineRange(startLine,endLine, a, host);
 		}
 
 		else {
 			Element map = getElement();
 			int line = map.getElementIndex(changes.getOffset());
-			damageLineRange(line, line, a, host);
-			if (changes.getType() == DocumentEvent.EventType.INSERT) {
-				// check to see if the line is longer than current
-				// longest line.
-				Element e = map.getElement(line);
-				if (e == longLine) {
-					// We must recalculate longest line's width here
-					// because it has gotten longer.
-					longLineWidth = getLineWidth(line);
-					preferenceChanged(null, true, false);
-				}
-				else {
-					// If long line gets updated, update the status bars too.
-					if (possiblyUpdateLongLine(e, line)) {
-						preferenceChanged(null, true, false);
-					}
-				}
+			if (lineImages!=null) {
+				lineImages.invalidate(line, line);
 			}
-			else if (changes.getType() == DocumentEvent.EventType.REMOVE) {
-				if (map.getElement(line) == longLine) {
-					// removed from longest line... recalc
-					longLineWidth = -1; // Must do this!
-					calculateLongestLine();
-					preferenceChanged(null, true, false);
-				}
+			damageLineRange(line, line, a, host);
+			// If the longest line's width changes, update the scroll bars too.
+			float oldWidth = lineWidths.getMaxWidth();
+			lineWidths.setWidth(line, getLineWidth(line));
+			if (lineWidths.getMaxWidth() != oldWidth) {
+				preferenceChanged(null, true, false);
 			}
 		}
 	}
@@ -0,0 +1,492 @@
+/*
+ * 10/17/2026
+ *
+ * TokenBuffer.java - The tokens on a single line, stored in parallel arrays.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.util.Arrays;
+
+import javax.swing.text.Segment;
+
+
+/**
+ * The tokens on a single line of an {@link RSyntaxDocument}, stored as
+ * parallel arrays of primitives rather than as a linked list of
+ * {@link Token} objects.<p>
+ *
+ * A <code>TokenBuffer</code> owns a private copy of its line's text, so it
+ * remains valid after the token maker that produced it is reused and after
+ * the document is modified (though of course its offsets may then be stale).
+ * Storing a line this way takes a fraction of the memory of an equivalent
+ * token list, and code that only needs to look at each token in turn can do
+ * so by index:
+ *
+ * <pre>
+ * TokenBuffer tokens = doc.getTokenBufferForLine(line);
+ * for (int i=0; i&lt;tokens.getTokenCount() &amp;&amp; tokens.isPaintable(i); i++) {
+ *    int start = tokens.getOffset(i);
+ *    ...
+ * }
+ * </pre>
+ *
+ * For APIs that require a <code>Token</code>, {@link #getToken(int)} returns
+ * a flyweight view of a single token, and {@link #getTokenList()} returns a
+ * traditional linked list.<p>
+ *
+ * This class is not thread-safe.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see RSyntaxDocument#getTokenBufferForLine(int)
+ */
+public class TokenBuffer {
+
+	/**
+	 * The text of the line, followed by the text of any tokens that didn't
+	 * point into the line (rare).
+	 */
+	private char[] text;
+
+	/**
+	 * The document offset of each token.
+	 */
+	private int[] offsets;
+
+	/**
+	 * The offset of each token's text in {@link #text}, or <code>-1</code>
+	 * for tokens without text.
+	 */
+	private int[] textOffsets;
+
+	/**
+	 * The length of each token.
+	 */
+	private int[] lengths;
+
+	/**
+	 * The type of each token.
+	 */
+	private int[] types;
+
+	/**
+	 * The language index of each token.
+	 */
+	private int[] languageIndices;
+
+	/**
+	 * Which tokens are hyperlinks.  This is <code>null</code> if none are.
+	 */
+	private boolean[] hyperlinks;
+
+	/**
+	 * The number of tokens in this buffer.
+	 */
+	private int size;
+
+	/**
+	 * The flyweight returned by {@link #getToken(int)}.
+	 */
+	private TokenImpl view;
+
+	/**
+	 * The token following {@link #view}, so callers can peek at it.
+	 */
+	private TokenImpl nextView;
+
+	/**
+	 * The result of {@link #getTokenList()}, created on demand.
+	 */
+	private Token tokenList;
+
+	private static final int[] EMPTY = new int[0];
+
+
+	/**
+	 * Creates an empty buffer.
+	 *
+	 * @see #set(Segment, Token)
+	 */
+	public TokenBuffer() {
+		text = new char[0];
+		offsets = textOffsets = lengths = types = languageIndices = EMPTY;
+	}
+
+
+	/**
+	 * Creates a buffer holding a copy of a token list.
+	 *
+	 * @param text The text the token list was created from.
+	 * @param tokenList The token list.
+	 * @see #set(Segment, Token)
+	 */
+	public TokenBuffer(Segment text, Token tokenList) {
+		this();
+		set(text, tokenList);
+	}
+
+
+	/**
+	 * Appends a token's text to {@link #text}, for the rare token that does
+	 * not point into the line's text.
+	 *
+	 * @param t The token.
+	 * @param textLength The number of characters currently used in
+	 *        <code>text</code>.
+	 * @return The new number of characters used.
+	 */
+	private int appendText(Token t, int textLength) {
+		int len = t.length();
+		if (textLength+len>text.length) {
+			text = Arrays.copyOf(text, Math.max(textLength+len,
+												text.length*2));
+		}
+		System.arraycopy(t.getTextArray(), t.getTextOffset(),
+						text, textLength, len);
+		return textLength + len;
+	}
+
+
+	/**
+	 * Returns the document offset just after the specified token.
+	 *
+	 * @param index The index of the token.
+	 * @return The end offset of the token.
+	 * @see #getOffset(int)
+	 */
+	public int getEndOffset(int index) {
+		return offsets[index] + lengths[index];
+	}
+
+
+	/**
+	 * Returns the language index of the specified token.
+	 *
+	 * @param index The index of the token.
+	 * @return The language index.
+	 * @see Token#getLanguageIndex()
+	 */
+	public int getLanguageIndex(int index) {
+		return languageIndices[index];
+	}
+
+
+	/**
+	 * Returns the length of the specified token.
+	 *
+	 * @param index The index of the token.
+	 * @return The length of the token.
+	 */
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+
+	/**
+	 * Returns the text of the specified token.
+	 *
+	 * @param index The index of the token.
+	 * @return The token's text, or <code>null</code> if it has none.
+	 * @see Token#getLexeme()
+	 */
+	public String getLexeme(int index) {
+		int textOffset = textOffsets[index];
+		return textOffset==-1 ? null :
+				new String(text, textOffset, lengths[index]);
+	}
+
+
+	/**
+	 * Returns the document offset of the specified token.
+	 *
+	 * @param index The index of the token.
+	 * @return The offset of the token.
+	 * @see #getEndOffset(int)
+	 */
+	public int getOffset(int index) {
+		return offsets[index];
+	}
+
+
+	/**
+	 * Returns the array containing this buffer's text.  This should be
+	 * treated as read-only.
+	 *
+	 * @return The text.
+	 * @see #getTextOffset(int)
+	 */
+	public char[] getTextArray() {
+		return text;
+	}
+
+
+	/**
+	 * Returns the offset into {@link #getTextArray()} of the specified
+	 * token's text.
+	 *
+	 * @param index The index of the token.
+	 * @return The offset, or <code>-1</code> if the token has no text.
+	 */
+	public int getTextOffset(int index) {
+		return textOffsets[index];
+	}
+
+
+	/**
+	 * Returns a flyweight view of the specified token.  The returned object
+	 * is owned by this buffer and re-pointed at a different token on the
+	 * next call to this method, so callers should not hold onto it or modify
+	 * it.  If you need a token that outlives that, use
+	 * {@link #getTokenList()} instead.<p>
+	 *
+	 * The view's <code>getNextToken()</code> returns a view of the following
+	 * token, so callers can check whether it is the last paintable token on
+	 * the line, but that view's next token is always <code>null</code>.
+	 *
+	 * @param index The index of the token.
+	 * @return A view of the token.
+	 * @throws IndexOutOfBoundsException If <code>index</code> is invalid.
+	 */
+	public Token getToken(int index) {
+		if (index<0 || index>=size) {
+			throw new IndexOutOfBoundsException("Index " + index +
+							" not in valid range [0-" + (size-1) + "]");
+		}
+		if (view==null) {
+			view = new TokenImpl();
+			nextView = new TokenImpl();
+		}
+		point(view, index);
+		if (index+1<size) {
+			point(nextView, index+1);
+			view.setNextToken(nextView);
+		}
+		return view;
+	}
+
+
+	/**
+	 * Returns the number of tokens in this buffer, including any trailing
+	 * non-paintable token.
+	 *
+	 * @return The number of tokens.
+	 */
+	public int getTokenCount() {
+		return size;
+	}
+
+
+	/**
+	 * Returns the index of the token containing a document offset.
+	 *
+	 * @param offs The offset.
+	 * @return The index of the token, or <code>-1</code> if no token on
+	 *         this line contains the offset.
+	 */
+	public int getTokenIndexAtOffset(int offs) {
+		int low = 0;
+		int high = size - 1;
+		if (high>=0 && !isPaintable(high)) {
+			high--; // The trailing "null" token has no real offset
+		}
+		while (low<=high) {
+			int mid = (low+high) >>> 1;
+			if (offs<offsets[mid]) {
+				high = mid - 1;
+			}
+			else if (offs>=offsets[mid]+lengths[mid]) {
+				low = mid + 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns the tokens in this buffer as a linked list.  The list is
+	 * created the first time this method is called and returned on
+	 * subsequent calls, so it should be treated as immutable.
+	 *
+	 * @return The token list, or <code>null</code> if this buffer is empty.
+	 */
+	public Token getTokenList() {
+		if (tokenList==null && size>0) {
+			TokenImpl first = null;
+			TokenImpl last = null;
+			for (int i=0; i<size; i++) {
+				TokenImpl t = new TokenImpl();
+				point(t, i);
+				if (last==null) {
+					first = t;
+				}
+				else {
+					last.setNextToken(t);
+				}
+				last = t;
+			}
+			tokenList = first;
+		}
+		return tokenList;
+	}
+
+
+	/**
+	 * Returns the type of the specified token.
+	 *
+	 * @param index The index of the token.
+	 * @return The type of the token.
+	 * @see Token#getType()
+	 */
+	public int getType(int index) {
+		return types[index];
+	}
+
+
+	/**
+	 * Returns whether a token has a given type and text.  This is the
+	 * equivalent of {@link Token#is(int, char[])}.
+	 *
+	 * @param index The index of the token.
+	 * @param type The type to check for.
+	 * @param lexeme The text to check for.
+	 * @return Whether the token has that type and text.
+	 */
+	public boolean is(int index, int type, char[] lexeme) {
+		int len = lengths[index];
+		if (types[index]==type && len==lexeme.length) {
+			int textOffset = textOffsets[index];
+			for (int i=0; i<len; i++) {
+				if (text[textOffset+i]!=lexeme[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Returns whether the specified token is a hyperlink.
+	 *
+	 * @param index The index of the token.
+	 * @return Whether the token is a hyperlink.
+	 * @see Token#isHyperlink()
+	 */
+	public boolean isHyperlink(int index) {
+		return hyperlinks!=null && hyperlinks[index];
+	}
+
+
+	/**
+	 * Returns whether the specified token is paintable.
+	 *
+	 * @param index The index of the token.
+	 * @return Whether the token is paintable.
+	 * @see Token#isPaintable()
+	 */
+	public boolean isPaintable(int index) {
+		return types[index]>Token.NULL;
+	}
+
+
+	/**
+	 * Points a token at one of the tokens in this buffer.
+	 *
+	 * @param t The token to modify.
+	 * @param index The index of the token in this buffer.
+	 */
+	private void point(TokenImpl t, int index) {
+		int textOffset = textOffsets[index];
+		t.text = textOffset==-1 ? null : text;
+		t.textOffset = textOffset;
+		t.textCount = lengths[index];
+		t.setOffset(offsets[index]);
+		t.setType(types[index]);
+		t.setLanguageIndex(languageIndices[index]);
+		t.setHyperlink(isHyperlink(index));
+		t.setNextToken(null);
+	}
+
+
+	/**
+	 * Drops this buffer's reference to the token list created by
+	 * {@link #getTokenList()}, so it can be garbage collected once callers
+	 * are done with it.  A new list is created if it is requested again.
+	 */
+	void releaseTokenList() {
+		tokenList = null;
+	}
+
+
+	/**
+	 * Makes this buffer hold a copy of a token list, discarding its
+	 * previous contents.
+	 *
+	 * @param text The text the token list was created from.  Tokens
+	 *        pointing into this segment share a single copy of its text.
+	 * @param tokenList The token list.  This may be <code>null</code>, in
+	 *        which case this buffer is emptied.
+	 */
+	public void set(Segment text, Token tokenList) {
+
+		int count = 0;
+		for (Token t=tokenList; t!=null; t=t.getNextToken()) {
+			count++;
+		}
+		if (count>offsets.length) {
+			offsets = new int[count];
+			textOffsets = new int[count];
+			lengths = new int[count];
+			types = new int[count];
+			languageIndices = new int[count];
+		}
+		hyperlinks = null;
+		size = count;
+		this.tokenList = null;
+
+		// Always use a new array, as views and token lists handed out for
+		// our previous contents still point into the old one.
+		int lineStart = text.offset;
+		int lineEnd = text.offset + text.count;
+		this.text = new char[text.count];
+		System.arraycopy(text.array, lineStart, this.text, 0, text.count);
+		int textLength = text.count;
+
+		int i = 0;
+		for (Token t=tokenList; t!=null; t=t.getNextToken(), i++) {
+			char[] array = t.getTextArray();
+			int textOffset = t.getTextOffset();
+			if (array==null) {
+				textOffsets[i] = -1;
+			}
+			else if (array==text.array && textOffset>=lineStart &&
+					textOffset+t.length()<=lineEnd) {
+				textOffsets[i] = textOffset - lineStart;
+			}
+			else {
+				textOffsets[i] = textLength;
+				textLength = appendText(t, textLength);
+			}
+			offsets[i] = t.getOffset();
+			lengths[i] = t.length();
+			types[i] = t.getType();
+			languageIndices[i] = t.getLanguageIndex();
+			if (t.isHyperlink()) {
+				if (hyperlinks==null) {
+					hyperlinks = new boolean[count];
+				}
+				hyperlinks[i] = true;
+			}
+		}
+
+	}
+
+
+}
@@ -472,6 +472,8 @@ public class TokenImpl implements Token {
 			char[] text = token.text;
 			int start = token.textOffset;
 			int end = start + token.textCount;
+			int charWidth = RSyntaxUtilities.getMonospacedCharWidth(textArea,
+					text, start, end);
 
 			for (int i = start; i < end; i++) {
 				currX = nextX;
@@ -480,6 +482,9 @@ public class TokenImpl implements Token {
 					stableX = nextX; // Cache ending x-coord. of tab.
 					start = i + 1; // Do charsWidth() from next char.
 				}
+				else if (charWidth > 0) {
+					nextX = stableX + (i - start + 1) * charWidth;
+				}
 				else {
 					nextX = stableX + fm.charsWidth(text, start, i - start + 1);
 				}
@@ -523,11 +528,16 @@ public class TokenImpl implements Token {
 		int i = textOffset;
 		int stop = i + textCount;
 		float x = startX;
+		int charWidth = RSyntaxUtilities.getMonospacedCharWidth(textArea,
+				text, i, stop);
 
 		while (i<stop) {
 			if (text[i]=='\t') {
 				x = e.nextTabStop(x, 0);
 			}
+			else if (charWidth>0) {
+				x += charWidth;
+			}
 			else {
 				x += fm.charWidth(text[i]);
 			}
@@ -571,15 +581,56 @@ public class TokenImpl implements Token {
 	}
 
 
+	/**
+	 * Returns the width of characters in this token by counting them, if
+	 * the text area's fonts are monospaced and the characters are all known
+	 * to have the same width.
+	 *
+	 * @param numChars The number of characters to measure.
+	 * @param textArea The text area.
+	 * @param e Used to expand tabs.
+	 * @param x0 The pixel offset of this token.
+	 * @return The width of the characters, or <code>-1</code> if they must
+	 *         be measured with <code>FontMetrics</code>.
+	 * @see RSyntaxTextArea#getMonospacedCharWidth()
+	 */
+	private float getMonospacedWidthUpTo(int numChars,
+			RSyntaxTextArea textArea, TabExpander e, float x0) {
+		int charWidth = textArea.getMonospacedCharWidth();
+		if (charWidth > 0) {
+			float width = x0;
+			int endBefore = textOffset + numChars;
+			for (int i = textOffset; i < endBefore; i++) {
+				char ch = text[i];
+				if (ch == '\t') {
+					width = e.nextTabStop(width, 0);
+				}
+				else if (RSyntaxUtilities.isMonospacedChar(ch)) {
+					width += charWidth;
+				}
+				else {
+					return -1;
+				}
+			}
+			return width - x0;
+		}
+		return -1;
+	}
+
+
 	@Override
 	public float getWidthUpTo(int numChars, RSyntaxTextArea textArea,
 			TabExpander e, float x0) {
-		float width = x0;
+		float width = getMonospacedWidthUpTo(numChars, textArea, e, x0);
+		if (width >= 0) {
+			return width;
+		}
+		width = x0;
+		int endBefore = textOffset + numChars;
 		FontMetrics fm = textArea.getFontMetricsForTokenType(getType());
 		if (fm != null) {
 			int w;
 			int currentStart = textOffset;
-			int endBefore = textOffset + numChars;
 			for (int i = currentStart; i < endBefore; i++) {
 				if (text[i] == '\t') {
 					// Since TokenMaker implementations usually group all
@@ -737,6 +788,17 @@ public class TokenImpl implements Token {
 				s.array = token.text;
 				s.offset = token.textOffset;
 				s.count = pos - token.getOffset();
+				end = token.documentToToken(pos);
+				float width = text[end] == '\t' ||
+						RSyntaxUtilities.isMonospacedChar(text[end]) ?
+						token.getMonospacedWidthUpTo(s.count, textArea, e,
+								stableX) : -1;
+
+				if (width >= 0) {
+					rect.x = stableX + (int)width;
+					rect.width = textArea.getMonospacedCharWidth();
+					return rect;
+				}
 
 				// Must use this (actually fm.charWidth()), and not
 				// fm.charsWidth() for returned value to match up with where
@@ -744,7 +806,6 @@ public class TokenImpl implements Token {
 				int w = Utilities.getTabbedTextWidth(s, fm, stableX, e,
 						token.getOffset());
 				rect.x = stableX + w;
-				end = token.documentToToken(pos);
 
 				if (text[end] == '\t') {
 					rect.width = fm.charWidth(' ');
@@ -760,11 +821,16 @@ public class TokenImpl implements Token {
 			// If this token does not contain the position for which to get
 			// the bounding box...
 			else {
-				s.array = token.text;
-				s.offset = token.textOffset;
-				s.count = token.textCount;
-				stableX += Utilities.getTabbedTextWidth(s, fm, stableX, e,
-						token.getOffset());
+				float width = token.getMonospacedWidthUpTo(token.textCount,
+						textArea, e, stableX);
+				if (width < 0) {
+					s.array = token.text;
+					s.offset = token.textOffset;
+					s.count = token.textCount;
+					width = Utilities.getTabbedTextWidth(s, fm, stableX, e,
+							token.getOffset());
+				}
+				stableX += (int)width;
 			}
 
 			token = (TokenImpl)token.getNextToken();
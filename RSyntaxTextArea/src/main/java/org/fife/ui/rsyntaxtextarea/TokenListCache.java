@@ -0,0 +1,297 @@
+/*
+ * 10/17/2026
+ *
+ * TokenListCache.java - A bounded, LRU cache of the tokens on lines in an
+ * RSyntaxDocument.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.swing.text.Segment;
+
+
+/**
+ * A bounded, least-recently-used cache of the tokens on lines in an
+ * {@link RSyntaxDocument}.<p>
+ *
+ * Token lists handed out by a {@link TokenMaker} are built from pooled
+ * tokens that are recycled on the next call, and point directly into the
+ * document's gap buffer.  Neither survives another tokenization or an edit,
+ * so this cache stores private copies in the form of {@link TokenBuffer}s.
+ * Lines above an edit thus stay valid, and only lines at or below the first
+ * modified line need to be discarded (their text and/or offsets may have
+ * changed).<p>
+ *
+ * Since token buffers are compact, many lines can be cached.  The linked
+ * token lists callers of {@link RSyntaxDocument#getTokenListForLine(int)}
+ * expect are larger, so only those of the most recently requested lines are
+ * kept; older ones are dropped and re-created from their buffers if needed
+ * again, which is still much cheaper than re-tokenizing.<p>
+ *
+ * This class is not thread-safe; it should only be accessed on the EDT, as
+ * with the rest of <code>RSyntaxDocument</code>'s token API.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class TokenListCache {
+
+	/**
+	 * Cached token buffers, keyed by line, in access order.
+	 */
+	private LinkedHashMap<Integer, TokenBuffer> lines;
+
+	/**
+	 * The same entries as {@link #lines}, sorted by line, so the lines after
+	 * an edit can be found without looking at every entry.
+	 */
+	private TreeMap<Integer, TokenBuffer> linesByIndex;
+
+	/**
+	 * The buffers whose token lists have been created, in access order.
+	 */
+	private LinkedHashMap<Integer, TokenBuffer> tokenLists;
+
+	/**
+	 * The maximum number of lines to cache.
+	 */
+	private int capacity;
+
+	private int hitCount;
+	private int missCount;
+
+	/**
+	 * The default number of lines cached.
+	 */
+	static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * The maximum number of lines whose linked token lists are kept.
+	 */
+	static final int MAX_TOKEN_LIST_COUNT = 512;
+
+
+	/**
+	 * Constructor.
+	 */
+	TokenListCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity The maximum number of lines to cache.  This should be
+	 *        <code>&gt;= 0</code>.
+	 */
+	TokenListCache(int capacity) {
+		lines = new LinkedHashMap<Integer, TokenBuffer>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Integer, TokenBuffer> e) {
+				if (size()>TokenListCache.this.capacity) {
+					linesByIndex.remove(e.getKey());
+					tokenLists.remove(e.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+		linesByIndex = new TreeMap<>();
+		tokenLists = new LinkedHashMap<Integer, TokenBuffer>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Integer, TokenBuffer> e) {
+				if (size()>MAX_TOKEN_LIST_COUNT) {
+					e.getValue().releaseTokenList();
+					return true;
+				}
+				return false;
+			}
+		};
+		setCapacity(capacity);
+	}
+
+
+	/**
+	 * Removes all cached lines.  Hit and miss counts are not reset.
+	 */
+	void clear() {
+		lines.clear();
+		linesByIndex.clear();
+		tokenLists.clear();
+	}
+
+
+	/**
+	 * Returns the cached token list for a line, if any.
+	 *
+	 * @param line The line.
+	 * @return The token list, or <code>null</code> if the line isn't cached.
+	 * @see #getBuffer(int)
+	 */
+	Token get(int line) {
+		TokenBuffer buffer = getBuffer(line);
+		return buffer!=null ? getTokenList(line, buffer) : null;
+	}
+
+
+	/**
+	 * Returns the cached token buffer for a line, if any.
+	 *
+	 * @param line The line.
+	 * @return The token buffer, or <code>null</code> if the line isn't
+	 *         cached.
+	 * @see #get(int)
+	 */
+	TokenBuffer getBuffer(int line) {
+		TokenBuffer buffer = lines.get(line);
+		if (buffer!=null) {
+			hitCount++;
+		}
+		else {
+			missCount++;
+		}
+		return buffer;
+	}
+
+
+	/**
+	 * Returns the maximum number of lines cached.
+	 *
+	 * @return The capacity.
+	 * @see #setCapacity(int)
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+
+	/**
+	 * Returns the number of lines currently cached.
+	 *
+	 * @return The number of cached lines.
+	 */
+	int getCachedLineCount() {
+		return lines.size();
+	}
+
+
+	/**
+	 * Returns the number of times {@link #get(int)} or
+	 * {@link #getBuffer(int)} returned a cached value.
+	 *
+	 * @return The hit count.
+	 * @see #getMissCount()
+	 */
+	int getHitCount() {
+		return hitCount;
+	}
+
+
+	/**
+	 * Returns the number of times {@link #get(int)} or
+	 * {@link #getBuffer(int)} did not find a cached value.
+	 *
+	 * @return The miss count.
+	 * @see #getHitCount()
+	 */
+	int getMissCount() {
+		return missCount;
+	}
+
+
+	/**
+	 * Returns the linked token list for a buffer, remembering that it was
+	 * created so it can be released if it goes unused.
+	 *
+	 * @param line The line the buffer is for.
+	 * @param buffer The buffer, as returned by {@link #getBuffer(int)} or
+	 *        {@link #put(int, Segment, Token)}.
+	 * @return The token list.
+	 */
+	Token getTokenList(int line, TokenBuffer buffer) {
+		if (capacity>0) {
+			tokenLists.put(line, buffer);
+		}
+		return buffer.getTokenList();
+	}
+
+
+	/**
+	 * Discards cached token lists for all lines at or after a given line.
+	 * This should be called whenever text is inserted or removed, since
+	 * those lines' text, document offsets, or starting lexer states may
+	 * have changed.
+	 *
+	 * @param line The first line to discard.
+	 */
+	void invalidateFrom(int line) {
+		if (line<=0) {
+			clear();
+			return;
+		}
+		// Token lists are only kept for cached lines, so they're removed
+		// here too
+		SortedMap<Integer, TokenBuffer> removed = linesByIndex.tailMap(line);
+		for (Integer key : removed.keySet()) {
+			lines.remove(key);
+			tokenLists.remove(key);
+		}
+		removed.clear();
+	}
+
+
+	/**
+	 * Caches a copy of a token list.
+	 *
+	 * @param line The line the token list is for.
+	 * @param text The line's text, as passed to the token maker.
+	 * @param tokenList The token list returned by the token maker.
+	 * @return The cached copy of the token list.  Callers should use this
+	 *         rather than <code>tokenList</code>, since the latter will be
+	 *         recycled by the token maker.
+	 */
+	TokenBuffer put(int line, Segment text, Token tokenList) {
+		TokenBuffer buffer = new TokenBuffer(text, tokenList);
+		if (capacity>0) {
+			linesByIndex.put(line, buffer);
+			lines.put(line, buffer);
+		}
+		return buffer;
+	}
+
+
+	/**
+	 * Sets the maximum number of lines cached.
+	 *
+	 * @param capacity The new capacity.  If this is less than the current
+	 *        number of lines cached, the least recently used lines are
+	 *        discarded.
+	 * @see #getCapacity()
+	 */
+	void setCapacity(int capacity) {
+		this.capacity = Math.max(0, capacity);
+		if (lines.size()>this.capacity) {
+			Iterator<Integer> i = lines.keySet().iterator();
+			int toRemove = lines.size() - this.capacity;
+			while (toRemove-- > 0) {
+				Integer line = i.next();
+				linesByIndex.remove(line);
+				tokenLists.remove(line);
+				i.remove();
+			}
+		}
+	}
+
+
+}
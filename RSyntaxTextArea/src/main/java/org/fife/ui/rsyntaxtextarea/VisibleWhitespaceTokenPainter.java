@@ -10,6 +10,7 @@
 package org.fife.ui.rsyntaxtextarea;
 
 import java.awt.Color;
+import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import javax.swing.text.TabExpander;
@@ -63,7 +64,8 @@ class VisibleWhitespaceTokenPainter extends DefaultTokenPainter {
 		Color fg = useSTC ? host.getSelectedTextColor() :
 			host.getForegroundForToken(token);
 		Color bg = selected ? null : host.getBackgroundForToken(token);
-		g.setFont(host.getFontForTokenType(token.getType()));
+		Font font = host.getFontForTokenType(token.getType());
+		g.setFont(font);
 		FontMetrics fm = host.getFontMetricsForTokenType(token.getType());
 
 		int ascent = fm.getAscent();
@@ -86,7 +88,7 @@ class VisibleWhitespaceTokenPainter extends DefaultTokenPainter {
 
 					// Paint chars cached before the tab.
 					if (flushLen > 0) {
-						g.drawChars(text, flushIndex, flushLen, (int)x,(int)y);
+						drawChars(g, font, host, text, flushIndex, flushLen, (int)x,(int)y);
 						flushLen = 0;
 					}
 					flushIndex = i + 1;
@@ -126,7 +128,7 @@ class VisibleWhitespaceTokenPainter extends DefaultTokenPainter {
 
 					// Paint chars before space.
 					if (flushLen>0) {
-						g.drawChars(text, flushIndex, flushLen, (int)x,(int)y);
+						drawChars(g, font, host, text, flushIndex, flushLen, (int)x,(int)y);
 						flushLen = 0;
 					}
 
@@ -158,7 +160,7 @@ class VisibleWhitespaceTokenPainter extends DefaultTokenPainter {
 							ascent, host, bg);
 			}
 			g.setColor(fg);
-			g.drawChars(text, flushIndex, flushLen, (int)x,(int)y);
+			drawChars(g, font, host, text, flushIndex, flushLen, (int)x,(int)y);
 		}
 
 		if (host.getUnderlineForToken(token)) {
@@ -11,14 +11,18 @@ package org.fife.ui.rsyntaxtextarea;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Container;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Shape;
 
+import javax.swing.JViewport;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.BoxView;
@@ -68,6 +72,32 @@ public class WrappedSyntaxView extends BoxView implements TabExpander,
 	private TokenImpl tempToken;
 	private TokenImpl lineCountTempToken;
 
+	/**
+	 * Computes the exact heights of lines whose heights were estimated, in
+	 * the background.
+	 */
+	private Timer refineTimer;
+
+	/**
+	 * The first line that may still have an estimated height, or
+	 * <code>-1</code> if all lines' heights are known to be exact.
+	 */
+	private int refineStartLine;
+
+	/**
+	 * Whether child views were added or removed since the last layout.  If
+	 * they weren't, the previous layout tells us which line was at the top
+	 * of the visible area.
+	 */
+	private boolean childrenReplaced;
+
+	/**
+	 * Whether lines' heights have been refined without updating the layout.
+	 * A layout costs time proportional to the number of lines, so it's only
+	 * updated when a visible line changes or all lines are refined.
+	 */
+	private boolean refinedLayoutPending;
+
 //	/**
 //	 * The end-of-line marker.
 //	 */
@@ -79,6 +109,27 @@ public class WrappedSyntaxView extends BoxView implements TabExpander,
 	 */
 	private static final int MIN_WIDTH		= 20;
 
+	/**
+	 * If at least this many lines need to be laid out at once, e.g. when the
+	 * width of a large document changes, their heights are estimated rather
+	 * than computed.  Lines get their exact heights when they're laid out
+	 * in view, or later via {@link #refineTimer}.
+	 */
+	static final int ESTIMATED_LAYOUT_MIN_LINES = 2000;
+
+	/**
+	 * The maximum time, in milliseconds, {@link #refineTimer} spends
+	 * computing exact line heights each time it fires.
+	 */
+	private static final int REFINE_TIME_SLICE_MILLIS = 8;
+
+	/**
+	 * The delay, in milliseconds, between runs of {@link #refineTimer}, so
+	 * computing line heights in the background leaves the EDT free to
+	 * handle input in between.
+	 */
+	private static final int REFINE_DELAY_MILLIS = 10;
+
 
 	/**
 	 * Creates a new WrappedSyntaxView.  Lines will be wrapped
@@ -93,6 +144,7 @@ public class WrappedSyntaxView extends BoxView implements TabExpander,
 		drawSeg = new Segment();
 		tempRect = new Rectangle();
 		lineCountTempToken = new TokenImpl();
+		refineStartLine = -1;
 	}
 
 
@@ -488,6 +540,27 @@ return p + 1;
 	}
 
 
+	/**
+	 * Called by the text area when the fonts or rendering hints used to
+	 * paint tokens change.  All lines are laid out again, since their
+	 * heights depend on the width of their text.
+	 */
+	void fontMetricsChanged() {
+		int count = getViewCount();
+		boolean estimate = count>=ESTIMATED_LAYOUT_MIN_LINES;
+		for (int i=0; i<count; i++) {
+			View v = getView(i);
+			if (v instanceof WrappedLine) {
+				WrappedLine line = (WrappedLine)v;
+				line.clearCachedLineCounts();
+				line.widthChangePending = true;
+				line.heightEstimated |= estimate;
+			}
+		}
+		preferenceChanged(null, true, true);
+	}
+
+
 	/**
 	 * Fetches the allocation for the given child view.<p>
 	 * Overridden to account for code folding.
@@ -546,6 +619,29 @@ return p + 1;
 	}
 
 
+	/**
+	 * Returns the index of the line at a y-offset into this view, according
+	 * to the most recent layout.
+	 *
+	 * @param y The y-offset.
+	 * @return The line index.
+	 */
+	private int getLineAtOffset(int y) {
+		int low = 0;
+		int high = getViewCount() - 1;
+		while (low<high) {
+			int mid = (low + high + 1) >>> 1;
+			if (getOffset(Y_AXIS, mid)<=y) {
+				low = mid;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+
 	/**
 	 * Determines the maximum span for this view along an
 	 * axis.  This is implemented to provide the superclass
@@ -707,6 +803,74 @@ return p + 1;
 	}
 
 
+	/**
+	 * Overridden to keep the line at the top of the visible area in place
+	 * in large documents, as lines above it may have changed height from
+	 * their estimates, or be estimated again after a change in width.
+	 *
+	 * @param width The width of the inside of this view.
+	 * @param height The height of the inside of this view.
+	 */
+	@Override
+	protected void layout(int width, int height) {
+
+		boolean relayout = !isLayoutValid(Y_AXIS);
+		int anchorLine = -1;
+		int anchorOffset = 0;
+		boolean refined = false;
+		JViewport viewport = null;
+		Container c = getContainer();
+
+		if (relayout && !childrenReplaced &&
+				getViewCount()>=ESTIMATED_LAYOUT_MIN_LINES &&
+				c!=null && c.getParent() instanceof JViewport) {
+			viewport = (JViewport)c.getParent();
+			int top = viewport.getViewPosition().y - c.getInsets().top;
+			anchorLine = getLineAtOffset(top);
+			anchorOffset = top - getOffset(Y_AXIS, anchorLine);
+			// The anchor line stays put, so the lines from it to the bottom
+			// of the viewport are those about to be painted
+			refined = refineLinesFrom(anchorLine,
+					anchorOffset + viewport.getExtentSize().height);
+		}
+
+		super.layout(width, height);
+
+		if (relayout) {
+			childrenReplaced = false;
+			// Refined lines change this view's preferred height, which is
+			// updated along with the rest when refinement completes
+			refinedLayoutPending = refined;
+			if (anchorLine>-1) {
+				Point p = viewport.getViewPosition();
+				int y = c.getInsets().top + getOffset(Y_AXIS, anchorLine) +
+						anchorOffset;
+				if (y!=p.y) {
+					viewport.setViewPosition(new Point(p.x, Math.max(0, y)));
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * Called when the heights of one or more lines change, other than due
+	 * to an edit.  This updates the layout, and repaints the text area and
+	 * its gutter.
+	 */
+	private void lineHeightsChanged() {
+		preferenceChanged(null, false, true);
+		RSyntaxTextArea textArea = (RSyntaxTextArea)getContainer();
+		textArea.repaint();
+		Gutter gutter = RSyntaxUtilities.getGutter(textArea);
+		if (gutter!=null) {
+			gutter.revalidate();
+			gutter.repaint();
+		}
+	}
+
+
 	/**
 	 * Loads all of the children to initialize the view.
 	 * This is called by the <code>setParent</code> method.
@@ -723,8 +887,11 @@ return p + 1;
 		int n = e.getElementCount();
 		if (n > 0) {
 			View[] added = new View[n];
+			boolean estimate = n>=ESTIMATED_LAYOUT_MIN_LINES;
 			for (int i = 0; i < n; i++) {
-				added[i] = new WrappedLine(e.getElement(i));
+				WrappedLine line = new WrappedLine(e.getElement(i));
+				line.heightEstimated = estimate;
+				added[i] = line;
 			}
 			replace(0, 0, added);
 		}
@@ -903,10 +1070,17 @@ return p + 1;
 		int selStart = host.getSelectionStart();
 		int selEnd = host.getSelectionEnd();
 
+		// Visible lines get their exact heights when laid out, but lines
+		// scrolled into view since then may still have estimates.  Rather
+		// than laying out again mid-paint, update the layout and repaint.
+		Rectangle clip = g.getClipBounds();
+		if (refineLinesInClip(alloc, clip)) {
+			lineHeightsChanged();
+		}
+
 		int n = getViewCount();	// Number of lines.
 		int x = alloc.x + getLeftInset();
 		tempRect.y = alloc.y + getTopInset();
-		Rectangle clip = g.getClipBounds();
 		for (int i = 0; i < n; i++) {
 
 			tempRect.x = x + getOffset(X_AXIS, i);
@@ -950,6 +1124,138 @@ return p + 1;
 	}
 
 
+	/**
+	 * Called on the EDT to compute the exact heights of lines whose heights
+	 * were estimated, for as many lines as fit in a single time slice.  The
+	 * layout is only updated if a visible line changes height, or once no
+	 * lines have estimated heights, at which point the timer stops.
+	 */
+	void refineLineHeightsChunk() {
+
+		RSyntaxTextArea textArea = (RSyntaxTextArea)getContainer();
+		if (textArea==null || refineStartLine==-1) {
+			if (refineTimer!=null) {
+				refineTimer.stop();
+			}
+			return;
+		}
+
+		long deadline = System.nanoTime() +
+				REFINE_TIME_SLICE_MILLIS * 1000000L;
+		int lineHeight = textArea.getLineHeight();
+		Rectangle visible = textArea.getVisibleRect();
+		int visibleTop = visible.y - textArea.getInsets().top;
+		int visibleBottom = visibleTop + visible.height;
+		FoldManager fm = textArea.getFoldManager();
+		boolean visibleChanged = false;
+
+		RSyntaxDocument doc = (RSyntaxDocument)getDocument();
+		doc.readLock();
+		try {
+			int count = getViewCount();
+			int line = refineStartLine;
+			for (; line<count && System.nanoTime()<deadline; line++) {
+				View v = getView(line);
+				if (v instanceof WrappedLine) {
+					WrappedLine wl = (WrappedLine)v;
+					int oldHeight = wl.nlines * lineHeight;
+					if (wl.refineHeight()) {
+						refinedLayoutPending = true;
+						// Offsets from the last layout still match the
+						// viewport, whether or not the layout is valid
+						int y = getOffset(Y_AXIS, line);
+						if (!fm.isLineHidden(line) &&
+								y+oldHeight>visibleTop && y<visibleBottom) {
+							visibleChanged = true;
+						}
+					}
+				}
+			}
+			refineStartLine = line<count ? line : -1;
+		} finally {
+			doc.readUnlock();
+		}
+
+		if (refineStartLine==-1 && refineTimer!=null) {
+			refineTimer.stop();
+		}
+
+		if (visibleChanged || (refinedLayoutPending && refineStartLine==-1)) {
+			refinedLayoutPending = false;
+			lineHeightsChanged();
+		}
+
+	}
+
+
+	/**
+	 * Computes the exact heights of lines with estimated heights, starting
+	 * at a given line and continuing until the lines cover a given height.
+	 *
+	 * @param line The first line to refine.
+	 * @param height The height to cover.
+	 * @return Whether any line's height changed.
+	 */
+	private boolean refineLinesFrom(int line, int height) {
+
+		FoldManager fm = ((RSyntaxTextArea)getContainer()).getFoldManager();
+		int n = getViewCount();
+		int y = 0;
+		boolean changed = false;
+
+		for (int i=line; i<n && y<height; i++) {
+			View v = getView(i);
+			if (v instanceof WrappedLine) {
+				changed |= ((WrappedLine)v).refineHeight();
+			}
+			y += (int)v.getPreferredSpan(Y_AXIS);
+			Fold fold = fm.getFoldForLine(i);
+			if (fold!=null && fold.isCollapsed()) {
+				i += fold.getCollapsedLineCount();
+			}
+		}
+
+		return changed;
+
+	}
+
+
+	/**
+	 * Computes the exact heights of lines with estimated heights that
+	 * intersect a region about to be painted.
+	 *
+	 * @param alloc The allocation of this view.
+	 * @param clip The region being painted.
+	 * @return Whether any line's height changed.
+	 */
+	private boolean refineLinesInClip(Rectangle alloc, Rectangle clip) {
+
+		FoldManager fm = ((RSyntaxTextArea)getContainer()).getFoldManager();
+		int n = getViewCount();
+		int y = alloc.y + getTopInset();
+		int clipEnd = clip.y + clip.height;
+		boolean changed = false;
+
+		for (int i=0; i<n && y<clipEnd; i++) {
+			int height = getSpan(Y_AXIS, i);
+			if (y+height>clip.y) {
+				View v = getView(i);
+				if (v instanceof WrappedLine) {
+					changed |= ((WrappedLine)v).refineHeight();
+				}
+			}
+			y += height;
+			Fold fold = fm.getFoldForLine(i);
+			if (fold!=null && fold.isCollapsed()) {
+				i += fold.getCollapsedLineCount();
+			}
+		}
+
+		return changed;
+
+	}
+
+
 	/**
 	 * Gives notification that something was removed from the
 	 * document in a location that this view is responsible for.
@@ -976,6 +1282,58 @@ return p + 1;
 	}
 
 
+	/**
+	 * Overridden to note that the previous layout no longer describes the
+	 * child views.
+	 *
+	 * @param index The starting index into the child views.
+	 * @param length The number of existing views to replace.
+	 * @param elems The child views to insert.
+	 */
+	@Override
+	public void replace(int index, int length, View[] elems) {
+		childrenReplaced = true;
+		super.replace(index, length, elems);
+	}
+
+
+	/**
+	 * Starts computing exact heights for lines whose heights were estimated,
+	 * in the background.  This is cheap to call repeatedly, as it is for
+	 * every line laid out with an estimated height.
+	 */
+	private void scheduleRefinement() {
+		if (refineStartLine!=0) {
+			refineStartLine = 0;
+			if (refineTimer==null) {
+				refineTimer = new Timer(REFINE_DELAY_MILLIS,
+						e -> refineLineHeightsChunk());
+				refineTimer.setRepeats(true);
+			}
+			if (!refineTimer.isRunning()) {
+				refineTimer.start();
+			}
+		}
+	}
+
+
+	/**
+	 * Overridden to stop computing line heights in the background when this
+	 * view is removed, e.g. when line wrap is disabled.
+	 *
+	 * @param parent The new parent, or <code>null</code> if this view is
+	 *        being removed.
+	 */
+	@Override
+	public void setParent(View parent) {
+		super.setParent(parent);
+		if (parent==null && refineTimer!=null) {
+			refineTimer.stop();
+			refineStartLine = -1;
+		}
+	}
+
+
 	/**
 	 * Makes a <code>Segment</code> point to the text in our
 	 * document between the given positions.  Note that the positions MUST be
@@ -1021,10 +1379,16 @@ return p + 1;
 
 	private void setWidthChangePending(boolean widthChangePending) {
 		int count = getViewCount();
+		boolean estimate = widthChangePending &&
+				count>=ESTIMATED_LAYOUT_MIN_LINES;
 		for (int i = 0; i < count; i++) {
 			View v = getView(i);
 			if (v instanceof WrappedLine) {
-				((WrappedLine) v).widthChangePending = widthChangePending;
+				WrappedLine line = (WrappedLine) v;
+				line.widthChangePending = widthChangePending;
+				if (estimate) {
+					line.heightEstimated = true;
+				}
 			}
 		}
 	}
@@ -1042,6 +1406,16 @@ return p + 1;
 		// This occurs when syntax highlighting only changes on lines
 		// (i.e. beginning a multiline comment).
 		if (e.getType()==DocumentEvent.EventType.CHANGE) {
+			// Token types, and so possibly fonts, changed on these lines.
+			// RSyntaxDocument's "offset" and "length" are line numbers.
+			int start = Math.max(e.getOffset(), 0);
+			int end = Math.min(e.getLength(), getViewCount() - 1);
+			for (int i=start; i<=end; i++) {
+				View v = getView(i);
+				if (v instanceof WrappedLine) {
+					((WrappedLine)v).clearCachedLineCounts();
+				}
+			}
 			//System.err.println("Updating the damage due to a CHANGE event...");
 			// FIXME:  Make me repaint more intelligently.
 			getContainer().repaint();
@@ -1054,9 +1428,12 @@ return p + 1;
 			Element[] removedElems = ec.getChildrenRemoved();
 			Element[] addedElems = ec.getChildrenAdded();
 			View[] added = new View[addedElems.length];
+			boolean estimate = added.length>=ESTIMATED_LAYOUT_MIN_LINES;
 
 			for (int i = 0; i < addedElems.length; i++) {
-				added[i] = new WrappedLine(addedElems[i]);
+				WrappedLine line = new WrappedLine(addedElems[i]);
+				line.heightEstimated = estimate;
+				added[i] = line;
 			}
 			//System.err.println("Replacing " + removedElems.length +
 			// " children with " + addedElems.length);
@@ -1155,10 +1532,41 @@ return p + 1;
 		private int nlines;
 		private boolean widthChangePending;
 
+		/**
+		 * Whether <code>nlines</code> is an estimate, or will be when it is
+		 * next computed.
+		 */
+		private boolean heightEstimated;
+
+		/**
+		 * Exact line counts for the two widths they were most recently
+		 * computed for, most recent first, so switching back and forth
+		 * between two widths doesn't measure the line again.  Swing does
+		 * this on every revalidation, as it computes the preferred size
+		 * one pixel narrower to leave room for the caret.  A width of 0
+		 * means no value.
+		 */
+		private int cachedWidth1;
+		private int cachedCount1;
+		private int cachedWidth2;
+		private int cachedCount2;
+
 		WrappedLine(Element elem) {
 			super(elem);
 		}
 
+		/**
+		 * Caches the exact line count for a width.
+		 */
+		private void cacheLineCount(int width, int count) {
+			if (width!=cachedWidth1) {
+				cachedWidth2 = cachedWidth1;
+				cachedCount2 = cachedCount1;
+				cachedWidth1 = width;
+			}
+			cachedCount1 = count;
+		}
+
 		/**
 		 * Calculate the number of lines that will be rendered
 		 * by logical line when it is wrapped.
@@ -1210,6 +1618,72 @@ System.err.println(">>> >>> calculated number of lines for this view (line " + l
 			return nlines;
 		}
 
+		/**
+		 * Discards cached line counts, e.g. because the line's text or
+		 * fonts changed.
+		 */
+		void clearCachedLineCounts() {
+			cachedWidth1 = cachedWidth2 = 0;
+		}
+
+		/**
+		 * Estimates the number of lines that will be rendered by this
+		 * logical line when it is wrapped, without measuring its text.
+		 * If the line was measured at another width, that's used to guess
+		 * its text's width; otherwise all characters are assumed to be as
+		 * wide as 'm'.
+		 */
+		final int estimateLineCount() {
+			if (metrics==null) {
+				updateMetrics();
+			}
+			float width = getWidth();
+			if (width==Integer.MAX_VALUE) {
+				return 1;
+			}
+			width = Math.max(width, MIN_WIDTH);
+			float textWidth;
+			if (cachedWidth1>0) {
+				textWidth = (cachedCount1 - 0.5f) * cachedWidth1;
+			}
+			else {
+				int charCount = getEndOffset() - getStartOffset() - 1;
+				textWidth = charCount * metrics.charWidth('m');
+			}
+			return Math.max(1, (int)Math.ceil(textWidth / width));
+		}
+
+		/**
+		 * Returns the cached exact line count for a width, or
+		 * <code>0</code> if there isn't one.
+		 */
+		int getCachedLineCount(int width) {
+			if (width==0) {
+				return 0;
+			}
+			else if (width==cachedWidth1) {
+				return cachedCount1;
+			}
+			else if (width==cachedWidth2) {
+				return cachedCount2;
+			}
+			return 0;
+		}
+
+		/**
+		 * Returns the exact number of lines that will be rendered by this
+		 * logical line at the current width, from the cache if possible.
+		 */
+		private int getExactLineCount() {
+			int width = getWidth();
+			int count = getCachedLineCount(width);
+			if (count==0) {
+				count = calculateLineCount();
+				cacheLineCount(width, count);
+			}
+			return count;
+		}
+
 		/**
 		 * Determines the preferred span for this view along an
 		 * axis.
@@ -1234,7 +1708,18 @@ System.err.println(">>> >>> calculated number of lines for this view (line " + l
 					return width;
 				case View.Y_AXIS:
 					if (nlines == 0 || widthChangePending) {
-						nlines = calculateLineCount();
+						int count = getCachedLineCount(getWidth());
+						if (count>0) {
+							nlines = count;
+							heightEstimated = false;
+						}
+						else if (heightEstimated) {
+							nlines = estimateLineCount();
+							scheduleRefinement();
+						}
+						else {
+							nlines = getExactLineCount();
+						}
 						widthChangePending = false;
 					}
 					return nlines * ((RSyntaxTextArea)getContainer()).getLineHeight();
@@ -1243,6 +1728,23 @@ System.err.println(">>> >>> calculated number of lines for this view (line " + l
 			}
 		}
 
+		/**
+		 * Computes this line's exact height if it was estimated.
+		 *
+		 * @return Whether the line's height changed.
+		 */
+		boolean refineHeight() {
+			if (!heightEstimated) {
+				return false;
+			}
+			heightEstimated = false;
+			widthChangePending = false;
+			int n = getExactLineCount();
+			boolean changed = n != nlines;
+			nlines = n;
+			return changed;
+		}
+
 		/**
 		 * Renders using the given rendering surface and area on that
 		 * surface.  The view may need to do layout and create child
@@ -1437,7 +1939,9 @@ System.err.println(">>> >>> calculated number of lines for this view (line " + l
 
 		private void handleDocumentEvent(DocumentEvent e, Shape a,
 											ViewFactory f) {
-			int n = calculateLineCount();
+			clearCachedLineCounts();
+			int n = getExactLineCount();
+			heightEstimated = false;
 			if (this.nlines != n) {
 				this.nlines = n;
 				WrappedSyntaxView.this.preferenceChanged(this, false, true);
@@ -8,7 +8,6 @@
  */
 package org.fife.ui.rsyntaxtextarea.folding;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.text.BadLocationException;
@@ -35,14 +34,14 @@ import org.fife.ui.rsyntaxtextarea.Token;
  * different tokens than curly braces to denote foldable regions by overriding
  * those two methods.<p>
  *
- * Note also that this class may impose somewhat of a performance penalty on
- * large source files, since it re-parses the entire document each time folds
- * are reevaluated.
+ * After an edit, this parser only re-parses the lines from the innermost
+ * block containing the edit up to the first fold after it that is unaffected
+ * by the edit (see {@link IncrementalFoldParser}).
  *
  * @author Robert Futrell
  * @version 1.0
  */
-public class CurlyFoldParser implements FoldParser {
+public class CurlyFoldParser implements IncrementalFoldParser {
 
 	/**
 	 * Whether to scan for C-style multi-line comments and make them foldable.
@@ -102,233 +101,299 @@ public class CurlyFoldParser implements FoldParser {
 
 	@Override
 	public List<Fold> getFolds(RSyntaxTextArea textArea) {
+		return new Scanner(textArea).scanAll();
+	}
+
+
+	@Override
+	public List<Fold> getFolds(RSyntaxTextArea textArea, List<Fold> folds,
+							int firstLine, int lastLine) {
+		List<Fold> newFolds = new Scanner(textArea).rescan(folds, firstLine,
+				lastLine);
+		return newFolds!=null ? newFolds : getFolds(textArea);
+	}
+
+
+	/**
+	 * Returns whether the token is a left curly brace.  This method exists
+	 * so subclasses can provide their own curly brace definition.
+	 *
+	 * @param t The token.
+	 * @return Whether it is a left curly brace.
+	 * @see #isRightCurly(Token)
+	 */
+	public boolean isLeftCurly(Token t) {
+		return t.isLeftCurly();
+	}
+
+
+	/**
+	 * Returns whether the token is a right curly brace.  This method exists
+	 * so subclasses can provide their own curly brace definition.
+	 *
+	 * @param t The token.
+	 * @return Whether it is a right curly brace.
+	 * @see #isLeftCurly(Token)
+	 */
+	public boolean isRightCurly(Token t) {
+		return t.isRightCurly();
+	}
+
+
+	/**
+	 * Sets whether multi-line comments are foldable with this parser.
+	 *
+	 * @param foldable Whether multi-line comments are foldable.
+	 * @see #getFoldableMultiLineComments()
+	 */
+	public void setFoldableMultiLineComments(boolean foldable) {
+		this.foldableMultiLineComments = foldable;
+	}
+
+
+	/**
+	 * Finds curly brace and comment folds, line by line.
+	 */
+	private class Scanner extends LineFoldScanner {
+
+		private boolean inMLC;
+		private int mlcStart;
+		private int importStartLine = -1;
+		private int lastSeenImportLine = -1;
+		private int importGroupStartOffs = -1;
+		private int importGroupEndOffs = -1;
+		private int lastRightCurlyLine = -1;
+		private Fold prevFold;
+
+		Scanner(RSyntaxTextArea textArea) {
+			super(textArea);
+		}
 
-		List<Fold> folds = new ArrayList<>();
+		@Override
+		protected boolean canStartAfter(Fold fold) {
 
-		Fold currentFold = null;
-		int lineCount = textArea.getLineCount();
-		boolean inMLC = false;
-		int mlcStart = 0;
-		int importStartLine = -1;
-		int lastSeenImportLine = -1;
-		int importGroupStartOffs = -1;
-		int importGroupEndOffs = -1;
-		int lastRightCurlyLine = -1;
-		Fold prevFold = null;
+			// An import group may continue after blank lines
+			if (fold.getFoldType()==FoldType.IMPORTS) {
+				return false;
+			}
 
-		try {
+			// A block continued by e.g. "} else {", and not closed again,
+			// keeps its first end offset
+			int endOffs = fold.getEndOffset();
+			Token t = textArea.getTokenListForLine(fold.getEndLine());
+			for (; t!=null && t.isPaintable(); t=t.getNextToken()) {
+				if (t.getOffset()>endOffs && isLeftCurly(t)) {
+					return false;
+				}
+			}
+			return true;
+
+		}
 
-			for (int line=0; line<lineCount; line++) {
+		@Override
+		protected boolean canStartOn(int line) {
+			return super.canStartOn(line) && !(java && isImportPending(line));
+		}
 
+		/**
+		 * Returns whether an import group is pending at the start of a
+		 * line, i.e. whether the last import keyword before the line isn't
+		 * followed by a curly brace or comment.
+		 */
+		private boolean isImportPending(int line) {
+			boolean comments = getFoldableMultiLineComments();
+			for (line--; line>=0; line--) {
+				int last = 0; // 1 for an import, -1 for the end of a group
 				Token t = textArea.getTokenListForLine(line);
-				while (t!=null && t.isPaintable()) {
-
-					if (getFoldableMultiLineComments() && t.isComment()) {
-
-						// Java-specific stuff
-						if (java) {
-
-							if (importStartLine>-1) {
-								if (lastSeenImportLine>importStartLine) {
-									Fold fold = null;
-									// Any imports found *should* be a top-level fold,
-									// but we're extra lenient here and allow groups
-									// of them anywhere to keep our parser better-behaved
-									// if they have random "imports" throughout code.
-									if (currentFold==null) {
-										fold = new Fold(FoldType.IMPORTS,
-												textArea, importGroupStartOffs);
-										folds.add(fold);
-									}
-									else {
-										fold = currentFold.createChild(FoldType.IMPORTS,
-												importGroupStartOffs);
-									}
-									fold.setEndOffset(importGroupEndOffs);
-								}
-								importStartLine = lastSeenImportLine =
-								importGroupStartOffs = importGroupEndOffs = -1;
-							}
+				for (; t!=null && t.isPaintable(); t=t.getNextToken()) {
+					if ((comments && t.isComment()) || isLeftCurly(t)) {
+						last = -1;
+					}
+					else if (t.is(Token.RESERVED_WORD, KEYWORD_IMPORT)) {
+						last = 1;
+					}
+				}
+				if (last!=0) {
+					return last==1;
+				}
+			}
+			return false;
+		}
 
-						}
+		@Override
+		protected boolean isIdle() {
+			return !inMLC && importStartLine==-1;
+		}
+
+		@Override
+		protected void scanLine(int line, Token t)
+				throws BadLocationException {
+
+			while (t!=null && t.isPaintable()) {
+
+				if (getFoldableMultiLineComments() && t.isComment()) {
 
-						if (inMLC) {
-							// If we found the end of an MLC that started
-							// on a previous line...
-							if (t.endsWith(C_MLC_END)) {
-								int mlcEnd = t.getEndOffset() - 1;
+					// Java-specific stuff
+					if (java) {
+
+						if (importStartLine>-1) {
+							if (lastSeenImportLine>importStartLine) {
+								Fold fold = null;
+								// Any imports found *should* be a top-level fold,
+								// but we're extra lenient here and allow groups
+								// of them anywhere to keep our parser better-behaved
+								// if they have random "imports" throughout code.
 								if (currentFold==null) {
-									currentFold = new Fold(FoldType.COMMENT, textArea, mlcStart);
-									currentFold.setEndOffset(mlcEnd);
-									folds.add(currentFold);
-									currentFold = null;
+									fold = new Fold(FoldType.IMPORTS,
+											textArea, importGroupStartOffs);
+									folds.add(fold);
 								}
 								else {
-									currentFold = currentFold.createChild(FoldType.COMMENT, mlcStart);
-									currentFold.setEndOffset(mlcEnd);
-									currentFold = currentFold.getParent();
+									fold = currentFold.createChild(FoldType.IMPORTS,
+											importGroupStartOffs);
 								}
-								//System.out.println("Ending MLC at: " + mlcEnd + ", parent==" + currentFold);
-								inMLC = false;
-								mlcStart = 0;
-							}
-							// Otherwise, this MLC is continuing on to yet
-							// another line.
-						}
-						else {
-							// If we're an MLC that ends on a later line...
-							if (t.getType()!=Token.COMMENT_EOL && !t.endsWith(C_MLC_END)) {
-								//System.out.println("Starting MLC at: " + t.offset);
-								inMLC = true;
-								mlcStart = t.getOffset();
+								fold.setEndOffset(importGroupEndOffs);
 							}
+							importStartLine = lastSeenImportLine =
+							importGroupStartOffs = importGroupEndOffs = -1;
 						}
 
 					}
 
-					else if (isLeftCurly(t)) {
-
-						// Java-specific stuff
-						if (java) {
-
-							if (importStartLine>-1) {
-								if (lastSeenImportLine>importStartLine) {
-									Fold fold = null;
-									// Any imports found *should* be a top-level fold,
-									// but we're extra lenient here and allow groups
-									// of them anywhere to keep our parser better-behaved
-									// if they have random "imports" throughout code.
-									if (currentFold==null) {
-										fold = new Fold(FoldType.IMPORTS,
-												textArea, importGroupStartOffs);
-										folds.add(fold);
-									}
-									else {
-										fold = currentFold.createChild(FoldType.IMPORTS,
-												importGroupStartOffs);
-									}
-									fold.setEndOffset(importGroupEndOffs);
-								}
-								importStartLine = lastSeenImportLine =
-								importGroupStartOffs = importGroupEndOffs = -1;
+					if (inMLC) {
+						// If we found the end of an MLC that started
+						// on a previous line...
+						if (t.endsWith(C_MLC_END)) {
+							int mlcEnd = t.getEndOffset() - 1;
+							if (currentFold==null) {
+								currentFold = new Fold(FoldType.COMMENT, textArea, mlcStart);
+								currentFold.setEndOffset(mlcEnd);
+								folds.add(currentFold);
+								currentFold = null;
 							}
-
-						}
-
-						// If a new fold block starts on the same line as the
-						// previous one ends, we treat it as one big block
-						// (e.g. K&R-style "} else {")
-						if (prevFold != null && line == lastRightCurlyLine) {
-							currentFold = prevFold;
-							// Keep currentFold.endOffset where it was, so that
-							// unclosed folds at end of the file work as well
-							// as possible
-							prevFold = null;
-							lastRightCurlyLine = -1;
-						}
-						else if (currentFold==null) { // A top-level fold
-							currentFold = new Fold(FoldType.CODE, textArea, t.getOffset());
-							folds.add(currentFold);
+							else {
+								currentFold = currentFold.createChild(FoldType.COMMENT, mlcStart);
+								currentFold.setEndOffset(mlcEnd);
+								currentFold = currentFold.getParent();
+							}
+							//System.out.println("Ending MLC at: " + mlcEnd + ", parent==" + currentFold);
+							inMLC = false;
+							mlcStart = 0;
 						}
-						else { // A nested fold
-							currentFold = currentFold.createChild(FoldType.CODE, t.getOffset());
+						// Otherwise, this MLC is continuing on to yet
+						// another line.
+					}
+					else {
+						// If we're an MLC that ends on a later line...
+						if (t.getType()!=Token.COMMENT_EOL && !t.endsWith(C_MLC_END)) {
+							//System.out.println("Starting MLC at: " + t.offset);
+							inMLC = true;
+							mlcStart = t.getOffset();
 						}
-
 					}
 
-					else if (isRightCurly(t)) {
+				}
+
+				else if (isLeftCurly(t)) {
+
+					// Java-specific stuff
+					if (java) {
 
-						if (currentFold!=null) {
-							currentFold.setEndOffset(t.getOffset());
-							Fold parentFold = currentFold.getParent();
-							//System.out.println("... Adding regular fold at " + t.offset + ", parent==" + parentFold);
-							// Don't add fold markers for single-line blocks
-							if (currentFold.isOnSingleLine()) {
-								if (!currentFold.removeFromParent()) {
-									folds.remove(folds.size()-1);
+						if (importStartLine>-1) {
+							if (lastSeenImportLine>importStartLine) {
+								Fold fold = null;
+								// Any imports found *should* be a top-level fold,
+								// but we're extra lenient here and allow groups
+								// of them anywhere to keep our parser better-behaved
+								// if they have random "imports" throughout code.
+								if (currentFold==null) {
+									fold = new Fold(FoldType.IMPORTS,
+											textArea, importGroupStartOffs);
+									folds.add(fold);
 								}
+								else {
+									fold = currentFold.createChild(FoldType.IMPORTS,
+											importGroupStartOffs);
+								}
+								fold.setEndOffset(importGroupEndOffs);
 							}
-							else {
-								// Remember the end of the last completed fold,
-								// in case it needs to get merged with the next
-								// one (e.g. K&R "} else {" style)
-								lastRightCurlyLine = line;
-								prevFold = currentFold;
-							}
-							currentFold = parentFold;
+							importStartLine = lastSeenImportLine =
+							importGroupStartOffs = importGroupEndOffs = -1;
 						}
 
 					}
 
-					// Java-specific folding rules
-					else if (java) {
+					// If a new fold block starts on the same line as the
+					// previous one ends, we treat it as one big block
+					// (e.g. K&R-style "} else {")
+					if (prevFold != null && line == lastRightCurlyLine) {
+						currentFold = prevFold;
+						// Keep currentFold.endOffset where it was, so that
+						// unclosed folds at end of the file work as well
+						// as possible
+						prevFold = null;
+						lastRightCurlyLine = -1;
+					}
+					else if (currentFold==null) { // A top-level fold
+						currentFold = new Fold(FoldType.CODE, textArea, t.getOffset());
+						folds.add(currentFold);
+					}
+					else { // A nested fold
+						currentFold = currentFold.createChild(FoldType.CODE, t.getOffset());
+					}
+
+				}
+
+				else if (isRightCurly(t)) {
 
-						if (t.is(Token.RESERVED_WORD, KEYWORD_IMPORT)) {
-							if (importStartLine==-1) {
-								importStartLine = line;
-								importGroupStartOffs = t.getOffset();
-								importGroupEndOffs = t.getOffset();
+					if (currentFold!=null) {
+						currentFold.setEndOffset(t.getOffset());
+						Fold parentFold = currentFold.getParent();
+						//System.out.println("... Adding regular fold at " + t.offset + ", parent==" + parentFold);
+						// Don't add fold markers for single-line blocks
+						if (currentFold.isOnSingleLine()) {
+							if (!currentFold.removeFromParent()) {
+								folds.remove(folds.size()-1);
 							}
-							lastSeenImportLine = line;
 						}
-
-						else if (importStartLine>-1 &&
-								t.isIdentifier() &&//SEPARATOR &&
-								t.isSingleChar(';')) {
-							importGroupEndOffs = t.getOffset();
+						else {
+							// Remember the end of the last completed fold,
+							// in case it needs to get merged with the next
+							// one (e.g. K&R "} else {" style)
+							lastRightCurlyLine = line;
+							prevFold = currentFold;
 						}
-
+						currentFold = parentFold;
 					}
 
-					t = t.getNextToken();
-
 				}
 
-			}
-
-		} catch (BadLocationException ble) { // Should never happen
-			ble.printStackTrace();
-		}
-
-		return folds;
+				// Java-specific folding rules
+				else if (java) {
 
-	}
+					if (t.is(Token.RESERVED_WORD, KEYWORD_IMPORT)) {
+						if (importStartLine==-1) {
+							importStartLine = line;
+							importGroupStartOffs = t.getOffset();
+							importGroupEndOffs = t.getOffset();
+						}
+						lastSeenImportLine = line;
+					}
 
+					else if (importStartLine>-1 &&
+							t.isIdentifier() &&//SEPARATOR &&
+							t.isSingleChar(';')) {
+						importGroupEndOffs = t.getOffset();
+					}
 
-	/**
-	 * Returns whether the token is a left curly brace.  This method exists
-	 * so subclasses can provide their own curly brace definition.
-	 *
-	 * @param t The token.
-	 * @return Whether it is a left curly brace.
-	 * @see #isRightCurly(Token)
-	 */
-	public boolean isLeftCurly(Token t) {
-		return t.isLeftCurly();
-	}
+				}
 
+				t = t.getNextToken();
 
-	/**
-	 * Returns whether the token is a right curly brace.  This method exists
-	 * so subclasses can provide their own curly brace definition.
-	 *
-	 * @param t The token.
-	 * @return Whether it is a right curly brace.
-	 * @see #isLeftCurly(Token)
-	 */
-	public boolean isRightCurly(Token t) {
-		return t.isRightCurly();
-	}
+			}
 
+		}
 
-	/**
-	 * Sets whether multi-line comments are foldable with this parser.
-	 *
-	 * @param foldable Whether multi-line comments are foldable.
-	 * @see #getFoldableMultiLineComments()
-	 */
-	public void setFoldableMultiLineComments(boolean foldable) {
-		this.foldableMultiLineComments = foldable;
 	}
 
 
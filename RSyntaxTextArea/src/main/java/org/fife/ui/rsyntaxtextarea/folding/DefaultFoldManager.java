@@ -10,20 +10,24 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import javax.swing.SwingUtilities;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 import javax.swing.text.Element;
+import javax.swing.text.Position;
 
 import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
 import org.fife.ui.rsyntaxtextarea.RSyntaxUtilities;
 import org.fife.ui.rsyntaxtextarea.parser.AbstractParser;
 import org.fife.ui.rsyntaxtextarea.parser.DefaultParseResult;
+import org.fife.ui.rsyntaxtextarea.parser.IncrementalParser;
 import org.fife.ui.rsyntaxtextarea.parser.ParseResult;
 import org.fife.ui.rsyntaxtextarea.parser.Parser;
 import org.fife.ui.rtextarea.RDocument;
@@ -40,6 +44,8 @@ import org.fife.ui.rtextarea.RDocument;
  *    <li>If the text area's {@link RSyntaxTextArea#SYNTAX_STYLE_PROPERTY}
  *        changes, the current fold parser is uninstalled, and one appropriate
  *        for the new language, if any, is installed.
+ *    <li>If the fold parser is an {@link IncrementalFoldParser}, only the
+ *        lines modified since the last parse are re-parsed after an edit.
  * </ul>
  *
  * The folding strategy to use is retrieved from {@link FoldParserManager}.
@@ -56,6 +62,20 @@ public class DefaultFoldManager implements FoldManager {
 	private boolean codeFoldingEnabled;
 	private PropertyChangeSupport support;
 	private Listener l;
+	private Position firstOffsetModded;
+	private Position lastOffsetModded;
+
+	/**
+	 * The start lines of the outermost collapsed folds, in order, and the
+	 * number of lines hidden above each of them.  This lets the queries made
+	 * while painting run in logarithmic time.  It is rebuilt lazily, after
+	 * the folds, their collapsed state, or the document's lines change.
+	 */
+	private int[] hiddenStartLines;
+	private int[] hiddenCountsAbove;
+	private int hiddenFoldCount;
+	private boolean hiddenLinesValid;
+	private int hiddenLinesLineCount;
 
 
 	/**
@@ -84,6 +104,7 @@ public class DefaultFoldManager implements FoldManager {
 	@Override
 	public void clear() {
 		folds.clear();
+		invalidateHiddenLines();
 	}
 
 
@@ -110,6 +131,33 @@ public class DefaultFoldManager implements FoldManager {
 	}
 
 
+	/**
+	 * Rebuilds the index of lines hidden by collapsed folds, if necessary.
+	 * Since line numbers of folds change when lines are added or removed,
+	 * the index is also rebuilt if the number of lines in the document has
+	 * changed, in case this is called by a document listener notified before
+	 * ours.
+	 */
+	private void ensureHiddenLinesValid() {
+
+		int lineCount = textArea.getLineCount();
+		if (hiddenLinesValid && lineCount==hiddenLinesLineCount) {
+			return;
+		}
+
+		if (hiddenStartLines==null) {
+			hiddenStartLines = new int[16];
+			hiddenCountsAbove = new int[17];
+		}
+		hiddenFoldCount = 0;
+		indexHiddenLines(folds);
+
+		hiddenLinesValid = true;
+		hiddenLinesLineCount = lineCount;
+
+	}
+
+
 	@Override
 	public Fold getDeepestFoldContaining(int offs) {
 		Fold deepestFold = null;
@@ -200,11 +248,8 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 
 	@Override
 	public int getHiddenLineCount() {
-		int count = 0;
-		for (Fold fold : folds) {
-			count += fold.getCollapsedLineCount();
-		}
-		return count;
+		ensureHiddenLinesValid();
+		return hiddenCountsAbove[hiddenFoldCount];
 	}
 
 
@@ -217,60 +262,64 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 	@Override
 	public int getHiddenLineCountAbove(int line, boolean physical) {
 
-		int count = 0;
-
-		for (Fold fold : folds) {
-			int comp = physical ? line+count : line;
-			if (fold.getStartLine()>=comp) {
-				break;
+		ensureHiddenLinesValid();
+
+		// Find the number of collapsed folds starting above the line.  For
+		// physical lines, a fold's start line is compared to the line's
+		// position in the model given the lines hidden above that fold.
+		// Both of these values are non-decreasing, so binary search works.
+		int low = 0;
+		int high = hiddenFoldCount;
+		while (low<high) {
+			int mid = (low + high) >>> 1;
+			int startLine = hiddenStartLines[mid];
+			if (physical) {
+				startLine -= hiddenCountsAbove[mid];
+			}
+			if (startLine<line) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
 			}
-			count += getHiddenLineCountAboveImpl(fold, comp, physical);
 		}
 
-		return count;
+		return hiddenCountsAbove[low];
 
 	}
 
 
 	/**
-	 * Returns the number of lines "hidden" by collapsed folds above the
-	 * specified line.
+	 * Returns the index of the outermost collapsed fold hiding a line.
 	 *
-	 * @param fold The current fold in the recursive algorithm.  It and its
-	 *        children are examined.
 	 * @param line The line.
-	 * @param physical Whether <code>line</code> is the number of a physical
-	 *        line (i.e. visible, not code-folded), or a logical one (i.e. any
-	 *        line from the model).  If <code>line</code> was determined by a
-	 *        raw line calculation (i.e. <code>(visibleTopY / lineHeight)</code>),
-	 *        this value should be <code>true</code>.  It should be
-	 *        <code>false</code> when it was calculated from an offset in the
-	 *        document (for example).
-	 * @return The number of lines hidden in folds that are descendants of
-	 *         <code>fold</code>, or <code>fold</code> itself, above
-	 *         <code>line</code>.
+	 * @return The index of the fold in the hidden line index, or
+	 *         <code>-1</code> if the line is not hidden.
+	 * @see #ensureHiddenLinesValid()
 	 */
-	private int getHiddenLineCountAboveImpl(Fold fold, int line, boolean physical) {
-
-		int count = 0;
-
-		if (fold.getEndLine()<line ||
-				(fold.isCollapsed() && fold.getStartLine()<line)) {
-			count = fold.getCollapsedLineCount();
-		}
-		else {
-			int childCount = fold.getChildCount();
-			for (int i=0; i<childCount; i++) {
-				Fold child = fold.getChild(i);
-				int comp = physical ? line+count : line;
-				if (child.getStartLine()>=comp) {
-					break;
-				}
-				count += getHiddenLineCountAboveImpl(child, comp, physical);
+	private int getHiddenFoldIndex(int line) {
+
+		// Find the last collapsed fold starting above the line
+		int low = 0;
+		int high = hiddenFoldCount - 1;
+		while (low<=high) {
+			int mid = (low + high) >>> 1;
+			if (hiddenStartLines[mid]<line) {
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
 			}
 		}
 
-		return count;
+		int index = low - 1;
+		if (index>-1) {
+			int hiddenCount = hiddenCountsAbove[index+1] - hiddenCountsAbove[index];
+			if (line<=hiddenStartLines[index]+hiddenCount) {
+				return index;
+			}
+		}
+		return -1;
 
 	}
 
@@ -318,9 +367,13 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 			return -1;
 		}
 
-		do {
-			line--;
-		} while (line>=0 && isLineHidden(line));
+		// Skip to the start line of each collapsed fold hiding the line
+		ensureHiddenLinesValid();
+		line--;
+		int index;
+		while (line>=0 && (index=getHiddenFoldIndex(line))>-1) {
+			line = hiddenStartLines[index];
+		}
 
 		return line;
 
@@ -335,39 +388,58 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 			return -1;
 		}
 
-		do {
-			line++;
-		} while (line<lineCount && isLineHidden(line));
+		// Skip past the end line of each collapsed fold hiding the line
+		ensureHiddenLinesValid();
+		line++;
+		int index;
+		while (line<lineCount && (index=getHiddenFoldIndex(line))>-1) {
+			line = hiddenStartLines[index] + hiddenCountsAbove[index+1] -
+					hiddenCountsAbove[index] + 1;
+		}
 
-		return line==lineCount ? -1 : line;
+		return line>=lineCount ? -1 : line;
 
 	}
 
 
-//	private static int binaryFindFoldContainingLine(int line) {
-//
-//List allFolds;
-//
-//		int low = 0;
-//		int high = allFolds.size() - 1;
-//
-//		while (low <= high) {
-//			int mid = (low + high) >> 1;
-//			Fold midVal = (Fold)allFolds.get(mid);
-//			if (midVal.containsLine(line)) {
-//				return mid;
-//			}
-//			if (line<=midVal.getStartLine()) {
-//				high = mid - 1;
-//			}
-//			else { // line > midVal.getEndLine()
-//				low = mid + 1;
-//			}
-//		}
-//
-//		return -(low + 1); // key not found
-//
-//	}
+	/**
+	 * Called when the index of lines hidden by collapsed folds must be
+	 * rebuilt before it's next used, such as when a fold is collapsed or
+	 * expanded.
+	 *
+	 * @see #ensureHiddenLinesValid()
+	 */
+	void invalidateHiddenLines() {
+		hiddenLinesValid = false;
+	}
+
+
+	/**
+	 * Adds the outermost collapsed folds in a list of folds, and their
+	 * descendants, to the index of hidden lines.
+	 *
+	 * @param folds The folds to examine.
+	 * @see #ensureHiddenLinesValid()
+	 */
+	private void indexHiddenLines(List<Fold> folds) {
+		for (Fold fold : folds) {
+			if (fold.isCollapsed()) {
+				if (hiddenFoldCount==hiddenStartLines.length) {
+					int newSize = hiddenFoldCount * 2;
+					hiddenStartLines = Arrays.copyOf(hiddenStartLines, newSize);
+					hiddenCountsAbove = Arrays.copyOf(hiddenCountsAbove, newSize+1);
+				}
+				hiddenStartLines[hiddenFoldCount] = fold.getStartLine();
+				hiddenCountsAbove[hiddenFoldCount+1] =
+						hiddenCountsAbove[hiddenFoldCount] +
+						fold.getCollapsedLineCount();
+				hiddenFoldCount++;
+			}
+			else if (fold.getCollapsedLineCount()>0) {
+				indexHiddenLines(fold.getChildren());
+			}
+		}
+	}
 
 
 	@Override
@@ -390,37 +462,18 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 
 	@Override
 	public boolean isLineHidden(int line) {
-		for (Fold fold : folds) {
-			if (fold.containsLine(line)) {
-				if (fold.isCollapsed()) {
-					return true;
-				}
-				else {
-					return isLineHiddenImpl(fold, line);
-				}
-			}
-		}
-		return false;
+		ensureHiddenLinesValid();
+		return getHiddenFoldIndex(line)>-1;
 	}
 
 
-	private boolean isLineHiddenImpl(Fold parent, int line) {
-		for (int i=0; i<parent.getChildCount(); i++) {
-			Fold child = parent.getChild(i);
-			if (child.containsLine(line)) {
-				if (child.isCollapsed()) {
-					return true;
-				}
-				else {
-					return isLineHiddenImpl(child, line);
-				}
-			}
-		}
-		return false;
-	}
-
-
-	private void keepFoldState(Fold newFold, List<Fold> oldFolds) {
+	/**
+	 * Collapses a new fold if the fold it replaces was collapsed.
+	 *
+	 * @param newFold The new fold.
+	 * @param oldFolds The folds that may include the one it replaces.
+	 */
+	static void keepFoldState(Fold newFold, List<Fold> oldFolds) {
 		int previousLoc = Collections.binarySearch(oldFolds, newFold);
 		//System.out.println(newFold + " => " + previousLoc);
 		if (previousLoc>=0) {
@@ -444,9 +497,15 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 	}
 
 
-	private void keepFoldStates(List<Fold> newFolds, List<Fold> oldFolds) {
+	/**
+	 * Collapses any new folds that replace folds that were collapsed.
+	 *
+	 * @param newFolds The new folds.  Their children are also examined.
+	 * @param oldFolds The folds they replace.
+	 */
+	static void keepFoldStates(List<Fold> newFolds, List<Fold> oldFolds) {
 		for (Fold newFold : newFolds) {
-			keepFoldState(newFold, folds);
+			keepFoldState(newFold, oldFolds);
 			List<Fold> newChildFolds = newFold.getChildren();
 			if (newChildFolds!=null) {
 				keepFoldStates(newChildFolds, oldFolds);
@@ -464,28 +523,61 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 	@Override
 	public void reparse() {
 
-		if (codeFoldingEnabled && foldParser!=null) {
+		firstOffsetModded = lastOffsetModded = null;
 
+		if (codeFoldingEnabled && foldParser!=null) {
 			// Re-calculate folds.  Keep the fold state of folds that are
 			// still around.
-			List<Fold> newFolds = foldParser.getFolds(textArea);
-			if (newFolds==null) {
-				newFolds = Collections.emptyList();
-			}
-			else {
-				keepFoldStates(newFolds, folds);
-			}
-			folds = newFolds;
-
-			// Let folks (gutter, etc.) know that folds have been updated.
-			support.firePropertyChange(PROPERTY_FOLDS_UPDATED, null, folds);
-			textArea.repaint();
-
+			updateFolds(foldParser.getFolds(textArea));
 		}
 		else {
 			folds.clear();
+			invalidateHiddenLines();
+		}
+
+	}
+
+
+	/**
+	 * Re-parses the lines modified since the last parse, if the fold parser
+	 * supports it.  Otherwise, the entire document is re-parsed.
+	 *
+	 * @see #reparse()
+	 */
+	private void reparseModifiedLines() {
+
+		if (!codeFoldingEnabled || !(foldParser instanceof IncrementalFoldParser)) {
+			reparse();
+			return;
+		}
+		if (firstOffsetModded==null) {
+			return; // Nothing modified since the last parse
 		}
 
+		Element root = textArea.getDocument().getDefaultRootElement();
+		int firstLine = root.getElementIndex(firstOffsetModded.getOffset());
+		int lastLine = root.getElementIndex(lastOffsetModded.getOffset());
+		firstOffsetModded = lastOffsetModded = null;
+
+		IncrementalFoldParser parser = (IncrementalFoldParser)foldParser;
+		updateFolds(parser.getFolds(textArea, folds, firstLine, lastLine));
+
+	}
+
+
+	/**
+	 * Runs an operation on the EDT, since folds are only modified there.
+	 *
+	 * @param r The operation to run.  If this is the EDT, it is run
+	 *        immediately.
+	 */
+	private static void runOnEdt(Runnable r) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			r.run();
+		}
+		else {
+			SwingUtilities.invokeLater(r);
+		}
 	}
 
 
@@ -497,19 +589,14 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 				textArea.removeParser(rstaParser);
 			}
 			if (enabled) {
-				rstaParser = new AbstractParser() {
-					@Override
-					public ParseResult parse(RSyntaxDocument doc, String style) {
-						reparse();
-						return new DefaultParseResult(this);
-					}
-				};
+				rstaParser = new FoldReparser();
 				textArea.addParser(rstaParser);
 				support.firePropertyChange(PROPERTY_FOLDS_UPDATED, null, null);
 				//reparse();
 			}
 			else {
 				folds = Collections.emptyList();
+				invalidateHiddenLines();
 				textArea.repaint();
 				support.firePropertyChange(PROPERTY_FOLDS_UPDATED, null, null);
 			}
@@ -520,6 +607,48 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 	@Override
 	public void setFolds(List<Fold> folds) {
 		this.folds = folds;
+		invalidateHiddenLines();
+	}
+
+
+	/**
+	 * Replaces the current folds with newly-parsed ones.  Folds that aren't
+	 * the same instances as before keep the collapsed state of the folds
+	 * they replace.
+	 *
+	 * @param newFolds The new folds.  This may be <code>null</code>.
+	 */
+	private void updateFolds(List<Fold> newFolds) {
+
+		if (newFolds==null) {
+			newFolds = Collections.emptyList();
+		}
+		else {
+			// Folds reused by an incremental parse keep their own state
+			int newCount = newFolds.size();
+			int oldCount = folds.size();
+			int start = 0;
+			while (start<newCount && start<oldCount &&
+					newFolds.get(start)==folds.get(start)) {
+				start++;
+			}
+			int newEnd = newCount;
+			int oldEnd = oldCount;
+			while (newEnd>start && oldEnd>start &&
+					newFolds.get(newEnd-1)==folds.get(oldEnd-1)) {
+				newEnd--;
+				oldEnd--;
+			}
+			keepFoldStates(newFolds.subList(start, newEnd),
+					folds.subList(start, oldEnd));
+		}
+		folds = newFolds;
+		invalidateHiddenLines();
+
+		// Let folks (gutter, etc.) know that folds have been updated.
+		support.firePropertyChange(PROPERTY_FOLDS_UPDATED, null, folds);
+		textArea.repaint();
+
 	}
 
 
@@ -533,13 +662,67 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 	}
 
 
+	/**
+	 * Re-parses folds as part of the text area's parsing.  Since that may
+	 * happen off the EDT, the folds are updated later on the EDT if
+	 * necessary.
+	 */
+	private class FoldReparser extends AbstractParser
+			implements IncrementalParser {
+
+		@Override
+		public ParseResult parse(RSyntaxDocument doc, String style) {
+			runOnEdt(DefaultFoldManager.this::reparse);
+			return new DefaultParseResult(this);
+		}
+
+		@Override
+		public ParseResult parse(RSyntaxDocument doc, String style,
+								int firstLine, int lastLine) {
+			// We track the modified range ourselves, since the folds may be
+			// updated after more edits
+			runOnEdt(DefaultFoldManager.this::reparseModifiedLines);
+			return new DefaultParseResult(this);
+		}
+
+	}
+
+
 	/**
 	 * Listens for events in the text editor.
 	 */
 	private class Listener implements DocumentListener, PropertyChangeListener {
 
+		/**
+		 * Adds a range of text to the range modified since the last parse.
+		 */
+		private void addModifiedRange(Document doc, int firstOffs, int lastOffs)
+				throws BadLocationException {
+			if (firstOffsetModded==null || firstOffs<firstOffsetModded.getOffset()) {
+				firstOffsetModded = doc.createPosition(firstOffs);
+			}
+			if (lastOffsetModded==null || lastOffs>lastOffsetModded.getOffset()) {
+				lastOffsetModded = doc.createPosition(lastOffs);
+			}
+		}
+
 		@Override
 		public void changedUpdate(DocumentEvent e) {
+			// RSyntaxDocument fires these for the range of lines whose
+			// tokens changed, which may go past the lines edited (e.g. if
+			// "/*" was typed).  The "offset" and "length" are line numbers.
+			Element root = e.getDocument().getDefaultRootElement();
+			int firstLine = e.getOffset();
+			int lastLine = Math.min(e.getLength(), root.getElementCount()-1);
+			if (firstLine>=0 && firstLine<=lastLine) {
+				try {
+					addModifiedRange(e.getDocument(),
+						root.getElement(firstLine).getStartOffset(),
+						root.getElement(lastLine).getEndOffset() - 1);
+				} catch (BadLocationException ble) {
+					ble.printStackTrace(); // Never happens
+				}
+			}
 		}
 
 		@Override
@@ -551,9 +734,16 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 			int endOffs = startOffs + e.getLength();
 			Document doc = e.getDocument();
 			Element root = doc.getDefaultRootElement();
+			try {
+				// A position at the insertion offset moves past the new text
+				addModifiedRange(doc, Math.max(startOffs-1, 0), endOffs);
+			} catch (BadLocationException ble) {
+				ble.printStackTrace(); // Never happens
+			}
 			int startLine = root.getElementIndex(startOffs);
 			int endLine = root.getElementIndex(endOffs);
 			if (startLine!=endLine) { // Inserted text covering > 1 line...
+				invalidateHiddenLines();
 				Fold fold = getFoldForLine(startLine);
 				if (fold!=null && fold.isCollapsed()) {
 					fold.toggleCollapsedState();
@@ -593,7 +783,9 @@ private Fold getFoldForLineImpl(Fold parent, List<Fold> folds, int line) {
 			// Fold to unfold.  We only need to check the removal offset since
 			// that's the new caret position.
 			int offs = e.getOffset();
+			invalidateHiddenLines();
 			try {
+				addModifiedRange(e.getDocument(), offs, offs);
 				int lastLineModified = textArea.getLineOfOffset(offs);
 				//System.out.println(">>> " + lastLineModified);
 				Fold fold = getFoldForLine(lastLineModified);
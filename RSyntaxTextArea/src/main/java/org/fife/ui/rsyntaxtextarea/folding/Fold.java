@@ -44,10 +44,7 @@ public class Fold implements Comparable<Fold> {
 	private boolean collapsed;
 	private int childCollapsedLineCount;
 
-	private int lastStartOffs = -1;
 	private int cachedStartLine;
-
-	private int lastEndOffs = -1;
 	private int cachedEndLine;
 
 
@@ -276,13 +273,30 @@ public class Fold implements Comparable<Fold> {
 	 * @see #getStartLine()
 	 */
 	public int getEndLine() {
-		int endOffs = getEndOffset();
-		if (lastEndOffs==endOffs) {
-			return cachedEndLine;
-		}
-		lastEndOffs = endOffs;
+		return cachedEndLine = getLineOfOffset(getEndOffset(), cachedEndLine);
+	}
+
+
+	/**
+	 * Returns the line containing an offset.  A fold's offsets can end up
+	 * where they were before an edit while their lines have changed (for
+	 * example, after a newline is removed before them and a character is
+	 * inserted), so rather than keying the cached line by offset, this
+	 * checks whether it still contains the offset.
+	 *
+	 * @param offs The offset.
+	 * @param cachedLine The line the offset was last on.
+	 * @return The line containing the offset.
+	 */
+	private int getLineOfOffset(int offs, int cachedLine) {
 		Element root = textArea.getDocument().getDefaultRootElement();
-		return cachedEndLine = root.getElementIndex(endOffs);
+		if (cachedLine<root.getElementCount()) {
+			Element line = root.getElement(cachedLine);
+			if (offs>=line.getStartOffset() && offs<line.getEndOffset()) {
+				return cachedLine;
+			}
+		}
+		return root.getElementIndex(offs);
 	}
 
 
@@ -379,13 +393,8 @@ public class Fold implements Comparable<Fold> {
 	 * @see #getStartOffset()
 	 */
 	public int getStartLine() {
-		int startOffs = getStartOffset();
-		if (lastStartOffs==startOffs) {
-			return cachedStartLine;
-		}
-		lastStartOffs = startOffs;
-		Element root = textArea.getDocument().getDefaultRootElement();
-		return cachedStartLine = root.getElementIndex(startOffs);
+		return cachedStartLine = getLineOfOffset(getStartOffset(),
+				cachedStartLine);
 	}
 
 
@@ -461,6 +470,72 @@ public class Fold implements Comparable<Fold> {
 	}
 
 
+	/**
+	 * Removes the child folds of this fold starting at an index.
+	 *
+	 * @param index The index of the first child to remove.
+	 * @return The removed children.  This may be empty.
+	 * @see #addChildren(List)
+	 */
+	List<Fold> removeChildrenFrom(int index) {
+		if (children==null) {
+			return new ArrayList<>(0);
+		}
+		List<Fold> sublist = children.subList(index, children.size());
+		List<Fold> removed = new ArrayList<>(sublist);
+		sublist.clear();
+		return removed;
+	}
+
+
+	/**
+	 * Re-adds children previously removed via
+	 * {@link #removeChildrenFrom(int)} or {@link #removeFromParent()}.  Their
+	 * collapsed lines are not added to this fold's count; see
+	 * {@link #resetChildCollapsedLineCount()}.
+	 *
+	 * @param folds The folds to add.
+	 */
+	void addChildren(List<Fold> folds) {
+		if (!folds.isEmpty()) {
+			if (children==null) {
+				children = new ArrayList<>();
+			}
+			for (Fold fold : folds) {
+				fold.parent = this;
+				children.add(fold);
+			}
+		}
+	}
+
+
+	/**
+	 * Marks this fold as having no end, as if {@link #setEndOffset(int)}
+	 * had never been called.
+	 */
+	void clearEndOffset() {
+		endOffs = null;
+	}
+
+
+	/**
+	 * Recomputes the number of collapsed lines under this fold's children
+	 * from scratch.  This should be called after children are added or
+	 * removed other than via {@link #createChild(int, int)}.
+	 */
+	void resetChildCollapsedLineCount() {
+		int count = 0;
+		if (children!=null) {
+			for (Fold child : children) {
+				count += child.getCollapsedLineCount();
+			}
+		}
+		if (count!=childCollapsedLineCount) {
+			updateChildCollapsedLineCount(count - childCollapsedLineCount);
+		}
+	}
+
+
 	/**
 	 * Sets whether this <code>Fold</code> is collapsed.  Calling this method
 	 * will update both the text area and all <code>Gutter</code> components.
@@ -506,6 +581,10 @@ public class Fold implements Comparable<Fold> {
 				}
 			}
 
+			FoldManager fm = textArea.getFoldManager();
+			if (fm instanceof DefaultFoldManager) {
+				((DefaultFoldManager)fm).invalidateHiddenLines();
+			}
 			textArea.foldToggled(this);
 
 		}
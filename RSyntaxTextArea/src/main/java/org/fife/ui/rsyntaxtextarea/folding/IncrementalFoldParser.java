@@ -0,0 +1,63 @@
+/*
+ * 10/17/2026
+ *
+ * IncrementalFoldParser.java - A fold parser that can re-parse just the
+ * modified portion of a document.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea.folding;
+
+import java.util.List;
+
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+
+
+/**
+ * A {@link FoldParser} that can update the folds it found previously after
+ * an edit, rather than re-parsing the entire document.  Since a
+ * {@link Fold}'s offsets track edits to the document, folds outside of the
+ * edited region are usually still correct, and can be returned as-is.<p>
+ *
+ * {@link DefaultFoldManager} calls
+ * {@link #getFolds(RSyntaxTextArea, List, int, int)} after the user edits
+ * the document, and {@link #getFolds(RSyntaxTextArea)} when the entire
+ * document needs to be parsed, such as when the language changes.
+ * Subclasses of fold parsers that implement this interface, that override
+ * <code>getFolds(RSyntaxTextArea)</code>, should override both methods.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see CurlyFoldParser
+ * @see XmlFoldParser
+ */
+public interface IncrementalFoldParser extends FoldParser {
+
+
+	/**
+	 * Returns the list of all folds in the text area, given the folds found
+	 * in it before it was edited.
+	 *
+	 * @param textArea The text area whose contents should be analyzed.
+	 * @param folds The top-level folds previously returned by this parser.
+	 *        This list should not be modified, though folds in it may be
+	 *        updated and returned again (for example, if a fold's children
+	 *        change).
+	 * @param firstLine The first line modified since <code>folds</code>
+	 *        were found.
+	 * @param lastLine The last line modified since <code>folds</code> were
+	 *        found.
+	 * @return The list of folds.  Folds that are not affected by the edit
+	 *         should be the same instances as in <code>folds</code>, so
+	 *         they keep their collapsed state.  Top-level folds that are
+	 *         new are given the collapsed state of the fold they replace,
+	 *         if any; new child folds of reused folds should be given theirs
+	 *         by this parser.  If this method returns <code>null</code>, it
+	 *         is treated as if no folds were found.
+	 */
+	List<Fold> getFolds(RSyntaxTextArea textArea, List<Fold> folds,
+						int firstLine, int lastLine);
+
+
+}
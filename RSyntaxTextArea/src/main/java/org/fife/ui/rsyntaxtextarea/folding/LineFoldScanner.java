@@ -0,0 +1,543 @@
+/*
+ * 10/17/2026
+ *
+ * LineFoldScanner.java - Finds folds one line at a time.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea.folding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.text.BadLocationException;
+
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.fife.ui.rsyntaxtextarea.Token;
+
+
+/**
+ * Finds folds by looking at the tokens on each line of a text area in turn.
+ * This is the engine behind fold parsers that implement
+ * {@link IncrementalFoldParser}.<p>
+ *
+ * After an edit, {@link #rescan(List, int, int)} finds the innermost block
+ * (see {@link #isBlock(Fold)}) containing the start of the edit, and starts
+ * scanning inside of it, after the last child fold that ends before the
+ * edit.  The old folds after that point are detached from the tree.  Once
+ * the scan is past the edit, it stops at the first line that starts one of
+ * those old folds, if the scanner is in that fold's old parent and is
+ * otherwise idle (see {@link #isIdle()}).  Since the text from there on
+ * hasn't changed, and a <code>Fold</code>'s offsets track edits, the old
+ * folds from there on are still correct, and are re-attached.  The blocks
+ * the scan started in are also kept, so only the folds in between are new.
+ * <p>
+ *
+ * A new instance should be used for each scan.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+abstract class LineFoldScanner {
+
+	/**
+	 * The text area being scanned.
+	 */
+	protected RSyntaxTextArea textArea;
+
+	/**
+	 * The top-level folds found so far.
+	 */
+	protected List<Fold> folds;
+
+	/**
+	 * The innermost fold whose end hasn't been found yet, or
+	 * <code>null</code> if the scanner is at the top level.
+	 */
+	protected Fold currentFold;
+
+	/**
+	 * The blocks a re-scan started inside of, outermost first.
+	 */
+	private List<Fold> blocks;
+
+	/**
+	 * The old folds detached from each level of the tree, the top level
+	 * first, followed by the children of each of {@link #blocks}.
+	 */
+	private List<List<Fold>> tails;
+
+	/**
+	 * For each level, the index of the first detached fold that might still
+	 * be re-attached.
+	 */
+	private int[] nextInTail;
+
+	/**
+	 * For each level, the end line of the old fold just before the first
+	 * detached one, or the start line of the block if there is none.
+	 */
+	private int[] prevEndLines;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param textArea The text area to scan.
+	 */
+	protected LineFoldScanner(RSyntaxTextArea textArea) {
+		this.textArea = textArea;
+	}
+
+
+	/**
+	 * Returns whether the scan can stop and re-attach the remaining old
+	 * folds at a level of the tree.
+	 *
+	 * @param level The level; <code>0</code> for the top level, or the
+	 *        index of a block in {@link #blocks}, plus one.
+	 * @param line The line about to be scanned.
+	 * @return Whether the old state of the scan at the start of
+	 *         <code>line</code> matches the current one.
+	 */
+	private boolean canResume(int level, int line) {
+
+		List<Fold> tail = tails.get(level);
+		int next = nextInTail[level];
+		while (next<tail.size() && tail.get(next).getStartLine()<line) {
+			next++;
+		}
+		nextInTail[level] = next;
+
+		if (next==tail.size() || tail.get(next).getStartLine()!=line) {
+			return false;
+		}
+		// Make sure no sibling was open at the start of the line before the
+		// edit either (e.g. "</a> <b>")
+		if (next==0) {
+			return prevEndLines[level]<line;
+		}
+		Fold prev = tail.get(next-1);
+		return prev.getEndLine()<line && isClosed(prev) && canStartAfter(prev);
+
+	}
+
+
+	/**
+	 * Returns whether the scanner can start on the line after a fold ends,
+	 * i.e. whether the text after it on that line and after is unaffected
+	 * by it.  The default implementation returns <code>true</code>.
+	 *
+	 * @param fold The fold.
+	 * @return Whether a scan can start after the fold.
+	 */
+	protected boolean canStartAfter(Fold fold) {
+		return true;
+	}
+
+
+	/**
+	 * Returns whether the scanner can start on a line, i.e. whether nothing
+	 * on the lines before it, other than the start of the open folds, affects
+	 * the folds found from it on.  The default implementation returns
+	 * whether the lexer is not in the middle of a token (such as a
+	 * multi-line comment) at the start of the line.
+	 *
+	 * @param line The line, which is greater than zero.
+	 * @return Whether a scan can start on the line.
+	 */
+	protected boolean canStartOn(int line) {
+		RSyntaxDocument doc = (RSyntaxDocument)textArea.getDocument();
+		return doc.getLastTokenTypeOnLine(line-1)==Token.NULL;
+	}
+
+
+	/**
+	 * Returns the level of the tree that a fold is the parent of during a
+	 * re-scan.
+	 *
+	 * @param fold The fold, or <code>null</code> for the top level.
+	 * @return <code>0</code> if <code>fold</code> is <code>null</code>, the
+	 *         index of the fold in {@link #blocks} plus one, or
+	 *         <code>-1</code> if it is not one of those blocks.
+	 */
+	private int getBlockLevel(Fold fold) {
+		if (fold==null) {
+			return 0;
+		}
+		for (int i=0; i<blocks.size(); i++) {
+			if (blocks.get(i)==fold) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns the end line of the fold before the first one detached from a
+	 * level of the tree.
+	 *
+	 * @param fold The fold.
+	 * @return Its end line, or {@link Integer#MAX_VALUE} if something it
+	 *         started might still be pending after its end line.
+	 * @see #canResume(int, int)
+	 */
+	private int getPrevEndLine(Fold fold) {
+		return isClosed(fold) && canStartAfter(fold) ? fold.getEndLine() :
+				Integer.MAX_VALUE;
+	}
+
+
+	/**
+	 * Backs up from a fold until the previous one ends on an earlier line
+	 * than it starts on, and we can start after the previous one.
+	 *
+	 * @param folds A list of sibling folds.
+	 * @param index The index of a fold in the list, or the list's size.
+	 * @return The index of the fold to start at.
+	 * @see #getStartIndex(List, int)
+	 */
+	private int backUp(List<Fold> folds, int index) {
+		while (index>0 && (!canStartAfter(folds.get(index-1)) ||
+				!isClosed(folds.get(index-1)) ||
+				(index<folds.size() && folds.get(index-1).getEndLine()>=
+						folds.get(index).getStartLine()))) {
+			index--;
+		}
+		return index;
+	}
+
+
+	/**
+	 * Returns the index of the first fold ending on or after a line, backing
+	 * up if necessary so that the previous fold ends on an earlier line than
+	 * the returned one starts on (e.g. for "<code>} /*</code>"), and so that
+	 * we can start after it (see {@link #canStartAfter(Fold)} and
+	 * {@link #isClosed(Fold)}).
+	 *
+	 * @param folds A list of sibling folds.
+	 * @param line The line.
+	 * @return The index of the fold, or <code>folds.size()</code> if all
+	 *         folds end before the line.
+	 */
+	private int getStartIndex(List<Fold> folds, int line) {
+
+		// Siblings don't overlap, so their end lines are sorted
+		int low = 0;
+		int high = folds.size() - 1;
+		while (low<=high) {
+			int mid = (low+high) >>> 1;
+			if (folds.get(mid).getEndLine()<line) {
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+
+		return backUp(folds, low);
+
+	}
+
+
+	/**
+	 * Returns whether a fold is a block the scanner can start scanning
+	 * inside of, with the fold as {@link #currentFold}.  The default
+	 * implementation returns whether it is a {@link FoldType#CODE} fold.
+	 *
+	 * @param fold The fold.
+	 * @return Whether the fold is a block.
+	 */
+	protected boolean isBlock(Fold fold) {
+		return fold.getFoldType()==FoldType.CODE;
+	}
+
+
+	/**
+	 * Returns whether a fold and its descendants all end by the fold's end
+	 * offset.  This isn't the case for a fold that was never closed, or for
+	 * one that was continued after its end (e.g. by "<code>} else {</code>")
+	 * and never closed again.
+	 *
+	 * @param fold The fold.
+	 * @return Whether the fold is closed.
+	 */
+	private static boolean isClosed(Fold fold) {
+		int end = fold.getEndOffset();
+		while (end!=Integer.MAX_VALUE) {
+			if (!fold.getHasChildFolds()) {
+				return true;
+			}
+			fold = fold.getLastChild();
+			if (fold.getEndOffset()>end) {
+				return false;
+			}
+			end = fold.getEndOffset();
+		}
+		return false;
+	}
+
+
+	/**
+	 * Returns whether nothing scanned so far, other than the open folds, can
+	 * affect the folds found on the following lines; for example, no
+	 * multi-line comment is open.
+	 *
+	 * @return Whether the scanner is idle.
+	 */
+	protected abstract boolean isIdle();
+
+
+	/**
+	 * Re-scans the part of the text area affected by an edit.  The collapsed
+	 * state of folds that are replaced is kept.
+	 *
+	 * @param oldFolds The top-level folds found before the edit.  This list
+	 *        is not modified, though the children of the folds in it may be.
+	 * @param firstLine The first line modified.
+	 * @param lastLine The last line modified.
+	 * @return The top-level folds.  Folds outside of the re-scanned region
+	 *         are the same instances as in <code>oldFolds</code>.  This is
+	 *         <code>null</code> if the entire text area must be scanned
+	 *         instead, in which case the old folds are left unchanged.
+	 */
+	List<Fold> rescan(List<Fold> oldFolds, int firstLine, int lastLine) {
+
+		// Find the innermost block containing the start of the edit that we
+		// can start inside of, i.e. that has no child starting on its first
+		// line, since we start on a later line.
+		blocks = new ArrayList<>();
+		List<Integer> blockIndices = new ArrayList<>();
+		List<Fold> siblings = oldFolds;
+		int index = getStartIndex(siblings, firstLine);
+		int startLine = index==0 ? 0 : siblings.get(index-1).getEndLine() + 1;
+		while (index<siblings.size()) {
+			Fold fold = siblings.get(index);
+			// Don't start in a block continued after its end either; see
+			// isClosed()
+			if (fold.getStartLine()>=firstLine || !isBlock(fold) ||
+					(fold.getEndOffset()!=Integer.MAX_VALUE && !isClosed(fold))) {
+				break;
+			}
+			List<Fold> children = fold.getChildren();
+			if (children==null) {
+				children = Collections.emptyList();
+			}
+			int childIndex = getStartIndex(children, firstLine);
+			int childStartLine = childIndex==0 ? fold.getStartLine() + 1 :
+					children.get(childIndex-1).getEndLine() + 1;
+			if (childIndex<children.size() &&
+					children.get(childIndex).getStartLine()<childStartLine) {
+				break;
+			}
+			blocks.add(fold);
+			blockIndices.add(index);
+			siblings = children;
+			index = childIndex;
+			startLine = childStartLine;
+		}
+
+		// Nothing but the blocks can be pending where we start (e.g. a
+		// multi-line comment), so back up until that's the case.  Again,
+		// no child of the innermost block can start on its first line.
+		while (startLine>0 && (!canStartOn(startLine) || (index==0 &&
+				!siblings.isEmpty() && siblings.get(0).getStartLine()<startLine))) {
+			if (index>0) {
+				index = backUp(siblings, index-1);
+			}
+			else { // Start before the innermost block instead
+				blocks.remove(blocks.size()-1);
+				index = blockIndices.remove(blockIndices.size()-1);
+				siblings = blocks.isEmpty() ? oldFolds :
+						blocks.get(blocks.size()-1).getChildren();
+			}
+			if (index>0) {
+				startLine = siblings.get(index-1).getEndLine() + 1;
+			}
+			else {
+				startLine = blocks.isEmpty() ? 0 :
+						blocks.get(blocks.size()-1).getStartLine() + 1;
+			}
+		}
+
+		// Detach the folds after the start of the scan, remembering the
+		// number of old folds kept at each level (not counting the blocks).
+		int depth = blocks.size();
+		tails = new ArrayList<>(depth + 1);
+		nextInTail = new int[depth + 1];
+		prevEndLines = new int[depth + 1];
+		int[] keptCounts = new int[depth + 1];
+		for (int level=0; level<=depth; level++) {
+			keptCounts[level] = level<depth ? blockIndices.get(level) : index;
+			int keep = level<depth ? keptCounts[level] + 1 : index;
+			if (level==0) {
+				folds = new ArrayList<>(oldFolds.subList(0, keep));
+				tails.add(new ArrayList<>(
+						oldFolds.subList(keep, oldFolds.size())));
+				prevEndLines[0] = keep==0 ? -1 :
+						getPrevEndLine(oldFolds.get(keep-1));
+			}
+			else {
+				Fold block = blocks.get(level-1);
+				prevEndLines[level] = keep==0 ? block.getStartLine() :
+						getPrevEndLine(block.getChild(keep-1));
+				tails.add(block.removeChildrenFrom(keep));
+			}
+		}
+
+		// The blocks end wherever the scan finds their ends now, unless it
+		// catches back up while they're still open
+		int[] oldEndOffsets = new int[depth];
+		for (int i=0; i<depth; i++) {
+			oldEndOffsets[i] = blocks.get(i).getEndOffset();
+			blocks.get(i).clearEndOffset();
+		}
+
+		currentFold = depth>0 ? blocks.get(depth-1) : null;
+		int resumeLevel = -1;
+		int lineCount = textArea.getLineCount();
+
+		try {
+			for (int line=startLine; line<lineCount; line++) {
+				if (line>lastLine && isIdle()) {
+					int level = getBlockLevel(currentFold);
+					if (level>-1 && canResume(level, line)) {
+						resumeLevel = level;
+						break;
+					}
+				}
+				scanLine(line, textArea.getTokenListForLine(line));
+			}
+			for (int i=0; i<resumeLevel; i++) {
+				if (oldEndOffsets[i]!=Integer.MAX_VALUE) {
+					blocks.get(i).setEndOffset(oldEndOffsets[i]);
+				}
+			}
+
+			// A block left open at the end of the document should end where
+			// it was last closed, which may have been before where we started
+			// (e.g. "} else {" with no closing curly).  We can't know that,
+			// so give up.
+			if (resumeLevel==-1) {
+				for (Fold fold=currentFold; fold!=null; fold=fold.getParent()) {
+					int level = getBlockLevel(fold);
+					if (level>0 && fold.getEndOffset()==Integer.MAX_VALUE &&
+							oldEndOffsets[level-1]!=Integer.MAX_VALUE) {
+						restore(oldEndOffsets, keptCounts);
+						return null;
+					}
+				}
+			}
+		} catch (BadLocationException ble) { // Should never happen
+			ble.printStackTrace();
+		}
+
+		// Keep the collapsed state of the folds that were replaced
+		List<Fold> replaced = new ArrayList<>();
+		for (int level=depth; level>=resumeLevel && level>=0; level--) {
+			List<Fold> tail = tails.get(level);
+			replaced.addAll(level==resumeLevel ?
+					tail.subList(0, nextInTail[level]) : tail);
+		}
+		for (int level=0; level<=depth; level++) {
+			List<Fold> siblingList = level==0 ? folds :
+					blocks.get(level-1).getChildren();
+			if (siblingList!=null) {
+				int first = keptCounts[level];
+				if (level<depth && first<siblingList.size() &&
+						siblingList.get(first)==blocks.get(level)) {
+					first++; // The block wasn't removed as a single-line fold
+				}
+				DefaultFoldManager.keepFoldStates(
+						siblingList.subList(first, siblingList.size()),
+						replaced);
+			}
+		}
+
+		// Re-attach the old folds after the point we caught back up
+		for (int level=0; level<=resumeLevel; level++) {
+			List<Fold> tail = tails.get(level);
+			if (level==resumeLevel) {
+				tail = tail.subList(nextInTail[level], tail.size());
+			}
+			if (level==0) {
+				folds.addAll(tail);
+			}
+			else {
+				blocks.get(level-1).addChildren(tail);
+			}
+		}
+		for (int level=depth; level>0; level--) {
+			blocks.get(level-1).resetChildCollapsedLineCount();
+		}
+
+		return folds;
+
+	}
+
+
+	/**
+	 * Restores the blocks a re-scan started in to how they were before it.
+	 *
+	 * @param oldEndOffsets The old end offsets of the blocks.
+	 * @param keptCounts The number of old folds kept at each level of the
+	 *        tree, not counting the blocks.
+	 */
+	private void restore(int[] oldEndOffsets, int[] keptCounts)
+			throws BadLocationException {
+		for (int level=1; level<=blocks.size(); level++) {
+			Fold block = blocks.get(level-1);
+			block.removeChildrenFrom(keptCounts[level]);
+			if (level<blocks.size()) {
+				block.addChildren(Collections.singletonList(blocks.get(level)));
+			}
+			block.addChildren(tails.get(level));
+			if (oldEndOffsets[level-1]==Integer.MAX_VALUE) {
+				block.clearEndOffset();
+			}
+			else {
+				block.setEndOffset(oldEndOffsets[level-1]);
+			}
+		}
+	}
+
+
+	/**
+	 * Scans the entire text area.
+	 *
+	 * @return The top-level folds.
+	 */
+	List<Fold> scanAll() {
+
+		folds = new ArrayList<>();
+		int lineCount = textArea.getLineCount();
+
+		try {
+			for (int line=0; line<lineCount; line++) {
+				scanLine(line, textArea.getTokenListForLine(line));
+			}
+		} catch (BadLocationException ble) { // Should never happen
+			ble.printStackTrace();
+		}
+
+		return folds;
+
+	}
+
+
+	/**
+	 * Looks for the starts and ends of folds on a line.
+	 *
+	 * @param line The line being scanned.
+	 * @param t The tokens on the line.
+	 * @throws BadLocationException If an error occurs creating a fold.
+	 */
+	protected abstract void scanLine(int line, Token t)
+			throws BadLocationException;
+
+
+}
@@ -0,0 +1,64 @@
+/*
+ * 10/17/2026
+ *
+ * IncrementalParser.java - A parser that can re-parse just the modified
+ * portion of a document.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea.parser;
+
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+
+
+/**
+ * A {@link Parser} that remembers what it found the last time it parsed a
+ * document, and so can re-parse just the lines that have been modified
+ * since.<p>
+ *
+ * The text area calls {@link #parse(RSyntaxDocument, String, int, int)}
+ * only if this parser also parsed the previous version of the document.
+ * Otherwise (for example, if this parser was just added, was disabled, or
+ * the text area's document was replaced) it calls
+ * {@link #parse(RSyntaxDocument, String)}, which should parse the entire
+ * document and rebuild any remembered state.<p>
+ *
+ * Since the text area may discard the results of a parse (for example, if
+ * parsing asynchronously and the document is modified while parsing), the
+ * line range passed to the next call may include lines this parser has
+ * already seen in their current form.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see TaskTagParser
+ */
+public interface IncrementalParser extends Parser {
+
+
+	/**
+	 * Parses input from the specified document, given that only the
+	 * specified lines have been modified since the last time this parser
+	 * was run.  Lines before <code>firstLine</code> are unchanged, as are
+	 * lines after <code>lastLine</code>, though the latter may have moved
+	 * if lines were inserted or removed.<p>
+	 *
+	 * Parsers should not assume that results outside the modified range are
+	 * unchanged; for example, adding a "<code>/*</code>" to a line can
+	 * change the meaning of all lines after it.
+	 *
+	 * @param doc The document to parse.  This document is in a read lock,
+	 *        so it cannot be modified while parsing is occurring.
+	 * @param style The language being rendered, such as
+	 *        {@link org.fife.ui.rsyntaxtextarea.SyntaxConstants#SYNTAX_STYLE_JAVA}.
+	 * @param firstLine The first line that may have been modified.
+	 * @param lastLine The last line that may have been modified.
+	 * @return An object describing the section of the document parsed and the
+	 *         results.  This is guaranteed to be non-<code>null</code>.
+	 * @see #parse(RSyntaxDocument, String)
+	 */
+	ParseResult parse(RSyntaxDocument doc, String style, int firstLine,
+					int lastLine);
+
+
+}
@@ -9,29 +9,62 @@
 package org.fife.ui.rsyntaxtextarea.parser;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.swing.text.Element;
 
+import org.fife.ui.rsyntaxtextarea.DocumentTokenizer;
 import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
 import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
 import org.fife.ui.rsyntaxtextarea.Token;
+import org.fife.util.DynamicIntArray;
 
 
 /**
  * Parser that identifies "task tags," such as "<code>TODO</code>",
- * "<code>FIXME</code>", etc. in source code comments.
+ * "<code>FIXME</code>", etc. in source code comments.<p>
+ *
+ * This parser remembers the tasks it found on each line, so when the
+ * document is edited, only the modified lines (and any lines whose comments
+ * were affected by the edit) are scanned again.
  *
  * @author Robert Futrell
  * @version 1.0
  */
-public class TaskTagParser extends AbstractParser {
+public class TaskTagParser extends AbstractParser
+		implements IncrementalParser {
 
 	private DefaultParseResult result;
 	private static final String DEFAULT_TASK_PATTERN	= "TODO|FIXME|HACK";
 	private Pattern taskPattern;
 
+	/**
+	 * The type of the last token on each line the last time the document
+	 * was parsed, or <code>null</code> if we don't know.  If an edit doesn't
+	 * change the last token type of a line, the lines after it are
+	 * tokenized as they were before.
+	 */
+	private DynamicIntArray lineEndTokenTypes;
+
+	/**
+	 * The tasks found the last time the document was parsed, sorted by
+	 * line.
+	 */
+	private List<TaskNotice> tasks;
+
+	/**
+	 * The syntax style of the document the last time it was parsed.
+	 */
+	private String lastStyle;
+
+	/**
+	 * The length of the document the last time it was parsed.
+	 */
+	private int lastLength;
+
 	private static final Color COLOR = new Color(48, 150, 252);
 
 
@@ -59,6 +92,52 @@ public class TaskTagParser extends AbstractParser {
 	}
 
 
+	/**
+	 * Invalidates everything remembered about the last document parsed, so
+	 * the next parsing scans the entire document.
+	 */
+	private void clearCache() {
+		lineEndTokenTypes = null;
+		tasks = null;
+	}
+
+
+	/**
+	 * Creates the notice for a task.
+	 *
+	 * @param text The text of the task.
+	 * @param line The line containing the task.
+	 * @param offs The offset of the task in the document.
+	 * @return The notice.
+	 */
+	private TaskNotice createNotice(String text, int line, int offs) {
+		TaskNotice pn = new TaskNotice(this, text, line + 1, offs,
+				text.length());
+		pn.setLevel(ParserNotice.Level.INFO);
+		pn.setShowInEditor(false);
+		pn.setColor(COLOR);
+		return pn;
+	}
+
+
+	/**
+	 * Returns the result of a parsing, containing all known tasks.
+	 *
+	 * @param lineCount The number of lines in the document.
+	 * @return The result.
+	 */
+	private ParseResult createResult(int lineCount) {
+		result.clearNotices();
+		result.setParsedLines(0, lineCount-1);
+		if (tasks!=null) {
+			for (TaskNotice task : tasks) {
+				result.addNotice(task);
+			}
+		}
+		return result;
+	}
+
+
 	@Override
 	public ParseResult parse(RSyntaxDocument doc, String style) {
 
@@ -67,53 +146,148 @@ public class TaskTagParser extends AbstractParser {
 
 		if (taskPattern==null ||
 				style==null || SyntaxConstants.SYNTAX_STYLE_NONE.equals(style)){
-			result.clearNotices();
-			result.setParsedLines(0, lineCount-1);
-			return result;
+			clearCache();
+			return createResult(lineCount);
 		}
 
-		// TODO: Pass in parsed line range and just do that
-		result.clearNotices();
-		result.setParsedLines(0, lineCount-1);
+		// Use our own tokenizer so we don't have to run on the EDT
+		DocumentTokenizer tokenizer = doc.newTokenizer();
 
+		lineEndTokenTypes = new DynamicIntArray(lineCount);
+		tasks = new ArrayList<>();
+		int endTokenType = Token.NULL;
 		for (int line=0; line<lineCount; line++) {
+			endTokenType = scanLine(tokenizer, line, endTokenType, tasks);
+			lineEndTokenTypes.add(endTokenType);
+		}
+		lastStyle = style;
+		lastLength = doc.getLength();
 
-			Token t = doc.getTokenListForLine(line);
-			int offs = -1;
-			int start = -1;
-			String text = null;
+		return createResult(lineCount);
 
-			while (t!=null && t.isPaintable()) {
-				if (t.isComment()) {
+	}
 
-					offs = t.getOffset();
-					text = t.getLexeme();
 
-					Matcher m = taskPattern.matcher(text);
-					if (m.find()) {
-						start = m.start();
-						offs += start;
-						break;
-					}
+	/**
+	 * Re-scans only the lines that were modified, and any lines after them
+	 * whose tokens were changed by the edit (e.g. by the start of a
+	 * multi-line comment being added or removed).  Tasks found on other
+	 * lines last time are kept, and moved if lines were inserted or
+	 * removed above them.
+	 */
+	@Override
+	public ParseResult parse(RSyntaxDocument doc, String style,
+							int firstLine, int lastLine) {
 
+		Element root = doc.getDefaultRootElement();
+		int lineCount = root.getElementCount();
+		int lineDelta = lineEndTokenTypes==null ? 0 :
+				lineCount - lineEndTokenTypes.getSize();
+
+		// If we don't know what the document looked like before, or if we're
+		// told something that doesn't make sense, scan the whole thing.
+		if (lineEndTokenTypes==null || !lastStyle.equals(style) ||
+				firstLine<0 || lastLine>=lineCount || firstLine>lastLine ||
+				lastLine-firstLine+1-lineDelta<1) {
+			return parse(doc, style);
+		}
+
+		// Make room for the token types of the lines now in the modified
+		// range.  After this, lines after that range have their old values
+		if (lineDelta>0) {
+			lineEndTokenTypes.insertRange(firstLine, lineDelta, Token.NULL);
+		}
+		else if (lineDelta<0) {
+			lineEndTokenTypes.removeRange(firstLine, firstLine-lineDelta);
+		}
+
+		// Lines after lastLine only need to be scanned until one ends in the
+		// same state it did before the edit.  Lines before the edit end as
+		// they did before, so the document needn't lex them to find the
+		// state the first line starts in.
+		DocumentTokenizer tokenizer = doc.newTokenizer();
+		List<TaskNotice> newTasks = new ArrayList<>();
+		int line = firstLine;
+		int endTokenType = firstLine>0 ?
+				lineEndTokenTypes.get(firstLine-1) : Token.NULL;
+		while (line<lineCount) {
+			endTokenType = scanLine(tokenizer, line, endTokenType, newTasks);
+			int oldEndTokenType = lineEndTokenTypes.get(line);
+			lineEndTokenTypes.set(line, endTokenType);
+			if (line++>=lastLine && endTokenType==oldEndTokenType) {
+				break;
+			}
+		}
+		int oldEnd = line - lineDelta; // First line not scanned, before edit
+
+		int charDelta = doc.getLength() - lastLength;
+		List<TaskNotice> updated = new ArrayList<>(tasks.size() +
+				newTasks.size());
+		int i = 0;
+		for (; i<tasks.size() && tasks.get(i).getLine()-1<firstLine; i++) {
+			updated.add(tasks.get(i));
+		}
+		updated.addAll(newTasks);
+		for (; i<tasks.size(); i++) {
+			TaskNotice task = tasks.get(i);
+			int taskLine = task.getLine() - 1;
+			if (taskLine>=oldEnd) {
+				if (lineDelta!=0 || charDelta!=0) {
+					task = createNotice(task.getMessage(), taskLine + lineDelta,
+							task.getOffset() + charDelta);
 				}
-				t = t.getNextToken();
+				updated.add(task);
 			}
+		}
+		tasks = updated;
+		lastLength = doc.getLength();
 
-			if (start>-1 && text != null) { // "text != null" just for Sonar
-				text = text.substring(start);
-				// TODO: Strip off end of MLC's if they're there.
-				int len = text.length();
-				TaskNotice pn = new TaskNotice(this, text, line + 1, offs, len);
-				pn.setLevel(ParserNotice.Level.INFO);
-				pn.setShowInEditor(false);
-				pn.setColor(COLOR);
-				result.addNotice(pn);
-			}
+		return createResult(lineCount);
+
+	}
 
+
+	/**
+	 * Looks for a task in a comment on a line.
+	 *
+	 * @param tokenizer The tokenizer to use.
+	 * @param line The line to scan.
+	 * @param initialTokenType The type of the last token on the previous
+	 *        line.
+	 * @param tasks If a task is found, it is added to this list.
+	 * @return The type of the last token on the line.
+	 */
+	private int scanLine(DocumentTokenizer tokenizer, int line,
+						int initialTokenType, List<TaskNotice> tasks) {
+
+		Token t = tokenizer.getTokenListForLine(line, initialTokenType);
+		if (t==null) { // Document modified without a read lock
+			return Token.NULL;
 		}
 
-		return result;
+		while (true) {
+			if (t.isComment()) {
+				String text = t.getLexeme();
+				Matcher m = taskPattern.matcher(text);
+				if (m.find()) {
+					int start = m.start();
+					// TODO: Strip off end of MLC's if they're there.
+					tasks.add(createNotice(text.substring(start), line,
+							t.getOffset() + start));
+					break;
+				}
+			}
+			if (t.getNextToken()==null) {
+				return t.getType();
+			}
+			t = t.getNextToken();
+		}
+
+		// Only need the last token's type from here on out
+		while (t.getNextToken()!=null) {
+			t = t.getNextToken();
+		}
+		return t.getType();
 
 	}
 
@@ -136,6 +310,7 @@ public class TaskTagParser extends AbstractParser {
 		else {
 			taskPattern = Pattern.compile(pattern);
 		}
+		clearCache();
 	}
 
 
@@ -0,0 +1,196 @@
+/*
+ * 10/17/2026
+ *
+ * LiteralMatcher.java - Finds occurrences of literal text.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rtextarea;
+
+
+/**
+ * Finds occurrences of a literal string in text, forward or backward, using
+ * the Boyer-Moore-Horspool algorithm.  This examines only a fraction of the
+ * characters searched for all but the shortest strings, and works with any
+ * <code>CharSequence</code>, so documents can be searched without copying
+ * their contents.<p>
+ *
+ * Case-insensitive searches compare characters one at a time after
+ * converting them to lower case, so no lower-cased copy of the text is
+ * needed either.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+final class LiteralMatcher {
+
+	private char[] chars;
+	private boolean matchCase;
+
+	/**
+	 * For each character (hashed into the table by its low byte), how far
+	 * the search can skip forward when it's the last character examined.
+	 */
+	private int[] forwardSkips;
+
+	/**
+	 * For each character (hashed into the table by its low byte), how far
+	 * the search can skip backward when it's the first character examined.
+	 */
+	private int[] backwardSkips;
+
+	private static final int TABLE_SIZE = 256;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param searchFor The text to search for.
+	 * @param matchCase Whether the search is case-sensitive.
+	 */
+	LiteralMatcher(String searchFor, boolean matchCase) {
+
+		this.matchCase = matchCase;
+		int len = searchFor.length();
+		chars = new char[len];
+		for (int i=0; i<len; i++) {
+			chars[i] = fold(searchFor.charAt(i));
+		}
+
+		// Characters sharing a slot get the smallest skip of any of them
+		forwardSkips = new int[TABLE_SIZE];
+		backwardSkips = new int[TABLE_SIZE];
+		for (int i=0; i<TABLE_SIZE; i++) {
+			forwardSkips[i] = backwardSkips[i] = len;
+		}
+		for (int i=0; i<len-1; i++) {
+			forwardSkips[chars[i]&(TABLE_SIZE-1)] = len - 1 - i;
+		}
+		for (int i=len-1; i>0; i--) {
+			backwardSkips[chars[i]&(TABLE_SIZE-1)] = i;
+		}
+
+	}
+
+
+	/**
+	 * Returns a character as it should be compared.
+	 *
+	 * @param ch The character.
+	 * @return The character, possibly converted to lower case.
+	 */
+	private char fold(char ch) {
+		return matchCase ? ch : Character.toLowerCase(ch);
+	}
+
+
+	/**
+	 * Returns the length of the text being searched for.
+	 *
+	 * @return The length of the text.
+	 */
+	int getLength() {
+		return chars.length;
+	}
+
+
+	/**
+	 * Returns the offset of the first occurrence of the text being searched
+	 * for, at or after an offset.
+	 *
+	 * @param text The text to search in.
+	 * @param fromIndex The offset to start searching at.
+	 * @return The offset of the match, or <code>-1</code> if there isn't
+	 *         one.
+	 * @see #lastIndexOf(CharSequence, int)
+	 */
+	int indexOf(CharSequence text, int fromIndex) {
+
+		int len = chars.length;
+		int end = text.length() - len;
+		if (len==0) { // Same as String.indexOf("")
+			return Math.min(Math.max(fromIndex, 0), end);
+		}
+		int last = len - 1;
+		char lastChar = chars[last];
+
+		for (int i=Math.max(fromIndex, 0); i<=end; ) {
+			char ch = fold(text.charAt(i+last));
+			if (ch==lastChar) {
+				int j = last - 1;
+				while (j>=0 && fold(text.charAt(i+j))==chars[j]) {
+					j--;
+				}
+				if (j<0) {
+					return i;
+				}
+			}
+			i += forwardSkips[ch&(TABLE_SIZE-1)];
+		}
+
+		return -1;
+
+	}
+
+
+	/**
+	 * Returns whether the text being searched for occurs at an offset.
+	 *
+	 * @param text The text to search in.
+	 * @param offs The offset to check.
+	 * @return Whether there is an occurrence starting at <code>offs</code>.
+	 */
+	boolean matchesAt(CharSequence text, int offs) {
+		int len = chars.length;
+		if (offs<0 || offs+len>text.length()) {
+			return false;
+		}
+		for (int i=0; i<len; i++) {
+			if (fold(text.charAt(offs+i))!=chars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Returns the offset of the last occurrence of the text being searched
+	 * for, at or before an offset.
+	 *
+	 * @param text The text to search in.
+	 * @param fromIndex The offset to start searching backward from.  Only
+	 *        matches starting at or before this offset are returned.
+	 * @return The offset of the match, or <code>-1</code> if there isn't
+	 *         one.
+	 * @see #indexOf(CharSequence, int)
+	 */
+	int lastIndexOf(CharSequence text, int fromIndex) {
+
+		int len = chars.length;
+		if (len==0) { // Same as String.lastIndexOf("")
+			return fromIndex<0 ? -1 : Math.min(fromIndex, text.length());
+		}
+		char firstChar = chars[0];
+
+		for (int i=Math.min(fromIndex, text.length()-len); i>=0; ) {
+			char ch = fold(text.charAt(i));
+			if (ch==firstChar) {
+				int j = 1;
+				while (j<len && fold(text.charAt(i+j))==chars[j]) {
+					j++;
+				}
+				if (j==len) {
+					return i;
+				}
+			}
+			i -= backwardSkips[ch&(TABLE_SIZE-1)];
+		}
+
+		return -1;
+
+	}
+
+
+}
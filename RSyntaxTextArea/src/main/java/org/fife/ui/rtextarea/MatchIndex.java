@@ -0,0 +1,528 @@
+/*
+ * 10/17/2026
+ *
+ * MatchIndex.java - The matches of a search, kept up to date as the document
+ * is edited.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rtextarea;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+import org.fife.ui.rsyntaxtextarea.DocumentRange;
+import org.fife.util.DynamicIntArray;
+
+
+/**
+ * The matches of a search in a text area's document, kept up to date as the
+ * document is edited.<p>
+ *
+ * Since no match can contain a newline for most searches, only the lines
+ * around an edit are searched again.  Regular expressions that may match
+ * across lines cause the whole document to be searched again, but only
+ * when the matches are next needed.<p>
+ *
+ * An edit shifts every match after it, but, as with
+ * {@link RTextAreaHighlighter.PositionTracker}, the offsets aren't updated
+ * right away.  The shift is remembered for all matches from an index
+ * onward, and only the matches between that index and the next edit's index
+ * are updated when the next edit is somewhere else.  Typing is therefore
+ * constant time no matter how many matches there are.<p>
+ *
+ * If "mark all" is enabled, the text area's "mark all" highlights are
+ * updated to match once all pending edits have been made.  Only the
+ * highlights in the region of the document whose matches changed are
+ * updated, which also notifies any
+ * {@link org.fife.ui.rsyntaxtextarea.ErrorStrip} of the new matches.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see SearchSession
+ * @see RTextArea#setMarkAllIndex(MatchIndex)
+ */
+class MatchIndex implements DocumentListener {
+
+	private RTextArea textArea;
+	private Document doc;
+
+	/**
+	 * Finds matches in the document, or <code>null</code> if the search is
+	 * an invalid regular expression.
+	 */
+	private SearchEngine.MatchFinder finder;
+
+	/**
+	 * The start and end offsets of the matches, in document order.  The
+	 * offsets at and after {@link #deltaIndex} must have {@link #delta}
+	 * added to them to get their actual values.
+	 */
+	private DynamicIntArray matchStarts;
+	private DynamicIntArray matchEnds;
+	private int deltaIndex;
+	private int delta;
+
+	/**
+	 * Whether an edit was made that requires searching the entire document
+	 * again.
+	 */
+	private boolean fullSearchNeeded;
+
+	/**
+	 * Whether the text area's "mark all" highlights show these matches.
+	 */
+	private boolean markAll;
+
+	private boolean markAllUpdatePending;
+
+	/**
+	 * The region of the document whose matches changed since the "mark
+	 * all" highlights were last updated, adjusted for later edits.  This is
+	 * only valid while an update is pending.  An end offset of
+	 * <code>Integer.MAX_VALUE</code> means the entire document.
+	 */
+	private int dirtyStart;
+	private int dirtyEnd;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param textArea The text area whose document to search.
+	 * @param context The search.  Later changes to it have no effect.
+	 * @param matches The matches, or <code>null</code> to search the
+	 *        document when they're first needed.
+	 * @param markAll Whether to keep the text area's "mark all" highlights
+	 *        up to date with the matches.
+	 */
+	MatchIndex(RTextArea textArea, SearchContext context,
+			List<DocumentRange> matches, boolean markAll) {
+		this.textArea = textArea;
+		this.markAll = markAll;
+		doc = textArea.getDocument();
+		finder = SearchEngine.createMatchFinder(getText(), context);
+		matchStarts = new DynamicIntArray();
+		matchEnds = new DynamicIntArray();
+		if (matches!=null) {
+			setMatches(matches);
+		}
+		else {
+			fullSearchNeeded = finder!=null;
+		}
+		doc.addDocumentListener(this);
+	}
+
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+	}
+
+
+	/**
+	 * Stops listening for document changes.  Any pending highlight update
+	 * is discarded.
+	 */
+	void dispose() {
+		markAllUpdatePending = false;
+		doc.removeDocumentListener(this);
+	}
+
+
+	/**
+	 * Returns the index of the first match ending at or after an offset.
+	 *
+	 * @param offs The offset.
+	 * @return The index, or the match count if all matches end before the
+	 *         offset.
+	 */
+	int getFirstIndexEndingAtOrAfter(int offs) {
+		searchIfNeeded();
+		int low = 0;
+		int high = matchEnds.getSize();
+		while (low<high) {
+			int mid = (low + high) >>> 1;
+			if (getOffset(matchEnds, mid)<offs) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * Returns the index of the first match starting at or after an offset.
+	 *
+	 * @param offs The offset.
+	 * @return The index, or the match count if all matches start before the
+	 *         offset.
+	 */
+	int getFirstIndexStartingAtOrAfter(int offs) {
+		searchIfNeeded();
+		int low = 0;
+		int high = matchStarts.getSize();
+		while (low<high) {
+			int mid = (low + high) >>> 1;
+			if (getOffset(matchStarts, mid)<offs) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * Returns the number of matches.
+	 *
+	 * @return The number of matches.
+	 */
+	int getMatchCount() {
+		searchIfNeeded();
+		return matchStarts.getSize();
+	}
+
+
+	/**
+	 * Returns the end offset of a match.
+	 *
+	 * @param index The index of the match.
+	 * @return The end offset.
+	 */
+	int getMatchEnd(int index) {
+		searchIfNeeded();
+		return getOffset(matchEnds, index);
+	}
+
+
+	/**
+	 * Returns the matches.
+	 *
+	 * @return The matches, in document order.
+	 */
+	List<DocumentRange> getMatches() {
+		searchIfNeeded();
+		return getMatches(0, matchStarts.getSize());
+	}
+
+
+	/**
+	 * Returns a range of the matches.
+	 *
+	 * @param from The index of the first match to return.
+	 * @param to The index after the last match to return.
+	 * @return The matches.
+	 */
+	private List<DocumentRange> getMatches(int from, int to) {
+		List<DocumentRange> matches = new ArrayList<>(to - from);
+		for (int i=from; i<to; i++) {
+			matches.add(new DocumentRange(getOffset(matchStarts, i),
+					getOffset(matchEnds, i)));
+		}
+		return matches;
+	}
+
+
+	/**
+	 * Returns the start offset of a match.
+	 *
+	 * @param index The index of the match.
+	 * @return The start offset.
+	 */
+	int getMatchStart(int index) {
+		searchIfNeeded();
+		return getOffset(matchStarts, index);
+	}
+
+
+	private int getOffset(DynamicIntArray offsets, int index) {
+		int offs = offsets.getUnsafe(index);
+		return index<deltaIndex ? offs : offs+delta;
+	}
+
+
+	/**
+	 * Returns the document's text.  For <code>RDocument</code>s, this
+	 * doesn't make a copy.
+	 */
+	private CharSequence getText() {
+		return SearchEngine.getFindInCharSequence(textArea, 0, true);
+	}
+
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+
+		int offs = e.getOffset();
+		int len = e.getLength();
+		if (markAllUpdatePending && dirtyEnd!=Integer.MAX_VALUE) {
+			if (dirtyStart>offs) {
+				dirtyStart += len;
+			}
+			if (dirtyEnd>=offs) {
+				dirtyEnd += len;
+			}
+		}
+		if (finder==null) {
+			return;
+		}
+
+		if (finder.isLineLocal() && !fullSearchNeeded) {
+			// A match spanning the insertion point grows to include the
+			// inserted text until the lines around it are searched again,
+			// just like its highlight
+			int index = getFirstIndexStartingAtOrAfter(offs);
+			moveDelta(index);
+			delta += len;
+			if (index>0 && matchEnds.getUnsafe(index-1)>offs) {
+				matchEnds.setUnsafe(index-1, matchEnds.getUnsafe(index-1)+len);
+			}
+			// Highlights at offset 0 don't move when text is inserted there
+			rescanLines(offs, offs + len, offs==0);
+		}
+		else {
+			fullSearchNeeded = true;
+			scheduleMarkAllUpdate(0, Integer.MAX_VALUE);
+		}
+
+	}
+
+
+	/**
+	 * Changes the index the pending shift applies from, updating the
+	 * offsets in between.
+	 *
+	 * @param index The new index.
+	 */
+	private void moveDelta(int index) {
+		for (int i=index; i<deltaIndex; i++) {
+			matchStarts.setUnsafe(i, matchStarts.getUnsafe(i) - delta);
+			matchEnds.setUnsafe(i, matchEnds.getUnsafe(i) - delta);
+		}
+		for (int i=deltaIndex; i<index; i++) {
+			matchStarts.setUnsafe(i, matchStarts.getUnsafe(i) + delta);
+			matchEnds.setUnsafe(i, matchEnds.getUnsafe(i) + delta);
+		}
+		deltaIndex = index;
+	}
+
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+
+		int offs = e.getOffset();
+		int len = e.getLength();
+		if (markAllUpdatePending && dirtyEnd!=Integer.MAX_VALUE) {
+			if (dirtyStart>offs) {
+				dirtyStart = Math.max(dirtyStart - len, offs);
+			}
+			if (dirtyEnd>offs) {
+				dirtyEnd = Math.max(dirtyEnd - len, offs);
+			}
+		}
+		if (finder==null) {
+			return;
+		}
+
+		if (finder.isLineLocal() && !fullSearchNeeded) {
+			// Matches starting in the removed text are gone, and a match
+			// spanning it shrinks, until the lines around it are searched
+			// again
+			int from = getFirstIndexStartingAtOrAfter(offs);
+			int to = getFirstIndexStartingAtOrAfter(offs + len);
+			moveDelta(to);
+			replaceMatches(from, to, new int[0], new int[0]);
+			delta -= len;
+			boolean spanned = from>0 && matchEnds.getUnsafe(from-1)>offs;
+			if (spanned) {
+				int end = matchEnds.getUnsafe(from-1);
+				matchEnds.setUnsafe(from-1, Math.max(end - len, offs));
+			}
+			// The highlights of removed matches collapse to the removal
+			// point, and no longer match these offsets
+			rescanLines(offs, offs, from<to || spanned);
+		}
+		else {
+			fullSearchNeeded = true;
+			scheduleMarkAllUpdate(0, Integer.MAX_VALUE);
+		}
+
+	}
+
+
+	/**
+	 * Replaces a range of matches.  All offsets before <code>to</code> must
+	 * be up to date, i.e. {@link #deltaIndex} must be at least
+	 * <code>to</code>.
+	 *
+	 * @param from The index of the first match to replace.
+	 * @param to The index after the last match to replace.
+	 * @param starts The start offsets of the new matches.
+	 * @param ends The end offsets of the new matches.
+	 */
+	private void replaceMatches(int from, int to, int[] starts, int[] ends) {
+		if (from<to) {
+			matchStarts.removeRange(from, to);
+			matchEnds.removeRange(from, to);
+		}
+		if (starts.length>0) {
+			matchStarts.add(from, starts);
+			matchEnds.add(from, ends);
+		}
+		deltaIndex += starts.length - (to - from);
+	}
+
+
+	/**
+	 * Searches the lines around an edit again.  The lines before and after
+	 * the edit are included, since whole word checks and some regular
+	 * expression constructs look past line ends.  If the matches changed,
+	 * the "mark all" highlights for those lines are updated later.
+	 *
+	 * @param start The start offset of the edit.
+	 * @param end The end offset of the edit.
+	 * @param updateMarkAll Whether to update the "mark all" highlights for
+	 *        those lines even if the matches didn't change.
+	 */
+	private void rescanLines(int start, int end, boolean updateMarkAll) {
+
+		CharSequence text = getText();
+		Element root = doc.getDefaultRootElement();
+		int firstLine = Math.max(root.getElementIndex(start) - 1, 0);
+		int lastLine = Math.min(root.getElementIndex(end) + 1,
+				root.getElementCount() - 1);
+		int regionStart = root.getElement(firstLine).getStartOffset();
+		int regionEnd = Math.min(root.getElement(lastLine).getEndOffset(),
+				text.length());
+
+		int from = getFirstIndexStartingAtOrAfter(regionStart);
+		int to = getFirstIndexStartingAtOrAfter(regionEnd);
+		List<DocumentRange> found = finder.createFinder(text, regionStart,
+				regionEnd).findMatches();
+
+		moveDelta(to);
+		boolean changed = found.size()!=to-from;
+		for (int i=0; i<found.size() && !changed; i++) {
+			DocumentRange match = found.get(i);
+			changed = match.getStartOffset()!=matchStarts.getUnsafe(from+i) ||
+					match.getEndOffset()!=matchEnds.getUnsafe(from+i);
+		}
+
+		if (changed) {
+			int[] starts = new int[found.size()];
+			int[] ends = new int[found.size()];
+			for (int i=0; i<starts.length; i++) {
+				starts[i] = found.get(i).getStartOffset();
+				ends[i] = found.get(i).getEndOffset();
+			}
+			replaceMatches(from, to, starts, ends);
+		}
+		if (changed || updateMarkAll) {
+			// Past the end of the document, to include highlights that
+			// collapsed to its end
+			scheduleMarkAllUpdate(regionStart,
+					root.getElement(lastLine).getEndOffset());
+		}
+
+	}
+
+
+	/**
+	 * Schedules the text area's "mark all" highlights in a region of the
+	 * document to be updated after the current document change has been
+	 * processed by the text area.  Several edits made at once result in a
+	 * single update, of the smallest region containing all of theirs.
+	 *
+	 * @param start The start offset of the region.
+	 * @param end The end offset of the region, or
+	 *        <code>Integer.MAX_VALUE</code> for the entire document.
+	 */
+	private void scheduleMarkAllUpdate(int start, int end) {
+		if (!markAll) {
+			return;
+		}
+		if (markAllUpdatePending) {
+			dirtyStart = Math.min(dirtyStart, start);
+			dirtyEnd = Math.max(dirtyEnd, end);
+			return;
+		}
+		markAllUpdatePending = true;
+		dirtyStart = start;
+		dirtyEnd = end;
+		SwingUtilities.invokeLater(() -> {
+			if (markAllUpdatePending) { // Not disposed of
+				markAllUpdatePending = false;
+				updateMarkAllHighlights();
+			}
+		});
+	}
+
+
+	/**
+	 * Searches the entire document again, if an edit requires it.
+	 */
+	private void searchIfNeeded() {
+		if (fullSearchNeeded) {
+			fullSearchNeeded = false;
+			CharSequence text = getText();
+			setMatches(finder.createFinder(text, 0, text.length()).
+					findMatches());
+		}
+	}
+
+
+	/**
+	 * Sets whether the text area's "mark all" highlights show these
+	 * matches.  This does not update the highlights.
+	 *
+	 * @param markAll Whether to keep the highlights up to date.
+	 */
+	void setMarkAll(boolean markAll) {
+		this.markAll = markAll;
+		if (!markAll) {
+			markAllUpdatePending = false;
+		}
+	}
+
+
+	private void setMatches(List<DocumentRange> matches) {
+		matchStarts.clear();
+		matchEnds.clear();
+		for (DocumentRange match : matches) {
+			matchStarts.add(match.getStartOffset());
+			matchEnds.add(match.getEndOffset());
+		}
+		deltaIndex = delta = 0;
+	}
+
+
+	/**
+	 * Updates the text area's "mark all" highlights in the region whose
+	 * matches changed.
+	 */
+	private void updateMarkAllHighlights() {
+		if (dirtyEnd==Integer.MAX_VALUE) {
+			textArea.updateMarkAllHighlights(getMatches());
+		}
+		else {
+			int from = getFirstIndexStartingAtOrAfter(dirtyStart);
+			int to = getFirstIndexStartingAtOrAfter(dirtyEnd);
+			textArea.updateMarkAllHighlights(dirtyStart, dirtyEnd,
+					getMatches(from, to));
+		}
+	}
+
+
+}
@@ -42,10 +42,27 @@ public class RDocument extends PlainDocument {
 	}
 
 
+	/**
+	 * Returns the content holding this document's text.
+	 *
+	 * @return The content.
+	 * @see RDocumentCharSequence
+	 */
+	RGapContent getGapContent() {
+		return (RGapContent)getContent();
+	}
+
+
 	/**
 	 * Document content that provides fast access to individual characters.
+	 * {@link RDocumentCharSequence} also reads its gap buffer directly.
 	 */
-	private static class RGapContent extends GapContent {
+	static class RGapContent extends GapContent {
+
+		/**
+		 * Incremented whenever the text or the gap buffer changes.
+		 */
+		private int changeCount;
 
 		public char charAt(int offset) throws BadLocationException {
 			if (offset<0 || offset>=length()) {
@@ -59,6 +76,43 @@ public class RDocument extends PlainDocument {
 			return array[getGapEnd() + offset - g0]; // above gap
 		}
 
+		/**
+		 * Returns the gap buffer.  The text before the gap is at the start
+		 * of the array, and the text after it is at the end.
+		 *
+		 * @return The gap buffer.  This should not be modified.
+		 * @see #getBufferGapStart()
+		 * @see #getBufferGapEnd()
+		 */
+		char[] getBuffer() {
+			return (char[])getArray();
+		}
+
+		int getBufferGapEnd() {
+			return getGapEnd();
+		}
+
+		int getBufferGapStart() {
+			return getGapStart();
+		}
+
+		/**
+		 * Returns a count that changes whenever the text or gap buffer
+		 * changes, so views of the buffer know when to look at it again.
+		 *
+		 * @return The change count.
+		 */
+		int getChangeCount() {
+			return changeCount;
+		}
+
+		@Override
+		protected void replace(int rmOffs, int rmSize, Object addItems,
+				int addSize) {
+			super.replace(rmOffs, rmSize, addItems, addSize);
+			changeCount++;
+		}
+
 	}
 
 
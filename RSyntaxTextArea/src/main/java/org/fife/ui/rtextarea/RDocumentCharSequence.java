@@ -9,13 +9,16 @@
  */
 package org.fife.ui.rtextarea;
 
-import javax.swing.text.BadLocationException;
-
 
 /**
  * Allows iterating over a portion of an <code>RDocument</code>.  This is of
  * course not thread-safe, so should only be used on the EDT or with external
- * synchronization.
+ * synchronization.<p>
+ *
+ * Characters are read straight from the two halves of the document's gap
+ * buffer, without copying the text, so regular expressions can scan large
+ * documents about as fast as they scan a <code>String</code>.  The sequence
+ * looks at the buffer again whenever the document changes.
  *
  * @author Robert Futrell
  * @version 1.0
@@ -26,6 +29,16 @@ class RDocumentCharSequence implements CharSequence {
 	private int start;
 	private int end;
 
+	/**
+	 * The document's gap buffer, as of the last time it was looked at.
+	 */
+	private RDocument.RGapContent content;
+	private char[] buffer;
+	private int gapStart;
+	private int gapLength;
+	private int textLength;
+	private int changeCount;
+
 
 	/**
 	 * Creates a <code>CharSequence</code> representing the text in a document
@@ -50,6 +63,8 @@ class RDocumentCharSequence implements CharSequence {
 		this.doc = doc;
 		this.start = start;
 		this.end = end;
+		content = doc.getGapContent();
+		updateBuffer();
 	}
 
 
@@ -59,11 +74,64 @@ class RDocumentCharSequence implements CharSequence {
 			throw new IndexOutOfBoundsException("Index " + index +
 					" is not in range [0-" + length() + ")");
 		}
-		try {
-			return doc.charAt(start+index);
-		} catch (BadLocationException ble) {
-			throw new IndexOutOfBoundsException(ble.toString());
+		if (changeCount!=content.getChangeCount()) {
+			updateBuffer();
+		}
+		int offs = start + index;
+		if (offs<gapStart) {
+			return buffer[offs];
+		}
+		if (offs>=textLength) {
+			throw new IndexOutOfBoundsException("Index " + index +
+					" is past the end of the document");
+		}
+		return buffer[offs + gapLength];
+	}
+
+
+	/**
+	 * Copies characters from this sequence into an array, like
+	 * <code>String.getChars()</code>.
+	 *
+	 * @param srcBegin The index of the first character to copy.
+	 * @param srcEnd The index after the last character to copy.
+	 * @param dst The destination array.
+	 * @param dstBegin The offset in the destination array to copy to.
+	 * @throws IndexOutOfBoundsException If the range is invalid.
+	 */
+	void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+
+		if (srcBegin<0 || srcBegin>srcEnd || srcEnd>length()) {
+			throw new IndexOutOfBoundsException("Invalid range: [" +
+					srcBegin + "-" + srcEnd + ")");
+		}
+		if (changeCount!=content.getChangeCount()) {
+			updateBuffer();
+		}
+		int from = start + srcBegin;
+		int to = start + srcEnd;
+		if (to>textLength) {
+			throw new IndexOutOfBoundsException("Range [" + srcBegin + "-" +
+					srcEnd + ") is past the end of the document");
 		}
+
+		// Copy the part before the gap, then the part after it
+		int beforeGap = Math.max(Math.min(to, gapStart) - from, 0);
+		System.arraycopy(buffer, from, dst, dstBegin, beforeGap);
+		from += beforeGap;
+		System.arraycopy(buffer, from + gapLength, dst, dstBegin + beforeGap,
+				to - from);
+
+	}
+
+
+	/**
+	 * Returns the document this sequence reads from.
+	 *
+	 * @return The document.
+	 */
+	RDocument getDocument() {
+		return doc;
 	}
 
 
@@ -99,12 +167,21 @@ class RDocumentCharSequence implements CharSequence {
 
 	@Override
 	public String toString() {
-		try {
-			return doc.getText(start, length());
-		} catch (BadLocationException ble) { // Never happens
-			ble.printStackTrace();
-			return "";
-		}
+		char[] chars = new char[length()];
+		getChars(0, chars.length, chars, 0);
+		return new String(chars);
+	}
+
+
+	/**
+	 * Looks at the document's gap buffer again, after the document changes.
+	 */
+	private void updateBuffer() {
+		buffer = content.getBuffer();
+		gapStart = content.getBufferGapStart();
+		gapLength = content.getBufferGapEnd() - gapStart;
+		textLength = doc.getLength();
+		changeCount = content.getChangeCount();
 	}
 
 }
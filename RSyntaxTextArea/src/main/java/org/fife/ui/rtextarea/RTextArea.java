@@ -177,6 +177,8 @@ public class RTextArea extends RTextAreaBase implements Printable {
 
 	private boolean markAllOnOccurrenceSearches;
 
+	private transient MatchIndex markAllIndex;
+
 	private CaretStyle[] carets;	// Index 0=>insert caret, 1=>overwrite.
 
 	private static final String MSG	= "org.fife.ui.rtextarea.RTextArea";
@@ -371,6 +373,7 @@ public class RTextArea extends RTextAreaBase implements Printable {
 	 * @see #setMarkAllHighlightColor(Color)
 	 */
 	void clearMarkAllHighlights() {
+		setMarkAllIndex(null);
 		((RTextAreaHighlighter)getHighlighter()).clearMarkAllHighlights();
 		//markedWord = null;
 		repaint();
@@ -972,15 +975,7 @@ public class RTextArea extends RTextAreaBase implements Printable {
 
 			//markedWord = toMark;
 			if (ranges!=null) {
-				for (DocumentRange range : ranges) {
-					try {
-						h.addMarkAllHighlight(
-								range.getStartOffset(), range.getEndOffset(),
-								markAllHighlightPainter);
-					} catch (BadLocationException ble) {
-						ble.printStackTrace();
-					}
-				}
+				h.addMarkAllHighlights(ranges, markAllHighlightPainter);
 			}
 
 			repaint();
@@ -1468,6 +1463,7 @@ public class RTextArea extends RTextAreaBase implements Printable {
 				old.removeUndoableEditListener(undoManager);
 			}
 		}
+		setMarkAllIndex(null);
 		super.setDocument(document);
 		if (undoManager!=null) {
 			document.addUndoableEditListener(undoManager);
@@ -1514,6 +1510,21 @@ public class RTextArea extends RTextAreaBase implements Printable {
 	}
 
 
+	/**
+	 * Sets the index that keeps this text area's "mark all" highlights in
+	 * sync with edits to the document.  Any previous index is disposed.
+	 *
+	 * @param index The new index, or <code>null</code> for none.
+	 * @see #updateMarkAllHighlights(List)
+	 */
+	void setMarkAllIndex(MatchIndex index) {
+		if (markAllIndex!=null) {
+			markAllIndex.dispose();
+		}
+		markAllIndex = index;
+	}
+
+
 	/**
 	 * Sets the color used for "mark all."  This fires a property change of
 	 * type {@link #MARK_ALL_COLOR_PROPERTY}.
@@ -1685,6 +1696,67 @@ public class RTextArea extends RTextAreaBase implements Printable {
 		}
 	}
 
+
+	/**
+	 * Changes the "mark all" highlights starting in a range of text to a new
+	 * set of ranges, reusing highlights for ranges that are already marked.
+	 * Highlights elsewhere in the document are left alone.  A
+	 * {@link #MARK_ALL_OCCURRENCES_CHANGED_PROPERTY} event is fired only if
+	 * the highlights actually change.  Its new value is <code>null</code>;
+	 * listeners should call {@link RTextAreaHighlighter#getMarkAllHighlightRanges()}
+	 * if they need the updated ranges.
+	 *
+	 * @param start The start offset of the range.
+	 * @param end The end offset of the range.
+	 * @param ranges The ranges to mark, sorted by offset.  They should all
+	 *        start in the range.
+	 * @see #updateMarkAllHighlights(List)
+	 */
+	void updateMarkAllHighlights(int start, int end,
+			List<DocumentRange> ranges) {
+		RTextAreaHighlighter h = (RTextAreaHighlighter)getHighlighter();
+		if (h!=null) {
+			try {
+				if (h.updateMarkAllHighlights(start, end, ranges,
+						markAllHighlightPainter)) {
+					firePropertyChange(MARK_ALL_OCCURRENCES_CHANGED_PROPERTY,
+							null, null);
+				}
+			} catch (BadLocationException ble) {
+				ble.printStackTrace();
+			}
+		}
+	}
+
+
+	/**
+	 * Changes the "mark all" highlights to a new set of ranges, reusing
+	 * highlights for ranges that are already marked.  Unlike
+	 * {@link #markAll(List)}, this does not require the existing highlights
+	 * to be cleared first, and fires a
+	 * {@link #MARK_ALL_OCCURRENCES_CHANGED_PROPERTY} event only if the
+	 * highlights actually change.
+	 *
+	 * @param ranges The ranges to mark, sorted by offset.  This should not
+	 *        be <code>null</code>.
+	 * @see #markAll(List)
+	 */
+	void updateMarkAllHighlights(List<DocumentRange> ranges) {
+		RTextAreaHighlighter h = (RTextAreaHighlighter)getHighlighter();
+		if (h!=null) {
+			try {
+				if (h.updateMarkAllHighlights(ranges,
+						markAllHighlightPainter)) {
+					firePropertyChange(MARK_ALL_OCCURRENCES_CHANGED_PROPERTY,
+							null, ranges);
+				}
+			} catch (BadLocationException ble) {
+				ble.printStackTrace();
+			}
+		}
+	}
+
+
 	/**
 	 * Serializes this text area.
 	 *
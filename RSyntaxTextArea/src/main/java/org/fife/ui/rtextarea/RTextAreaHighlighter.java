@@ -12,9 +12,12 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.Shape;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.plaf.TextUI;
 import javax.swing.plaf.basic.BasicTextUI.BasicHighlighter;
 import javax.swing.text.BadLocationException;
@@ -49,13 +52,31 @@ public class RTextAreaHighlighter extends BasicHighlighter {
 	 * The "mark all" highlights (to be painted separately from other
 	 * highlights).
 	 */
-	private List<HighlightInfo> markAllHighlights;
+	private HighlightList<HighlightInfo> markAllHighlights;
+
+	/**
+	 * Tracks the offsets of the "mark all" highlights, or <code>null</code>
+	 * if there are none.
+	 */
+	private PositionTracker markAllPositions;
 
 	/**
 	 * Constructor.
 	 */
 	public RTextAreaHighlighter() {
-		markAllHighlights = new ArrayList<>();
+		markAllHighlights = new HighlightList<>();
+	}
+
+
+	/**
+	 * Overridden to let subclasses know about the new highlight.
+	 */
+	@Override
+	public Object addHighlight(int p0, int p1, Highlighter.HighlightPainter p)
+			throws BadLocationException {
+		Object tag = super.addHighlight(p0, p1, p);
+		highlightChanged(p0, p1);
+		return tag;
 	}
 
 
@@ -71,34 +92,96 @@ public class RTextAreaHighlighter extends BasicHighlighter {
 	 */
 	Object addMarkAllHighlight(int start, int end, HighlightPainter p)
 			throws BadLocationException {
-		Document doc = textArea.getDocument();
-		TextUI mapper = textArea.getUI();
-		// Always layered highlights for marked occurrences.
-		HighlightInfoImpl i = new LayeredHighlightInfoImpl();
-		i.setPainter(p);
-		i.p0 = doc.createPosition(start);
-		// HACK: Use "end-1" to prevent chars the user types at the "end" of
-		// the highlight to be absorbed into the highlight (default Highlight
-		// behavior).
-		i.p1 = doc.createPosition(end-1);
+		HighlightInfo i = createMarkAllHighlight(start, end, p);
 		markAllHighlights.add(i);
-		mapper.damageRange(textArea, start, end);
+		highlightChanged(start, end);
+		textArea.getUI().damageRange(textArea, start, end);
 		return i;
 	}
 
 
+	/**
+	 * Adds "mark all" highlights for several ranges at once.  The text they
+	 * span is repainted once, instead of once per highlight.  Invalid
+	 * ranges are skipped.
+	 *
+	 * @param ranges The ranges to highlight.
+	 * @param p The highlight painter.
+	 * @see #addMarkAllHighlight(int, int, javax.swing.text.Highlighter.HighlightPainter)
+	 */
+	void addMarkAllHighlights(List<DocumentRange> ranges, HighlightPainter p) {
+		int start = Integer.MAX_VALUE;
+		int end = -1;
+		for (DocumentRange range : ranges) {
+			try {
+				markAllHighlights.add(createMarkAllHighlight(
+						range.getStartOffset(), range.getEndOffset(), p));
+				start = Math.min(start, range.getStartOffset());
+				end = Math.max(end, range.getEndOffset());
+			} catch (BadLocationException ble) {
+				ble.printStackTrace();
+			}
+		}
+		if (start<=end) {
+			highlightChanged(start, end);
+			textArea.getUI().damageRange(textArea, start, end);
+		}
+	}
+
+
+	/**
+	 * Overridden to let subclasses know about both the old and new ranges
+	 * of the highlight.
+	 */
+	@Override
+	public void changeHighlight(Object tag, int p0, int p1)
+			throws BadLocationException {
+		Highlighter.Highlight h = (Highlighter.Highlight)tag;
+		int start = Math.min(Math.min(p0, p1), h.getStartOffset());
+		int end = Math.max(Math.max(p0, p1), h.getEndOffset());
+		super.changeHighlight(tag, p0, p1);
+		highlightChanged(start, end);
+	}
+
+
 	/**
 	 * Removes all "mark all" highlights from the view.
 	 *
 	 * @see #addMarkAllHighlight(int, int, javax.swing.text.Highlighter.HighlightPainter)
 	 */
 	void clearMarkAllHighlights() {
-		// Don't remove via an iterator; since our List is an ArrayList, this
-		// implies tons of System.arrayCopy()s
-		for (HighlightInfo info : markAllHighlights) {
-			repaintListHighlight(info);
-		}
+		repaintListHighlights(markAllHighlights);
 		markAllHighlights.clear();
+		disposeMarkAllPositions();
+	}
+
+
+	/**
+	 * Creates a "mark all" highlight, without adding it to the list of
+	 * such highlights or repainting it.
+	 *
+	 * @param start The start offset of the highlight.
+	 * @param end The end offset of the highlight.
+	 * @param p The highlight painter.
+	 * @return The highlight.
+	 * @throws BadLocationException If one of the offsets specified is invalid.
+	 */
+	private HighlightInfo createMarkAllHighlight(int start, int end,
+			HighlightPainter p) throws BadLocationException {
+		Document doc = textArea.getDocument();
+		if (markAllPositions==null || markAllPositions.getDocument()!=doc) {
+			disposeMarkAllPositions();
+			markAllPositions = new PositionTracker(doc);
+		}
+		// Always layered highlights for marked occurrences.
+		HighlightInfoImpl i = new LayeredHighlightInfoImpl();
+		i.setPainter(p);
+		i.p0 = markAllPositions.createPosition(start);
+		// HACK: Use "end-1" to prevent chars the user types at the "end" of
+		// the highlight to be absorbed into the highlight (default Highlight
+		// behavior).
+		i.p1 = markAllPositions.createPosition(end-1);
+		return i;
 	}
 
 
@@ -106,6 +189,18 @@ public class RTextAreaHighlighter extends BasicHighlighter {
 	public void deinstall(JTextComponent c) {
 		this.textArea = null;
 		markAllHighlights.clear();
+		disposeMarkAllPositions();
+	}
+
+
+	/**
+	 * Stops tracking the offsets of the current "mark all" highlights.
+	 */
+	private void disposeMarkAllPositions() {
+		if (markAllPositions!=null) {
+			markAllPositions.dispose();
+			markAllPositions = null;
+		}
 	}
 
 
@@ -139,6 +234,19 @@ public class RTextAreaHighlighter extends BasicHighlighter {
 	}
 
 
+	/**
+	 * Called whenever a highlight is added, changed or removed, before the
+	 * text it spans is next painted.  The default implementation does nothing;
+	 * subclasses can override it to discard anything they've cached about
+	 * how that text is painted.  This may be called on any thread.
+	 *
+	 * @param start The start offset of the text whose highlights changed.
+	 * @param end The end offset of the text whose highlights changed.
+	 */
+	protected void highlightChanged(int start, int end) {
+	}
+
+
 	@Override
 	public void install(JTextComponent c) {
 		super.install(c);
@@ -146,6 +254,116 @@ public class RTextAreaHighlighter extends BasicHighlighter {
 	}
 
 
+	/**
+	 * Changes the "mark all" highlights starting in a range of text to
+	 * exactly a new set of ranges.  Highlights starting outside the range
+	 * are left alone, and highlights already covering one of the new ranges
+	 * are kept, so only the differences are repainted.  If the highlights
+	 * are in document order, only those in the range are examined.
+	 *
+	 * @param start The start offset of the range.
+	 * @param end The end offset of the range.
+	 * @param ranges The ranges to highlight, sorted by offset.  They should
+	 *        all start in the range.
+	 * @param p The highlight painter for new highlights.
+	 * @return Whether any highlights were added or removed.
+	 * @throws BadLocationException If one of the ranges is invalid.
+	 * @see #updateMarkAllHighlights(List, javax.swing.text.Highlighter.HighlightPainter)
+	 */
+	boolean updateMarkAllHighlights(int start, int end,
+			List<DocumentRange> ranges, HighlightPainter p)
+			throws BadLocationException {
+
+		int from;
+		int to;
+		if (markAllHighlights.isOrdered()) {
+			from = markAllHighlights.getFirstIndexStartingAtOrAfter(start);
+			to = markAllHighlights.getFirstIndexStartingAtOrAfter(end);
+		}
+		else {
+			// Move the highlights in the range to the end of the list
+			HighlightList<HighlightInfo> reordered = new HighlightList<>();
+			List<HighlightInfo> inRange = new ArrayList<>();
+			for (HighlightInfo info : markAllHighlights) {
+				int offs = info.getStartOffset();
+				if (offs>=start && offs<end) {
+					inRange.add(info);
+				}
+				else {
+					reordered.add(info);
+				}
+			}
+			from = reordered.size();
+			reordered.addAll(inRange);
+			markAllHighlights = reordered;
+			to = reordered.size();
+		}
+
+		List<HighlightInfo> updated = new ArrayList<>(ranges.size());
+		List<HighlightInfo> removed = new ArrayList<>();
+		int i = from;
+		int addedStart = Integer.MAX_VALUE;
+		int addedEnd = -1;
+
+		for (DocumentRange range : ranges) {
+			int rangeStart = range.getStartOffset();
+			int rangeEnd = range.getEndOffset();
+			while (i<to) {
+				HighlightInfo info = markAllHighlights.get(i);
+				int infoStart = info.getStartOffset();
+				if (infoStart>rangeStart) {
+					break;
+				}
+				i++;
+				if (infoStart==rangeStart &&
+						info.getEndOffset()+1==rangeEnd) { // HACK
+					updated.add(info);
+					rangeStart = -1;
+					break;
+				}
+				removed.add(info);
+			}
+			if (rangeStart>-1) {
+				updated.add(createMarkAllHighlight(rangeStart, rangeEnd, p));
+				addedStart = Math.min(addedStart, rangeStart);
+				addedEnd = Math.max(addedEnd, rangeEnd);
+			}
+		}
+		removed.addAll(markAllHighlights.subList(i, to));
+
+		repaintListHighlights(removed);
+		if (addedStart<=addedEnd) {
+			highlightChanged(addedStart, addedEnd);
+			textArea.getUI().damageRange(textArea, addedStart, addedEnd);
+		}
+		boolean changed = updated.size()!=to-from || !removed.isEmpty();
+		markAllHighlights.replaceRange(from, to, updated);
+		if (markAllHighlights.isEmpty()) {
+			disposeMarkAllPositions();
+		}
+		return changed;
+
+	}
+
+
+	/**
+	 * Changes the "mark all" highlights to exactly a new set of ranges.
+	 * Highlights already covering one of the ranges are kept, so only the
+	 * differences are repainted.
+	 *
+	 * @param ranges The ranges to highlight, sorted by offset.
+	 * @param p The highlight painter for new highlights.
+	 * @return Whether any highlights were added or removed.
+	 * @throws BadLocationException If one of the ranges is invalid.
+	 * @see #updateMarkAllHighlights(int, int, List, javax.swing.text.Highlighter.HighlightPainter)
+	 * @see #addMarkAllHighlight(int, int, javax.swing.text.Highlighter.HighlightPainter)
+	 */
+	boolean updateMarkAllHighlights(List<DocumentRange> ranges,
+			HighlightPainter p) throws BadLocationException {
+		return updateMarkAllHighlights(0, Integer.MAX_VALUE, ranges, p);
+	}
+
+
 	/**
 	 * When leaf Views (such as LabelView) are rendering they should
 	 * call into this method. If a highlight is in the given region it will
@@ -168,10 +386,35 @@ public class RTextAreaHighlighter extends BasicHighlighter {
 	}
 
 
+	/**
+	 * Paints the layered highlights in a list that intersect a range of
+	 * text.  If the list is a {@link HighlightList} whose highlights are
+	 * ordered, only the highlights near the range are examined.
+	 *
+	 * @param g The graphics context.
+	 * @param lineStart The starting offset of the line.
+	 * @param lineEnd The end offset of the line.
+	 * @param viewBounds The bounds of the view.
+	 * @param editor The parent text component.
+	 * @param view The view instance being rendered.
+	 * @param highlights The highlights to paint.
+	 */
 	protected void paintListLayered(Graphics g, int lineStart, int lineEnd,
 			Shape viewBounds, JTextComponent editor, View view,
 			List<? extends HighlightInfo> highlights) {
-		for (int i=highlights.size()-1; i>=0; i--) {
+
+		int first = 0;
+		int last = highlights.size() - 1;
+		if (highlights instanceof HighlightList &&
+				((HighlightList<?>)highlights).isOrdered()) {
+			HighlightList<?> list = (HighlightList<?>)highlights;
+			// Highlights are painted through getEndOffset()+1, see below
+			first = list.getFirstIndexEndingAtOrAfter(lineStart);
+			last = list.getFirstIndexStartingAtOrAfter(
+					Math.max(lineEnd, lineStart + 1)) - 1;
+		}
+
+		for (int i=last; i>=first; i--) {
 			HighlightInfo tag = highlights.get(i);
 			if (tag instanceof LayeredHighlightInfo) {
 				LayeredHighlightInfo lhi = (LayeredHighlightInfo)tag;
@@ -184,10 +427,44 @@ public class RTextAreaHighlighter extends BasicHighlighter {
 				}
 			}
 		}
+
+	}
+
+
+	/**
+	 * Overridden to let subclasses know about removed highlights.
+	 */
+	@Override
+	public void removeAllHighlights() {
+		Highlighter.Highlight[] highlights = getHighlights();
+		super.removeAllHighlights();
+		int start = Integer.MAX_VALUE;
+		int end = -1;
+		for (Highlighter.Highlight h : highlights) {
+			start = Math.min(start, h.getStartOffset());
+			end = Math.max(end, h.getEndOffset());
+		}
+		if (start<=end) {
+			highlightChanged(start, end);
+		}
+	}
+
+
+	/**
+	 * Overridden to let subclasses know about removed highlights.
+	 */
+	@Override
+	public void removeHighlight(Object tag) {
+		super.removeHighlight(tag);
+		if (tag instanceof Highlighter.Highlight) {
+			Highlighter.Highlight h = (Highlighter.Highlight)tag;
+			highlightChanged(h.getStartOffset(), h.getEndOffset());
+		}
 	}
 
 
 	protected void repaintListHighlight(HighlightInfo info) {
+		highlightChanged(info.getStartOffset(), info.getEndOffset());
 		// Note: We're relying on implementation here, not interface.  Yuck...
 		if (info instanceof LayeredHighlightInfoImpl) {
 			LayeredHighlightInfoImpl lhi = (LayeredHighlightInfoImpl)info;
@@ -203,6 +480,46 @@ public class RTextAreaHighlighter extends BasicHighlighter {
 	}
 
 
+	/**
+	 * Repaints the regions several highlights were last painted in.  The
+	 * regions of layered highlights are combined so that the text area is
+	 * only asked to repaint once.
+	 *
+	 * @param highlights The highlights to repaint.
+	 * @see #repaintListHighlight(HighlightInfo)
+	 */
+	protected void repaintListHighlights(
+			List<? extends HighlightInfo> highlights) {
+
+		Rectangle bounds = null;
+		int start = Integer.MAX_VALUE;
+		int end = -1;
+		for (HighlightInfo info : highlights) {
+			if (info instanceof LayeredHighlightInfoImpl) {
+				LayeredHighlightInfoImpl lhi = (LayeredHighlightInfoImpl)info;
+				start = Math.min(start, lhi.getStartOffset());
+				end = Math.max(end, lhi.getEndOffset());
+				if (lhi.width > 0 && lhi.height > 0) {
+					Rectangle r = new Rectangle(lhi.x, lhi.y, lhi.width,
+							lhi.height);
+					bounds = bounds==null ? r : bounds.union(r);
+				}
+			}
+			else {
+				repaintListHighlight(info);
+			}
+		}
+
+		if (start<=end) {
+			highlightChanged(start, end);
+		}
+		if (bounds!=null) {
+			textArea.repaint(bounds.x, bounds.y, bounds.width, bounds.height);
+		}
+
+	}
+
+
 	/**
 	 * Information about a highlight being painted by this highlighter.
 	 */
@@ -334,4 +651,338 @@ public class RTextAreaHighlighter extends BasicHighlighter {
 	}
 
 
+	/**
+	 * A list of highlights that knows whether they're in document order.
+	 * Highlights are in order if both their start and end offsets never
+	 * decrease from one highlight to the next, which is true of
+	 * non-overlapping highlights added from the start of the document to
+	 * the end.  Document edits move offsets without reordering them, so
+	 * a list stays in order as long as the highlights added to it keep it
+	 * that way.  The highlights overlapping a range of an ordered list can
+	 * be found with a binary search.
+	 *
+	 * @param <T> The type of highlight in the list.
+	 */
+	protected static class HighlightList<T extends HighlightInfo>
+			extends AbstractList<T> {
+
+		private List<T> highlights;
+		private boolean ordered;
+
+		public HighlightList() {
+			highlights = new ArrayList<>();
+			ordered = true;
+		}
+
+		@Override
+		public void add(int index, T highlight) {
+			highlights.add(index, highlight);
+			if (ordered) {
+				ordered = isOrdered(index-1, index) &&
+						isOrdered(index, index+1);
+			}
+			modCount++;
+		}
+
+		@Override
+		public void clear() {
+			highlights.clear();
+			ordered = true;
+			modCount++;
+		}
+
+		@Override
+		public T get(int index) {
+			return highlights.get(index);
+		}
+
+		/**
+		 * Returns the index of the first highlight that ends at or after
+		 * an offset.  This is only valid if this list is ordered.
+		 *
+		 * @param offs The offset.
+		 * @return The index, or the list's size if all highlights end
+		 *         before the offset.
+		 */
+		public int getFirstIndexEndingAtOrAfter(int offs) {
+			int low = 0;
+			int high = highlights.size();
+			while (low<high) {
+				int mid = (low + high) >>> 1;
+				if (highlights.get(mid).getEndOffset()<offs) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Returns the index of the first highlight that starts at or after
+		 * an offset.  This is only valid if this list is ordered.
+		 *
+		 * @param offs The offset.
+		 * @return The index, or the list's size if all highlights start
+		 *         before the offset.
+		 */
+		public int getFirstIndexStartingAtOrAfter(int offs) {
+			int low = 0;
+			int high = highlights.size();
+			while (low<high) {
+				int mid = (low + high) >>> 1;
+				if (highlights.get(mid).getStartOffset()<offs) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Returns whether the highlights are in document order.
+		 *
+		 * @return Whether the highlights are in order.
+		 */
+		public boolean isOrdered() {
+			return ordered;
+		}
+
+		private boolean isOrdered(int index1, int index2) {
+			if (index1<0 || index2>=highlights.size()) {
+				return true;
+			}
+			T h1 = highlights.get(index1);
+			T h2 = highlights.get(index2);
+			return h1.getStartOffset()<=h2.getStartOffset() &&
+					h1.getEndOffset()<=h2.getEndOffset();
+		}
+
+		@Override
+		public T remove(int index) {
+			T highlight = highlights.remove(index);
+			if (highlights.isEmpty()) {
+				ordered = true;
+			}
+			modCount++;
+			return highlight;
+		}
+
+		@Override
+		protected void removeRange(int fromIndex, int toIndex) {
+			highlights.subList(fromIndex, toIndex).clear();
+			if (highlights.isEmpty()) {
+				ordered = true;
+			}
+			modCount++;
+		}
+
+		/**
+		 * Replaces a range of highlights with others.
+		 *
+		 * @param fromIndex The index of the first highlight to replace.
+		 * @param toIndex The index after the last highlight to replace.
+		 * @param replacement The highlights to insert in their place.
+		 */
+		public void replaceRange(int fromIndex, int toIndex,
+				List<? extends T> replacement) {
+			List<T> range = highlights.subList(fromIndex, toIndex);
+			range.clear();
+			range.addAll(replacement);
+			if (highlights.size()==replacement.size()) {
+				ordered = true; // Everything was replaced
+			}
+			for (int i=fromIndex; ordered &&
+					i<=fromIndex+replacement.size(); i++) {
+				ordered = isOrdered(i-1, i);
+			}
+			modCount++;
+		}
+
+		@Override
+		public T set(int index, T highlight) {
+			T old = highlights.set(index, highlight);
+			if (ordered) {
+				ordered = isOrdered(index-1, index) &&
+						isOrdered(index, index+1);
+			}
+			return old;
+		}
+
+		@Override
+		public int size() {
+			return highlights.size();
+		}
+
+	}
+
+
+	/**
+	 * Tracks the offsets of many positions in a document more cheaply than
+	 * the document itself.  Each position a document creates is a separate
+	 * object that the document updates on every edit, so highlighting tens
+	 * of thousands of ranges slows down typing.  This class instead keeps
+	 * the offsets of the positions it creates in a single sorted array.<p>
+	 *
+	 * An edit shifts every offset after it, but the array isn't updated
+	 * right away.  The shift is remembered for all offsets from an index
+	 * onward, and only the offsets between that index and the next edit's
+	 * index are updated when the next edit is somewhere else.  Consecutive
+	 * edits at the same location, such as typing, are therefore constant
+	 * time no matter how many positions there are.<p>
+	 *
+	 * Positions behave like those created by <code>GapContent</code>: they
+	 * move forward when text is inserted at their offset (unless it's
+	 * <code>0</code>), and text removed around them collapses them to the
+	 * start of the removed range.  Since the array must stay sorted,
+	 * positions must be created in increasing offset order; any position
+	 * created out of order is created by the document instead.  Unlike
+	 * document positions, tracked positions are not restored when a removal
+	 * is undone.
+	 */
+	protected static class PositionTracker implements DocumentListener {
+
+		private Document doc;
+		private int[] offsets;
+		private int size;
+
+		/**
+		 * The offsets at and after this index must have {@link #delta}
+		 * added to them to get their actual values.
+		 */
+		private int deltaIndex;
+		private int delta;
+
+		public PositionTracker(Document doc) {
+			this.doc = doc;
+			offsets = new int[16];
+			doc.addDocumentListener(this);
+		}
+
+		@Override
+		public void changedUpdate(DocumentEvent e) {
+		}
+
+		/**
+		 * Returns a position tracking an offset in the document.
+		 *
+		 * @param offs The offset.
+		 * @return The position.
+		 * @throws BadLocationException If the offset is invalid.
+		 */
+		public Position createPosition(int offs) throws BadLocationException {
+
+			if (offs<0 || offs>doc.getLength() ||
+					(size>0 && offs<getOffset(size-1))) {
+				return doc.createPosition(offs);
+			}
+
+			moveDelta(size);
+			if (size==offsets.length) {
+				int[] temp = new int[size*2];
+				System.arraycopy(offsets, 0, temp, 0, size);
+				offsets = temp;
+			}
+			offsets[size] = offs - delta;
+			return new TrackedPosition(size++);
+
+		}
+
+		/**
+		 * Stops tracking document changes.  Positions already created keep
+		 * their current offsets.
+		 */
+		public void dispose() {
+			doc.removeDocumentListener(this);
+		}
+
+		/**
+		 * Returns the document whose positions are tracked.
+		 *
+		 * @return The document.
+		 */
+		public Document getDocument() {
+			return doc;
+		}
+
+		private int getFirstIndexAtOrAfter(int offs) {
+			int low = 0;
+			int high = size;
+			while (low<high) {
+				int mid = (low + high) >>> 1;
+				if (getOffset(mid)<offs) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		private int getOffset(int index) {
+			return index<deltaIndex ? offsets[index] : offsets[index]+delta;
+		}
+
+		@Override
+		public void insertUpdate(DocumentEvent e) {
+			// Positions at offset 0 stay there
+			int offs = Math.max(e.getOffset(), 1);
+			moveDelta(getFirstIndexAtOrAfter(offs));
+			delta += e.getLength();
+		}
+
+		/**
+		 * Changes the index the pending shift applies from, updating the
+		 * offsets in between.
+		 *
+		 * @param index The new index.
+		 */
+		private void moveDelta(int index) {
+			for (int i=index; i<deltaIndex; i++) {
+				offsets[i] -= delta;
+			}
+			for (int i=deltaIndex; i<index; i++) {
+				offsets[i] += delta;
+			}
+			deltaIndex = index;
+		}
+
+		@Override
+		public void removeUpdate(DocumentEvent e) {
+			int offs = e.getOffset();
+			int end = offs + e.getLength();
+			int from = getFirstIndexAtOrAfter(offs);
+			int to = getFirstIndexAtOrAfter(end);
+			moveDelta(to);
+			delta -= e.getLength();
+			for (int i=from; i<to; i++) {
+				offsets[i] = offs;
+			}
+		}
+
+		/**
+		 * A position whose offset is tracked by the enclosing instance.
+		 */
+		private final class TrackedPosition implements Position {
+
+			private int index;
+
+			private TrackedPosition(int index) {
+				this.index = index;
+			}
+
+			@Override
+			public int getOffset() {
+				return PositionTracker.this.getOffset(index);
+			}
+
+		}
+
+	}
+
+
 }
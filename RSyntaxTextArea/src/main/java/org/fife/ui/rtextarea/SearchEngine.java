@@ -12,11 +12,14 @@ import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import javax.swing.JTextArea;
+import javax.swing.UIManager;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Caret;
 
@@ -42,6 +45,24 @@ import org.fife.ui.rsyntaxtextarea.RSyntaxUtilities;
  */
 public final class SearchEngine {
 
+	/**
+	 * The number of characters before the caret first searched by a
+	 * backward regular expression search.
+	 */
+	private static final int BACKWARD_REGEX_WINDOW = 8192;
+
+	/**
+	 * Text at least this long is searched for all matches using several
+	 * threads.
+	 */
+	private static final int PARALLEL_SEARCH_MIN_LENGTH = 1024 * 1024;
+
+	/**
+	 * A parallel search doesn't split text shorter than this into smaller
+	 * chunks.
+	 */
+	private static final int PARALLEL_SEARCH_MIN_CHUNK = 256 * 1024;
+
 
 	/**
 	 * Private constructor to prevent instantiation.
@@ -50,6 +71,98 @@ public final class SearchEngine {
 	}
 
 
+	/**
+	 * Compiles a regular expression to search for.
+	 *
+	 * @param regEx The regular expression.
+	 * @param matchCase Whether the search is case-sensitive.
+	 * @param wholeWord Whether only whole words should be matched.
+	 * @return The pattern, or <code>null</code> if <code>regEx</code> is
+	 *         invalid.
+	 */
+	static Pattern compilePattern(String regEx, boolean matchCase,
+										boolean wholeWord) {
+
+		if (wholeWord) {
+			regEx = "\\b" + regEx + "\\b";
+		}
+
+		// Make a pattern that takes into account whether or not to match case.
+		int flags = Pattern.MULTILINE; // '^' and '$' are done per line.
+		flags = RSyntaxUtilities.getPatternFlags(matchCase, flags);
+		try {
+			return Pattern.compile(regEx, flags);
+		} catch (PatternSyntaxException pse) {
+			return null;
+		}
+
+	}
+
+
+	/**
+	 * Returns an object that finds all matches of a search in text.
+	 *
+	 * @param searchIn The text to search in.
+	 * @param context What to search for and all search options.  The search
+	 *        direction is ignored.
+	 * @return The match finder, or <code>null</code> if this is a regular
+	 *         expression search and the regular expression is invalid.
+	 */
+	static MatchFinder createMatchFinder(CharSequence searchIn,
+			SearchContext context) {
+
+		String searchFor = context.getSearchFor();
+		boolean matchCase = context.getMatchCase();
+		boolean wholeWord = context.getWholeWord();
+
+		if (context.isRegularExpression()) {
+			Pattern pattern = compilePattern(searchFor, matchCase, wholeWord);
+			if (pattern==null) {
+				return null;
+			}
+			return new MatchFinder(searchIn, 0, searchIn.length(), pattern,
+					null, false, isSingleLinePattern(pattern));
+		}
+
+		LiteralMatcher matcher = new LiteralMatcher(searchFor, matchCase);
+		return new MatchFinder(searchIn, 0, searchIn.length(), null, matcher,
+				wholeWord, searchFor.indexOf('\n')==-1);
+
+	}
+
+
+	/**
+	 * Converts the tabs in replacement text to spaces, as
+	 * {@link RTextArea#replaceSelection(String)} does when tabs are emulated.
+	 *
+	 * @param text The replacement text.
+	 * @param column The column the text will be inserted at.
+	 * @param tabSize The tab size.
+	 * @return The text, with its tabs expanded.
+	 */
+	private static String expandTabs(String text, int column, int tabSize) {
+
+		StringBuilder sb = new StringBuilder(text.length());
+		for (int i=0; i<text.length(); i++) {
+			char ch = text.charAt(i);
+			if (ch=='\t') {
+				int spaces = tabSize - column%tabSize;
+				for (int j=0; j<spaces; j++) {
+					sb.append(' ');
+				}
+				column += spaces;
+			}
+			else {
+				sb.append(ch);
+				column = nextColumn(column, ch, tabSize);
+			}
+		}
+
+		return sb.toString();
+
+	}
+
+
 	/**
 	 * Finds the next instance of the string/regular expression specified
 	 * from the caret position.  If a match is found, it is selected in this
@@ -93,7 +206,7 @@ public final class SearchEngine {
 		int start = forward ? Math.max(c.getDot(), c.getMark()) :
 						Math.min(c.getDot(), c.getMark());
 
-		String findIn = getFindInText(textArea, start, forward);
+		CharSequence findIn = getFindInCharSequence(textArea, start, forward);
 		if (!context.getSearchWrap() && (findIn == null || findIn.length() == 0)) {
 			return new SearchResult();
 		}
@@ -121,7 +234,7 @@ public final class SearchEngine {
 				start = textArea.getDocument().getLength() - 1;
 			}
 
-			findIn = getFindInText(textArea, start, forward);
+			findIn = getFindInCharSequence(textArea, start, forward);
 
 			if (findIn == null || findIn.length() == 0) {
 				SearchResult emptyResult = new SearchResult();
@@ -167,7 +280,8 @@ public final class SearchEngine {
 	 * @throws PatternSyntaxException If this is a regular expression search
 	 *         but the search text is an invalid regular expression.
 	 */
-	private static SearchResult findImpl(String findIn, SearchContext context) {
+	private static SearchResult findImpl(CharSequence findIn,
+			SearchContext context) {
 
 		String text = context.getSearchFor();
 		boolean forward = context.getSearchForward();
@@ -175,8 +289,10 @@ public final class SearchEngine {
 		// Find the next location of the text we're searching for.
 		DocumentRange range = null;
 		if (!context.isRegularExpression()) {
-			int pos = getNextMatchPos(text, findIn, forward,
-								context.getMatchCase(), context.getWholeWord());
+			LiteralMatcher matcher = new LiteralMatcher(text,
+								context.getMatchCase());
+			int pos = getNextMatchPosImpl(matcher, findIn, forward,
+								context.getWholeWord());
 			findIn = null; // May help garbage collecting.
 			if (pos!=-1) {
 				range = new DocumentRange(pos, pos+text.length());
@@ -190,7 +306,8 @@ public final class SearchEngine {
 			Point regExPos = null;
 			int start = 0;
 			do {
-				regExPos = getNextMatchPosRegEx(text, findIn.substring(start),
+				regExPos = getNextMatchPosRegEx(text,
+					findIn.subSequence(start, findIn.length()),
 					forward, context.getMatchCase(), context.getWholeWord());
 				if (regExPos!=null) {
 					if (regExPos.x!=regExPos.y) {
@@ -212,10 +329,219 @@ public final class SearchEngine {
 	}
 
 
+	/**
+	 * Moves a matcher to the last match in <code>searchIn</code> that a
+	 * forward scan of all of it would find.<p>
+	 *
+	 * If no match can contain a newline, the matches a scan starting at a
+	 * line start finds are the same as those a scan from the start of the
+	 * text finds past that point.  Thus only the text after a line start
+	 * near the end of <code>searchIn</code> is scanned, and this region
+	 * doubles in size until it contains a match.  Otherwise, all of
+	 * <code>searchIn</code> is scanned.
+	 *
+	 * @param m The matcher.
+	 * @param searchIn The text being searched.
+	 * @param singleLine Whether matches can't contain a newline.
+	 * @return Whether a match was found.  If it was, <code>m</code> describes
+	 *         it.
+	 * @see #isSingleLinePattern(Pattern)
+	 */
+	private static boolean findLast(Matcher m, CharSequence searchIn,
+									boolean singleLine) {
+
+		// Lookarounds and anchors must see the text outside of the region
+		m.useTransparentBounds(true);
+		m.useAnchoringBounds(false);
+
+		int end = searchIn.length();
+		int windowSize = singleLine ? BACKWARD_REGEX_WINDOW : end;
+		int start;
+
+		do {
+
+			start = Math.max(end - windowSize, 0);
+			while (start>0 && searchIn.charAt(start-1)!='\n') {
+				start--;
+			}
+
+			m.region(start, end);
+			int lastStart = -1;
+			while (m.find()) {
+				lastStart = m.start();
+			}
+			if (lastStart>-1) {
+				// Re-match the last one so it's m's current match
+				m.region(lastStart, end);
+				return m.find();
+			}
+
+			windowSize = (int)Math.min(2L * (end - start), end);
+
+		} while (start>0);
+
+		return false;
+
+	}
+
+
+	/**
+	 * Returns the locations of all matches for a "replace all" operation,
+	 * and the text to replace each with, in a single pass over the text.
+	 * Unlike {@link #getAllMatches(CharSequence, SearchContext)}, zero-length
+	 * regular expression matches are included, unless they immediately
+	 * follow the previous match (e.g. the end of the document for
+	 * "<code>.*</code>").
+	 *
+	 * @param searchIn The text to search in.
+	 * @param context What to search for and all search options.
+	 * @param matches The list to add the matches to.
+	 * @param replacements The list to add the replacement for each match to.
+	 * @throws IndexOutOfBoundsException If this is a regular expression search
+	 *         but the replacement text references an invalid group (less than
+	 *         zero or greater than the number of groups matched).
+	 */
+	private static void getAllReplacements(CharSequence searchIn,
+			SearchContext context, List<DocumentRange> matches,
+			List<String> replacements) {
+
+		String replaceWith = context.getReplaceWith();
+		if (replaceWith==null) {
+			replaceWith = "";
+		}
+
+		if (!context.isRegularExpression()) {
+			matches.addAll(getAllMatches(searchIn, context));
+			for (int i=0; i<matches.size(); i++) {
+				replacements.add(replaceWith);
+			}
+			return;
+		}
+
+		Pattern pattern = compilePattern(context.getSearchFor(),
+				context.getMatchCase(), context.getWholeWord());
+		if (pattern!=null) {
+			Matcher m = pattern.matcher(searchIn);
+			int prevEnd = -1;
+			while (m.find()) {
+				if (m.start()==m.end() && m.start()==prevEnd) {
+					continue;
+				}
+				matches.add(new DocumentRange(m.start(), m.end()));
+				replacements.add(getReplacementText(m, replaceWith));
+				prevEnd = m.end();
+			}
+		}
+
+	}
+
+
+	/**
+	 * Returns the column following a range of text.
+	 *
+	 * @param text The text.
+	 * @param start The start of the range.
+	 * @param end The end of the range.
+	 * @param column The column of the character at <code>start</code>.
+	 *        This is ignored if the range contains a newline.
+	 * @param tabSize The tab size.
+	 * @return The column of the character at <code>end</code>.
+	 */
+	private static int getColumnAfter(CharSequence text, int start, int end,
+			int column, int tabSize) {
+
+		// Only the text after the last newline matters
+		for (int i=end-1; i>=start; i--) {
+			if (text.charAt(i)=='\n') {
+				column = 0;
+				start = i + 1;
+				break;
+			}
+		}
+
+		for (int i=start; i<end; i++) {
+			column = nextColumn(column, text.charAt(i), tabSize);
+		}
+		return column;
+
+	}
+
+
+	/**
+	 * Returns the locations of all non-overlapping matches of the text or
+	 * regular expression being searched for, in a single pass over the text.
+	 * Zero-length regular expression matches (e.g. for "<code>foo|</code>")
+	 * are skipped.  Long text is searched in parallel when possible.
+	 *
+	 * @param searchIn The text to search in.
+	 * @param context What to search for and all search options.  The search
+	 *        direction is ignored.
+	 * @return The matches, in order.  If this is a regular expression search
+	 *         and the regular expression is invalid, this list is empty.
+	 * @see #getAllMatches(CharSequence, SearchContext, boolean)
+	 */
+	private static List<DocumentRange> getAllMatches(CharSequence searchIn,
+			SearchContext context) {
+		boolean parallel = searchIn.length()>=PARALLEL_SEARCH_MIN_LENGTH &&
+				ForkJoinPool.getCommonPoolParallelism()>1;
+		return getAllMatches(searchIn, context, parallel);
+	}
+
+
+	/**
+	 * Returns the locations of all non-overlapping matches of the text or
+	 * regular expression being searched for.<p>
+	 *
+	 * If <code>parallel</code> is <code>true</code> and no match can contain
+	 * a newline, the text is split into chunks at line starts, which are
+	 * searched in parallel on the common <code>ForkJoinPool</code>.  Since no
+	 * match spans a chunk boundary, searching a chunk on its own finds the
+	 * same matches as searching all of the text does.  Other searches are
+	 * done on the calling thread.
+	 *
+	 * @param searchIn The text to search in.  This is read from several
+	 *        threads, so it must not be modified until this method returns.
+	 *        If it's a view of an <code>RDocument</code>, the document is
+	 *        read-locked while it's searched in parallel.
+	 * @param context What to search for and all search options.  The search
+	 *        direction is ignored.
+	 * @param parallel Whether to search in parallel if possible.
+	 * @return The matches, in order.  If this is a regular expression search
+	 *         and the regular expression is invalid, this list is empty.
+	 */
+	static List<DocumentRange> getAllMatches(CharSequence searchIn,
+			SearchContext context, boolean parallel) {
+
+		MatchFinder finder = createMatchFinder(searchIn, context);
+		if (finder==null) {
+			return new ArrayList<>();
+		}
+		if (parallel && finder.isLineLocal()) {
+			// The workers read the document's gap buffer directly, so keep
+			// other threads from modifying it until they're done
+			RDocument doc = searchIn instanceof RDocumentCharSequence ?
+					((RDocumentCharSequence)searchIn).getDocument() : null;
+			if (doc!=null) {
+				doc.readLock();
+			}
+			try {
+				return ForkJoinPool.commonPool().invoke(finder);
+			} finally {
+				if (doc!=null) {
+					doc.readUnlock();
+				}
+			}
+		}
+		return finder.findMatches();
+
+	}
+
+
 	/**
 	 * Returns a <code>CharSequence</code> for a text area that doesn't make a
 	 * copy of its contents for iteration.  This conserves memory but is likely
-	 * just a tad slower.
+	 * just a tad slower.  If the text area's document isn't an
+	 * <code>RDocument</code>, a copy of the text is returned.
 	 *
 	 * @param textArea The text area whose document is the basis for the
 	 *        <code>CharSequence</code>.
@@ -224,8 +550,11 @@ public final class SearchEngine {
 	 * @param forward Whether we're searching forward or backward.
 	 * @return The character sequence.
 	 */
-	private static CharSequence getFindInCharSequence(RTextArea textArea,
+	static CharSequence getFindInCharSequence(JTextArea textArea,
 			int start, boolean forward) {
+		if (!(textArea.getDocument() instanceof RDocument)) {
+			return getFindInText(textArea, start, forward);
+		}
 		RDocument doc = (RDocument)textArea.getDocument();
 		int csStart = 0;
 		int csEnd = 0;
@@ -270,51 +599,6 @@ public final class SearchEngine {
 	}
 
 
-	/**
-	 * This method is called internally by
-	 * <code>getNextMatchPosRegExImpl</code> and is used to get the locations
-	 * of all regular-expression matches, and possibly their replacement
-	 * strings.<p>
-	 *
-	 * Returns either:
-	 * <ul>
-	 *   <li>A list of points representing the starting and ending positions
-	 *       of all matches returned by the specified matcher, or
-	 *   <li>A list of <code>RegExReplaceInfo</code>s describing the matches
-	 *       found by the matcher and the replacement strings for each.
-	 * </ul>
-	 *
-	 * If <code>replacement</code> is <code>null</code>, this method call is
-	 * assumed to be part of a "find" operation and points are returned.  If
-	 * if is non-<code>null</code>, it is assumed to be part of a "replace"
-	 * operation and the <code>RegExReplaceInfo</code>s are returned.<p>
-	 *
-	 * @param m The matcher.
-	 * @param replaceStr The string to replace matches with.  This is a
-	 *        "template" string and can contain captured group references in
-	 *        the form "<code>${digit}</code>".
-	 * @return A list of result objects.
-	 * @throws IndexOutOfBoundsException If <code>replaceStr</code> references
-	 *         an invalid group (less than zero or greater than the number of
-	 *         groups matched).
-	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private static List getMatches(Matcher m, String replaceStr) {
-		ArrayList matches = new ArrayList();
-		while (m.find()) {
-			Point loc = new Point(m.start(), m.end());
-			if (replaceStr==null) { // Find, not replace.
-				matches.add(loc);
-			}
-			else { // Replace.
-				matches.add(new RegExReplaceInfo(m.group(0), loc.x, loc.y,
-								getReplacementText(m, replaceStr)));
-			}
-		}
-		return matches;
-	}
-
-
 	/**
 	 * Searches <code>searchIn</code> for an occurrence of
 	 * <code>searchFor</code> either forwards or backwards, matching
@@ -337,51 +621,36 @@ public final class SearchEngine {
 	public static int getNextMatchPos(String searchFor, String searchIn,
 								boolean forward, boolean matchCase,
 								boolean wholeWord) {
-
-		// Make our variables lower case if we're ignoring case.
-		if (!matchCase) {
-			return getNextMatchPosImpl(searchFor.toLowerCase(),
-								searchIn.toLowerCase(), forward,
-								matchCase, wholeWord);
-		}
-
-		return getNextMatchPosImpl(searchFor, searchIn, forward,
-								matchCase, wholeWord);
-
+		LiteralMatcher matcher = new LiteralMatcher(searchFor, matchCase);
+		return getNextMatchPosImpl(matcher, searchIn, forward, wholeWord);
 	}
 
 
 	/**
-	 * Actually does the work of matching; assumes searchFor and searchIn
-	 * are already upper/lower-cased appropriately.<br>
-	 * The reason this method is here is to attempt to speed up
-	 * <code>FindInFilesDialog</code>; since it repeatedly calls
-	 * this method instead of <code>getNextMatchPos</code>, it gets better
-	 * performance as it no longer has to allocate a lower-cased string for
-	 * every call.
+	 * Actually does the work of matching.  Case-insensitive searches are
+	 * handled by the matcher, without making lower-cased copies of the text.
 	 *
-	 * @param searchFor The string to search for.
-	 * @param searchIn The string to search in.
+	 * @param matcher Finds the text to search for.
+	 * @param searchIn The text to search in.
 	 * @param goForward Whether the search is forward or backward.
-	 * @param matchCase Whether the search is case-sensitive.
 	 * @param wholeWord Whether only whole words should be matched.
 	 * @return The location of the next match, or <code>-1</code> if no
 	 *         match was found.
 	 */
-	private static int getNextMatchPosImpl(String searchFor,
-								String searchIn, boolean goForward,
-								boolean matchCase, boolean wholeWord) {
+	private static int getNextMatchPosImpl(LiteralMatcher matcher,
+								CharSequence searchIn, boolean goForward,
+								boolean wholeWord) {
 
 		if (wholeWord) {
-			int len = searchFor.length();
+			int len = matcher.getLength();
 			int temp = goForward ? 0 : searchIn.length();
 			int tempChange = goForward ? 1 : -1;
 			while (true) {
 				if (goForward) {
-					temp = searchIn.indexOf(searchFor, temp);
+					temp = matcher.indexOf(searchIn, temp);
 				}
 				else {
-					temp = searchIn.lastIndexOf(searchFor, temp);
+					temp = matcher.lastIndexOf(searchIn, temp);
 				}
 				if (temp!=-1) {
 					if (isWholeWord(searchIn, temp, len)) {
@@ -396,8 +665,8 @@ public final class SearchEngine {
 			}
 		}
 		else {
-			return goForward ? searchIn.indexOf(searchFor) :
-							searchIn.lastIndexOf(searchFor);
+			return goForward ? matcher.indexOf(searchIn, 0) :
+							matcher.lastIndexOf(searchIn, searchIn.length());
 		}
 
 	}
@@ -466,17 +735,8 @@ public final class SearchEngine {
 							boolean matchCase, boolean wholeWord,
 							String replaceStr) {
 
-		if (wholeWord) {
-			regEx = "\\b" + regEx + "\\b";
-		}
-
-		// Make a pattern that takes into account whether or not to match case.
-		int flags = Pattern.MULTILINE; // '^' and '$' are done per line.
-		flags = RSyntaxUtilities.getPatternFlags(matchCase, flags);
-		Pattern pattern = null;
-		try {
-			pattern = Pattern.compile(regEx, flags);
-		} catch (PatternSyntaxException pse) {
+		Pattern pattern = compilePattern(regEx, matchCase, wholeWord);
+		if (pattern==null) {
 			return null; // e.g. a "mark all" request with incomplete regex
 		}
 
@@ -497,11 +757,14 @@ public final class SearchEngine {
 		}
 
 		// Search backwards
-		else {
-			List<?> matches = getMatches(m, replaceStr);
-			if (!matches.isEmpty()) {
-				return matches.get(matches.size()-1);
+		else if (findLast(m, searchIn, isSingleLinePattern(pattern))) {
+			if (replaceStr==null) { // Find, not replace.
+				return new Point(m.start(), m.end());
 			}
+			// Otherwise, replace
+			return new RegExReplaceInfo(m.group(0),
+					m.start(), m.end(),
+					getReplacementText(m, replaceStr));
 		}
 
 		return null; // No match found
@@ -543,9 +806,9 @@ public final class SearchEngine {
 
 
 	/**
-	 * Called internally by <code>getMatches()</code>.  This method assumes
-	 * that the specified matcher has just found a match, and that you want
-	 * to get the string with which to replace that match.<p>
+	 * Called internally by <code>getNextMatchPosRegExImpl()</code>.  This
+	 * method assumes that the specified matcher has just found a match, and
+	 * that you want to get the string with which to replace that match.<p>
 	 *
 	 * Escapes simply insert the escaped character, except for <code>\n</code>
 	 * and <code>\t</code>, which insert a newline and tab respectively.
@@ -646,12 +909,77 @@ public final class SearchEngine {
 	}
 
 
+	/**
+	 * Returns whether a regular expression obviously can't match text
+	 * containing a newline.  This is a conservative check of the pattern's
+	 * source: constructs such as <code>\s</code>, negated character
+	 * classes, escaped control characters and the <code>DOTALL</code> flag
+	 * all cause <code>false</code> to be returned.
+	 *
+	 * @param pattern The pattern.
+	 * @return Whether the pattern can't match a newline.
+	 */
+	static boolean isSingleLinePattern(Pattern pattern) {
+
+		if ((pattern.flags()&Pattern.DOTALL)!=0) {
+			return false;
+		}
+
+		String regex = pattern.pattern();
+		int len = regex.length();
+		for (int i=0; i<len; i++) {
+			char ch = regex.charAt(i);
+			if (ch<0x20) { // Literal control character
+				return false;
+			}
+			switch (ch) {
+				case '\\':
+					// Only escapes that can't match (or be part of a range
+					// including) a newline
+					if (++i<len) {
+						ch = regex.charAt(i);
+						if (Character.isLetter(ch) &&
+								"dwbBAZzQEk".indexOf(ch)==-1) {
+							return false;
+						}
+						if (ch=='0') { // Octal escape
+							return false;
+						}
+					}
+					break;
+				case '[':
+					if (i+1<len && regex.charAt(i+1)=='^') {
+						return false;
+					}
+					break;
+				case '(':
+					// Inline flags possibly including DOTALL
+					if (i+1<len && regex.charAt(i+1)=='?') {
+						for (int j=i+2; j<len; j++) {
+							char flag = regex.charAt(j);
+							if (flag=='s') {
+								return false;
+							}
+							if ("idmuxUc-".indexOf(flag)==-1) {
+								break;
+							}
+						}
+					}
+					break;
+			}
+		}
+
+		return true;
+
+	}
+
+
 	/**
 	 * Returns whether the characters on either side of
 	 * <code>substr(searchIn, startPos, startPos+searchStringLength)</code>
 	 * are <em>not</em> letters or digits.
 	 */
-	private static boolean isWholeWord(CharSequence searchIn,
+	static boolean isWholeWord(CharSequence searchIn,
 											int offset, int len) {
 
 		boolean wsBefore, wsAfter;
@@ -693,12 +1021,35 @@ public final class SearchEngine {
 	}
 
 
+	/**
+	 * Returns the column following a character.
+	 *
+	 * @param column The column of the character.
+	 * @param ch The character.
+	 * @param tabSize The tab size.
+	 * @return The column of the next character.
+	 */
+	private static int nextColumn(int column, char ch, int tabSize) {
+		switch (ch) {
+			case '\n':
+				return 0;
+			case '\t':
+				return column + tabSize - column%tabSize;
+			default:
+				return column + 1;
+		}
+	}
+
+
 	/**
 	 * Marks all instances of the specified text in this text area.  This
 	 * method is typically only called directly in response to search events
 	 * of type <code>SearchEvent.Type.MARK_ALL</code>.  "Mark all" behavior
 	 * is automatically performed when {@link #find(JTextArea, SearchContext)}
-	 * or {@link #replace(RTextArea, SearchContext)} is called.
+	 * or {@link #replace(RTextArea, SearchContext)} is called.<p>
+	 *
+	 * The highlights are kept up to date as the document is edited, until
+	 * they are cleared or another search is done.
 	 *
 	 * @param textArea The text area in which to mark occurrences.
 	 * @param context The search context specifying the text to search for.
@@ -739,43 +1090,11 @@ public final class SearchEngine {
 		if (context.getMarkAll() && toMark!=null && toMark.length()>0
 				/*&& !toMark.equals(markedWord)*/) {
 
-			List<DocumentRange> highlights = new ArrayList<>();
-			context = context.clone();
-			context.setSearchForward(true);
-			context.setMarkAll(false);
-
-			String findIn = textArea.getText();
-			int start = 0;
-
-			// Optimization for pedantic worst-case of thousands of matches
-			// while doing a case-insensitive search.  Go ahead and normalize
-			// case just once, so that toLowerCase() isn't done for toMark and
-			// findIn for each match found.
-			if (!context.getMatchCase()) {
-				context.setMatchCase(true);
-				context.setSearchFor(toMark.toLowerCase());
-				findIn = findIn.toLowerCase();
-			}
-
-			SearchResult res = SearchEngine.findImpl(findIn, context);
-			while (res.wasFound()) {
-				DocumentRange match = res.getMatchRange().translate(start);
-				if (match.isZeroLength()) {
-					// Searched for a regex like "foo|".  The "empty string"
-					// part of the regex matches space between chars.  We want
-					// to skip these in the case of mark-all.
-					start = match.getEndOffset() + 1;
-					if (start>findIn.length()) {
-						break;
-					}
-				}
-				else {
-					highlights.add(match);
-					start = match.getEndOffset();
-				}
-				res = SearchEngine.findImpl(findIn.substring(start), context);
-			}
+			CharSequence findIn = getFindInCharSequence(textArea, 0, true);
+			List<DocumentRange> highlights = getAllMatches(findIn, context);
 			textArea.markAll(highlights);
+			textArea.setMarkAllIndex(new MatchIndex(textArea, context,
+					highlights, true));
 			markAllCount = highlights.size();
 		}
 
@@ -962,7 +1281,9 @@ public final class SearchEngine {
 
 	/**
 	 * Replaces all instances of the text/regular expression specified in
-	 * the specified document with the specified replacement.
+	 * the specified document with the specified replacement.  The document
+	 * is only searched once, and the replacements are made in a single
+	 * atomic edit, so they can be undone all at once.
 	 *
 	 * @param textArea The text area in which to search.
 	 * @param context What to search for and all search options.
@@ -989,55 +1310,189 @@ public final class SearchEngine {
 			return new SearchResult();
 		}
 
-		// We call into SearchEngine.replace() multiple times, but we don't
-		// want to perform a "mark all" ever.
-		if (context.getMarkAll()) {
-			context = context.clone();
-			context.setMarkAll(false);
+		if (!textArea.isEditable() || !textArea.isEnabled()) {
+			UIManager.getLookAndFeel().provideErrorFeedback(textArea);
+			return new SearchResult();
 		}
 
-		SearchResult lastFound = null;
-		int count = 0;
+		// Find all matches and their replacements in a single pass, rather
+		// than searching the document again after each replacement
+		CharSequence findIn = getFindInCharSequence(textArea, 0, true);
+		List<DocumentRange> matches = new ArrayList<>();
+		List<String> replacements = new ArrayList<>();
+		getAllReplacements(findIn, context, matches, replacements);
+		if (matches.isEmpty()) {
+			return new SearchResult();
+		}
+
+		// Emulated tabs are expanded based on the column each replacement
+		// ends up at, which depends on the replacements before it on the
+		// same line, so this is done first, in document order
+		boolean emulateTabs = textArea.getTabsEmulated();
+		int tabSize = textArea.getTabSize();
+		int column = 0; // In the new text, after the previous replacement
+		int prevEnd = 0;
+		int lengthChange = 0;
+		for (int i=0; i<matches.size(); i++) {
+			DocumentRange match = matches.get(i);
+			String replacement = replacements.get(i);
+			if (emulateTabs) {
+				column = getColumnAfter(findIn, prevEnd,
+						match.getStartOffset(), column, tabSize);
+				if (replacement.indexOf('\t')>-1) {
+					replacement = expandTabs(replacement, column, tabSize);
+					replacements.set(i, replacement);
+				}
+				column = getColumnAfter(replacement, 0, replacement.length(),
+						column, tabSize);
+				prevEnd = match.getEndOffset();
+			}
+			lengthChange += replacement.length() -
+					(match.getEndOffset() - match.getStartOffset());
+		}
+
+		// Replace each match separately, so Positions between them (e.g.
+		// bookmarks and folds) aren't collapsed.  Going from last to first
+		// means the offsets of matches not yet replaced are still valid.
 		textArea.beginAtomicEdit();
 		try {
+			for (int i=matches.size()-1; i>=0; i--) {
+				DocumentRange match = matches.get(i);
+				textArea.replaceRange(replacements.get(i),
+						match.getStartOffset(), match.getEndOffset());
+			}
+		} finally {
+			textArea.endAtomicEdit();
+		}
 
-			int oldOffs = textArea.getCaretPosition();
-			textArea.setCaretPosition(0);
-			SearchResult res = SearchEngine.replace(textArea, context);
+		// Leave the caret at the end of the last replacement
+		int dot = matches.get(matches.size()-1).getEndOffset() + lengthChange;
+		DocumentRange range = new DocumentRange(dot, dot);
+		RSyntaxUtilities.selectAndPossiblyCenter(textArea, range, true);
+		return new SearchResult(range, matches.size(), 0);
 
-			while (res.wasFound()) {
+	}
 
-				lastFound = res;
-				count++;
 
-				// Protect against regexes that can match 0-length strings,
-				// such as ".*" and "(?=a).  See:
-				// https://github.com/bobbylight/RSyntaxTextArea/issues/107
-				if (res.getMatchRange().isZeroLength()) {
-					if (res.getMatchRange().getStartOffset() ==
-							textArea.getDocument().getLength()) {
-						break;
-					}
-					else { // End of a line
-						textArea.setCaretPosition(textArea.getCaretPosition() + 1);
-					}
-				}
+	/**
+	 * Finds all non-overlapping matches of a search in a range of text,
+	 * possibly splitting the range into chunks that are searched in
+	 * parallel.
+	 *
+	 * @see SearchEngine#getAllMatches(CharSequence, SearchContext, boolean)
+	 */
+	static final class MatchFinder extends RecursiveTask<List<DocumentRange>> {
+
+		private CharSequence searchIn;
+		private int start;
+		private int end;
+		private Pattern pattern;
+		private LiteralMatcher literalMatcher;
+		private boolean wholeWord;
+		private boolean lineLocal;
+
+		private MatchFinder(CharSequence searchIn, int start, int end,
+				Pattern pattern, LiteralMatcher literalMatcher,
+				boolean wholeWord, boolean lineLocal) {
+			this.searchIn = searchIn;
+			this.start = start;
+			this.end = end;
+			this.pattern = pattern;
+			this.literalMatcher = literalMatcher;
+			this.wholeWord = wholeWord;
+			this.lineLocal = lineLocal;
+		}
 
-				res = SearchEngine.replace(textArea, context);
+		@Override
+		protected List<DocumentRange> compute() {
 
+			if (end-start<2*PARALLEL_SEARCH_MIN_CHUNK) {
+				return findMatches();
 			}
 
-			if (lastFound==null) { // If nothing was found, don't move the caret
-				textArea.setCaretPosition(oldOffs);
-				lastFound = new SearchResult();
+			// Split at a line start so no match spans the two halves
+			int mid = start + (end-start)/2;
+			while (mid<end && searchIn.charAt(mid-1)!='\n') {
+				mid++;
+			}
+			if (mid==end) {
+				return findMatches();
 			}
 
-		} finally {
-			textArea.endAtomicEdit();
+			MatchFinder first = createFinder(searchIn, start, mid);
+			first.fork();
+			List<DocumentRange> secondMatches =
+					createFinder(searchIn, mid, end).compute();
+			List<DocumentRange> matches = first.join();
+			matches.addAll(secondMatches);
+			return matches;
+
+		}
+
+		/**
+		 * Returns a finder for the same search in a range of text.
+		 *
+		 * @param text The text to search in.
+		 * @param from The start of the range to search.
+		 * @param to The end of the range to search.
+		 * @return The finder.
+		 */
+		MatchFinder createFinder(CharSequence text, int from, int to) {
+			return new MatchFinder(text, from, to, pattern, literalMatcher,
+					wholeWord, lineLocal);
 		}
 
-		lastFound.setCount(count);
-		return lastFound;
+		/**
+		 * Finds the matches in this finder's range on the calling thread.
+		 *
+		 * @return The matches.
+		 */
+		List<DocumentRange> findMatches() {
+
+			List<DocumentRange> matches = new ArrayList<>();
+
+			if (pattern!=null) {
+				// Lookarounds and anchors must see the text outside of the
+				// range, exactly as they would if all the text was searched
+				Matcher m = pattern.matcher(searchIn);
+				m.useTransparentBounds(true);
+				m.useAnchoringBounds(false);
+				m.region(start, end);
+				while (m.find()) {
+					if (m.end()>m.start()) {
+						matches.add(new DocumentRange(m.start(), m.end()));
+					}
+				}
+				return matches;
+			}
+
+			CharSequence range = searchIn.subSequence(start, end);
+			int len = literalMatcher.getLength();
+			int offs = literalMatcher.indexOf(range, 0);
+			while (offs>-1) {
+				if (!wholeWord || isWholeWord(searchIn, start + offs, len)) {
+					matches.add(new DocumentRange(start + offs,
+							start + offs + len));
+					offs = literalMatcher.indexOf(range, offs+len);
+				}
+				else {
+					offs = literalMatcher.indexOf(range, offs+1);
+				}
+			}
+			return matches;
+
+		}
+
+		/**
+		 * Returns whether no match can contain a newline.  In this case, the
+		 * matches found by searching from any line start are the same as
+		 * those found by searching all of the text.
+		 *
+		 * @return Whether matches are confined to a single line.
+		 */
+		boolean isLineLocal() {
+			return lineLocal;
+		}
 
 	}
 
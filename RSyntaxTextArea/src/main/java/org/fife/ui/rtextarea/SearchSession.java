@@ -0,0 +1,437 @@
+/*
+ * 10/17/2026
+ *
+ * SearchSession.java - Keeps the matches of a search up to date as the
+ * search text and document change.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rtextarea;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Caret;
+import javax.swing.text.Document;
+
+import org.fife.ui.rsyntaxtextarea.DocumentRange;
+import org.fife.ui.rsyntaxtextarea.RSyntaxUtilities;
+import org.fife.util.DynamicIntArray;
+
+
+/**
+ * Keeps the matches of a search in a text area up to date as the text
+ * searched for and the document change, for "find as you type" search
+ * fields.  {@link SearchEngine} searches the entire document for each
+ * request; a session instead remembers its matches between requests:
+ *
+ * <ul>
+ *    <li>When the text searched for is extended (e.g. the user types another
+ *        character), the previous matches are narrowed down instead of
+ *        searching the document again.  This is only done for literal
+ *        searches, since adding to a regular expression can produce matches
+ *        it didn't have before, and only until the document is edited.
+ *    <li>When the document is edited, only the lines around the edit are
+ *        searched again, and the matches after it are shifted lazily (see
+ *        {@link MatchIndex}).  Regular expressions that may match across
+ *        lines cause the whole document to be searched again.
+ *    <li>Regular expressions are only compiled when the search changes.
+ * </ul>
+ *
+ * The matches are the same as those highlighted by
+ * {@link SearchEngine#markAll(RTextArea, SearchContext)}.  If the search
+ * context has "mark all" enabled, the text area's "mark all" highlights are
+ * kept in sync with them.  Call {@link #dispose()} when the session is no
+ * longer needed, e.g. when a search toolbar is closed.<p>
+ *
+ * Like the rest of Swing, this class should only be used on the EDT.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see SearchEngine
+ */
+public class SearchSession implements DocumentListener, PropertyChangeListener {
+
+	private RTextArea textArea;
+	private SearchContext context;
+
+	/**
+	 * The search options the current matches were found with.
+	 */
+	private String searchFor;
+	private boolean matchCase;
+	private boolean wholeWord;
+
+	/**
+	 * Finds occurrences of the text searched for, or <code>null</code> if
+	 * this isn't a literal search.
+	 */
+	private LiteralMatcher literalMatcher;
+
+	/**
+	 * For literal searches, the start offsets of every occurrence of the
+	 * search text, including overlapping ones and ones that aren't whole
+	 * words.  The matches are a subset of these.  This is only used to
+	 * narrow down the matches when the search text is extended, so it's
+	 * discarded (set to <code>null</code>) when the document is edited,
+	 * rather than kept up to date.
+	 */
+	private DynamicIntArray occurrences;
+
+	/**
+	 * The matches, or <code>null</code> if there's nothing to search for.
+	 */
+	private MatchIndex matches;
+
+
+	/**
+	 * Constructor.  The document is searched immediately.
+	 *
+	 * @param textArea The text area to search in.
+	 * @param context The search to run.  Changes to it are picked up
+	 *        automatically.
+	 */
+	public SearchSession(RTextArea textArea, SearchContext context) {
+		this.textArea = textArea;
+		this.context = context;
+		context.addPropertyChangeListener(this);
+		textArea.addPropertyChangeListener("document", this);
+		textArea.getDocument().addDocumentListener(this);
+		search();
+		updateMarkAll();
+	}
+
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+	}
+
+
+	/**
+	 * Derives the matches of a literal search from the occurrences of the
+	 * search text, the same way
+	 * {@link SearchEngine#getAllMatches(CharSequence, SearchContext)} picks
+	 * them, and starts keeping them up to date.
+	 *
+	 * @param text The document's text.
+	 */
+	private void collectMatches(CharSequence text) {
+
+		List<DocumentRange> found = new ArrayList<>();
+		int len = literalMatcher.getLength();
+		int nextStart = 0;
+		for (int i=0; i<occurrences.getSize(); i++) {
+			int offs = occurrences.getUnsafe(i);
+			if (offs>=nextStart) {
+				if (!wholeWord || SearchEngine.isWholeWord(text, offs, len)) {
+					found.add(new DocumentRange(offs, offs + len));
+					nextStart = offs + len;
+				}
+				else {
+					nextStart = offs + 1;
+				}
+			}
+		}
+
+		setMatches(new MatchIndex(textArea, context, found,
+				context.getMarkAll()));
+
+	}
+
+
+	/**
+	 * Stops listening for changes and removes any "mark all" highlights this
+	 * session added.  The session shouldn't be used afterward.
+	 */
+	public void dispose() {
+		setMatches(null);
+		context.removePropertyChangeListener(this);
+		textArea.removePropertyChangeListener("document", this);
+		textArea.getDocument().removeDocumentListener(this);
+		if (context.getMarkAll()) {
+			textArea.clearMarkAllHighlights();
+			List<DocumentRange> empty = Collections.emptyList();
+			textArea.markAll(empty);
+		}
+		occurrences = null;
+	}
+
+
+	/**
+	 * Selects the next match in the search direction, the same way
+	 * {@link SearchEngine#find(javax.swing.JTextArea, SearchContext)} would:
+	 * searching forward selects the first match after the selection, and
+	 * searching backward selects the last match before it.  This doesn't
+	 * search the document again, unless an edit requires it.<p>
+	 *
+	 * Unlike <code>SearchEngine.find()</code>, only the non-overlapping
+	 * matches marked by "mark all" can be found.
+	 *
+	 * @return The result of the operation.
+	 */
+	public SearchResult find() {
+
+		int count = getMatchCount();
+		int markedCount = context.getMarkAll() ? count : 0;
+		if (count==0) {
+			SearchResult result = new SearchResult();
+			result.setMarkedCount(markedCount);
+			return result;
+		}
+
+		Caret c = textArea.getCaret();
+		boolean forward = context.getSearchForward();
+		boolean wrapped = false;
+		int index;
+		if (forward) {
+			int start = Math.max(c.getDot(), c.getMark());
+			index = matches.getFirstIndexStartingAtOrAfter(start);
+			if (index==count) {
+				if (!context.getSearchWrap()) {
+					return new SearchResult(null, 0, markedCount);
+				}
+				index = 0;
+				wrapped = true;
+			}
+		}
+		else {
+			int start = Math.min(c.getDot(), c.getMark());
+			index = matches.getFirstIndexEndingAtOrAfter(start + 1) - 1;
+			if (index<0) {
+				if (!context.getSearchWrap()) {
+					return new SearchResult(null, 0, markedCount);
+				}
+				index = count - 1;
+				wrapped = true;
+			}
+		}
+
+		DocumentRange range = new DocumentRange(matches.getMatchStart(index),
+				matches.getMatchEnd(index));
+		c.setSelectionVisible(true);
+		RSyntaxUtilities.selectAndPossiblyCenter(textArea, range, true);
+		SearchResult result = new SearchResult(range, 1, markedCount);
+		result.setWrapped(wrapped);
+		return result;
+
+	}
+
+
+	/**
+	 * Finds every occurrence of the text searched for in the document.
+	 *
+	 * @param text The document's text.
+	 */
+	private void findOccurrences(CharSequence text) {
+		occurrences = new DynamicIntArray();
+		int offs = literalMatcher.indexOf(text, 0);
+		while (offs>-1) {
+			occurrences.add(offs);
+			offs = literalMatcher.indexOf(text, offs + 1);
+		}
+	}
+
+
+	/**
+	 * Returns the number of matches.
+	 *
+	 * @return The number of matches.
+	 * @see #getMatches()
+	 */
+	public int getMatchCount() {
+		return matches!=null ? matches.getMatchCount() : 0;
+	}
+
+
+	/**
+	 * Returns the matches.
+	 *
+	 * @return The matches, in document order.  This will be empty if there
+	 *         is nothing to search for, or the regular expression searched
+	 *         for is invalid.
+	 * @see #getMatchCount()
+	 */
+	public List<DocumentRange> getMatches() {
+		return matches!=null ? matches.getMatches() : new ArrayList<>();
+	}
+
+
+	/**
+	 * Returns the document's text.  For <code>RDocument</code>s, this
+	 * doesn't make a copy.
+	 */
+	private CharSequence getText() {
+		return SearchEngine.getFindInCharSequence(textArea, 0, true);
+	}
+
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		// The matches keep themselves up to date
+		occurrences = null;
+	}
+
+
+	/**
+	 * Narrows the matches of a literal search down to those of a longer
+	 * search string starting with the current one.
+	 *
+	 * @param text The new text to search for.
+	 */
+	private void narrow(String text) {
+
+		LiteralMatcher matcher = new LiteralMatcher(text, matchCase);
+		CharSequence docText = getText();
+
+		int count = 0;
+		for (int i=0; i<occurrences.getSize(); i++) {
+			int offs = occurrences.getUnsafe(i);
+			if (matcher.matchesAt(docText, offs)) {
+				occurrences.setUnsafe(count++, offs);
+			}
+		}
+		removeRange(occurrences, count, occurrences.getSize());
+
+		searchFor = text;
+		literalMatcher = matcher;
+		collectMatches(docText);
+
+	}
+
+
+	@Override
+	public void propertyChange(PropertyChangeEvent e) {
+
+		String prop = e.getPropertyName();
+
+		if ("document".equals(prop)) {
+			Document old = (Document)e.getOldValue();
+			if (old!=null) {
+				old.removeDocumentListener(this);
+			}
+			textArea.getDocument().addDocumentListener(this);
+			search();
+		}
+
+		else if (SearchContext.PROPERTY_SEARCH_FOR.equals(prop)) {
+			String text = context.getSearchFor();
+			if (occurrences!=null && literalMatcher.getLength()>0 &&
+					!context.isRegularExpression() && text!=null &&
+					text.length()>searchFor.length() &&
+					literalMatcher.matchesAt(text, 0)) {
+				narrow(text);
+			}
+			else {
+				search();
+			}
+		}
+
+		else if (SearchContext.PROPERTY_MATCH_WHOLE_WORD.equals(prop) &&
+				occurrences!=null) {
+			wholeWord = context.getWholeWord();
+			collectMatches(getText());
+		}
+
+		else if (SearchContext.PROPERTY_MATCH_WHOLE_WORD.equals(prop) ||
+				SearchContext.PROPERTY_MATCH_CASE.equals(prop) ||
+				SearchContext.PROPERTY_USE_REGEX.equals(prop)) {
+			search();
+		}
+
+		else if (!SearchContext.PROPERTY_MARK_ALL.equals(prop)) {
+			return; // e.g. search direction, which doesn't affect the matches
+		}
+
+		updateMarkAll();
+
+	}
+
+
+	/**
+	 * Removes a range of values from an array.  Unlike
+	 * {@link DynamicIntArray#removeRange(int, int)}, the range may be empty.
+	 */
+	private static void removeRange(DynamicIntArray array, int from,
+			int to) {
+		if (from<to) {
+			array.removeRange(from, to);
+		}
+	}
+
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		// The matches keep themselves up to date
+		occurrences = null;
+	}
+
+
+	/**
+	 * Searches the entire document with the context's current options.
+	 */
+	private void search() {
+
+		searchFor = context.getSearchFor();
+		matchCase = context.getMatchCase();
+		wholeWord = context.getWholeWord();
+		literalMatcher = null;
+		occurrences = null;
+
+		if (searchFor==null || searchFor.length()==0) {
+			setMatches(null);
+		}
+		else if (context.isRegularExpression()) {
+			setMatches(new MatchIndex(textArea, context, null,
+					context.getMarkAll()));
+		}
+		else {
+			CharSequence text = getText();
+			literalMatcher = new LiteralMatcher(searchFor, matchCase);
+			findOccurrences(text);
+			collectMatches(text);
+		}
+
+	}
+
+
+	/**
+	 * Sets the matches to keep up to date, discarding the previous ones.
+	 *
+	 * @param matches The new matches, or <code>null</code> for none.
+	 */
+	private void setMatches(MatchIndex matches) {
+		if (this.matches!=null) {
+			this.matches.dispose();
+		}
+		this.matches = matches;
+	}
+
+
+	/**
+	 * Updates the text area's "mark all" highlights to this session's
+	 * matches, or clears them if the context doesn't have "mark all"
+	 * enabled.
+	 */
+	private void updateMarkAll() {
+		// This session keeps the highlights up to date instead
+		textArea.setMarkAllIndex(null);
+		if (matches!=null) {
+			matches.setMarkAll(context.getMarkAll());
+		}
+		if (context.getMarkAll()) {
+			textArea.updateMarkAllHighlights(getMatches());
+		}
+		else {
+			List<DocumentRange> empty = Collections.emptyList();
+			textArea.updateMarkAllHighlights(empty);
+		}
+	}
+
+
+}
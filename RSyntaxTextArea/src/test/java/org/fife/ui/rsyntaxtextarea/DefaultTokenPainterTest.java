@@ -6,6 +6,7 @@ package org.fife.ui.rsyntaxtextarea;
 
 
 import org.fife.ui.SwingRunner;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -22,6 +23,32 @@ import java.awt.*;
 public class DefaultTokenPainterTest extends AbstractRSyntaxTextAreaTest {
 
 
+	@Test
+	public void testPaintImpl_glyphCacheEnabled() {
+
+		RSyntaxTextArea textArea = createTextArea();
+		textArea.addNotify();
+		textArea.setAntiAliasingEnabled(false);
+		textArea.setGlyphCacheEnabled(true);
+		Graphics2D g2d = createTestGraphics();
+		TabExpander e = (x, tabOffset) -> x + 5;
+		GlyphVectorCache cache = textArea.getSyntaxScheme().getGlyphVectorCache();
+
+		char[] chars = "\tpublic\tvoid".toCharArray();
+		Token t = new TokenImpl(chars, 0, chars.length - 1, 0, TokenTypes.IDENTIFIER, 0);
+		DefaultTokenPainter painter = new DefaultTokenPainter();
+		float x = painter.paint(t, g2d, 0, 0, textArea, e);
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(0, cache.getHitCount());
+
+		// Painting again uses the cached glyphs and advances the same amount
+		Assert.assertEquals(x, painter.paint(t, g2d, 0, 0, textArea, e), 0);
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(2, cache.getHitCount());
+
+	}
+
+
 	@Test
 	public void testPaintImpl_notSelected_noSTC() {
 		testPaintImplImpl(false, false);
@@ -0,0 +1,144 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import javax.swing.text.PlainDocument;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link DocumentSnapshot} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class DocumentSnapshotTest {
+
+
+	private static void assertSameContent(RSyntaxDocument expected,
+			RSyntaxDocument actual) throws Exception {
+		Assert.assertEquals(expected.getText(0, expected.getLength()),
+				actual.getText(0, actual.getLength()));
+		int lineCount = expected.getDefaultRootElement().getElementCount();
+		Assert.assertEquals(lineCount,
+				actual.getDefaultRootElement().getElementCount());
+		for (int i=0; i<lineCount; i++) {
+			Assert.assertEquals("Line " + i,
+					expected.getLastTokenTypeOnLine(i),
+					actual.getLastTokenTypeOnLine(i));
+		}
+	}
+
+
+	private static RSyntaxDocument createDocument() throws Exception {
+		RSyntaxDocument doc = new RSyntaxDocument(
+				SyntaxConstants.SYNTAX_STYLE_C);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<100; i++) {
+			sb.append("int x").append(i).append(" = 5;\n");
+		}
+		doc.insertString(0, sb.toString(), null);
+		return doc;
+	}
+
+
+	@Test
+	public void testDispose() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		DocumentSnapshot snapshot = new DocumentSnapshot(doc);
+		snapshot.getCopy();
+		snapshot.dispose();
+
+		// Edits are no longer recorded, but a new copy is up to date
+		doc.insertString(0, "/*", null);
+		assertSameContent(doc, snapshot.getCopy());
+
+	}
+
+
+	@Test
+	public void testGetCopy() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		DocumentSnapshot snapshot = new DocumentSnapshot(doc);
+		Assert.assertSame(doc, snapshot.getDocument());
+
+		RSyntaxDocument copy = snapshot.getCopy();
+		Assert.assertNotSame(doc, copy);
+		assertSameContent(doc, copy);
+
+		// The copy isn't affected by edits until it's asked for again
+		doc.insertString(doc.getDefaultRootElement().getElement(10).
+				getStartOffset(), "/* start\nof a comment\n", null);
+		doc.remove(0, 3);
+		Assert.assertNotEquals(doc.getLength(), copy.getLength());
+
+		Assert.assertSame(copy, snapshot.getCopy());
+		assertSameContent(doc, copy);
+
+		// Closing the comment changes the lexer state of all lines after it
+		doc.insertString(doc.getLength(), "*/", null);
+		doc.remove(doc.getDefaultRootElement().getElement(50).
+				getStartOffset(), 5);
+		Assert.assertSame(copy, snapshot.getCopy());
+		assertSameContent(doc, copy);
+
+	}
+
+
+	@Test
+	public void testGetCopy_largeEdits() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		DocumentSnapshot snapshot = new DocumentSnapshot(doc);
+		RSyntaxDocument copy = snapshot.getCopy();
+
+		// Large edits aren't kept, so the document is copied again
+		doc.insertString(0, doc.getText(0, doc.getLength()), null);
+		RSyntaxDocument copy2 = snapshot.getCopy();
+		Assert.assertNotSame(copy, copy2);
+		assertSameContent(doc, copy2);
+
+	}
+
+
+	@Test
+	public void testGetCopy_syntaxStyleChanged() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		DocumentSnapshot snapshot = new DocumentSnapshot(doc);
+		RSyntaxDocument copy = snapshot.getCopy();
+
+		doc.setSyntaxStyle(SyntaxConstants.SYNTAX_STYLE_JAVA);
+		RSyntaxDocument copy2 = snapshot.getCopy();
+		Assert.assertNotSame(copy, copy2);
+		Assert.assertEquals(SyntaxConstants.SYNTAX_STYLE_JAVA,
+				copy2.getSyntaxStyle());
+		assertSameContent(doc, copy2);
+
+	}
+
+
+	@Test
+	public void testGetCopy_tabSizeChanged() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		DocumentSnapshot snapshot = new DocumentSnapshot(doc);
+		RSyntaxDocument copy = snapshot.getCopy();
+
+		doc.putProperty(PlainDocument.tabSizeAttribute, 8);
+		RSyntaxDocument copy2 = snapshot.getCopy();
+		Assert.assertNotSame(copy, copy2);
+		Assert.assertEquals(8, copy2.getProperty(PlainDocument.tabSizeAttribute));
+
+	}
+
+
+}
@@ -0,0 +1,258 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+import org.fife.ui.rsyntaxtextarea.modes.JavaTokenMaker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link DocumentTokenizer} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class DocumentTokenizerTest {
+
+
+	private static RSyntaxDocument createDocument(int lineCount)
+			throws Exception {
+		RSyntaxDocument doc = new RSyntaxDocument(
+				SyntaxConstants.SYNTAX_STYLE_JAVA);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<lineCount; i++) {
+			sb.append("int x").append(i).append(" = 5; // comment\n");
+		}
+		doc.insertString(0, sb.toString(), null);
+		return doc;
+	}
+
+
+	private static void assertSameTokens(Token expected, Token actual) {
+		while (expected!=null && expected.isPaintable()) {
+			Assert.assertNotNull(actual);
+			Assert.assertEquals(expected.getType(), actual.getType());
+			Assert.assertEquals(expected.getOffset(), actual.getOffset());
+			Assert.assertEquals(expected.getLexeme(), actual.getLexeme());
+			expected = expected.getNextToken();
+			actual = actual.getNextToken();
+		}
+		Assert.assertTrue(actual==null || !actual.isPaintable());
+	}
+
+
+	@Test
+	public void testGetDocument() throws Exception {
+		RSyntaxDocument doc = createDocument(1);
+		Assert.assertSame(doc, doc.newTokenizer().getDocument());
+	}
+
+
+	@Test
+	public void testGetTokenListForLine() throws Exception {
+
+		RSyntaxDocument doc = createDocument(10);
+		doc.insertString(doc.getDefaultRootElement().getElement(3).
+				getStartOffset(), "/*", null);
+
+		DocumentTokenizer tokenizer = doc.newTokenizer();
+		int lineCount = doc.getDefaultRootElement().getElementCount();
+		for (int line=0; line<lineCount; line++) {
+			assertSameTokens(doc.getTokenListForLine(line),
+					tokenizer.getTokenListForLine(line));
+		}
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_anonymousTokenMaker() throws Exception {
+
+		// Anonymous token makers can't be copied, so the document's own
+		// tokens are used
+		RSyntaxDocument doc = createDocument(10);
+		doc.setSyntaxStyle(new JavaTokenMaker() {});
+		doc.insertString(doc.getDefaultRootElement().getElement(3).
+				getStartOffset(), "/*", null);
+		int lineCount = doc.getDefaultRootElement().getElementCount();
+
+		// From a background thread
+		DocumentTokenizer tokenizer = doc.newTokenizer();
+		for (int line=0; line<lineCount; line++) {
+			Token t = tokenizer.getTokenListForLine(line);
+			Token[] expected = new Token[1];
+			int l = line;
+			SwingUtilities.invokeAndWait(() ->
+					expected[0] = doc.getTokenListForLine(l));
+			assertSameTokens(expected[0], t);
+		}
+		Assert.assertNull(tokenizer.getTokenListForLine(lineCount));
+
+		// And on the EDT
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		SwingUtilities.invokeAndWait(() -> {
+			try {
+				DocumentTokenizer edtTokenizer = doc.newTokenizer();
+				for (int line=0; line<lineCount; line++) {
+					assertSameTokens(doc.getTokenListForLine(line),
+							edtTokenizer.getTokenListForLine(line));
+				}
+			} catch (Throwable th) {
+				error.set(th);
+			}
+		});
+		Assert.assertNull(error.get());
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_editBetweenSequentialCalls()
+			throws Exception {
+
+		RSyntaxDocument doc = createDocument(10);
+		DocumentTokenizer tokenizer = doc.newTokenizer();
+		for (int line=0; line<5; line++) {
+			tokenizer.getTokenListForLine(line);
+		}
+
+		// The state carried over from line 4 is no longer valid
+		doc.insertString(doc.getDefaultRootElement().getElement(3).
+				getStartOffset(), "/*", null);
+		Token t = tokenizer.getTokenListForLine(5);
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE, t.getType());
+		assertSameTokens(doc.getTokenListForLine(5), t);
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_initialTokenType() throws Exception {
+
+		RSyntaxDocument doc = createDocument(10);
+		DocumentTokenizer tokenizer = doc.newTokenizer();
+
+		// The caller's state is used, even if it's not the document's
+		Token t = tokenizer.getTokenListForLine(5,
+				TokenTypes.COMMENT_MULTILINE);
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE, t.getType());
+		t = tokenizer.getTokenListForLine(5, TokenTypes.NULL);
+		assertSameTokens(doc.getTokenListForLine(5), t);
+
+		// Later calls carry on from the caller's state
+		tokenizer.getTokenListForLine(5, TokenTypes.COMMENT_MULTILINE);
+		t = tokenizer.getTokenListForLine(6);
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE, t.getType());
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_invalidLine() throws Exception {
+		RSyntaxDocument doc = createDocument(2);
+		DocumentTokenizer tokenizer = doc.newTokenizer();
+		Assert.assertNull(tokenizer.getTokenListForLine(-1));
+		Assert.assertNull(tokenizer.getTokenListForLine(100));
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_notAffectedByLaterEdits()
+			throws Exception {
+
+		RSyntaxDocument doc = createDocument(2);
+		Token t = doc.newTokenizer().getTokenListForLine(0);
+		doc.remove(0, doc.getLength());
+
+		Assert.assertTrue(t.is(TokenTypes.DATA_TYPE, "int"));
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_staleLinesNotUpdated()
+			throws Exception {
+
+		AtomicReference<RSyntaxDocument> ref = new AtomicReference<>();
+		SwingUtilities.invokeAndWait(() -> {
+			try {
+				RSyntaxDocument doc = createDocument(1000);
+				doc.setLazyTokenStateUpdates(true);
+				doc.insertString(0, "/*", null);
+				ref.set(doc);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		RSyntaxDocument doc = ref.get();
+
+		// Tokenizing from this thread sees the unclosed comment even if the
+		// lines haven't been updated yet, and doesn't update them itself.
+		Token t = doc.newTokenizer().getTokenListForLine(900);
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE, t.getType());
+
+		SwingUtilities.invokeAndWait(() -> doc.setLazyTokenStateUpdates(false));
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_syntaxStyleChanged() throws Exception {
+
+		RSyntaxDocument doc = createDocument(2);
+		DocumentTokenizer tokenizer = doc.newTokenizer();
+		Token t = tokenizer.getTokenListForLine(0);
+		Assert.assertEquals(TokenTypes.DATA_TYPE, t.getType());
+
+		doc.setSyntaxStyle(SyntaxConstants.SYNTAX_STYLE_NONE);
+		t = tokenizer.getTokenListForLine(0);
+		Assert.assertEquals(TokenTypes.IDENTIFIER, t.getType());
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_concurrentEdits() throws Exception {
+
+		RSyntaxDocument doc = createDocument(200);
+		AtomicReference<Throwable> error = new AtomicReference<>();
+
+		Thread reader = new Thread(() -> {
+			try {
+				DocumentTokenizer tokenizer = doc.newTokenizer();
+				for (int pass=0; pass<20; pass++) {
+					for (int line=0; line<200; line++) {
+						Token t = tokenizer.getTokenListForLine(line);
+						for (; t!=null && t.isPaintable(); t=t.getNextToken()) {
+							t.getLexeme();
+						}
+					}
+				}
+			} catch (Throwable th) {
+				error.set(th);
+			}
+		});
+		reader.start();
+
+		for (int i=0; i<200; i++) {
+			doc.insertString(0, "/* x */ ", null);
+			doc.remove(0, 8);
+		}
+		reader.join();
+
+		Assert.assertNull(error.get());
+
+	}
+
+
+}
@@ -0,0 +1,180 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.Segment;
+
+import org.fife.ui.rsyntaxtextarea.modes.CTokenMaker;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link EdtTokenMaker} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class EdtTokenMakerTest {
+
+	private AtomicInteger linesLexed;
+	private AtomicInteger linesLexedOffEdt;
+	private TokenMaker delegate;
+	private RSyntaxDocument doc;
+
+	private static final int LINE_COUNT = 200;
+
+
+	@Before
+	public void setUp() throws Exception {
+
+		linesLexed = new AtomicInteger();
+		linesLexedOffEdt = new AtomicInteger();
+		delegate = new CTokenMaker() {
+			@Override
+			public Token getTokenList(Segment text, int initialTokenType,
+					int startOffset) {
+				// Also called by getLastTokenTypeOnLine()
+				linesLexed.incrementAndGet();
+				if (!SwingUtilities.isEventDispatchThread()) {
+					linesLexedOffEdt.incrementAndGet();
+				}
+				return super.getTokenList(text, initialTokenType, startOffset);
+			}
+		};
+
+		doc = new RSyntaxDocument(SyntaxConstants.SYNTAX_STYLE_C);
+		StringBuilder sb = new StringBuilder("/*");
+		for (int i=1; i<LINE_COUNT; i++) {
+			sb.append(i==100 ? "\n*/" : "\nint x = 5;");
+		}
+		doc.insertString(0, sb.toString(), null);
+
+	}
+
+
+	@Test
+	public void testGetLastTokenTypeOnLine() {
+
+		EdtTokenMaker tm = new EdtTokenMaker(delegate, doc);
+		int type = Token.NULL;
+		for (int i=0; i<LINE_COUNT; i++) {
+			type = tm.getLastTokenTypeOnLine(i, type);
+			Assert.assertEquals("Line " + i, doc.getLastTokenTypeOnLine(i),
+					type);
+		}
+
+		// Each trip to the EDT lexes a batch of lines
+		Assert.assertEquals(LINE_COUNT, linesLexed.get());
+		Assert.assertEquals(0, linesLexedOffEdt.get());
+
+	}
+
+
+	@Test
+	public void testGetLastTokenTypeOnLine_batches() {
+
+		EdtTokenMaker tm = new EdtTokenMaker(delegate, doc);
+		int batch = EdtTokenMaker.BATCH_LINE_COUNT;
+
+		int type = tm.getLastTokenTypeOnLine(0, Token.NULL);
+		Assert.assertEquals(batch, linesLexed.get());
+		for (int i=1; i<batch; i++) {
+			type = tm.getLastTokenTypeOnLine(i, type);
+		}
+		Assert.assertEquals(batch, linesLexed.get());
+
+		// Going past the end of the batch lexes the next one
+		tm.getLastTokenTypeOnLine(batch, type);
+		Assert.assertEquals(2 * batch, linesLexed.get());
+
+	}
+
+
+	@Test
+	public void testGetLastTokenTypeOnLine_differentInitialTokenType() {
+
+		EdtTokenMaker tm = new EdtTokenMaker(delegate, doc);
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				tm.getLastTokenTypeOnLine(1, TokenTypes.COMMENT_MULTILINE));
+		linesLexed.set(0);
+
+		// Line 2 was lexed assuming line 1 ended in a comment
+		Assert.assertEquals(Token.NULL,
+				tm.getLastTokenTypeOnLine(2, Token.NULL));
+		Assert.assertEquals(EdtTokenMaker.BATCH_LINE_COUNT, linesLexed.get());
+
+	}
+
+
+	@Test
+	public void testGetLastTokenTypeOnLine_documentModified() throws Exception {
+
+		EdtTokenMaker tm = new EdtTokenMaker(delegate, doc);
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				tm.getLastTokenTypeOnLine(0, Token.NULL));
+
+		doc.remove(0, 2);
+		linesLexed.set(0);
+		Assert.assertEquals(Token.NULL,
+				tm.getLastTokenTypeOnLine(0, Token.NULL));
+		Assert.assertEquals(EdtTokenMaker.BATCH_LINE_COUNT, linesLexed.get());
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine() {
+
+		EdtTokenMaker tm = new EdtTokenMaker(delegate, doc);
+		int type = Token.NULL;
+		for (int i=0; i<LINE_COUNT; i++) {
+			Token t = tm.getTokenListForLine(i, type);
+			Token expected = doc.getTokenListForLine(i);
+			for (; t!=null && t.isPaintable(); t=t.getNextToken()) {
+				Assert.assertEquals("Line " + i, expected.getType(),
+						t.getType());
+				Assert.assertEquals("Line " + i, expected.getOffset(),
+						t.getOffset());
+				Assert.assertEquals("Line " + i, expected.getLexeme(),
+						t.getLexeme());
+				expected = expected.getNextToken();
+			}
+			type = doc.getLastTokenTypeOnLine(i);
+		}
+
+		Assert.assertEquals(LINE_COUNT, linesLexed.get());
+		Assert.assertEquals(0, linesLexedOffEdt.get());
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_batches() {
+
+		EdtTokenMaker tm = new EdtTokenMaker(delegate, doc);
+		int batch = EdtTokenMaker.BATCH_LINE_COUNT;
+
+		tm.getTokenListForLine(0, Token.NULL);
+		Assert.assertEquals(batch, linesLexed.get());
+		for (int i=1; i<batch; i++) {
+			tm.getTokenListForLine(i, doc.getLastTokenTypeOnLine(i-1));
+		}
+		Assert.assertEquals(batch, linesLexed.get());
+
+		// Going past the end of the batch lexes the next one
+		tm.getTokenListForLine(batch, doc.getLastTokenTypeOnLine(batch-1));
+		Assert.assertEquals(2 * batch, linesLexed.get());
+
+	}
+
+
+}
@@ -0,0 +1,126 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link GlyphVectorCache} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class GlyphVectorCacheTest {
+
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+	private static final FontRenderContext FRC =
+			new FontRenderContext(null, false, false);
+
+
+	@Test
+	public void testClear() {
+		GlyphVectorCache cache = new GlyphVectorCache();
+		cache.get(FONT, FRC, "foo".toCharArray(), 0, 3);
+		Assert.assertEquals(3, cache.getCharCount());
+		cache.clear();
+		Assert.assertEquals(0, cache.getCharCount());
+	}
+
+
+	@Test
+	public void testGet_differentFontOrContext() {
+
+		GlyphVectorCache cache = new GlyphVectorCache();
+		char[] text = "public".toCharArray();
+		GlyphVector gv = cache.get(FONT, FRC, text, 0, text.length);
+
+		GlyphVector gv2 = cache.get(FONT.deriveFont(Font.BOLD), FRC, text, 0,
+				text.length);
+		Assert.assertNotSame(gv, gv2);
+		Assert.assertEquals(Font.BOLD, gv2.getFont().getStyle());
+
+		FontRenderContext aaFrc = new FontRenderContext(null, true, false);
+		gv2 = cache.get(FONT, aaFrc, text, 0, text.length);
+		Assert.assertNotSame(gv, gv2);
+		Assert.assertEquals(aaFrc, gv2.getFontRenderContext());
+
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertEquals(3, cache.getMissCount());
+
+	}
+
+
+	@Test
+	public void testGet_hit() {
+
+		GlyphVectorCache cache = new GlyphVectorCache();
+		char[] text = "int x = foo;".toCharArray();
+		GlyphVector gv = cache.get(FONT, FRC, text, 8, 3);
+		Assert.assertEquals(3, gv.getNumGlyphs());
+
+		// Same characters at a different offset in a different array
+		GlyphVector gv2 = cache.get(FONT, FRC, "foo".toCharArray(), 0, 3);
+		Assert.assertSame(gv, gv2);
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+
+		// The cached copy isn't affected by changes to the painted text
+		text[8] = 'b';
+		Assert.assertSame(gv, cache.get(FONT, FRC, "foo".toCharArray(), 0, 3));
+		Assert.assertNotSame(gv, cache.get(FONT, FRC, text, 8, 3));
+
+	}
+
+
+	@Test
+	public void testGet_leastRecentlyUsedEvicted() {
+
+		GlyphVectorCache cache = new GlyphVectorCache(12);
+		GlyphVector one = cache.get(FONT, FRC, "one".toCharArray(), 0, 3);
+		GlyphVector two = cache.get(FONT, FRC, "two".toCharArray(), 0, 3);
+		cache.get(FONT, FRC, "three".toCharArray(), 0, 5);
+		Assert.assertEquals(11, cache.getCharCount());
+
+		// "one" is now more recently used than "two"
+		Assert.assertSame(one, cache.get(FONT, FRC, "one".toCharArray(), 0, 3));
+		cache.get(FONT, FRC, "four".toCharArray(), 0, 4);
+		Assert.assertEquals(12, cache.getCharCount());
+
+		Assert.assertSame(one, cache.get(FONT, FRC, "one".toCharArray(), 0, 3));
+		Assert.assertNotSame(two, cache.get(FONT, FRC, "two".toCharArray(), 0, 3));
+
+	}
+
+
+	@Test
+	public void testGet_notCacheable() {
+
+		GlyphVectorCache cache = new GlyphVectorCache();
+
+		char[] hebrew = "\u05e9\u05dc\u05d5\u05dd".toCharArray();
+		Assert.assertNull(cache.get(FONT, FRC, hebrew, 0, hebrew.length));
+
+		char[] combining = "e\u0301".toCharArray();
+		Assert.assertNull(cache.get(FONT, FRC, combining, 0, combining.length));
+
+		char[] longRun = new char[GlyphVectorCache.MAX_RUN_LENGTH + 1];
+		Assert.assertNull(cache.get(FONT, FRC, longRun, 0, longRun.length));
+
+		Assert.assertNull(cache.get(FONT, FRC, "foo".toCharArray(), 1, 0));
+		Assert.assertEquals(0, cache.getCharCount());
+
+	}
+
+
+}
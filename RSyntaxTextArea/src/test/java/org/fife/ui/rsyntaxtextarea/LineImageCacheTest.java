@@ -0,0 +1,138 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link LineImageCache} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class LineImageCacheTest {
+
+
+	private static Rectangle lineBounds(int line) {
+		return new Rectangle(0, line * 10, 100, 10);
+	}
+
+
+	@Test
+	public void testClear() {
+		LineImageCache cache = new LineImageCache();
+		cache.create(0, lineBounds(0), 1, null);
+		cache.clear();
+		Assert.assertNull(cache.get(0, lineBounds(0), 1));
+		Assert.assertEquals(0, cache.getPixelCount());
+	}
+
+
+	@Test
+	public void testCreate_evictsLeastRecentlyUsed() {
+
+		LineImageCache cache = new LineImageCache(2500);
+		cache.create(0, lineBounds(0), 1, null);
+		cache.create(1, lineBounds(1), 1, null);
+		Assert.assertNotNull(cache.get(0, lineBounds(0), 1));
+
+		cache.create(2, lineBounds(2), 1, null);
+		Assert.assertEquals(2000, cache.getPixelCount());
+		Assert.assertNotNull(cache.get(0, lineBounds(0), 1));
+		Assert.assertNull(cache.get(1, lineBounds(1), 1));
+		Assert.assertNotNull(cache.get(2, lineBounds(2), 1));
+
+	}
+
+
+	@Test
+	public void testCreate_imageLargerThanCache() {
+		LineImageCache cache = new LineImageCache(10);
+		BufferedImage image = cache.create(0, lineBounds(0), 1, null);
+		Assert.assertSame(image, cache.get(0, lineBounds(0), 1));
+	}
+
+
+	@Test
+	public void testCreate_reusesInvalidatedImage() {
+
+		LineImageCache cache = new LineImageCache();
+		BufferedImage image = cache.create(3, lineBounds(3), 1, null);
+		image.setRGB(5, 5, 0xff0000ff);
+
+		cache.invalidate(3, 3);
+		Assert.assertSame(image, cache.create(3, lineBounds(3), 1, null));
+		Assert.assertEquals(0, image.getRGB(5, 5));
+		Assert.assertEquals(1000, cache.getPixelCount());
+
+	}
+
+
+	@Test
+	public void testCreate_scale() {
+		LineImageCache cache = new LineImageCache();
+		BufferedImage image = cache.create(0, lineBounds(0), 2, null);
+		Assert.assertEquals(200, image.getWidth());
+		Assert.assertEquals(20, image.getHeight());
+		Assert.assertNull(cache.get(0, lineBounds(0), 1));
+		Assert.assertSame(image, cache.get(0, lineBounds(0), 2));
+	}
+
+
+	@Test
+	public void testGet() {
+
+		LineImageCache cache = new LineImageCache();
+		Assert.assertNull(cache.get(0, lineBounds(0), 1));
+
+		BufferedImage image = cache.create(0, lineBounds(0), 1, null);
+		Assert.assertEquals(100, image.getWidth());
+		Assert.assertEquals(10, image.getHeight());
+		Assert.assertSame(image, cache.get(0, lineBounds(0), 1));
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+
+		// The line moved, e.g. due to a fold above it being collapsed
+		Assert.assertNull(cache.get(0, lineBounds(1), 1));
+		// The visible width changed
+		Assert.assertNull(cache.get(0, new Rectangle(0, 0, 90, 10), 1));
+
+	}
+
+
+	@Test
+	public void testInvalidate() {
+
+		LineImageCache cache = new LineImageCache();
+		for (int i=0; i<5; i++) {
+			cache.create(i, lineBounds(i), 1, null);
+		}
+
+		cache.invalidate(1, 2);
+		Assert.assertNotNull(cache.get(0, lineBounds(0), 1));
+		Assert.assertNull(cache.get(1, lineBounds(1), 1));
+		Assert.assertNull(cache.get(2, lineBounds(2), 1));
+		Assert.assertNotNull(cache.get(3, lineBounds(3), 1));
+		Assert.assertNotNull(cache.get(4, lineBounds(4), 1));
+
+		// Lines without images are ignored
+		cache.invalidate(10, 20);
+		Assert.assertNotNull(cache.get(4, lineBounds(4), 1));
+
+		cache.invalidate(4, Integer.MAX_VALUE);
+		Assert.assertNotNull(cache.get(3, lineBounds(3), 1));
+		Assert.assertNull(cache.get(4, lineBounds(4), 1));
+
+	}
+
+
+}
@@ -0,0 +1,149 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link LineWidthCache} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class LineWidthCacheTest {
+
+
+	private static void assertMatches(List<Float> expected,
+			LineWidthCache cache) {
+		Assert.assertEquals(expected.size(), cache.getLineCount());
+		float max = 0;
+		for (int i=0; i<expected.size(); i++) {
+			Assert.assertEquals(expected.get(i), cache.getWidth(i), 0);
+			max = Math.max(max, expected.get(i));
+		}
+		Assert.assertEquals(max, cache.getMaxWidth(), 0);
+	}
+
+
+	@Test
+	public void testEmpty() {
+		LineWidthCache cache = new LineWidthCache();
+		Assert.assertEquals(0, cache.getLineCount());
+		Assert.assertEquals(0, cache.getMaxWidth(), 0);
+	}
+
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetWidth_invalidLine() {
+		new LineWidthCache(3).getWidth(3);
+	}
+
+
+	@Test
+	public void testInsertAndRemoveLines() {
+
+		LineWidthCache cache = new LineWidthCache(3);
+		cache.setWidth(0, 10);
+		cache.setWidth(1, 30);
+		cache.setWidth(2, 20);
+
+		cache.insertLines(1, 2);
+		Assert.assertEquals(5, cache.getLineCount());
+		Assert.assertEquals(0, cache.getWidth(1), 0);
+		Assert.assertEquals(30, cache.getWidth(3), 0);
+		Assert.assertEquals(30, cache.getMaxWidth(), 0);
+
+		cache.removeLines(2, 2);
+		Assert.assertEquals(3, cache.getLineCount());
+		Assert.assertEquals(20, cache.getWidth(2), 0);
+		Assert.assertEquals(20, cache.getMaxWidth(), 0);
+
+	}
+
+
+	@Test
+	public void testRandomEdits() {
+
+		Random random = new Random(0);
+		List<Float> expected = new ArrayList<>();
+		LineWidthCache cache = new LineWidthCache();
+
+		for (int i=0; i<2000; i++) {
+			int size = expected.size();
+			switch (random.nextInt(3)) {
+				case 0:
+					int count = random.nextInt(40);
+					int line = random.nextInt(size + 1);
+					cache.insertLines(line, count);
+					for (int j=0; j<count; j++) {
+						expected.add(line, 0f);
+					}
+					break;
+				case 1:
+					if (size>0) {
+						line = random.nextInt(size);
+						count = random.nextInt(Math.min(size - line, 40) + 1);
+						cache.removeLines(line, count);
+						expected.subList(line, line + count).clear();
+					}
+					break;
+				default:
+					for (int j=0; j<5 && size>0; j++) {
+						line = random.nextInt(size);
+						float width = random.nextInt(1000);
+						cache.setWidth(line, width);
+						expected.set(line, width);
+					}
+					break;
+			}
+			assertMatches(expected, cache);
+		}
+
+	}
+
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testRemoveLines_invalidCount() {
+		new LineWidthCache(3).removeLines(2, 2);
+	}
+
+
+	@Test
+	public void testReset() {
+		LineWidthCache cache = new LineWidthCache(5);
+		cache.setWidth(2, 7);
+		cache.reset(40);
+		Assert.assertEquals(40, cache.getLineCount());
+		Assert.assertEquals(0, cache.getWidth(2), 0);
+		Assert.assertEquals(0, cache.getMaxWidth(), 0);
+	}
+
+
+	@Test
+	public void testSetWidth_maxShrinks() {
+
+		LineWidthCache cache = new LineWidthCache(100);
+		for (int i=0; i<100; i++) {
+			cache.setWidth(i, i);
+		}
+		Assert.assertEquals(99, cache.getMaxWidth(), 0);
+
+		cache.setWidth(99, 1);
+		Assert.assertEquals(98, cache.getMaxWidth(), 0);
+		cache.setWidth(50, 500);
+		Assert.assertEquals(500, cache.getMaxWidth(), 0);
+
+	}
+
+
+}
@@ -5,14 +5,27 @@
 package org.fife.ui.rsyntaxtextarea;
 
 import org.fife.ui.SwingRunner;
+import org.fife.ui.rsyntaxtextarea.modes.CTokenMaker;
 import org.fife.ui.rsyntaxtextarea.parser.*;
 import org.fife.ui.rtextarea.RTextScrollPane;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.awt.SecondaryLoop;
+import java.awt.Toolkit;
 import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.swing.Timer;
+import javax.swing.text.Segment;
 
 
 /**
@@ -25,6 +38,31 @@ import java.beans.PropertyChangeListener;
 public class ParserManagerTest extends AbstractRSyntaxTextAreaTest {
 
 
+	/**
+	 * Runs asynchronous parsing, and pumps events until its results are
+	 * applied.
+	 */
+	private static void parseAsynchronously(RSyntaxTextArea textArea,
+			ParserManager manager) {
+
+		SecondaryLoop loop = Toolkit.getDefaultToolkit().getSystemEventQueue().
+				createSecondaryLoop();
+		PropertyChangeListener listener = e -> loop.exit();
+		textArea.addPropertyChangeListener(
+				RSyntaxTextArea.PARSER_NOTICES_PROPERTY, listener);
+		Timer timeout = new Timer(10000, e -> loop.exit());
+		timeout.setRepeats(false);
+
+		timeout.start();
+		manager.actionPerformed(null);
+		loop.enter();
+		timeout.stop();
+		textArea.removePropertyChangeListener(
+				RSyntaxTextArea.PARSER_NOTICES_PROPERTY, listener);
+
+	}
+
+
 	@Test
 	public void testConstructor_oneArg() {
 		RSyntaxTextArea textArea = createTextArea();
@@ -68,6 +106,190 @@ public class ParserManagerTest extends AbstractRSyntaxTextAreaTest {
 	}
 
 
+	@Test
+	public void testActionPerformed_incrementalParser() throws Exception {
+
+		int[] range = { -2, -2 };
+		class TestParser extends AbstractParser implements IncrementalParser {
+			@Override
+			public ParseResult parse(RSyntaxDocument doc, String style) {
+				range[0] = range[1] = -1;
+				return new DefaultParseResult(this);
+			}
+			@Override
+			public ParseResult parse(RSyntaxDocument doc, String style,
+									int firstLine, int lastLine) {
+				range[0] = firstLine;
+				range[1] = lastLine;
+				return new DefaultParseResult(this);
+			}
+		}
+		TestParser parser = new TestParser();
+
+		RSyntaxTextArea textArea = createTextArea();
+		textArea.setCodeFoldingEnabled(false);
+		ParserManager manager = new ParserManager(textArea);
+		manager.addParser(parser);
+
+		// The first parsing must be of the entire document
+		manager.actionPerformed(null);
+		Assert.assertEquals(-1, range[0]);
+
+		int offs = textArea.getLineStartOffset(3);
+		textArea.getDocument().insertString(offs, "x\ny", null);
+		manager.actionPerformed(null);
+		Assert.assertEquals(3, range[0]);
+		Assert.assertEquals(4, range[1]);
+
+		// A disabled parser misses edits
+		parser.setEnabled(false);
+		manager.actionPerformed(null);
+		textArea.getDocument().insertString(offs, "z", null);
+		parser.setEnabled(true);
+		manager.actionPerformed(null);
+		Assert.assertEquals(-1, range[0]);
+
+		// Replacing the document forces the next parsing to be complete
+		textArea.setDocument(new RSyntaxDocument(
+				SyntaxConstants.SYNTAX_STYLE_JAVA));
+		textArea.getDocument().insertString(0, "foo", null);
+		manager.actionPerformed(null);
+		Assert.assertEquals(-1, range[0]);
+
+	}
+
+
+	@Test
+	public void testActionPerformed_asynchronous_customTokenMaker()
+			throws Exception {
+
+		AbstractParser failingParser = new AbstractParser() {
+			@Override
+			public ParseResult parse(RSyntaxDocument doc, String style) {
+				throw new IllegalStateException("Parser failure");
+			}
+		};
+
+		RSyntaxTextArea textArea = createTextArea(
+				SyntaxConstants.SYNTAX_STYLE_C, "int x;\n/* TODO: Fix */");
+		textArea.setCodeFoldingEnabled(false);
+		RSyntaxDocument doc = (RSyntaxDocument)textArea.getDocument();
+		doc.setSyntaxStyle(new CTokenMaker() {});
+		ParserManager manager = new ParserManager(textArea);
+		manager.setAsynchronous(true);
+		manager.addParser(failingParser);
+		manager.addParser(new TaskTagParser());
+
+		// The worker lexes on the EDT, so keep it pumping events while the
+		// parsing runs
+		SecondaryLoop loop = Toolkit.getDefaultToolkit().getSystemEventQueue().
+				createSecondaryLoop();
+		textArea.addPropertyChangeListener(
+				RSyntaxTextArea.PARSER_NOTICES_PROPERTY, e -> loop.exit());
+		Timer timeout = new Timer(10000, e -> loop.exit());
+		timeout.setRepeats(false);
+
+		List<Throwable> reported = new ArrayList<>();
+		Thread.UncaughtExceptionHandler oldHandler =
+				Thread.getDefaultUncaughtExceptionHandler();
+		Thread.setDefaultUncaughtExceptionHandler((t, e) -> {
+			synchronized (reported) {
+				reported.add(e);
+			}
+		});
+		try {
+			timeout.start();
+			manager.actionPerformed(null);
+			loop.enter();
+			timeout.stop();
+		} finally {
+			Thread.setDefaultUncaughtExceptionHandler(oldHandler);
+		}
+
+		// The failing parser doesn't prevent the other's notices, and its
+		// failure is reported
+		List<ParserNotice> notices = manager.getParserNotices();
+		Assert.assertEquals(1, notices.size());
+		Assert.assertEquals("TODO: Fix */", notices.get(0).getMessage());
+		synchronized (reported) {
+			Assert.assertEquals(1, reported.size());
+			Assert.assertEquals("Parser failure",
+					reported.get(0).getMessage());
+		}
+
+	}
+
+
+	@Test
+	public void testActionPerformed_asynchronous_linesBeforeEditNotLexed()
+			throws Exception {
+
+		// Each line is "int x<line> = 5;", so we know which lines are lexed
+		Set<Integer> linesLexed = new ConcurrentSkipListSet<>();
+		Pattern linePattern = Pattern.compile("int x(\\d+) ");
+		TokenMakerFactory tmf = new TokenMakerFactory() {
+			@Override
+			protected TokenMaker getTokenMakerImpl(String key) {
+				return new CTokenMaker() {
+					@Override
+					public int getLastTokenTypeOnLine(Segment text,
+							int initialTokenType) {
+						recordLine(text);
+						return super.getLastTokenTypeOnLine(text,
+								initialTokenType);
+					}
+					@Override
+					public Token getTokenList(Segment text,
+							int initialTokenType, int startOffset) {
+						recordLine(text);
+						return super.getTokenList(text, initialTokenType,
+								startOffset);
+					}
+					private void recordLine(Segment text) {
+						Matcher m = linePattern.matcher(text);
+						if (m.lookingAt()) {
+							linesLexed.add(Integer.parseInt(m.group(1)));
+						}
+					}
+				};
+			}
+			@Override
+			public Set<String> keySet() {
+				return Collections.singleton(SyntaxConstants.SYNTAX_STYLE_C);
+			}
+		};
+
+		RSyntaxDocument doc = new RSyntaxDocument(tmf,
+				SyntaxConstants.SYNTAX_STYLE_C);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<3000; i++) {
+			sb.append("int x").append(i).append(" = 5;\n");
+		}
+		doc.insertString(0, sb.toString(), null);
+		RSyntaxTextArea textArea = createTextArea();
+		textArea.setCodeFoldingEnabled(false);
+		textArea.setDocument(doc);
+		ParserManager manager = new ParserManager(textArea);
+		manager.setAsynchronous(true);
+		manager.addParser(new TaskTagParser());
+		parseAsynchronously(textArea, manager);
+
+		linesLexed.clear();
+		int offs = doc.getDefaultRootElement().getElement(2001).
+				getStartOffset() - 1;
+		doc.insertString(offs, " // TODO: Fix", null);
+		parseAsynchronously(textArea, manager);
+
+		List<ParserNotice> notices = manager.getParserNotices();
+		Assert.assertEquals(1, notices.size());
+		Assert.assertEquals(2001, notices.get(0).getLine());
+		Assert.assertFalse(linesLexed.isEmpty());
+		Assert.assertTrue("Lines lexed: " + linesLexed,
+				linesLexed.iterator().next()>=2000);
+
+	}
+
+
 	@Test
 	public void testAddRemoveParser() {
 
@@ -91,6 +313,21 @@ public class ParserManagerTest extends AbstractRSyntaxTextAreaTest {
 	}
 
 
+	@Test
+	public void testGetSetAsynchronous() {
+
+		RSyntaxTextArea textArea = createTextArea();
+		ParserManager manager = new ParserManager(textArea);
+		Assert.assertFalse(manager.getAsynchronous());
+
+		manager.setAsynchronous(true);
+		Assert.assertTrue(manager.getAsynchronous());
+
+		manager.setAsynchronous(false);
+		Assert.assertFalse(manager.getAsynchronous());
+	}
+
+
 	@Test
 	public void testGetToolTipText() {
 
@@ -8,8 +8,13 @@ package org.fife.ui.rsyntaxtextarea;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
 
 import org.fife.ui.rsyntaxtextarea.modes.CTokenMaker;
 import org.fife.ui.rsyntaxtextarea.modes.HTMLTokenMaker;
@@ -408,6 +413,192 @@ public class RSyntaxDocumentTest {
 	}
 
 
+	@Test
+	public void testCreateSnapshot() throws Exception {
+
+		String syntaxStyle = SyntaxConstants.SYNTAX_STYLE_C;
+		doc = new RSyntaxDocument(syntaxStyle);
+		insertHelloWorldC(doc);
+
+		RSyntaxDocument snapshot = doc.createSnapshot();
+		Assert.assertNotSame(doc, snapshot);
+		Assert.assertEquals(doc.getText(0, doc.getLength()),
+				snapshot.getText(0, snapshot.getLength()));
+		Assert.assertEquals(syntaxStyle, snapshot.getSyntaxStyle());
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				snapshot.getLastTokenTypeOnLine(1));
+
+		// The snapshot is not affected by later edits
+		doc.remove(0, doc.getLength());
+		Assert.assertTrue(snapshot.getTokenListForLine(0).
+				is(TokenTypes.PREPROCESSOR, "#include"));
+
+	}
+
+
+	@Test
+	public void testCreateSnapshot_anonymousTokenMaker() throws Exception {
+
+		doc = new RSyntaxDocument(null);
+		doc.setSyntaxStyle(new CTokenMaker() {});
+		insertHelloWorldC(doc);
+
+		// Not on the EDT, so the snapshot must lex there
+		RSyntaxDocument snapshot = doc.createSnapshot();
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				snapshot.getLastTokenTypeOnLine(1));
+		Assert.assertTrue(snapshot.getTokenListForLine(0).
+				is(TokenTypes.PREPROCESSOR, "#include"));
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				snapshot.getTokenListForLine(2).getType());
+
+	}
+
+
+	@Test
+	public void testCreateSnapshot_lastTokenTypesCopied() throws Exception {
+
+		AtomicInteger linesLexed = new AtomicInteger();
+		doc = new RSyntaxDocument(null);
+		doc.setSyntaxStyle(new CTokenMaker() {
+			@Override
+			public int getLastTokenTypeOnLine(Segment text, int initialTokenType) {
+				linesLexed.incrementAndGet();
+				return super.getLastTokenTypeOnLine(text, initialTokenType);
+			}
+		});
+		StringBuilder sb = new StringBuilder("/*\n");
+		for (int i=0; i<5000; i++) {
+			sb.append("int x").append(i).append(" = 5;\n");
+		}
+		doc.insertString(0, sb.toString(), null);
+
+		// All of the document's values are known, so nothing is lexed
+		linesLexed.set(0);
+		RSyntaxDocument snapshot = doc.createSnapshot();
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				snapshot.getLastTokenTypeOnLine(4000));
+		Assert.assertEquals(0, linesLexed.get());
+
+	}
+
+
+	@Test
+	public void testCreateSnapshot_lexedLazily() throws Exception {
+
+		AtomicInteger linesLexed = new AtomicInteger();
+		doc = new RSyntaxDocument(null);
+		doc.setSyntaxStyle(new CTokenMaker() {
+			@Override
+			public int getLastTokenTypeOnLine(Segment text, int initialTokenType) {
+				linesLexed.incrementAndGet();
+				return super.getLastTokenTypeOnLine(text, initialTokenType);
+			}
+		});
+		StringBuilder sb = new StringBuilder("/*\n");
+		for (int i=0; i<5000; i++) {
+			sb.append("int x").append(i).append(" = 5;\n");
+		}
+		doc.insertString(0, sb.toString(), null);
+
+		linesLexed.set(0);
+		RSyntaxDocument snapshot = doc.createSnapshot();
+		Assert.assertTrue(linesLexed.get() < 1000);
+
+		// Lines are lexed as they're needed
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				snapshot.getLastTokenTypeOnLine(4000));
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				snapshot.getTokenListForLine(5000).getType());
+
+	}
+
+
+	@Test
+	public void testGetTokenBufferForLine() throws Exception {
+
+		String syntaxStyle = SyntaxConstants.SYNTAX_STYLE_C;
+		doc = new RSyntaxDocument(syntaxStyle);
+		insertHelloWorldC(doc);
+
+		TokenBuffer buffer = doc.getTokenBufferForLine(0);
+		Assert.assertTrue(buffer.is(0, TokenTypes.PREPROCESSOR,
+				"#include".toCharArray()));
+		Assert.assertSame(buffer, doc.getTokenBufferForLine(0));
+
+		// Token lists and buffers for a line share a cache entry
+		int misses = doc.getTokenListCacheMissCount();
+		Token t = doc.getTokenListForLine(0);
+		Assert.assertEquals(misses, doc.getTokenListCacheMissCount());
+		Assert.assertSame(buffer.getTokenList(), t);
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_cachedUntilEdited() throws Exception {
+
+		String syntaxStyle = SyntaxConstants.SYNTAX_STYLE_C;
+		doc = new RSyntaxDocument(syntaxStyle);
+		insertHelloWorldC(doc);
+
+		Token line0 = doc.getTokenListForLine(0);
+		Token line3 = doc.getTokenListForLine(3);
+		int misses = doc.getTokenListCacheMissCount();
+
+		// Several lines can be cached at once
+		Assert.assertSame(line0, doc.getTokenListForLine(0));
+		Assert.assertSame(line3, doc.getTokenListForLine(3));
+		Assert.assertEquals(misses, doc.getTokenListCacheMissCount());
+		Assert.assertTrue(doc.getTokenListCacheHitCount() >= 2);
+
+		// Editing line 3 only invalidates line 3 and below
+		doc.insertString(doc.getDefaultRootElement().getElement(3).getStartOffset(),
+				"static ", null);
+		Assert.assertSame(line0, doc.getTokenListForLine(0));
+		Token newLine3 = doc.getTokenListForLine(3);
+		Assert.assertNotSame(line3, newLine3);
+		Assert.assertTrue(newLine3.is(TokenTypes.RESERVED_WORD, "static"));
+
+		// Cached lines above an edit still have valid text
+		Assert.assertTrue(line0.is(TokenTypes.PREPROCESSOR, "#include"));
+
+	}
+
+
+	@Test
+	public void testGetTokenListForLine_cacheClearedOnSyntaxStyleChange()
+			throws Exception {
+
+		String syntaxStyle = SyntaxConstants.SYNTAX_STYLE_C;
+		doc = new RSyntaxDocument(syntaxStyle);
+		insertHelloWorldC(doc);
+
+		Token t = doc.getTokenListForLine(0);
+		doc.setSyntaxStyle(SyntaxConstants.SYNTAX_STYLE_NONE);
+		Assert.assertNotSame(t, doc.getTokenListForLine(0));
+
+	}
+
+
+	@Test
+	public void testGetSetTokenListCacheSize() throws Exception {
+
+		String syntaxStyle = SyntaxConstants.SYNTAX_STYLE_C;
+		doc = new RSyntaxDocument(syntaxStyle);
+		insertHelloWorldC(doc);
+		Assert.assertEquals(TokenListCache.DEFAULT_CAPACITY,
+				doc.getTokenListCacheSize());
+
+		doc.setTokenListCacheSize(0);
+		Assert.assertEquals(0, doc.getTokenListCacheSize());
+		Token t = doc.getTokenListForLine(0);
+		Assert.assertNotSame(t, doc.getTokenListForLine(0));
+		Assert.assertTrue(t.is(TokenTypes.PREPROCESSOR, "#include"));
+
+	}
+
+
 	@Test
 	public void testInsertBreakSpecialHandling() {
 
@@ -443,6 +634,131 @@ public class RSyntaxDocumentTest {
 	}
 
 
+	@Test
+	public void testSetLazyTokenStateUpdates() throws Exception {
+
+		String syntaxStyle = SyntaxConstants.SYNTAX_STYLE_C;
+		doc = new RSyntaxDocument(syntaxStyle);
+		Assert.assertFalse(doc.getLazyTokenStateUpdates());
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<1000; i++) {
+			sb.append("int x").append(i).append(" = 5;\n");
+		}
+		doc.insertString(0, sb.toString(), null);
+
+		doc.setLazyTokenStateUpdates(true);
+		Assert.assertTrue(doc.getLazyTokenStateUpdates());
+		TestDocumentListener l = new TestDocumentListener();
+		doc.addDocumentListener(l);
+
+		// Only a limited range of lines is updated (and repainted) right away
+		doc.insertString(0, "/*", null);
+		DocumentEvent e = l.events.get(0);
+		Assert.assertEquals(DocumentEvent.EventType.CHANGE, e.getType());
+		Assert.assertEquals(0, e.getOffset());
+		Assert.assertTrue(e.getLength() < 999);
+
+		// Stale lines are brought up to date when requested
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				doc.getLastTokenTypeOnLine(999));
+		Token t = doc.getTokenListForLine(999);
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE, t.getType());
+
+		// Editing again while lines are stale still gives correct results
+		doc.insertString(0, "\n\n", null);
+		doc.insertString(doc.getLength() - 1, "*/", null);
+		Assert.assertEquals(TokenTypes.NULL, doc.getLastTokenTypeOnLine(1001));
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+				doc.getLastTokenTypeOnLine(1000));
+
+		// Turning lazy updates off brings everything up to date
+		doc.remove(2, 2); // The "/*"
+		doc.setLazyTokenStateUpdates(false);
+		for (int i=0; i<1002; i++) {
+			Assert.assertEquals(TokenTypes.NULL, doc.getLastTokenTypeOnLine(i));
+		}
+
+	}
+
+
+	@Test
+	public void testSetLazyTokenStateUpdates_gettersFireNoEvents() throws Exception {
+
+		String syntaxStyle = SyntaxConstants.SYNTAX_STYLE_C;
+		doc = new RSyntaxDocument(syntaxStyle);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<1000; i++) {
+			sb.append("int x").append(i).append(" = 5;\n");
+		}
+		doc.insertString(0, sb.toString(), null);
+		doc.setLazyTokenStateUpdates(true);
+		TestDocumentListener l = new TestDocumentListener();
+
+		// On the EDT, so the background update can't run in between
+		SwingUtilities.invokeAndWait(() -> {
+			try {
+				doc.insertString(0, "/*", null);
+			} catch (BadLocationException ble) {
+				Assert.fail(ble.getMessage());
+			}
+			doc.addDocumentListener(l);
+			Assert.assertEquals(TokenTypes.COMMENT_MULTILINE,
+					doc.getLastTokenTypeOnLine(999));
+			Assert.assertTrue(l.events.isEmpty());
+		});
+
+		// The change is announced later, on the EDT
+		long deadline = System.currentTimeMillis() + 5000;
+		boolean[] announced = new boolean[1];
+		while (!announced[0] && System.currentTimeMillis()<deadline) {
+			Thread.sleep(20);
+			SwingUtilities.invokeAndWait(() -> {
+				for (DocumentEvent e : l.events) {
+					if (e.getType()==DocumentEvent.EventType.CHANGE &&
+							e.getLength()>=999) {
+						announced[0] = true;
+					}
+				}
+			});
+		}
+		Assert.assertTrue(announced[0]);
+
+	}
+
+
+	@Test
+	public void testSetLazyTokenStateUpdates_insertManyLines() throws Exception {
+
+		StringBuilder sb = new StringBuilder("/*\n");
+		for (int i=0; i<1000; i++) {
+			sb.append("int x").append(i).append(" = 5;\n");
+			if (i==500) {
+				sb.append("*/\n");
+			}
+		}
+		RSyntaxDocument expected = new RSyntaxDocument(
+				SyntaxConstants.SYNTAX_STYLE_C);
+		expected.insertString(0, "int x;\n/*\n", null);
+		expected.insertString(7, sb.toString(), null);
+
+		// Only the first lines inserted are lexed right away
+		doc = new RSyntaxDocument(SyntaxConstants.SYNTAX_STYLE_C);
+		doc.setLazyTokenStateUpdates(true);
+		doc.insertString(0, "int x;\n/*\n", null);
+		doc.insertString(7, sb.toString(), null);
+
+		int lineCount = doc.getDefaultRootElement().getElementCount();
+		Assert.assertEquals(
+				expected.getDefaultRootElement().getElementCount(), lineCount);
+		for (int i=lineCount-1; i>=0; i--) {
+			Assert.assertEquals(expected.getLastTokenTypeOnLine(i),
+					doc.getLastTokenTypeOnLine(i));
+		}
+		doc.setLazyTokenStateUpdates(false);
+
+	}
+
+
 	@Test
 	public void testSetSyntaxStyle() {
 
@@ -461,6 +777,42 @@ public class RSyntaxDocumentTest {
 	}
 
 
+	@Test
+	public void testSetSyntaxStyle_largeDocument() throws Exception {
+
+		// Large enough to be tokenized in parallel, with multi-line
+		// comments spanning chunk boundaries
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<50000; i++) {
+			if (i % 3001 == 0) {
+				sb.append("int x; /* start of comment\n");
+			}
+			else if (i % 3001 == 1500) {
+				sb.append("end of comment */ int y;\n");
+			}
+			else {
+				sb.append("foo(").append(i).append(");\n");
+			}
+		}
+		doc = new RSyntaxDocument(SyntaxConstants.SYNTAX_STYLE_NONE);
+		doc.insertString(0, sb.toString(), null);
+		doc.setSyntaxStyle(SyntaxConstants.SYNTAX_STYLE_C);
+
+		TokenMaker tm = new CTokenMaker();
+		Element root = doc.getDefaultRootElement();
+		Segment seg = new Segment();
+		int expected = TokenTypes.NULL;
+		for (int i=0; i<root.getElementCount(); i++) {
+			Element elem = root.getElement(i);
+			doc.getText(elem.getStartOffset(),
+					elem.getEndOffset() - 1 - elem.getStartOffset(), seg);
+			expected = tm.getLastTokenTypeOnLine(seg, expected);
+			Assert.assertEquals(expected, doc.getLastTokenTypeOnLine(i));
+		}
+
+	}
+
+
 	@Test
 	public void testSetSyntaxStyle_CustomTokenMaker() {
 
@@ -370,6 +370,22 @@ public class RSyntaxTextAreaTest extends AbstractRSyntaxTextAreaTest {
 	}
 
 
+	@Test
+	public void testGetMonospacedCharWidth() {
+
+		RSyntaxTextArea textArea = createTextArea();
+		Assert.assertEquals(0, textArea.getMonospacedCharWidth()); // Not yet measured
+		textArea.paint(createTestGraphics());
+		FontMetrics fm = textArea.getFontMetricsForTokenType(TokenTypes.IDENTIFIER);
+		Assert.assertEquals(fm.charWidth('m'), textArea.getMonospacedCharWidth());
+
+		textArea = createTextArea();
+		textArea.setFont(new Font(Font.SERIF, Font.PLAIN, 12));
+		textArea.paint(createTestGraphics());
+		Assert.assertEquals(0, textArea.getMonospacedCharWidth());
+	}
+
+
 	@Test
 	public void testGetSetLinkGenerator() {
 		RSyntaxTextArea textArea = createTextArea();
@@ -409,6 +425,15 @@ public class RSyntaxTextAreaTest extends AbstractRSyntaxTextAreaTest {
 	}
 
 
+	@Test
+	public void testGlyphCacheEnabled() {
+		RSyntaxTextArea textArea = new RSyntaxTextArea();
+		Assert.assertFalse(textArea.getGlyphCacheEnabled());
+		textArea.setGlyphCacheEnabled(true);
+		Assert.assertTrue(textArea.getGlyphCacheEnabled());
+	}
+
+
 	@Test
 	public void testHighlightSecondaryLanguages() {
 		RSyntaxTextArea textArea = new RSyntaxTextArea();
@@ -435,6 +460,17 @@ public class RSyntaxTextAreaTest extends AbstractRSyntaxTextAreaTest {
 	}
 
 
+	@Test
+	public void testLineImageCacheEnabled() {
+		RSyntaxTextArea textArea = new RSyntaxTextArea();
+		Assert.assertFalse(textArea.getLineImageCacheEnabled());
+		Assert.assertNull(textArea.getLineImageCache());
+		textArea.setLineImageCacheEnabled(true);
+		Assert.assertTrue(textArea.getLineImageCacheEnabled());
+		Assert.assertNotNull(textArea.getLineImageCache());
+	}
+
+
 	@Test
 	public void testMarkOccurrences() {
 		RSyntaxTextArea textArea = new RSyntaxTextArea();
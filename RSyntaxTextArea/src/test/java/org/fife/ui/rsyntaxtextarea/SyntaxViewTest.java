@@ -5,12 +5,18 @@
 package org.fife.ui.rsyntaxtextarea;
 
 
+import org.fife.ui.rtextarea.SearchContext;
+import org.fife.ui.rtextarea.SearchEngine;
 import org.junit.Assert;
 import org.junit.Test;
 
 import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Highlighter;
 import javax.swing.text.Position;
+import javax.swing.text.View;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
 /**
  * Unit tests for the {@code SyntaxView} class.
@@ -21,6 +27,89 @@ import java.awt.*;
 public class SyntaxViewTest extends AbstractRSyntaxTextAreaTest {
 
 
+	/**
+	 * Returns a text area whose font metrics have been refreshed, so lines
+	 * have a nonzero width.
+	 */
+	private static RSyntaxTextArea createPaintedTextArea(String text) {
+		RSyntaxTextArea textArea = createTextArea(SyntaxConstants.SYNTAX_STYLE_NONE, text);
+		textArea.paint(createTestGraphics());
+		return textArea;
+	}
+
+
+	/**
+	 * Asserts that a text area paints the same with and without its line
+	 * image cache, then paints it again so the cache is populated.
+	 */
+	private static void assertSameAsUncached(RSyntaxTextArea textArea) {
+		int[] actual = paintToPixels(textArea);
+		textArea.setLineImageCacheEnabled(false);
+		int[] expected = paintToPixels(textArea);
+		textArea.setLineImageCacheEnabled(true);
+		paintToPixels(textArea);
+		Assert.assertArrayEquals(expected, actual);
+	}
+
+
+	private static RSyntaxTextArea createLineImageCacheTextArea() {
+		RSyntaxTextArea textArea = createTextArea(SyntaxConstants.SYNTAX_STYLE_JAVA,
+			"public class Foo {\n\tint x = 5; // comment\n\tString s = \"hi\";\n}");
+		textArea.setAntiAliasingEnabled(false);
+		// Tab lines can stray a pixel into the next line at larger fonts
+		textArea.setPaintTabLines(false);
+		textArea.setSize(300, 100);
+		textArea.getCaret().setBlinkRate(0);
+		textArea.setLineImageCacheEnabled(true);
+		paintToPixels(textArea);
+		return textArea;
+	}
+
+
+	private static int[] paintToPixels(RSyntaxTextArea textArea) {
+		int w = textArea.getWidth();
+		int h = textArea.getHeight();
+		BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		textArea.paint(g);
+		g.dispose();
+		return image.getRGB(0, 0, w, h, null, 0, w);
+	}
+
+
+	private static float getPreferredWidth(RSyntaxTextArea textArea) {
+		View view = textArea.getUI().getRootView(textArea).getView(0);
+		return view.getPreferredSpan(View.X_AXIS);
+	}
+
+
+	@Test
+	public void testGetPreferredSpan_longestLineEdited() throws BadLocationException {
+
+		RSyntaxTextArea textArea = createPaintedTextArea(
+			"short\nthis is the longest line\nmedium line");
+		float width = getPreferredWidth(textArea);
+
+		// Shortening the longest line shrinks the view
+		textArea.replaceRange(null, 6, 18);
+		Assert.assertEquals("short\nlongest line\nmedium line", textArea.getText());
+		float shortenedWidth = getPreferredWidth(textArea);
+		Assert.assertTrue(shortenedWidth < width);
+		Assert.assertEquals(getPreferredWidth(createPaintedTextArea(textArea.getText())), shortenedWidth, 0);
+
+		// As does removing it
+		textArea.replaceRange(null, 6, 19);
+		Assert.assertEquals("short\nmedium line", textArea.getText());
+		Assert.assertEquals(getPreferredWidth(createPaintedTextArea(textArea.getText())),
+			getPreferredWidth(textArea), 0);
+
+		// Lines added via a multi-line insert are measured
+		textArea.insert("\nthis is now the longest line", 5);
+		Assert.assertEquals(getPreferredWidth(createPaintedTextArea(textArea.getText())),
+			getPreferredWidth(textArea), 0);
+	}
+
+
 	@Test
 	public void testGetTokenListForPhysicalLineAbove_foldingEnabled() throws BadLocationException {
 
@@ -153,4 +242,145 @@ public class SyntaxViewTest extends AbstractRSyntaxTextAreaTest {
 		textArea.getFoldManager().getFold(0).setCollapsed(true);
 		textArea.paintImmediately(textArea.getVisibleRect());
 	}
+
+
+	@Test
+	public void testPaint_lineImageCache() throws BadLocationException {
+
+		RSyntaxTextArea textArea = createTextArea(SyntaxConstants.SYNTAX_STYLE_JAVA,
+			"public class Foo {\n\tint x = 5; // comment\n\tString s = \"hi\";\n}");
+		textArea.setAntiAliasingEnabled(false);
+		textArea.setSize(300, 100);
+		textArea.paint(createTestGraphics());
+		textArea.select(7, 28);
+		int[] expected = paintToPixels(textArea);
+
+		// Painting from cached images gives the same result
+		textArea.setLineImageCacheEnabled(true);
+		LineImageCache cache = textArea.getLineImageCache();
+		Assert.assertArrayEquals(expected, paintToPixels(textArea));
+		int missCount = cache.getMissCount();
+		Assert.assertTrue(missCount > 0);
+		Assert.assertArrayEquals(expected, paintToPixels(textArea));
+		Assert.assertEquals(missCount, cache.getMissCount());
+
+		// Repainting the caret doesn't discard any images
+		textArea.getCaret().setBlinkRate(0);
+		textArea.getCaret().setVisible(true);
+		Rectangle caret = (Rectangle)textArea.getCaret();
+		Assert.assertFalse(caret.isEmpty());
+		textArea.repaint(caret);
+		paintToPixels(textArea);
+		Assert.assertEquals(missCount, cache.getMissCount());
+
+		// Editing a line re-renders it
+		textArea.insert("x", 0);
+		int[] actual = paintToPixels(textArea);
+		Assert.assertTrue(cache.getMissCount() > missCount);
+		textArea.setLineImageCacheEnabled(false);
+		Assert.assertArrayEquals(paintToPixels(textArea), actual);
+
+	}
+
+
+	@Test
+	public void testPaint_lineImageCache_foldToggled() {
+
+		RSyntaxTextArea textArea = createLineImageCacheTextArea();
+		textArea.setCodeFoldingEnabled(true);
+		textArea.getFoldManager().reparse();
+		assertSameAsUncached(textArea);
+
+		textArea.getFoldManager().getFold(0).setCollapsed(true);
+		assertSameAsUncached(textArea);
+		textArea.getFoldManager().getFold(0).setCollapsed(false);
+		assertSameAsUncached(textArea);
+
+	}
+
+
+	@Test
+	public void testPaint_lineImageCache_highlightsChanged()
+			throws BadLocationException {
+
+		RSyntaxTextArea textArea = createLineImageCacheTextArea();
+		Highlighter h = textArea.getHighlighter();
+		Highlighter.HighlightPainter painter =
+			new DefaultHighlighter.DefaultHighlightPainter(Color.RED);
+
+		Object tag = h.addHighlight(20, 30, painter);
+		assertSameAsUncached(textArea);
+		h.changeHighlight(tag, 45, 50);
+		assertSameAsUncached(textArea);
+		h.removeHighlight(tag);
+		assertSameAsUncached(textArea);
+
+		h.addHighlight(0, 6, painter);
+		h.addHighlight(45, 50, painter);
+		assertSameAsUncached(textArea);
+		h.removeAllHighlights();
+		assertSameAsUncached(textArea);
+
+		textArea.setMarkAllHighlightColor(Color.GREEN);
+		SearchEngine.markAll(textArea, new SearchContext("int"));
+		assertSameAsUncached(textArea);
+		SearchEngine.markAll(textArea, new SearchContext("String"));
+		assertSameAsUncached(textArea);
+		SearchEngine.markAll(textArea, new SearchContext("notFound"));
+		assertSameAsUncached(textArea);
+
+	}
+
+
+	@Test
+	public void testPaint_lineImageCache_propertyChanged() {
+
+		RSyntaxTextArea textArea = createLineImageCacheTextArea();
+
+		textArea.setWhitespaceVisible(true);
+		assertSameAsUncached(textArea);
+		textArea.setForeground(Color.BLUE);
+		textArea.setSyntaxScheme(new SyntaxScheme(true));
+		assertSameAsUncached(textArea);
+		textArea.setFont(textArea.getFont().deriveFont(20f));
+		assertSameAsUncached(textArea);
+
+	}
+
+
+	@Test
+	public void testPaint_lineImageCache_repaintKeepsImages() {
+
+		RSyntaxTextArea textArea = createLineImageCacheTextArea();
+		LineImageCache cache = textArea.getLineImageCache();
+		int missCount = cache.getMissCount();
+
+		// Neither plain repaints nor the caret moving without a selection
+		// change how lines are rendered
+		textArea.repaint();
+		paintToPixels(textArea);
+		textArea.setCaretPosition(30);
+		textArea.moveCaretPosition(30);
+		paintToPixels(textArea);
+		Assert.assertEquals(missCount, cache.getMissCount());
+
+	}
+
+
+	@Test
+	public void testPaint_lineImageCache_selectionChanged() {
+
+		RSyntaxTextArea textArea = createLineImageCacheTextArea();
+		textArea.getCaret().setSelectionVisible(true);
+
+		textArea.select(7, 28);
+		assertSameAsUncached(textArea);
+		textArea.select(0, 3);
+		assertSameAsUncached(textArea);
+		textArea.moveCaretPosition(50);
+		assertSameAsUncached(textArea);
+		textArea.setCaretPosition(10);
+		assertSameAsUncached(textArea);
+
+	}
 }
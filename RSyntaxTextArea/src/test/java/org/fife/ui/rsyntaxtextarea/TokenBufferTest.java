@@ -0,0 +1,201 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import javax.swing.text.Segment;
+
+import org.fife.ui.rsyntaxtextarea.modes.JavaTokenMaker;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link TokenBuffer} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class TokenBufferTest {
+
+
+	private static Segment createSegment(String text) {
+		char[] array = ("xx" + text + "yy").toCharArray();
+		return new Segment(array, 2, text.length());
+	}
+
+
+	private static void assertSameTokens(Token expected, TokenBuffer buffer) {
+		int i = 0;
+		for (Token t=expected; t!=null; t=t.getNextToken(), i++) {
+			Assert.assertEquals(t.getType(), buffer.getType(i));
+			Assert.assertEquals(t.getOffset(), buffer.getOffset(i));
+			Assert.assertEquals(t.getLanguageIndex(),
+					buffer.getLanguageIndex(i));
+			Assert.assertEquals(t.isPaintable(), buffer.isPaintable(i));
+			if (t.isPaintable()) {
+				Assert.assertEquals(t.getLexeme(), buffer.getLexeme(i));
+				Assert.assertEquals(t.length(), buffer.getLength(i));
+				Assert.assertEquals(t.getEndOffset(), buffer.getEndOffset(i));
+			}
+		}
+		Assert.assertEquals(i, buffer.getTokenCount());
+	}
+
+
+	@Test
+	public void testConstructor_empty() {
+		TokenBuffer buffer = new TokenBuffer();
+		Assert.assertEquals(0, buffer.getTokenCount());
+		Assert.assertNull(buffer.getTokenList());
+		Assert.assertEquals(-1, buffer.getTokenIndexAtOffset(0));
+	}
+
+
+	@Test
+	public void testSet() {
+
+		Segment s = createSegment("int x = 5; // hi");
+		Token t = new JavaTokenMaker().getTokenList(s, TokenTypes.NULL, 100);
+		TokenBuffer buffer = new TokenBuffer(s, t);
+		assertSameTokens(t, buffer);
+
+		// The buffer owns a copy of the text
+		Assert.assertNotSame(s.array, buffer.getTextArray());
+		s.array[2] = 'x';
+		Assert.assertEquals("int", buffer.getLexeme(0));
+
+	}
+
+
+	@Test
+	public void testSet_reused() {
+
+		JavaTokenMaker tm = new JavaTokenMaker();
+		Segment s = createSegment("int x = 5; // hi");
+		TokenBuffer buffer = new TokenBuffer(s,
+				tm.getTokenList(s, TokenTypes.NULL, 0));
+		Token oldList = buffer.getTokenList();
+
+		s = createSegment("/* unterminated");
+		Token t = tm.getTokenList(s, TokenTypes.NULL, 0);
+		buffer.set(s, t);
+		assertSameTokens(t, buffer);
+
+		// Lists handed out before are not affected
+		Assert.assertTrue(oldList.is(TokenTypes.DATA_TYPE, "int"));
+		Assert.assertNotSame(oldList, buffer.getTokenList());
+
+	}
+
+
+	@Test
+	public void testSet_tokenNotInSegment() {
+
+		Segment s = createSegment("ab");
+		char[] other = "zzcd".toCharArray();
+		TokenImpl first = new TokenImpl(s, 2, 3, 0, TokenTypes.IDENTIFIER, 0);
+		TokenImpl second = new TokenImpl(other, 2, 3, 2,
+				TokenTypes.IDENTIFIER, 0);
+		second.setHyperlink(true);
+		first.setNextToken(second);
+
+		TokenBuffer buffer = new TokenBuffer(s, first);
+		Assert.assertEquals("ab", buffer.getLexeme(0));
+		Assert.assertEquals("cd", buffer.getLexeme(1));
+		Assert.assertFalse(buffer.isHyperlink(0));
+		Assert.assertTrue(buffer.isHyperlink(1));
+
+	}
+
+
+	@Test
+	public void testGetToken() {
+
+		Segment s = createSegment("int x;");
+		Token t = new JavaTokenMaker().getTokenList(s, TokenTypes.NULL, 0);
+		TokenBuffer buffer = new TokenBuffer(s, t);
+
+		Token view = buffer.getToken(0);
+		Assert.assertTrue(view.is(TokenTypes.DATA_TYPE, "int"));
+		Assert.assertEquals(0, view.getOffset());
+		Assert.assertTrue(view.getNextToken().isWhitespace());
+
+		Token view2 = buffer.getToken(2);
+		Assert.assertSame(view, view2);
+		Assert.assertTrue(view2.is(TokenTypes.IDENTIFIER, "x"));
+		Assert.assertEquals(4, view2.getOffset());
+
+		Token last = buffer.getToken(buffer.getTokenCount()-1);
+		Assert.assertFalse(last.isPaintable());
+		Assert.assertNull(last.getNextToken());
+
+	}
+
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetToken_invalidIndex() {
+		Segment s = createSegment("int x;");
+		Token t = new JavaTokenMaker().getTokenList(s, TokenTypes.NULL, 0);
+		new TokenBuffer(s, t).getToken(-1);
+	}
+
+
+	@Test
+	public void testGetTokenIndexAtOffset() {
+
+		Segment s = createSegment("int x;");
+		Token t = new JavaTokenMaker().getTokenList(s, TokenTypes.NULL, 10);
+		TokenBuffer buffer = new TokenBuffer(s, t);
+
+		Assert.assertEquals(-1, buffer.getTokenIndexAtOffset(9));
+		Assert.assertEquals(0, buffer.getTokenIndexAtOffset(10));
+		Assert.assertEquals(0, buffer.getTokenIndexAtOffset(12));
+		Assert.assertEquals(1, buffer.getTokenIndexAtOffset(13));
+		Assert.assertEquals(2, buffer.getTokenIndexAtOffset(14));
+		Assert.assertEquals(3, buffer.getTokenIndexAtOffset(15));
+		Assert.assertEquals(-1, buffer.getTokenIndexAtOffset(16));
+
+	}
+
+
+	@Test
+	public void testGetTokenList() {
+
+		Segment s = createSegment("int x = 5; // hi");
+		Token t = new JavaTokenMaker().getTokenList(s, TokenTypes.NULL, 0);
+		TokenBuffer buffer = new TokenBuffer(s, t);
+
+		Token list = buffer.getTokenList();
+		assertSameTokens(list, buffer);
+		Assert.assertSame(list, buffer.getTokenList());
+
+		buffer.releaseTokenList();
+		Assert.assertNotSame(list, buffer.getTokenList());
+
+	}
+
+
+	@Test
+	public void testIs() {
+
+		Segment s = createSegment("int x;");
+		Token t = new JavaTokenMaker().getTokenList(s, TokenTypes.NULL, 0);
+		TokenBuffer buffer = new TokenBuffer(s, t);
+
+		Assert.assertTrue(buffer.is(0, TokenTypes.DATA_TYPE,
+				"int".toCharArray()));
+		Assert.assertFalse(buffer.is(0, TokenTypes.IDENTIFIER,
+				"int".toCharArray()));
+		Assert.assertFalse(buffer.is(0, TokenTypes.DATA_TYPE,
+				"inx".toCharArray()));
+		Assert.assertFalse(buffer.is(0, TokenTypes.DATA_TYPE,
+				"in".toCharArray()));
+
+	}
+
+
+}
@@ -6,6 +6,11 @@
  */
 package org.fife.ui.rsyntaxtextarea;
 
+import java.awt.FontMetrics;
+import java.awt.Rectangle;
+import javax.swing.text.TabExpander;
+
+import org.fife.ui.rtextarea.AbstractRTextAreaTest;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -19,6 +24,24 @@ import org.junit.Test;
 public class TokenImplTest {
 
 
+	/**
+	 * Returns a text area using a monospaced font, whose font metrics have
+	 * been refreshed.
+	 */
+	private static RSyntaxTextArea createMonospacedTextArea() {
+		RSyntaxTextArea textArea = AbstractRSyntaxTextAreaTest.createTextArea(
+			SyntaxConstants.SYNTAX_STYLE_NONE, "");
+		textArea.paint(AbstractRTextAreaTest.createTestGraphics());
+		Assert.assertTrue(textArea.getMonospacedCharWidth() > 0);
+		return textArea;
+	}
+
+
+	private static TabExpander createTabExpander(int tabWidth) {
+		return (x, tabOffset) -> ((int)x / tabWidth + 1) * tabWidth;
+	}
+
+
 	@Test
 	public void testGetHTMLRepresentation_happyPath() {
 
@@ -52,4 +75,94 @@ public class TokenImplTest {
 	}
 
 
+	@Test
+	public void testGetListOffset_monospacedFont() {
+
+		RSyntaxTextArea textArea = createMonospacedTextArea();
+		int charWidth = textArea.getMonospacedCharWidth();
+		TabExpander e = createTabExpander(4 * charWidth);
+
+		char[] ch = "a\tbcd".toCharArray();
+		TokenImpl token = new TokenImpl(ch, 0, ch.length - 1, 10, TokenTypes.IDENTIFIER, 0);
+
+		Assert.assertEquals(10, token.getListOffset(textArea, e, 0, charWidth / 3f));
+		Assert.assertEquals(11, token.getListOffset(textArea, e, 0, charWidth * 2 / 3f));
+		// Past the tab, which ends at 4 chars' width
+		Assert.assertEquals(13, token.getListOffset(textArea, e, 0, charWidth * 5.4f));
+		Assert.assertEquals(15, token.getListOffset(textArea, e, 0, charWidth * 20));
+
+	}
+
+
+	@Test
+	public void testGetOffsetBeforeX_monospacedFont() {
+
+		RSyntaxTextArea textArea = createMonospacedTextArea();
+		int charWidth = textArea.getMonospacedCharWidth();
+		TabExpander e = createTabExpander(4 * charWidth);
+
+		char[] ch = "hello".toCharArray();
+		TokenImpl token = new TokenImpl(ch, 0, ch.length - 1, 10, TokenTypes.IDENTIFIER, 0);
+
+		Assert.assertEquals(12, token.getOffsetBeforeX(textArea, e, 0, 3 * charWidth - 1));
+		Assert.assertEquals(13, token.getOffsetBeforeX(textArea, e, 0, 3 * charWidth));
+		Assert.assertEquals(14, token.getOffsetBeforeX(textArea, e, 0, 20 * charWidth));
+
+	}
+
+
+	@Test
+	public void testGetWidth_monospacedFont() {
+
+		RSyntaxTextArea textArea = createMonospacedTextArea();
+		int charWidth = textArea.getMonospacedCharWidth();
+		TabExpander e = createTabExpander(4 * charWidth);
+
+		char[] ch = "int x = 5;".toCharArray();
+		TokenImpl token = new TokenImpl(ch, 0, ch.length - 1, 0, TokenTypes.IDENTIFIER, 0);
+		FontMetrics fm = textArea.getFontMetricsForTokenType(token.getType());
+		Assert.assertEquals(fm.charsWidth(ch, 0, ch.length), token.getWidth(textArea, e, 0), 0);
+		Assert.assertEquals(3 * charWidth, token.getWidthUpTo(3, textArea, e, 0), 0);
+
+		// Tabs go to the next tab stop
+		ch = "a\tb".toCharArray();
+		token = new TokenImpl(ch, 0, ch.length - 1, 0, TokenTypes.IDENTIFIER, 0);
+		Assert.assertEquals(5 * charWidth, token.getWidth(textArea, e, 0), 0);
+		Assert.assertEquals(3 * charWidth, token.getWidth(textArea, e, 2 * charWidth), 0);
+
+	}
+
+
+	@Test
+	public void testGetWidth_monospacedFont_otherChars() {
+
+		RSyntaxTextArea textArea = createMonospacedTextArea();
+		TabExpander e = createTabExpander(4 * textArea.getMonospacedCharWidth());
+
+		// Characters outside of printable ASCII are measured with FontMetrics
+		char[] ch = "ab\u4e2d\u00e9".toCharArray();
+		TokenImpl token = new TokenImpl(ch, 0, ch.length - 1, 0, TokenTypes.IDENTIFIER, 0);
+		FontMetrics fm = textArea.getFontMetricsForTokenType(token.getType());
+		Assert.assertEquals(fm.charsWidth(ch, 0, ch.length), token.getWidth(textArea, e, 0), 0);
+
+	}
+
+
+	@Test
+	public void testListOffsetToView_monospacedFont() {
+
+		RSyntaxTextArea textArea = createMonospacedTextArea();
+		int charWidth = textArea.getMonospacedCharWidth();
+		TabExpander e = createTabExpander(4 * charWidth);
+
+		char[] ch = "a\tbcd".toCharArray();
+		TokenImpl token = new TokenImpl(ch, 0, ch.length - 1, 10, TokenTypes.IDENTIFIER, 0);
+
+		Rectangle rect = token.listOffsetToView(textArea, e, 13, 0, new Rectangle());
+		Assert.assertEquals(5 * charWidth, rect.x);
+		Assert.assertEquals(charWidth, rect.width);
+
+	}
+
+
 }
@@ -0,0 +1,186 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea;
+
+import javax.swing.text.Segment;
+
+import org.fife.ui.rsyntaxtextarea.modes.JavaTokenMaker;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link TokenListCache} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class TokenListCacheTest {
+
+
+	private static TokenBuffer putLine(TokenListCache cache, int line,
+			String text) {
+		char[] array = ("xx" + text).toCharArray();
+		Segment s = new Segment(array, 2, text.length());
+		Token t = new JavaTokenMaker().getTokenList(s, TokenTypes.NULL, 0);
+		return cache.put(line, s, t);
+	}
+
+
+	@Test
+	public void testGet_missAndHit() {
+
+		TokenListCache cache = new TokenListCache();
+		Assert.assertNull(cache.get(0));
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+
+		TokenBuffer buffer = putLine(cache, 0, "int x;");
+		Token t = cache.get(0);
+		Assert.assertSame(buffer.getTokenList(), t);
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+
+		Assert.assertSame(buffer, cache.getBuffer(0));
+		Assert.assertSame(t, cache.get(0));
+		Assert.assertEquals(3, cache.getHitCount());
+
+	}
+
+
+	@Test
+	public void testPut_copiesTextAndTokens() {
+
+		TokenListCache cache = new TokenListCache();
+		char[] array = "int x;".toCharArray();
+		Segment s = new Segment(array, 0, array.length);
+		Token orig = new JavaTokenMaker().getTokenList(s, TokenTypes.NULL, 10);
+
+		Token copy = cache.put(0, s, orig).getTokenList();
+		Assert.assertNotSame(orig, copy);
+		Assert.assertNotSame(array, copy.getTextArray());
+
+		// Clobbering the source text does not affect the cached copy
+		array[0] = 'x';
+		Assert.assertTrue(copy.is(TokenTypes.DATA_TYPE, "int"));
+		Assert.assertEquals(10, copy.getOffset());
+
+	}
+
+
+	@Test
+	public void testGet_tokenListsOfOldLinesReleased() {
+
+		TokenListCache cache = new TokenListCache();
+		int count = TokenListCache.MAX_TOKEN_LIST_COUNT + 1;
+		for (int i=0; i<count; i++) {
+			putLine(cache, i, "int a;");
+		}
+
+		Token first = cache.get(0);
+		for (int i=1; i<count; i++) {
+			cache.get(i);
+		}
+
+		// Line 0's buffer is still cached, but its token list is re-created
+		Token again = cache.get(0);
+		Assert.assertNotSame(first, again);
+		Assert.assertTrue(again.is(TokenTypes.DATA_TYPE, "int"));
+		Assert.assertSame(again, cache.get(0));
+
+	}
+
+
+	@Test
+	public void testSetCapacity_evictsLeastRecentlyUsed() {
+
+		TokenListCache cache = new TokenListCache(2);
+		putLine(cache, 0, "int a;");
+		putLine(cache, 1, "int b;");
+		cache.get(0);
+		putLine(cache, 2, "int c;");
+
+		Assert.assertEquals(2, cache.getCachedLineCount());
+		Assert.assertNotNull(cache.get(0));
+		Assert.assertNull(cache.get(1));
+		Assert.assertNotNull(cache.get(2));
+
+		cache.setCapacity(1);
+		Assert.assertEquals(1, cache.getCapacity());
+		Assert.assertEquals(1, cache.getCachedLineCount());
+		Assert.assertNotNull(cache.get(2));
+
+	}
+
+
+	@Test
+	public void testSetCapacity_zeroDisablesCaching() {
+		TokenListCache cache = new TokenListCache(0);
+		Assert.assertNotNull(putLine(cache, 0, "int a;"));
+		Assert.assertNull(cache.get(0));
+	}
+
+
+	@Test
+	public void testInvalidateFrom() {
+
+		TokenListCache cache = new TokenListCache();
+		for (int i=0; i<5; i++) {
+			putLine(cache, i, "int a;");
+		}
+
+		cache.invalidateFrom(3);
+		Assert.assertEquals(3, cache.getCachedLineCount());
+		Assert.assertNotNull(cache.get(2));
+		Assert.assertNull(cache.get(3));
+
+		cache.invalidateFrom(0);
+		Assert.assertEquals(0, cache.getCachedLineCount());
+
+	}
+
+
+	@Test
+	public void testInvalidateFrom_afterEviction() {
+
+		TokenListCache cache = new TokenListCache(3);
+		for (int i=0; i<3; i++) {
+			putLine(cache, i, "int a;");
+		}
+		cache.invalidateFrom(1);
+
+		// Line 0 is evicted to make room for line 7
+		for (int i=5; i<8; i++) {
+			putLine(cache, i, "int a;");
+		}
+		Assert.assertEquals(3, cache.getCachedLineCount());
+		Assert.assertNull(cache.get(0));
+
+		cache.invalidateFrom(6);
+		Assert.assertEquals(1, cache.getCachedLineCount());
+		Assert.assertNotNull(cache.get(5));
+		Assert.assertNull(cache.get(6));
+
+		// Freed space is reused without evicting line 5
+		putLine(cache, 1, "int a;");
+		putLine(cache, 2, "int a;");
+		Assert.assertEquals(3, cache.getCachedLineCount());
+		Assert.assertNotNull(cache.get(5));
+
+	}
+
+
+	@Test
+	public void testClear() {
+		TokenListCache cache = new TokenListCache();
+		putLine(cache, 0, "int a;");
+		cache.clear();
+		Assert.assertEquals(0, cache.getCachedLineCount());
+	}
+
+
+}
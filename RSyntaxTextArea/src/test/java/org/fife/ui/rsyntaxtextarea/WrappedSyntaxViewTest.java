@@ -9,6 +9,8 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
 import javax.swing.event.DocumentEvent;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
@@ -27,6 +29,43 @@ import java.awt.*;
 public class WrappedSyntaxViewTest extends AbstractRSyntaxTextAreaTest {
 
 
+	private static RSyntaxTextArea createWrappedTextArea(int lineCount) {
+
+		// Narrow characters, so estimated heights are too tall
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < lineCount; i++) {
+			for (int j = 0; j < i % 7; j++) {
+				sb.append("iiiiiiiiii ");
+			}
+			sb.append('\n');
+		}
+
+		RSyntaxTextArea textArea = createTextArea(sb.toString());
+		textArea.setLineWrap(true);
+		textArea.addNotify();
+		return textArea;
+	}
+
+
+	private static int getExactHeight(WrappedSyntaxView view) {
+		int lineHeight = ((RSyntaxTextArea)view.getContainer()).getLineHeight();
+		int height = 0;
+		for (int i = 0; i < view.getViewCount(); i++) {
+			WrappedSyntaxView.WrappedLine line =
+				(WrappedSyntaxView.WrappedLine)view.getView(i);
+			height += line.calculateLineCount() * lineHeight;
+		}
+		return height;
+	}
+
+
+	private static void refineAllLines(WrappedSyntaxView view) {
+		for (int i = 0; i < 100; i++) {
+			view.refineLineHeightsChunk();
+		}
+	}
+
+
 	private static void testDocumentEvent_happyPath(DocumentEvent.EventType eventType) {
 
 		RSyntaxTextArea textArea = createTextArea();
@@ -77,6 +116,27 @@ public class WrappedSyntaxViewTest extends AbstractRSyntaxTextAreaTest {
 	}
 
 
+	@Test
+	public void testChangedUpdate_syntaxStyleChanged_clearsAllCachedLineCounts() {
+
+		RSyntaxTextArea textArea = createWrappedTextArea(
+			WrappedSyntaxView.ESTIMATED_LAYOUT_MIN_LINES);
+		WrappedSyntaxView view = (WrappedSyntaxView)textArea.getUI().
+			getRootView(textArea).getView(0);
+		view.setSize(200, 1000);
+		refineAllLines(view);
+
+		int lastLine = view.getViewCount() - 1;
+		WrappedSyntaxView.WrappedLine line =
+			(WrappedSyntaxView.WrappedLine)view.getView(lastLine);
+		Assert.assertTrue(line.getCachedLineCount(200) > 0);
+
+		RSyntaxDocument doc = (RSyntaxDocument)textArea.getDocument();
+		doc.setSyntaxStyle(SyntaxConstants.SYNTAX_STYLE_JAVA);
+		Assert.assertEquals(0, line.getCachedLineCount(200));
+	}
+
+
 	@Test
 	public void testGetChildAllocation_notAllocatedYet() {
 
@@ -154,6 +214,86 @@ public class WrappedSyntaxViewTest extends AbstractRSyntaxTextAreaTest {
 	}
 
 
+	@Test
+	public void testGetPreferredSpan_yAxis_largeDocument() {
+
+		RSyntaxTextArea textArea = createWrappedTextArea(
+			WrappedSyntaxView.ESTIMATED_LAYOUT_MIN_LINES);
+		WrappedSyntaxView view = (WrappedSyntaxView)textArea.getUI().
+			getRootView(textArea).getView(0);
+		view.setSize(200, 1000);
+
+		int exactHeight = getExactHeight(view);
+		Assert.assertNotEquals(exactHeight, (int)view.getPreferredSpan(View.Y_AXIS));
+
+		refineAllLines(view);
+		Assert.assertEquals(exactHeight, (int)view.getPreferredSpan(View.Y_AXIS));
+	}
+
+
+	@Test
+	public void testGetPreferredSpan_yAxis_largeDocument_fontMetricsChanged() {
+
+		RSyntaxTextArea textArea = createWrappedTextArea(
+			WrappedSyntaxView.ESTIMATED_LAYOUT_MIN_LINES);
+		WrappedSyntaxView view = (WrappedSyntaxView)textArea.getUI().
+			getRootView(textArea).getView(0);
+		view.setSize(200, 1000);
+		refineAllLines(view);
+
+		textArea.setFractionalFontMetricsEnabled(
+			!textArea.getFractionalFontMetricsEnabled());
+		view.setSize(200, 1000);
+		refineAllLines(view);
+
+		Assert.assertEquals(getExactHeight(view), (int)view.getPreferredSpan(View.Y_AXIS));
+	}
+
+
+	@Test
+	public void testGetPreferredSpan_yAxis_smallDocument() {
+
+		RSyntaxTextArea textArea = createWrappedTextArea(100);
+		WrappedSyntaxView view = (WrappedSyntaxView)textArea.getUI().
+			getRootView(textArea).getView(0);
+		view.setSize(200, 1000);
+
+		Assert.assertEquals(getExactHeight(view), (int)view.getPreferredSpan(View.Y_AXIS));
+	}
+
+
+	@Test
+	public void testLayout_largeDocument_widthChanged_refinesVisibleLines() {
+
+		RSyntaxTextArea textArea = createWrappedTextArea(
+			WrappedSyntaxView.ESTIMATED_LAYOUT_MIN_LINES);
+		JViewport viewport = new JScrollPane(textArea).getViewport();
+		viewport.setSize(200, 300);
+		WrappedSyntaxView view = (WrappedSyntaxView)textArea.getUI().
+			getRootView(textArea).getView(0);
+		view.setSize(200, 1000);
+		textArea.setSize(200, (int)view.getPreferredSpan(View.Y_AXIS));
+
+		int lineHeight = textArea.getLineHeight();
+		int anchorLine = 1000;
+		viewport.setViewPosition(new Point(0, anchorLine * lineHeight * 3));
+		anchorLine = textArea.getUI().viewToModel(textArea, viewport.getViewPosition());
+		anchorLine = textArea.getDocument().getDefaultRootElement().getElementIndex(anchorLine);
+
+		// All lines are estimated again, but those in view are laid out
+		// with their exact heights
+		view.setSize(300, 1000);
+		int y = 0;
+		for (int i = anchorLine; y < viewport.getHeight(); i++) {
+			WrappedSyntaxView.WrappedLine line =
+				(WrappedSyntaxView.WrappedLine)view.getView(i);
+			int height = line.calculateLineCount() * lineHeight;
+			Assert.assertEquals(height, (int)line.getPreferredSpan(View.Y_AXIS));
+			y += height;
+		}
+	}
+
+
 	@Test
 	public void testNextTabStop_zero() {
 
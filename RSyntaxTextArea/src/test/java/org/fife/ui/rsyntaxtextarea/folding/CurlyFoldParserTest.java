@@ -20,6 +20,50 @@ import java.util.List;
  */
 public class CurlyFoldParserTest {
 
+	private static final String JAVA_CODE = "package foo;\n" +
+		"\n" +
+		"import java.util.List;\n" +
+		"import java.util.Map;\n" +
+		"\n" +
+		"/*\n" +
+		" * A class.\n" +
+		" */\n" +
+		"public class Foo {\n" +
+		"\n" +
+		"  void one() {\n" +
+		"    if (x) {\n" +
+		"      x = 1;\n" +
+		"    } else {\n" +
+		"      x = 2;\n" +
+		"    }\n" +
+		"  }\n" +
+		"\n" +
+		"  void two() {\n" +
+		"    /* two\n" +
+		"       lines */\n" +
+		"    for (;;) { }\n" +
+		"  }\n" +
+		"\n" +
+		"  void three() {\n" +
+		"    while (y) {\n" +
+		"      y--;\n" +
+		"    }\n" +
+		"  }\n" +
+		"\n" +
+		"}\n" +
+		"\n" +
+		"class Bar {\n" +
+		"  int z;\n" +
+		"}\n";
+
+
+	private static RSyntaxTextArea createJavaTextArea() {
+		RSyntaxTextArea textArea = new RSyntaxTextArea(JAVA_CODE);
+		textArea.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_JAVA);
+		return textArea;
+	}
+
+
 	@Test
 	public void testGetFolds_notJava_happyPath() {
 
@@ -63,9 +107,98 @@ public class CurlyFoldParserTest {
 	}
 
 
+	@Test
+	public void testGetFolds_incremental_insertAtEachLine() throws Exception {
+
+		String[] inserts = { "x", "{", "}", "/*", "*/", "\n", "{\n", "}\n",
+			"} else {", "import a.B;\n", "void f() {\n}\n" };
+		int lineCount = createJavaTextArea().getLineCount();
+
+		for (String insert : inserts) {
+			for (int line=0; line<lineCount; line++) {
+				RSyntaxTextArea textArea = createJavaTextArea();
+				CurlyFoldParser parser = new CurlyFoldParser(true, true);
+				int offs = textArea.getLineStartOffset(line);
+				FoldParserTestUtil.assertIncrementalInsert(textArea, parser, offs, insert);
+				offs = textArea.getLineEndOffset(line) - 1;
+				FoldParserTestUtil.assertIncrementalInsert(textArea, parser, offs, insert);
+			}
+		}
+
+	}
+
+
+	@Test
+	public void testGetFolds_incremental_removeEachLine() throws Exception {
+		int lineCount = createJavaTextArea().getLineCount();
+		for (int line=0; line<lineCount-1; line++) {
+			RSyntaxTextArea textArea = createJavaTextArea();
+			int offs = textArea.getLineStartOffset(line);
+			int len = textArea.getLineEndOffset(line) - offs;
+			FoldParserTestUtil.assertIncrementalRemove(textArea, new CurlyFoldParser(true, true),
+					offs, len);
+		}
+	}
+
+
+	@Test
+	public void testGetFolds_incremental_unaffectedFoldsReused()
+			throws Exception {
+
+		RSyntaxTextArea textArea = createJavaTextArea();
+		CurlyFoldParser parser = new CurlyFoldParser(true, true);
+		List<Fold> oldFolds = parser.getFolds(textArea);
+		Fold classFold = oldFolds.get(2);
+		Fold methodOne = classFold.getChild(0);
+		Fold methodThree = classFold.getChild(2);
+		Fold barFold = oldFolds.get(3);
+
+		int offs = JAVA_CODE.indexOf("    for");
+		textArea.getDocument().insertString(offs, "    if (a) {\n    }\n", null);
+		int line = textArea.getLineOfOffset(offs);
+		List<Fold> folds = parser.getFolds(textArea, oldFolds, line, line + 2);
+
+		FoldParserTestUtil.assertSameFolds(parser.getFolds(textArea), folds);
+		Assert.assertSame(oldFolds.get(0), folds.get(0));
+		Assert.assertSame(classFold, folds.get(2));
+		Assert.assertSame(methodOne, classFold.getChild(0));
+		Assert.assertSame(methodThree, classFold.getChild(2));
+		Assert.assertSame(barFold, folds.get(3));
+		Assert.assertEquals(2, classFold.getChild(1).getChildCount());
+
+	}
+
+
+	@Test
+	public void testGetFolds_incremental_collapsedStateKept()
+			throws Exception {
+
+		RSyntaxTextArea textArea = createJavaTextArea();
+		CurlyFoldParser parser = new CurlyFoldParser(true, true);
+		List<Fold> oldFolds = parser.getFolds(textArea);
+		Fold classFold = oldFolds.get(2);
+		classFold.getChild(0).setCollapsed(true);
+		classFold.getChild(1).getChild(0).setCollapsed(true); // The comment
+
+		// Re-scanned from method two on, so the comment fold is replaced
+		int offs = JAVA_CODE.indexOf("  void two");
+		textArea.getDocument().insertString(offs, "\n", null);
+		int line = textArea.getLineOfOffset(offs);
+		List<Fold> folds = parser.getFolds(textArea, oldFolds, line, line + 1);
+
+		Fold methodTwo = folds.get(2).getChild(1);
+		Assert.assertTrue(folds.get(2).getChild(0).isCollapsed());
+		Assert.assertTrue(methodTwo.getChild(0).isCollapsed());
+		Assert.assertEquals(classFold.getChild(0).getLineCount() +
+				methodTwo.getChild(0).getLineCount(),
+				classFold.getCollapsedLineCount());
+
+	}
+
+
 	@Test
 	public void testGetSetFoldableMultiLineComments() {
-		CurlyFoldParser parser = new CurlyFoldParser();
+		CurlyFoldParser parser = new CurlyFoldParser(true, true);
 		Assert.assertTrue(parser.getFoldableMultiLineComments());
 		parser.setFoldableMultiLineComments(false);
 		Assert.assertFalse(parser.getFoldableMultiLineComments());
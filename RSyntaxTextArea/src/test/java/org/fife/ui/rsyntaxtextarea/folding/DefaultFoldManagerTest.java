@@ -0,0 +1,241 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea.folding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fife.ui.rsyntaxtextarea.AbstractRSyntaxTextAreaTest;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link DefaultFoldManager} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class DefaultFoldManagerTest extends AbstractRSyntaxTextAreaTest {
+
+
+	/**
+	 * Returns C code with several top-level blocks, each with nested
+	 * children.
+	 */
+	private static String createCode(int blockCount) {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<blockCount; i++) {
+			sb.append("void f").append(i).append("() {\n");
+			sb.append("  if (x) {\n");
+			sb.append("    while (y) {\n");
+			sb.append("      y--;\n");
+			sb.append("    }\n");
+			sb.append("  } else {\n");
+			sb.append("    x++;\n");
+			sb.append("  }\n");
+			sb.append("}\n");
+		}
+		return sb.toString();
+	}
+
+
+	private static List<Fold> getFolds(FoldManager fm) {
+		List<Fold> folds = new ArrayList<>();
+		for (int i=0; i<fm.getFoldCount(); i++) {
+			folds.add(fm.getFold(i));
+		}
+		return folds;
+	}
+
+
+	/**
+	 * Collapses every <code>n</code>th fold, in a depth-first traversal.
+	 */
+	private static int collapseEvery(List<Fold> folds, int n, int count) {
+		for (Fold fold : folds) {
+			if (count++%n==0) {
+				fold.setCollapsed(true);
+			}
+			if (fold.getChildren()!=null) {
+				count = collapseEvery(fold.getChildren(), n, count);
+			}
+		}
+		return count;
+	}
+
+
+	/**
+	 * Computes whether a line is hidden by walking the fold tree.
+	 */
+	private static boolean isLineHiddenSlow(List<Fold> folds, int line) {
+		for (Fold fold : folds) {
+			if (fold.containsLine(line)) {
+				return fold.isCollapsed() || (fold.getChildren()!=null &&
+						isLineHiddenSlow(fold.getChildren(), line));
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * Computes the number of hidden lines above a line by walking the fold
+	 * tree.
+	 */
+	private static int getHiddenLineCountAboveSlow(List<Fold> folds, int line,
+			boolean physical) {
+		int count = 0;
+		for (Fold fold : folds) {
+			int comp = physical ? line+count : line;
+			if (fold.getStartLine()>=comp) {
+				break;
+			}
+			if (fold.getEndLine()<comp ||
+					(fold.isCollapsed() && fold.getStartLine()<comp)) {
+				count += fold.getCollapsedLineCount();
+			}
+			else if (fold.getChildren()!=null) {
+				count += getHiddenLineCountAboveSlow(fold.getChildren(), comp,
+						physical);
+			}
+		}
+		return count;
+	}
+
+
+	private static void assertMatchesFoldTree(RSyntaxTextArea textArea) {
+
+		FoldManager fm = textArea.getFoldManager();
+		List<Fold> folds = getFolds(fm);
+		int lineCount = textArea.getLineCount();
+
+		int hiddenCount = 0;
+		for (int line=0; line<lineCount; line++) {
+			boolean hidden = isLineHiddenSlow(folds, line);
+			Assert.assertEquals("line " + line, hidden, fm.isLineHidden(line));
+			if (hidden) {
+				hiddenCount++;
+			}
+			Assert.assertEquals("line " + line,
+					getHiddenLineCountAboveSlow(folds, line, false),
+					fm.getHiddenLineCountAbove(line));
+			Assert.assertEquals("line " + line,
+					getHiddenLineCountAboveSlow(folds, line, true),
+					fm.getHiddenLineCountAbove(line, true));
+		}
+		Assert.assertEquals(hiddenCount, fm.getHiddenLineCount());
+
+	}
+
+
+	@Test
+	public void testGetHiddenLineCountAbove_noCollapsedFolds() {
+		RSyntaxTextArea textArea = createTextArea(createCode(5));
+		FoldManager fm = textArea.getFoldManager();
+		Assert.assertEquals(0, fm.getHiddenLineCount());
+		Assert.assertEquals(0, fm.getHiddenLineCountAbove(20));
+		Assert.assertEquals(0, fm.getHiddenLineCountAbove(20, true));
+		assertMatchesFoldTree(textArea);
+	}
+
+
+	@Test
+	public void testGetHiddenLineCountAbove_collapsedFolds() {
+		for (int n=1; n<=4; n++) {
+			RSyntaxTextArea textArea = createTextArea(createCode(10));
+			FoldManager fm = textArea.getFoldManager();
+			collapseEvery(getFolds(fm), n, 0);
+			assertMatchesFoldTree(textArea);
+		}
+	}
+
+
+	@Test
+	public void testGetHiddenLineCountAbove_foldExpanded() {
+
+		RSyntaxTextArea textArea = createTextArea(createCode(10));
+		FoldManager fm = textArea.getFoldManager();
+		collapseEvery(getFolds(fm), 2, 0);
+		int hiddenCount = fm.getHiddenLineCount();
+
+		fm.getFold(0).setCollapsed(false);
+		Assert.assertTrue(fm.getHiddenLineCount()<hiddenCount);
+		assertMatchesFoldTree(textArea);
+
+	}
+
+
+	@Test
+	public void testGetHiddenLineCountAbove_linesInserted() {
+
+		RSyntaxTextArea textArea = createTextArea(createCode(10));
+		FoldManager fm = textArea.getFoldManager();
+		fm.getFold(5).setCollapsed(true);
+		int startLine = fm.getFold(5).getStartLine();
+		Assert.assertEquals(8, fm.getHiddenLineCountAbove(startLine+20));
+
+		textArea.insert("int a;\nint b;\n", 0);
+		Assert.assertEquals(startLine+2, fm.getFold(5).getStartLine());
+		Assert.assertTrue(fm.isLineHidden(startLine+3));
+		Assert.assertFalse(fm.isLineHidden(startLine+1));
+		assertMatchesFoldTree(textArea);
+
+	}
+
+
+	@Test
+	public void testGetVisibleLineAboveAndBelow() {
+
+		RSyntaxTextArea textArea = createTextArea(createCode(10));
+		FoldManager fm = textArea.getFoldManager();
+		List<Fold> folds = getFolds(fm);
+		collapseEvery(folds, 3, 0);
+
+		int lineCount = textArea.getLineCount();
+		for (int line=0; line<lineCount; line++) {
+
+			int expected = line - 1;
+			while (expected>=0 && isLineHiddenSlow(folds, expected)) {
+				expected--;
+			}
+			Assert.assertEquals("line " + line, line==0 ? -1 : expected,
+					fm.getVisibleLineAbove(line));
+
+			expected = line + 1;
+			while (expected<lineCount && isLineHiddenSlow(folds, expected)) {
+				expected++;
+			}
+			Assert.assertEquals("line " + line,
+					expected>=lineCount ? -1 : expected,
+					fm.getVisibleLineBelow(line));
+
+		}
+
+	}
+
+
+	@Test
+	public void testIsLineHidden() {
+
+		RSyntaxTextArea textArea = createTextArea(createCode(2));
+		FoldManager fm = textArea.getFoldManager();
+		Fold ifFold = fm.getFold(0).getChild(0);
+		ifFold.setCollapsed(true);
+
+		Assert.assertFalse(fm.isLineHidden(1)); // "if" line is visible
+		Assert.assertTrue(fm.isLineHidden(2));
+		Assert.assertTrue(fm.isLineHidden(5)); // "} else {"
+		Assert.assertTrue(fm.isLineHidden(7)); // End of "else" block
+		Assert.assertFalse(fm.isLineHidden(8));
+		assertMatchesFoldTree(textArea);
+
+	}
+
+
+}
@@ -0,0 +1,134 @@
+/*
+ * 10/17/2026
+ *
+ * FoldParserTestUtil.java - Assertions shared by fold parser tests.
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea.folding;
+
+import java.util.List;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Element;
+
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.junit.Assert;
+
+
+/**
+ * Assertions shared by the unit tests of {@link IncrementalFoldParser}s.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+final class FoldParserTestUtil {
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private FoldParserTestUtil() {
+	}
+
+
+	/**
+	 * Inserts text into a text area, then asserts that re-parsing just the
+	 * modified lines gives the same result as parsing the whole document.
+	 *
+	 * @param textArea The text area.
+	 * @param parser The fold parser.
+	 * @param offs The offset to insert at.
+	 * @param text The text to insert.
+	 */
+	static void assertIncrementalInsert(RSyntaxTextArea textArea,
+			IncrementalFoldParser parser, int offs, String text)
+			throws Exception {
+		List<Fold> oldFolds = parser.getFolds(textArea);
+		TokenChangeListener l = new TokenChangeListener(textArea);
+		textArea.getDocument().insertString(offs, text, null);
+		Element root = textArea.getDocument().getDefaultRootElement();
+		int firstLine = root.getElementIndex(offs);
+		int lastLine = Math.max(root.getElementIndex(offs + text.length()),
+				l.lastLine);
+		List<Fold> folds = parser.getFolds(textArea, oldFolds, firstLine, lastLine);
+		assertSameFolds(parser.getFolds(textArea), folds);
+	}
+
+
+	/**
+	 * Removes text from a text area, then asserts that re-parsing just the
+	 * modified line gives the same result as parsing the whole document.
+	 *
+	 * @param textArea The text area.
+	 * @param parser The fold parser.
+	 * @param offs The offset to remove from.
+	 * @param len The number of characters to remove.
+	 */
+	static void assertIncrementalRemove(RSyntaxTextArea textArea,
+			IncrementalFoldParser parser, int offs, int len) throws Exception {
+		List<Fold> oldFolds = parser.getFolds(textArea);
+		TokenChangeListener l = new TokenChangeListener(textArea);
+		textArea.getDocument().remove(offs, len);
+		int line = textArea.getLineOfOffset(offs);
+		List<Fold> folds = parser.getFolds(textArea, oldFolds, line,
+				Math.max(line, l.lastLine));
+		assertSameFolds(parser.getFolds(textArea), folds);
+	}
+
+
+	private static void assertSameFold(Fold expected, Fold actual) {
+		Assert.assertEquals(expected.getFoldType(), actual.getFoldType());
+		Assert.assertEquals(expected.getStartOffset(), actual.getStartOffset());
+		Assert.assertEquals(expected.getEndOffset(), actual.getEndOffset());
+		Assert.assertEquals(expected.getChildCount(), actual.getChildCount());
+		for (int i=0; i<expected.getChildCount(); i++) {
+			assertSameFold(expected.getChild(i), actual.getChild(i));
+		}
+	}
+
+
+	/**
+	 * Asserts that two lists of folds describe the same regions.
+	 *
+	 * @param expected The expected folds.
+	 * @param actual The actual folds.
+	 */
+	static void assertSameFolds(List<Fold> expected, List<Fold> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i=0; i<expected.size(); i++) {
+			assertSameFold(expected.get(i), actual.get(i));
+		}
+	}
+
+
+	/**
+	 * Remembers the last line whose tokens changed after an edit.  Lines
+	 * after the edited ones change if e.g. a comment is opened.
+	 */
+	private static class TokenChangeListener implements DocumentListener {
+
+		private int lastLine = -1;
+
+		TokenChangeListener(RSyntaxTextArea textArea) {
+			textArea.getDocument().addDocumentListener(this);
+		}
+
+		@Override
+		public void changedUpdate(DocumentEvent e) {
+			lastLine = Math.max(lastLine, e.getLength()); // A line number
+		}
+
+		@Override
+		public void insertUpdate(DocumentEvent e) {
+		}
+
+		@Override
+		public void removeUpdate(DocumentEvent e) {
+		}
+
+	}
+
+
+}
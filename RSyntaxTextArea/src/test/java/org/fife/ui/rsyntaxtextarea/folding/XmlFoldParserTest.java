@@ -0,0 +1,225 @@
+/*
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea.folding;
+
+
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for the {@link XmlFoldParser} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class XmlFoldParserTest {
+
+	private static final String XML_CODE = "<?xml version=\"1.0\"?>\n" +
+		"<!--\n" +
+		"  A multi-line\n" +
+		"  comment.\n" +
+		"-->\n" +
+		"<root>\n" +
+		"  <one a=\"1\"\n" +
+		"       b=\"2\"/>\n" +
+		"  <two>\n" +
+		"    <three>text</three>\n" +
+		"    <four>\n" +
+		"      <!-- single line -->\n" +
+		"      <![CDATA[\n" +
+		"        <not-a-tag>\n" +
+		"      ]]>\n" +
+		"    </four>\n" +
+		"  </two>\n" +
+		"</root>\n";
+
+	private static final String UNBALANCED_CODE = "<root>\n" +
+		"  <a>\n" +
+		"    <b>\n" +
+		"  </a>\n" +
+		"  </c>\n" +
+		"  <!-- unclosed\n" +
+		"</root>\n" +
+		"</extra>\n" +
+		"<open>\n" +
+		"  text\n";
+
+
+	private static RSyntaxTextArea createXmlTextArea(String code) {
+		RSyntaxTextArea textArea = new RSyntaxTextArea(code);
+		textArea.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_XML);
+		return textArea;
+	}
+
+
+	@Test
+	public void testGetFolds_happyPath() {
+
+		RSyntaxTextArea textArea = createXmlTextArea(XML_CODE);
+		XmlFoldParser parser = new XmlFoldParser();
+		List<Fold> folds = parser.getFolds(textArea);
+
+		Assert.assertEquals(2, folds.size());
+
+		Fold commentFold = folds.get(0);
+		Assert.assertEquals(FoldType.COMMENT, commentFold.getFoldType());
+		Assert.assertEquals(XML_CODE.indexOf("<!--"), commentFold.getStartOffset());
+		Assert.assertEquals(XML_CODE.indexOf("-->") + 2, commentFold.getEndOffset());
+		Assert.assertEquals(0, commentFold.getChildCount());
+
+		// The multi-line short tag, single-line tags, single-line comment
+		// and CDATA section aren't folded
+		Fold rootFold = folds.get(1);
+		Assert.assertEquals(FoldType.CODE, rootFold.getFoldType());
+		Assert.assertEquals(XML_CODE.indexOf("<root>"), rootFold.getStartOffset());
+		Assert.assertEquals(XML_CODE.indexOf("</root>"), rootFold.getEndOffset());
+		Assert.assertEquals(1, rootFold.getChildCount());
+
+		Fold twoFold = rootFold.getChild(0);
+		Assert.assertEquals(XML_CODE.indexOf("<two>"), twoFold.getStartOffset());
+		Assert.assertEquals(XML_CODE.indexOf("</two>"), twoFold.getEndOffset());
+		Assert.assertEquals(1, twoFold.getChildCount());
+
+		Fold fourFold = twoFold.getChild(0);
+		Assert.assertEquals(XML_CODE.indexOf("<four>"), fourFold.getStartOffset());
+		Assert.assertEquals(XML_CODE.indexOf("</four>"), fourFold.getEndOffset());
+		Assert.assertEquals(0, fourFold.getChildCount());
+
+	}
+
+
+	@Test
+	public void testGetFolds_incremental_collapsedStateKept()
+			throws Exception {
+
+		RSyntaxTextArea textArea = createXmlTextArea(XML_CODE);
+		XmlFoldParser parser = new XmlFoldParser();
+		List<Fold> oldFolds = parser.getFolds(textArea);
+		oldFolds.get(0).setCollapsed(true);
+		oldFolds.get(1).getChild(0).getChild(0).setCollapsed(true);
+
+		int offs = XML_CODE.indexOf("    <three>");
+		textArea.getDocument().insertString(offs, "    <x>\n    </x>\n", null);
+		int line = textArea.getLineOfOffset(offs);
+		List<Fold> folds = parser.getFolds(textArea, oldFolds, line, line + 2);
+
+		FoldParserTestUtil.assertSameFolds(parser.getFolds(textArea), folds);
+		Assert.assertTrue(folds.get(0).isCollapsed());
+		Fold twoFold = folds.get(1).getChild(0);
+		Assert.assertEquals(2, twoFold.getChildCount());
+		Assert.assertTrue(twoFold.getChild(1).isCollapsed());
+
+	}
+
+
+	@Test
+	public void testGetFolds_incremental_editsInsideTagsAndComments()
+			throws Exception {
+
+		// Each entry is the text to insert at, and the text to insert
+		String[][] inserts = {
+			{ " a=\"1\"", " x=\"y\"" },
+			{ " a=\"1\"", "/>" },
+			{ " a=\"1\"", ">\n" },
+			{ "  A multi-line", "-->" },
+			{ "  A multi-line", "<tag>\n" },
+			{ "  comment.", "<!--" },
+			{ ">\n  <two>", "/" },
+			{ "<three>text", "\n" },
+			{ " single line", "\n" },
+			{ " single line", "-->" },
+			{ "        <not-a-tag>", "]]>" },
+			{ "        <not-a-tag>", "<x>\n" },
+			{ "      ]]>", "<![CDATA[" },
+			{ "</four>", "\n" },
+			{ "</root>", "<" },
+		};
+
+		for (String[] insert : inserts) {
+			RSyntaxTextArea textArea = createXmlTextArea(XML_CODE);
+			int offs = XML_CODE.indexOf(insert[0]);
+			FoldParserTestUtil.assertIncrementalInsert(textArea, new XmlFoldParser(), offs,
+					insert[1]);
+		}
+
+		// Each entry is the text to remove
+		String[] removes = { "<!--", "-->", "/>", "</three>", "<![CDATA[",
+			"]]>", "</four>", "<two>", "\"2\"" };
+
+		for (String remove : removes) {
+			RSyntaxTextArea textArea = createXmlTextArea(XML_CODE);
+			int offs = XML_CODE.indexOf(remove);
+			FoldParserTestUtil.assertIncrementalRemove(textArea, new XmlFoldParser(), offs,
+					remove.length());
+		}
+
+	}
+
+
+	@Test
+	public void testGetFolds_incremental_insertAtEachLine() throws Exception {
+
+		String[] inserts = { "x", "<", ">", "/>", "<a>", "</a>", "<!--", "-->",
+			"<![CDATA[", "]]>", "\n", "<b>\n", "</b>\n", "<c/>\n",
+			"<!-- a\nb -->\n" };
+		int lineCount = createXmlTextArea(XML_CODE).getLineCount();
+
+		for (String insert : inserts) {
+			for (int line=0; line<lineCount; line++) {
+				RSyntaxTextArea textArea = createXmlTextArea(XML_CODE);
+				XmlFoldParser parser = new XmlFoldParser();
+				int offs = textArea.getLineStartOffset(line);
+				FoldParserTestUtil.assertIncrementalInsert(textArea, parser, offs, insert);
+				offs = textArea.getLineEndOffset(line) - 1;
+				FoldParserTestUtil.assertIncrementalInsert(textArea, parser, offs, insert);
+			}
+		}
+
+	}
+
+
+	@Test
+	public void testGetFolds_incremental_removeEachLine() throws Exception {
+		int lineCount = createXmlTextArea(XML_CODE).getLineCount();
+		for (int line=0; line<lineCount-1; line++) {
+			RSyntaxTextArea textArea = createXmlTextArea(XML_CODE);
+			int offs = textArea.getLineStartOffset(line);
+			int len = textArea.getLineEndOffset(line) - offs;
+			FoldParserTestUtil.assertIncrementalRemove(textArea, new XmlFoldParser(), offs, len);
+		}
+	}
+
+
+	@Test
+	public void testGetFolds_incremental_unbalancedTags() throws Exception {
+
+		String[] inserts = { "x", "<d>\n", "</d>\n", "</a>", "<!--", "-->",
+			"\n" };
+		int lineCount = createXmlTextArea(UNBALANCED_CODE).getLineCount();
+
+		for (int line=0; line<lineCount; line++) {
+			for (String insert : inserts) {
+				RSyntaxTextArea textArea = createXmlTextArea(UNBALANCED_CODE);
+				int offs = textArea.getLineStartOffset(line);
+				FoldParserTestUtil.assertIncrementalInsert(textArea, new XmlFoldParser(), offs,
+						insert);
+			}
+			if (line<lineCount-1) {
+				RSyntaxTextArea textArea = createXmlTextArea(UNBALANCED_CODE);
+				int offs = textArea.getLineStartOffset(line);
+				int len = textArea.getLineEndOffset(line) - offs;
+				FoldParserTestUtil.assertIncrementalRemove(textArea, new XmlFoldParser(), offs,
+						len);
+			}
+		}
+
+	}
+
+
+}
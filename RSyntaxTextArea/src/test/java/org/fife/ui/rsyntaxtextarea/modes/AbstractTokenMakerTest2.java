@@ -84,4 +84,31 @@ abstract class AbstractTokenMakerTest2 extends AbstractTokenMakerTest {
 	}
 
 
+	/**
+	 * Verifies that the last token type on a line is as expected, and that
+	 * {@code getLastTokenTypeOnLine()} agrees with the last token returned by
+	 * {@code getTokenList()}.
+	 *
+	 * @param expectedType The expected last token type.
+	 * @param initialTokenType The initial token type.
+	 * @param line The line of text.
+	 */
+	protected void assertLastTokenTypeOnLine(int expectedType,
+			int initialTokenType, String line) {
+
+		TokenMaker tm = createTokenMaker();
+		Segment segment = createSegment(line);
+		Assert.assertEquals("Unexpected last token type: line=" + line,
+			expectedType, tm.getLastTokenTypeOnLine(segment, initialTokenType));
+
+		Token t = tm.getTokenList(segment, initialTokenType, 0);
+		while (t.getNextToken()!=null) {
+			t = t.getNextToken();
+		}
+		Assert.assertEquals("Unexpected last token: line=" + line,
+			expectedType, t.getType());
+
+	}
+
+
 }
@@ -164,6 +164,26 @@ public class CTokenMakerTest extends AbstractTokenMakerTest {
 	}
 
 
+	@Test
+	public void testGetLastTokenTypeOnLine() {
+
+		TokenMaker tm = createTokenMaker();
+
+		Assert.assertEquals(TokenTypes.NULL,
+			tm.getLastTokenTypeOnLine(createSegment(""), TokenTypes.NULL));
+		Assert.assertEquals(TokenTypes.NULL, tm.getLastTokenTypeOnLine(
+			createSegment("int x = 5; // Comment"), TokenTypes.NULL));
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE, tm.getLastTokenTypeOnLine(
+			createSegment("int x = 5; /* Unterminated comment"), TokenTypes.NULL));
+		Assert.assertEquals(TokenTypes.COMMENT_MULTILINE, tm.getLastTokenTypeOnLine(
+			createSegment("Still in a comment"), TokenTypes.COMMENT_MULTILINE));
+		Assert.assertEquals(TokenTypes.NULL, tm.getLastTokenTypeOnLine(
+			createSegment("end of comment */ int x = 5;"),
+			TokenTypes.COMMENT_MULTILINE));
+
+	}
+
+
 	@Test
 	@Override
 	public void testGetLineCommentStartAndEnd() {
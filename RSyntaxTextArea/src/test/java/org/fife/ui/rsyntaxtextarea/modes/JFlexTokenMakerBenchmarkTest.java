@@ -0,0 +1,134 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rsyntaxtextarea.modes;
+
+import javax.swing.text.Segment;
+
+import org.fife.ui.rsyntaxtextarea.Token;
+import org.fife.ui.rsyntaxtextarea.TokenMaker;
+import org.fife.ui.rsyntaxtextarea.TokenTypes;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Compares how long JFlex-based token makers take to compute the token type
+ * at the end of every line of a document via
+ * {@link TokenMaker#getLastTokenTypeOnLine(Segment, int)}, which scans in
+ * "state-only" mode, versus building each line's full token list.  This is
+ * what happens when a document is loaded or its syntax style changes.<p>
+ *
+ * This is a benchmark rather than a unit test, so it's ignored by default.
+ * Remove the <code>@Ignore</code> annotation to run it locally.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+@Ignore("Benchmark; run manually")
+public class JFlexTokenMakerBenchmarkTest {
+
+	/**
+	 * Lines repeated to generate the document scanned.  They cover comments
+	 * spanning lines, so the token type passed from line to line varies.
+	 */
+	private static final String[] LINES = {
+		"/*",
+		" * A multi-line comment spanning a few lines, with a URL in it:",
+		" * https://github.com/bobbylight/RSyntaxTextArea",
+		" */",
+		"public static int computeValue(String name, int count) {",
+		"\t// A line comment",
+		"\tint total = 0x7f + count * 42;",
+		"\tif (name != null && name.length() > 0) {",
+		"\t\ttotal += name.charAt(0) - 'a'; /* trailing comment */",
+		"\t}",
+		"\tchar[] chars = \"a string with \\\"escapes\\\"\".toCharArray();",
+		"\treturn total;",
+		"}",
+		"",
+	};
+
+	private static final int LINE_COUNT = 6000;
+
+	private static final int ITERATIONS = 20;
+
+
+	private static void benchmark(TokenMaker tm) {
+
+		Segment[] lines = createDocument();
+
+		// Warm up the JIT, and make sure both paths agree
+		for (int i = 0; i < ITERATIONS; i++) {
+			Assert.assertEquals(scanTokenLists(tm, lines),
+				scanStateOnly(tm, lines));
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			scanTokenLists(tm, lines);
+		}
+		long tokenListNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			scanStateOnly(tm, lines);
+		}
+		long stateOnlyNanos = System.nanoTime() - start;
+
+		System.out.printf("%s: %d lines x %d: getTokenList(): %d ms, " +
+				"getLastTokenTypeOnLine(): %d ms%n",
+			tm.getClass().getSimpleName(), LINE_COUNT, ITERATIONS,
+			tokenListNanos / 1000000, stateOnlyNanos / 1000000);
+	}
+
+
+	private static Segment[] createDocument() {
+		Segment[] lines = new Segment[LINE_COUNT];
+		for (int i = 0; i < LINE_COUNT; i++) {
+			char[] line = LINES[i % LINES.length].toCharArray();
+			lines[i] = new Segment(line, 0, line.length);
+		}
+		return lines;
+	}
+
+
+	private static int scanStateOnly(TokenMaker tm, Segment[] lines) {
+		int type = TokenTypes.NULL;
+		for (Segment line : lines) {
+			type = tm.getLastTokenTypeOnLine(line, type);
+		}
+		return type;
+	}
+
+
+	private static int scanTokenLists(TokenMaker tm, Segment[] lines) {
+		int type = TokenTypes.NULL;
+		for (Segment line : lines) {
+			Token t = tm.getTokenList(line, type, 0);
+			while (t.getNextToken() != null) {
+				t = t.getNextToken();
+			}
+			type = t.getType();
+		}
+		return type;
+	}
+
+
+	@Test
+	public void testCTokenMaker() {
+		benchmark(new CTokenMaker());
+	}
+
+
+	@Test
+	public void testJavaTokenMaker() {
+		benchmark(new JavaTokenMaker());
+	}
+
+
+}
@@ -686,6 +686,22 @@ public class JavaTokenMakerTest extends AbstractTokenMakerTest2 {
 	}
 
 
+	@Test
+	public void testGetLastTokenTypeOnLine() {
+		assertLastTokenTypeOnLine(TokenTypes.NULL, TokenTypes.NULL, "");
+		assertLastTokenTypeOnLine(TokenTypes.NULL, TokenTypes.NULL,
+			"int x = 5; // Comment");
+		assertLastTokenTypeOnLine(TokenTypes.COMMENT_MULTILINE,
+			TokenTypes.NULL, "int x = 5; /* Unterminated comment");
+		assertLastTokenTypeOnLine(TokenTypes.COMMENT_MULTILINE,
+			TokenTypes.COMMENT_MULTILINE, "Still in a comment");
+		assertLastTokenTypeOnLine(TokenTypes.NULL,
+			TokenTypes.COMMENT_MULTILINE, "end of comment */ int x = 5;");
+		assertLastTokenTypeOnLine(TokenTypes.COMMENT_DOCUMENTATION,
+			TokenTypes.NULL, "/** Unterminated doc comment with http://fifesoft.com");
+	}
+
+
 	@Test
 	@Override
 	public void testGetLineCommentStartAndEnd() {
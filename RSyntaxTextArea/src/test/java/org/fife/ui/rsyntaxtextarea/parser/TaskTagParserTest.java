@@ -8,8 +8,11 @@ package org.fife.ui.rsyntaxtextarea.parser;
 
 import java.util.List;
 
+import javax.swing.text.Element;
+
 import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
 import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+import org.fife.ui.rsyntaxtextarea.modes.CTokenMaker;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -23,6 +26,61 @@ import org.junit.Test;
 public class TaskTagParserTest {
 
 
+	/**
+	 * Asserts that two parse results contain the same task notices.
+	 */
+	private static void assertSameNotices(ParseResult expected,
+			ParseResult actual) {
+		List<ParserNotice> expectedNotices = expected.getNotices();
+		List<ParserNotice> actualNotices = actual.getNotices();
+		Assert.assertEquals(expectedNotices.size(), actualNotices.size());
+		for (int i=0; i<expectedNotices.size(); i++) {
+			ParserNotice n1 = expectedNotices.get(i);
+			ParserNotice n2 = actualNotices.get(i);
+			Assert.assertEquals(n1.getMessage(), n2.getMessage());
+			Assert.assertEquals(n1.getLine(), n2.getLine());
+			Assert.assertEquals(n1.getOffset(), n2.getOffset());
+			Assert.assertEquals(n1.getLength(), n2.getLength());
+		}
+		Assert.assertEquals(expected.getFirstLineParsed(),
+				actual.getFirstLineParsed());
+		Assert.assertEquals(expected.getLastLineParsed(),
+				actual.getLastLineParsed());
+	}
+
+
+	private static RSyntaxDocument createDocument() throws Exception {
+		RSyntaxDocument doc = new RSyntaxDocument(
+				SyntaxConstants.SYNTAX_STYLE_C);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<20; i++) {
+			sb.append("int x").append(i).append(" = 5;");
+			if (i%3==0) {
+				sb.append(" // TODO: task ").append(i);
+			}
+			sb.append('\n');
+		}
+		doc.insertString(0, sb.toString(), null);
+		return doc;
+	}
+
+
+	/**
+	 * Runs an incremental parse after an edit, and verifies it finds the
+	 * same tasks as a full parse.
+	 */
+	private static void assertIncrementalParseMatches(TaskTagParser parser,
+			RSyntaxDocument doc, int startOffs, int endOffs) {
+		Element root = doc.getDefaultRootElement();
+		String style = doc.getSyntaxStyle();
+		ParseResult res = parser.parse(doc, style,
+				root.getElementIndex(startOffs), root.getElementIndex(endOffs));
+		ParseResult expected = new TaskTagParser().parse(doc, style);
+		assertSameNotices(expected, res);
+	}
+
+
+
 	@Test
 	public void testConstructor() {
 		TaskTagParser parser = new TaskTagParser();
@@ -45,6 +103,24 @@ public class TaskTagParserTest {
 	}
 
 
+	@Test
+	public void testParse_anonymousTokenMaker() throws Exception {
+
+		TaskTagParser parser = new TaskTagParser();
+
+		RSyntaxDocument doc = new RSyntaxDocument(null);
+		doc.setSyntaxStyle(new CTokenMaker() {});
+		doc.insertString(0, "int x;\n/* TODO: Fix this */", null);
+
+		ParseResult res = parser.parse(doc, doc.getSyntaxStyle());
+		List<ParserNotice> notices = res.getNotices();
+		Assert.assertEquals(1, notices.size());
+		Assert.assertEquals("TODO: Fix this */", notices.get(0).getToolTipText());
+		Assert.assertEquals(2, notices.get(0).getLine());
+
+	}
+
+
 	@Test
 	public void testParse_happyPath() throws Exception {
 
@@ -68,6 +144,117 @@ public class TaskTagParserTest {
 	}
 
 
+	@Test
+	public void testParse_incremental_lineModified() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		TaskTagParser parser = new TaskTagParser();
+		parser.parse(doc, doc.getSyntaxStyle());
+
+		// Add a task
+		int offs = doc.getDefaultRootElement().getElement(4).getEndOffset()-1;
+		doc.insertString(offs, " // FIXME: new", null);
+		assertIncrementalParseMatches(parser, doc, offs, offs);
+
+		// Remove a task
+		offs = doc.getDefaultRootElement().getElement(6).getStartOffset();
+		doc.remove(offs, 12);
+		assertIncrementalParseMatches(parser, doc, offs, offs);
+
+	}
+
+
+	@Test
+	public void testParse_incremental_linesAdded() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		TaskTagParser parser = new TaskTagParser();
+		parser.parse(doc, doc.getSyntaxStyle());
+
+		int offs = doc.getDefaultRootElement().getElement(2).getStartOffset();
+		String text = "// HACK: one\nint y;\n// TODO: two\n";
+		doc.insertString(offs, text, null);
+		assertIncrementalParseMatches(parser, doc, offs, offs+text.length());
+
+		List<ParserNotice> notices = parser.parse(doc, doc.getSyntaxStyle(),
+				0, 0).getNotices();
+		Assert.assertEquals(9, notices.size());
+		Assert.assertEquals("HACK: one", notices.get(1).getMessage());
+		Assert.assertEquals("TODO: task 3", notices.get(3).getMessage());
+		Assert.assertEquals(7, notices.get(3).getLine());
+
+	}
+
+
+	@Test
+	public void testParse_incremental_linesRemoved() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		TaskTagParser parser = new TaskTagParser();
+		parser.parse(doc, doc.getSyntaxStyle());
+
+		Element root = doc.getDefaultRootElement();
+		int offs = root.getElement(2).getStartOffset();
+		doc.remove(offs, root.getElement(8).getStartOffset()-offs);
+		assertIncrementalParseMatches(parser, doc, offs, offs);
+
+	}
+
+
+	@Test
+	public void testParse_incremental_multiLineCommentOpened()
+			throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		TaskTagParser parser = new TaskTagParser();
+		parser.parse(doc, doc.getSyntaxStyle());
+
+		// Lines after the edit are now all in a comment
+		int offs = doc.getDefaultRootElement().getElement(1).getStartOffset();
+		doc.insertString(offs, "/* ", null);
+		assertIncrementalParseMatches(parser, doc, offs, offs);
+
+		// ... and now they aren't
+		offs = doc.getDefaultRootElement().getElement(10).getStartOffset();
+		doc.insertString(offs, "*/", null);
+		assertIncrementalParseMatches(parser, doc, offs, offs);
+
+	}
+
+
+	@Test
+	public void testParse_incremental_styleChanged() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		TaskTagParser parser = new TaskTagParser();
+		parser.parse(doc, doc.getSyntaxStyle());
+
+		doc.setSyntaxStyle(SyntaxConstants.SYNTAX_STYLE_NONE);
+		ParseResult res = parser.parse(doc, doc.getSyntaxStyle(), 0, 0);
+		Assert.assertEquals(0, res.getNotices().size());
+
+		doc.setSyntaxStyle(SyntaxConstants.SYNTAX_STYLE_C);
+		res = parser.parse(doc, doc.getSyntaxStyle(), 0, 0);
+		Assert.assertEquals(7, res.getNotices().size());
+
+	}
+
+
+	@Test
+	public void testParse_incremental_taskPatternChanged() throws Exception {
+
+		RSyntaxDocument doc = createDocument();
+		TaskTagParser parser = new TaskTagParser();
+		parser.parse(doc, doc.getSyntaxStyle());
+
+		parser.setTaskPattern("task");
+		ParseResult res = parser.parse(doc, doc.getSyntaxStyle(), 0, 0);
+		Assert.assertEquals(7, res.getNotices().size());
+		Assert.assertEquals("task 0", res.getNotices().get(0).getMessage());
+
+	}
+
+
 	@Test
 	public void testParse_nullTaskPattern() throws Exception {
 
@@ -0,0 +1,142 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rtextarea;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link LiteralMatcher} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class LiteralMatcherTest {
+
+
+	private static String randomString(Random random, String alphabet,
+			int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<length; i++) {
+			sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return sb.toString();
+	}
+
+
+	@Test
+	public void testGetLength() {
+		Assert.assertEquals(3, new LiteralMatcher("foo", true).getLength());
+	}
+
+
+	@Test
+	public void testIndexOf() {
+		LiteralMatcher matcher = new LiteralMatcher("abc", true);
+		Assert.assertEquals(3, matcher.indexOf("xyzabcabc", 0));
+		Assert.assertEquals(3, matcher.indexOf("xyzabcabc", 3));
+		Assert.assertEquals(6, matcher.indexOf("xyzabcabc", 4));
+		Assert.assertEquals(-1, matcher.indexOf("xyzabcabc", 7));
+		Assert.assertEquals(-1, matcher.indexOf("ab", 0));
+		Assert.assertEquals(-1, matcher.indexOf("xyzABC", 0));
+	}
+
+
+	@Test
+	public void testIndexOf_ignoreCase() {
+		LiteralMatcher matcher = new LiteralMatcher("aBc", false);
+		Assert.assertEquals(3, matcher.indexOf("xyzABCabc", 0));
+		Assert.assertEquals(6, matcher.indexOf("xyzABCabc", 4));
+	}
+
+
+	@Test
+	public void testIndexOf_emptyString() {
+		LiteralMatcher matcher = new LiteralMatcher("", true);
+		Assert.assertEquals(0, matcher.indexOf("abc", -1));
+		Assert.assertEquals(2, matcher.indexOf("abc", 2));
+		Assert.assertEquals(3, matcher.indexOf("abc", 5));
+	}
+
+
+	@Test
+	public void testIndexOf_matchesString() {
+
+		// Characters with the same low byte as 'a' share its skip table slot
+		String alphabet = "ab\u0161\u0261A";
+		Random random = new Random(0);
+
+		for (int i=0; i<2000; i++) {
+			String text = randomString(random, alphabet, random.nextInt(40));
+			String searchFor = randomString(random, alphabet,
+					1 + random.nextInt(4));
+			int from = random.nextInt(text.length() + 2) - 1;
+			String message = searchFor + " in " + text + " from " + from;
+
+			LiteralMatcher matcher = new LiteralMatcher(searchFor, true);
+			Assert.assertEquals(message, text.indexOf(searchFor, from),
+					matcher.indexOf(text, from));
+
+			matcher = new LiteralMatcher(searchFor, false);
+			Assert.assertEquals(message,
+					text.toLowerCase().indexOf(searchFor.toLowerCase(), from),
+					matcher.indexOf(text, from));
+		}
+
+	}
+
+
+	@Test
+	public void testLastIndexOf() {
+		LiteralMatcher matcher = new LiteralMatcher("abc", true);
+		Assert.assertEquals(6, matcher.lastIndexOf("xyzabcabc", 9));
+		Assert.assertEquals(6, matcher.lastIndexOf("xyzabcabc", 6));
+		Assert.assertEquals(3, matcher.lastIndexOf("xyzabcabc", 5));
+		Assert.assertEquals(-1, matcher.lastIndexOf("xyzabcabc", 2));
+		Assert.assertEquals(-1, matcher.lastIndexOf("ab", 2));
+	}
+
+
+	@Test
+	public void testLastIndexOf_emptyString() {
+		LiteralMatcher matcher = new LiteralMatcher("", true);
+		Assert.assertEquals(-1, matcher.lastIndexOf("abc", -1));
+		Assert.assertEquals(2, matcher.lastIndexOf("abc", 2));
+		Assert.assertEquals(3, matcher.lastIndexOf("abc", 5));
+	}
+
+
+	@Test
+	public void testLastIndexOf_matchesString() {
+
+		String alphabet = "ab\u0161\u0261A";
+		Random random = new Random(0);
+
+		for (int i=0; i<2000; i++) {
+			String text = randomString(random, alphabet, random.nextInt(40));
+			String searchFor = randomString(random, alphabet,
+					1 + random.nextInt(4));
+			int from = random.nextInt(text.length() + 2) - 1;
+			String message = searchFor + " in " + text + " from " + from;
+
+			LiteralMatcher matcher = new LiteralMatcher(searchFor, true);
+			Assert.assertEquals(message, text.lastIndexOf(searchFor, from),
+					matcher.lastIndexOf(text, from));
+
+			matcher = new LiteralMatcher(searchFor, false);
+			Assert.assertEquals(message,
+					text.toLowerCase().lastIndexOf(searchFor.toLowerCase(), from),
+					matcher.lastIndexOf(text, from));
+		}
+
+	}
+
+
+}
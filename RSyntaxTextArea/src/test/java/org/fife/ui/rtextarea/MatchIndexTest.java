@@ -0,0 +1,324 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rtextarea;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.Document;
+
+import org.fife.ui.rsyntaxtextarea.DocumentRange;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link MatchIndex} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class MatchIndexTest {
+
+
+	private static void edit(RTextArea textArea, Random random) {
+		int length = textArea.getDocument().getLength();
+		int offs = random.nextInt(length + 1);
+		if (random.nextBoolean() || length==0) {
+			textArea.insert(randomString(random, "abA \n",
+					1 + random.nextInt(4)), offs);
+		}
+		else {
+			int end = Math.min(offs + 1 + random.nextInt(6), length);
+			textArea.replaceRange(null, Math.min(offs, end - 1), end);
+		}
+	}
+
+
+	private static void flushEventQueue() throws Exception {
+		SwingUtilities.invokeAndWait(() -> { });
+	}
+
+
+	private static List<DocumentRange> getExpectedHighlights(
+			RTextArea textArea, SearchContext context) {
+		RSyntaxTextArea other = new RSyntaxTextArea(textArea.getText());
+		SearchEngine.markAll(other, context);
+		return other.getMarkAllHighlightRanges();
+	}
+
+
+	private static List<DocumentRange> getExpectedMatches(RTextArea textArea,
+			SearchContext context) {
+		return SearchEngine.getAllMatches(textArea.getText(), context, false);
+	}
+
+
+	private static String randomString(Random random, String alphabet,
+			int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<length; i++) {
+			sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return sb.toString();
+	}
+
+
+	@Test
+	public void testDocumentEdits_matchSearchEngine() {
+
+		String[] searches = { "ab", "a", "b a", "a+b", "(?<=a)b", "b\\s+a" };
+		Random random = new Random(0);
+
+		for (int i=0; i<searches.length; i++) {
+			for (int options=0; options<4; options++) {
+
+				SearchContext context = new SearchContext(searches[i]);
+				context.setRegularExpression(i>=3);
+				context.setMatchCase((options&1)!=0);
+				context.setWholeWord((options&2)!=0);
+
+				RSyntaxTextArea textArea = new RSyntaxTextArea(
+						randomString(random, "abA \n", 300));
+				MatchIndex index = new MatchIndex(textArea, context, null,
+						false);
+
+				// Edits are usually near the previous one, as when typing,
+				// but sometimes jump elsewhere
+				int offs = 0;
+				for (int edit=0; edit<200; edit++) {
+					int length = textArea.getDocument().getLength();
+					if (random.nextInt(5)==0) {
+						offs = random.nextInt(length + 1);
+					}
+					offs = Math.max(0, Math.min(length,
+							offs + random.nextInt(7) - 3));
+					if (random.nextBoolean() || length==0) {
+						textArea.insert(randomString(random, "abA \n",
+								1 + random.nextInt(4)), offs);
+					}
+					else {
+						int end = Math.min(offs + 1 + random.nextInt(6), length);
+						textArea.replaceRange(null, Math.min(offs, end - 1), end);
+					}
+					Assert.assertEquals(searches[i] + " " + options,
+							getExpectedMatches(textArea, context),
+							index.getMatches());
+				}
+
+				index.dispose();
+
+			}
+		}
+
+	}
+
+
+	@Test
+	public void testDispose() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo");
+		SearchContext context = new SearchContext("foo");
+		MatchIndex index = new MatchIndex(textArea, context, null, false);
+		Assert.assertEquals(2, index.getMatchCount());
+
+		index.dispose();
+		textArea.insert("foo ", 0);
+		Assert.assertEquals(2, index.getMatchCount());
+
+	}
+
+
+	@Test
+	public void testGetFirstIndexStartingAndEndingAtOrAfter() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo bar foo");
+		SearchContext context = new SearchContext("foo");
+		MatchIndex index = new MatchIndex(textArea, context, null, false);
+
+		// Shifts the last two matches
+		textArea.insert("xx", 5);
+		Assert.assertEquals(3, index.getMatchCount());
+		Assert.assertEquals(1, index.getFirstIndexStartingAtOrAfter(4));
+		Assert.assertEquals(10, index.getMatchStart(1));
+		Assert.assertEquals(13, index.getMatchEnd(1));
+		Assert.assertEquals(2, index.getFirstIndexStartingAtOrAfter(11));
+		Assert.assertEquals(1, index.getFirstIndexEndingAtOrAfter(4));
+		Assert.assertEquals(2, index.getFirstIndexEndingAtOrAfter(14));
+		Assert.assertEquals(3, index.getFirstIndexEndingAtOrAfter(22));
+
+		// Shifts them back, from an earlier index
+		textArea.replaceRange(null, 0, 2);
+		Assert.assertEquals(new DocumentRange(8, 11),
+				index.getMatches().get(0));
+
+	}
+
+
+	@Test
+	public void testGetMatches_givenMatches() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo");
+		SearchContext context = new SearchContext("foo");
+		List<DocumentRange> matches = SearchEngine.getAllMatches(
+				textArea.getText(), context, false);
+		MatchIndex index = new MatchIndex(textArea, context, matches, false);
+		Assert.assertEquals(matches, index.getMatches());
+
+	}
+
+
+	@Test
+	public void testGetMatches_invalidRegex() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo");
+		SearchContext context = new SearchContext("(foo");
+		context.setRegularExpression(true);
+		MatchIndex index = new MatchIndex(textArea, context, null, false);
+		Assert.assertEquals(0, index.getMatchCount());
+
+		textArea.insert("(foo", 0);
+		Assert.assertEquals(0, index.getMatchCount());
+
+	}
+
+
+	@Test
+	public void testGetMatches_multiLineRegex() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo\nbar foo");
+		SearchContext context = new SearchContext("o\\sb");
+		context.setRegularExpression(true);
+		MatchIndex index = new MatchIndex(textArea, context, null, false);
+		Assert.assertEquals(1, index.getMatchCount());
+
+		textArea.insert("\nbar", textArea.getDocument().getLength());
+		Assert.assertEquals(2, index.getMatchCount());
+		Assert.assertEquals(new DocumentRange(10, 13),
+				index.getMatches().get(1));
+
+	}
+
+
+	@Test
+	public void testMarkAll_clearStopsUpdates() throws Exception {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo");
+		SearchEngine.markAll(textArea, new SearchContext("foo"));
+		((RTextArea)textArea).clearMarkAllHighlights();
+
+		SwingUtilities.invokeAndWait(() -> textArea.append(" foo"));
+		flushEventQueue();
+		Assert.assertEquals(0, textArea.getMarkAllHighlightRanges().size());
+
+	}
+
+
+	@Test
+	public void testMarkAll_documentEditsMatchSearchEngine() throws Exception {
+
+		String[] literals = { "ab", "a", "aba", "b a" };
+		String[] regexes = { "a+b", "^ab", "b$", "(?<=a)b", "b\\s+a", "a.b" };
+		Random random = new Random(0);
+
+		for (int i=0; i<literals.length+regexes.length; i++) {
+			for (int options=0; options<4; options++) {
+
+				boolean regex = i>=literals.length;
+				SearchContext context = new SearchContext(regex ?
+						regexes[i-literals.length] : literals[i]);
+				context.setRegularExpression(regex);
+				context.setMatchCase((options&1)!=0);
+				context.setWholeWord((options&2)!=0);
+
+				RSyntaxTextArea textArea = new RSyntaxTextArea(
+						randomString(random, "abA \n", 300));
+				SearchEngine.markAll(textArea, context);
+
+				for (int edit=0; edit<50; edit++) {
+					// Several edits at once are coalesced into one update.
+					// They're made on the EDT so the update runs after them.
+					SwingUtilities.invokeAndWait(() -> {
+						for (int j=random.nextInt(3); j>=0; j--) {
+							edit(textArea, random);
+						}
+					});
+					flushEventQueue();
+					Assert.assertEquals(context.getSearchFor() + " " + options,
+							getExpectedHighlights(textArea, context),
+							textArea.getMarkAllHighlightRanges());
+				}
+
+			}
+		}
+
+	}
+
+
+	@Test
+	public void testMarkAll_insertMarksNewOccurrence() throws Exception {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo");
+		SearchEngine.markAll(textArea, new SearchContext("foo"));
+		List<Object> events = new ArrayList<>();
+		textArea.addPropertyChangeListener(
+				RTextArea.MARK_ALL_OCCURRENCES_CHANGED_PROPERTY,
+				e -> events.add(e.getNewValue()));
+
+		SwingUtilities.invokeAndWait(() -> textArea.insert("foo ", 4));
+		flushEventQueue();
+		List<DocumentRange> expected = new ArrayList<>();
+		expected.add(new DocumentRange(0, 3));
+		expected.add(new DocumentRange(4, 7));
+		expected.add(new DocumentRange(12, 15));
+		Assert.assertEquals(expected, textArea.getMarkAllHighlightRanges());
+		Assert.assertEquals(1, events.size());
+
+		// Edits that don't change the matches don't fire events
+		SwingUtilities.invokeAndWait(() -> textArea.insert("x", 3));
+		flushEventQueue();
+		Assert.assertEquals(1, events.size());
+
+	}
+
+
+	@Test
+	public void testMarkAll_removeUnmarksBrokenOccurrence() throws Exception {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar\nfoo");
+		SearchEngine.markAll(textArea, new SearchContext("foo"));
+		Assert.assertEquals(2, textArea.getMarkAllHighlightRanges().size());
+
+		SwingUtilities.invokeAndWait(() -> textArea.replaceRange(null, 9, 10));
+		flushEventQueue();
+		Assert.assertEquals(1, textArea.getMarkAllHighlightRanges().size());
+		Assert.assertEquals(new DocumentRange(0, 3),
+				textArea.getMarkAllHighlightRanges().get(0));
+
+	}
+
+
+	@Test
+	public void testMarkAll_setDocumentStopsUpdates() throws Exception {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo");
+		SearchEngine.markAll(textArea, new SearchContext("foo"));
+		Document old = textArea.getDocument();
+		textArea.setDocument(new RSyntaxDocument(null));
+
+		old.insertString(0, "foo ", null);
+		flushEventQueue();
+		Assert.assertEquals(2, textArea.getMarkAllHighlightRanges().size());
+
+	}
+
+
+}
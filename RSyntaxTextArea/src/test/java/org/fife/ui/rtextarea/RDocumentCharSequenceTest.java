@@ -0,0 +1,135 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rtextarea;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for {@link RDocumentCharSequence}.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class RDocumentCharSequenceTest {
+
+
+	/**
+	 * Returns a document whose gap buffer's gap is in the middle of its
+	 * text.
+	 */
+	private static RDocument createDocument() throws Exception {
+		RDocument doc = new RDocument();
+		doc.insertString(0, "Hello world", null);
+		doc.insertString(6, "there ", null);
+		return doc;
+	}
+
+
+	@Test
+	public void testCharAt() throws Exception {
+
+		RDocument doc = createDocument();
+		String expected = "Hello there world";
+		RDocumentCharSequence seq = new RDocumentCharSequence(doc, 0);
+
+		Assert.assertEquals(expected.length(), seq.length());
+		for (int i=0; i<expected.length(); i++) {
+			Assert.assertEquals(expected.charAt(i), seq.charAt(i));
+		}
+
+	}
+
+
+	@Test
+	public void testCharAt_documentModified() throws Exception {
+
+		RDocument doc = createDocument();
+		RDocumentCharSequence seq = new RDocumentCharSequence(doc, 6, 11);
+		Assert.assertEquals('t', seq.charAt(0));
+
+		doc.insertString(0, "Oh, ", null);
+		Assert.assertEquals('l', seq.charAt(0)); // "Oh, Hello there world"
+		doc.remove(0, 4);
+		Assert.assertEquals('t', seq.charAt(0));
+
+	}
+
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testCharAt_invalidIndex() throws Exception {
+		new RDocumentCharSequence(createDocument(), 6, 11).charAt(5);
+	}
+
+
+	@Test
+	public void testGetChars() throws Exception {
+
+		RDocument doc = createDocument();
+		String expected = "Hello there world";
+		RDocumentCharSequence seq = new RDocumentCharSequence(doc, 0);
+
+		// All ranges, including those entirely before or after the gap
+		for (int start=0; start<=expected.length(); start++) {
+			for (int end=start; end<=expected.length(); end++) {
+				char[] chars = new char[end - start + 1];
+				seq.getChars(start, end, chars, 1);
+				Assert.assertEquals(expected.substring(start, end),
+						new String(chars, 1, end - start));
+			}
+		}
+
+	}
+
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetChars_invalidRange() throws Exception {
+		RDocumentCharSequence seq = new RDocumentCharSequence(
+				createDocument(), 6);
+		seq.getChars(0, seq.length() + 1, new char[20], 0);
+	}
+
+
+	@Test
+	public void testRegexScan() throws Exception {
+
+		RDocument doc = createDocument();
+		RDocumentCharSequence seq = new RDocumentCharSequence(doc, 0);
+
+		Matcher m = Pattern.compile("o\\s\\w").matcher(seq);
+		Assert.assertTrue(m.find());
+		Assert.assertEquals(4, m.start());
+		Assert.assertFalse(m.find());
+
+	}
+
+
+	@Test
+	public void testSubSequence() throws Exception {
+		RDocument doc = createDocument();
+		CharSequence seq = new RDocumentCharSequence(doc, 6);
+		Assert.assertEquals("there", seq.subSequence(0, 5).toString());
+		Assert.assertEquals("world", seq.subSequence(6, 11).toString());
+		Assert.assertEquals("", seq.subSequence(3, 3).toString());
+	}
+
+
+	@Test
+	public void testToString() throws Exception {
+		RDocument doc = createDocument();
+		Assert.assertEquals("Hello there world",
+				new RDocumentCharSequence(doc, 0).toString());
+		Assert.assertEquals("lo th",
+				new RDocumentCharSequence(doc, 3, 8).toString());
+	}
+
+
+}
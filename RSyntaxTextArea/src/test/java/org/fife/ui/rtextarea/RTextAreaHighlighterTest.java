@@ -0,0 +1,249 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rtextarea;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Position;
+
+import org.fife.ui.rsyntaxtextarea.DocumentRange;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link RTextAreaHighlighter} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class RTextAreaHighlighterTest {
+
+
+	private static RTextAreaHighlighter.HighlightInfoImpl createHighlight(
+			Document doc, int start, int end) throws BadLocationException {
+		RTextAreaHighlighter.HighlightInfoImpl info =
+				new RTextAreaHighlighter.LayeredHighlightInfoImpl();
+		info.setStartOffset(doc.createPosition(start));
+		info.setEndOffset(doc.createPosition(end));
+		return info;
+	}
+
+
+	@Test
+	public void testAddMarkAllHighlights() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo bar");
+		RTextAreaHighlighter h = (RTextAreaHighlighter)textArea.getHighlighter();
+		List<DocumentRange> ranges = new ArrayList<>();
+		ranges.add(new DocumentRange(4, 7));
+		ranges.add(new DocumentRange(12, 15));
+
+		h.addMarkAllHighlights(ranges, null);
+		Assert.assertEquals(ranges, h.getMarkAllHighlightRanges());
+
+		h.clearMarkAllHighlights();
+		Assert.assertEquals(0, h.getMarkAllHighlightCount());
+
+	}
+
+
+	@Test
+	public void testHighlightList_getFirstIndex() throws Exception {
+
+		Document doc = new RDocument();
+		doc.insertString(0, "0123456789012345678901234567890", null);
+		RTextAreaHighlighter.HighlightList<RTextAreaHighlighter.HighlightInfo>
+				list = new RTextAreaHighlighter.HighlightList<>();
+		list.add(createHighlight(doc, 2, 4));
+		list.add(createHighlight(doc, 6, 8));
+		list.add(createHighlight(doc, 10, 12));
+		Assert.assertTrue(list.isOrdered());
+
+		Assert.assertEquals(0, list.getFirstIndexEndingAtOrAfter(0));
+		Assert.assertEquals(0, list.getFirstIndexEndingAtOrAfter(4));
+		Assert.assertEquals(1, list.getFirstIndexEndingAtOrAfter(5));
+		Assert.assertEquals(3, list.getFirstIndexEndingAtOrAfter(13));
+
+		Assert.assertEquals(0, list.getFirstIndexStartingAtOrAfter(2));
+		Assert.assertEquals(1, list.getFirstIndexStartingAtOrAfter(3));
+		Assert.assertEquals(2, list.getFirstIndexStartingAtOrAfter(10));
+		Assert.assertEquals(3, list.getFirstIndexStartingAtOrAfter(11));
+
+	}
+
+
+	@Test
+	public void testHighlightList_ordered() throws Exception {
+
+		Document doc = new RDocument();
+		doc.insertString(0, "0123456789012345678901234567890", null);
+		RTextAreaHighlighter.HighlightList<RTextAreaHighlighter.HighlightInfo>
+				list = new RTextAreaHighlighter.HighlightList<>();
+		list.add(createHighlight(doc, 2, 4));
+		list.add(createHighlight(doc, 4, 8));
+		list.add(createHighlight(doc, 10, 12));
+		Assert.assertTrue(list.isOrdered());
+
+		// Edits move highlights without reordering them
+		doc.remove(3, 6);
+		doc.insertString(0, "xx", null);
+		Assert.assertTrue(list.isOrdered());
+		Assert.assertEquals(2, list.getFirstIndexEndingAtOrAfter(6));
+
+		// Nested highlights aren't ordered
+		list.add(1, createHighlight(doc, 3, 20));
+		Assert.assertFalse(list.isOrdered());
+		list.remove(1);
+		Assert.assertFalse(list.isOrdered());
+
+		list.clear();
+		Assert.assertTrue(list.isOrdered());
+		list.add(createHighlight(doc, 5, 6));
+		list.add(createHighlight(doc, 2, 3));
+		Assert.assertFalse(list.isOrdered());
+
+	}
+
+
+	@Test
+	public void testPositionTracker_matchesDocumentPositions() throws Exception {
+
+		Random random = new Random(0);
+
+		for (int i=0; i<20; i++) {
+
+			Document doc = new RDocument();
+			doc.insertString(0, "0123456789012345678901234567890123456789",
+					null);
+			RTextAreaHighlighter.PositionTracker tracker =
+					new RTextAreaHighlighter.PositionTracker(doc);
+			List<Position> expected = new ArrayList<>();
+			List<Position> actual = new ArrayList<>();
+			for (int offs=0; offs<=doc.getLength();
+					offs+=random.nextInt(3)) {
+				expected.add(doc.createPosition(offs));
+				actual.add(tracker.createPosition(offs));
+			}
+
+			for (int edit=0; edit<200; edit++) {
+				int length = doc.getLength();
+				int offs = random.nextInt(length + 1);
+				if (random.nextBoolean() || length==0) {
+					doc.insertString(offs, "abc".substring(random.nextInt(3)),
+							null);
+				}
+				else {
+					doc.remove(offs, Math.min(random.nextInt(5), length-offs));
+				}
+				for (int j=0; j<expected.size(); j++) {
+					Assert.assertEquals(expected.get(j).getOffset(),
+							actual.get(j).getOffset());
+				}
+			}
+
+			tracker.dispose();
+
+		}
+
+	}
+
+
+	@Test
+	public void testPositionTracker_outOfOrder() throws Exception {
+
+		Document doc = new RDocument();
+		doc.insertString(0, "0123456789", null);
+		RTextAreaHighlighter.PositionTracker tracker =
+				new RTextAreaHighlighter.PositionTracker(doc);
+		Position p1 = tracker.createPosition(5);
+		Position p2 = tracker.createPosition(2);
+
+		doc.insertString(3, "abc", null);
+		Assert.assertEquals(8, p1.getOffset());
+		Assert.assertEquals(2, p2.getOffset());
+
+		// Positions no longer move once disposed of
+		tracker.dispose();
+		doc.insertString(0, "abc", null);
+		Assert.assertEquals(8, p1.getOffset());
+		Assert.assertEquals(5, p2.getOffset());
+
+	}
+
+
+	@Test
+	public void testUpdateMarkAllHighlights() throws Exception {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo bar");
+		RTextAreaHighlighter h = (RTextAreaHighlighter)textArea.getHighlighter();
+		List<DocumentRange> ranges = new ArrayList<>();
+		ranges.add(new DocumentRange(0, 3));
+		ranges.add(new DocumentRange(8, 11));
+		h.addMarkAllHighlights(ranges, null);
+
+		Assert.assertFalse(h.updateMarkAllHighlights(ranges, null));
+
+		ranges.remove(0);
+		ranges.add(new DocumentRange(12, 15));
+		Assert.assertTrue(h.updateMarkAllHighlights(ranges, null));
+		Assert.assertEquals(ranges, h.getMarkAllHighlightRanges());
+
+	}
+
+
+	@Test
+	public void testUpdateMarkAllHighlights_range() throws Exception {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo bar foo");
+		RTextAreaHighlighter h = (RTextAreaHighlighter)textArea.getHighlighter();
+		List<DocumentRange> ranges = new ArrayList<>();
+		ranges.add(new DocumentRange(0, 3));
+		ranges.add(new DocumentRange(8, 11));
+		ranges.add(new DocumentRange(16, 19));
+		h.addMarkAllHighlights(ranges, null);
+
+		// Only highlights starting in the range are replaced
+		List<DocumentRange> inRange = new ArrayList<>();
+		inRange.add(new DocumentRange(4, 7));
+		inRange.add(new DocumentRange(8, 11));
+		Assert.assertTrue(h.updateMarkAllHighlights(4, 16, inRange, null));
+		ranges.add(1, new DocumentRange(4, 7));
+		Assert.assertEquals(ranges, h.getMarkAllHighlightRanges());
+
+		Assert.assertFalse(h.updateMarkAllHighlights(4, 16, inRange, null));
+
+	}
+
+
+	@Test
+	public void testUpdateMarkAllHighlights_rangeUnordered() throws Exception {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo bar foo");
+		RTextAreaHighlighter h = (RTextAreaHighlighter)textArea.getHighlighter();
+		h.addMarkAllHighlight(16, 19, null);
+		h.addMarkAllHighlight(0, 3, null);
+		h.addMarkAllHighlight(8, 11, null);
+
+		List<DocumentRange> inRange = new ArrayList<>();
+		inRange.add(new DocumentRange(4, 7));
+		Assert.assertTrue(h.updateMarkAllHighlights(4, 16, inRange, null));
+		List<DocumentRange> actual = h.getMarkAllHighlightRanges();
+		Assert.assertEquals(3, actual.size());
+		Assert.assertTrue(actual.contains(new DocumentRange(0, 3)));
+		Assert.assertTrue(actual.contains(new DocumentRange(4, 7)));
+		Assert.assertTrue(actual.contains(new DocumentRange(16, 19)));
+
+	}
+
+
+}
@@ -12,9 +12,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
 
 import org.fife.ui.rsyntaxtextarea.DocumentRange;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
@@ -138,6 +146,91 @@ public class SearchEngineTest {
 	}
 
 
+	/**
+	 * Tests a backward regex search finds the same match as a forward scan
+	 * of all the text before the caret, for both regexes that can and can't
+	 * match across lines.
+	 */
+	@Test
+	public void testSearchEngineFindBackward_regexMatchesForwardScan() {
+
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<3000; i++) {
+			sb.append(i%7==0 ? "aaaaa ab\n" : "xyz ba\n");
+		}
+		String content = sb.toString();
+		textArea.setText(content);
+
+		String[] regexes = { "aa", "a+b", "(?<=b)a", "\\baa", "a$", "^a",
+				"b\\s+x", "(?s)a.{20}" };
+		SearchContext context = new SearchContext();
+		context.setRegularExpression(true);
+		context.setSearchForward(false);
+		context.setMatchCase(true);
+
+		for (String regex : regexes) {
+			context.setSearchFor(regex);
+			Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
+			for (int caret=content.length(); caret>0; caret-=2777) {
+
+				Matcher m = pattern.matcher(content.substring(0, caret));
+				int expectedStart = -1;
+				int expectedEnd = -1;
+				while (m.find()) {
+					expectedStart = m.start();
+					expectedEnd = m.end();
+				}
+
+				textArea.setCaretPosition(caret);
+				String message = regex + " before " + caret;
+				assertEquals(message, expectedStart!=-1, findImpl(context));
+				if (expectedStart!=-1) {
+					assertEquals(message, expectedStart,
+							textArea.getSelectionStart());
+					assertEquals(message, expectedEnd,
+							textArea.getSelectionEnd());
+				}
+
+			}
+		}
+
+	}
+
+
+	/**
+	 * Tests a backward regex search when the only match is far before the
+	 * caret, or spans many lines.
+	 */
+	@Test
+	public void testSearchEngineFindBackward_regexFarFromCaret() {
+
+		StringBuilder sb = new StringBuilder("foo\n");
+		for (int i=0; i<5000; i++) {
+			sb.append("bar bar\n");
+		}
+		sb.append("foo");
+		textArea.setText(sb.toString());
+
+		SearchContext context = new SearchContext("^fo+$");
+		context.setRegularExpression(true);
+		context.setSearchForward(false);
+
+		textArea.setCaretPosition(sb.length() - 3);
+		assertTrue(findImpl(context));
+		assertEquals(0, textArea.getSelectionStart());
+		assertEquals(3, textArea.getSelectionEnd());
+
+		// A match starting at the beginning of the text swallows all of the
+		// later places it could start
+		context.setSearchFor("(?s)^foo.*");
+		textArea.setCaretPosition(sb.length());
+		assertTrue(findImpl(context));
+		assertEquals(0, textArea.getSelectionStart());
+		assertEquals(sb.length(), textArea.getSelectionEnd());
+
+	}
+
+
 	/**
 	 * Tests <code>SearchEngine.find()</code> when searching backward.
 	 *
@@ -658,6 +751,95 @@ public class SearchEngineTest {
 
 	}
 
+	@Test
+	public void testSearchEngineMarkAll_parallelMatchesSequential() {
+
+		Random random = new Random(0);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<1500000; i++) {
+			sb.append("ab A\n".charAt(random.nextInt(5)));
+		}
+		String content = sb.toString();
+
+		String[] literals = { "ab", "a", "b a", "a\nb" };
+		String[] regexes = { "a+b", "^a", "b$", "(?<=a)b ", "b\\s+a", "a|" };
+		for (int i=0; i<literals.length+regexes.length; i++) {
+			for (int options=0; options<4; options++) {
+				boolean regex = i>=literals.length;
+				SearchContext context = new SearchContext(regex ?
+						regexes[i-literals.length] : literals[i]);
+				context.setRegularExpression(regex);
+				context.setMatchCase((options&1)!=0);
+				context.setWholeWord((options&2)!=0);
+				List<DocumentRange> expected =
+						SearchEngine.getAllMatches(content, context, false);
+				assertEquals(context.getSearchFor() + " " + options, expected,
+						SearchEngine.getAllMatches(content, context, true));
+			}
+		}
+
+	}
+
+
+	@Test
+	public void testSearchEngineMarkAll_matchRanges() {
+
+		textArea.setText("aaaa Chuck\nchuckle chuck");
+		SearchContext context = new SearchContext("chuck");
+		context.setMarkAll(true);
+
+		SearchResult res = SearchEngine.markAll(textArea, context);
+		assertEquals(new SearchResult(null, 0, 3), res);
+		List<DocumentRange> ranges = textArea.getMarkAllHighlightRanges();
+		assertEquals(new DocumentRange(5, 10), ranges.get(0));
+		assertEquals(new DocumentRange(11, 16), ranges.get(1));
+		assertEquals(new DocumentRange(19, 24), ranges.get(2));
+
+		// Matches don't overlap
+		context.setSearchFor("aa");
+		res = SearchEngine.markAll(textArea, context);
+		assertEquals(new SearchResult(null, 0, 2), res);
+
+		context.setSearchFor("chuck");
+		context.setWholeWord(true);
+		res = SearchEngine.markAll(textArea, context);
+		assertEquals(new SearchResult(null, 0, 2), res);
+		ranges = textArea.getMarkAllHighlightRanges();
+		assertEquals(new DocumentRange(19, 24), ranges.get(1));
+
+	}
+
+
+	@Test
+	public void testSearchEngineMarkAll_regex() {
+
+		textArea.setText("aaa\naab\nAbc");
+		SearchContext context = new SearchContext();
+		context.setMarkAll(true);
+		context.setRegularExpression(true);
+
+		// '^' only matches at the start of lines, not after each match
+		context.setSearchFor("^a");
+		SearchResult res = SearchEngine.markAll(textArea, context);
+		assertEquals(new SearchResult(null, 0, 3), res);
+
+		// Case-insensitive searches don't change the meaning of the regex
+		context.setSearchFor("\\S+");
+		res = SearchEngine.markAll(textArea, context);
+		assertEquals(new SearchResult(null, 0, 3), res);
+
+		// Zero-length matches are skipped
+		context.setSearchFor("b|");
+		res = SearchEngine.markAll(textArea, context);
+		assertEquals(new SearchResult(null, 0, 2), res);
+
+		// Invalid regexes don't match anything
+		context.setSearchFor("a(");
+		res = SearchEngine.markAll(textArea, context);
+		assertEquals(new SearchResult(null, 0, 0), res);
+
+	}
+
 
 	/**
 	 * Tests <code>SearchEngine.replace()</code>.
@@ -869,6 +1051,99 @@ public class SearchEngineTest {
 	}
 
 
+	@Test
+	public void testSearchEngineReplaceAll_bookmarkBetweenMatches()
+			throws Exception {
+
+		textArea.setText("x\nline 2\nline 3\nx");
+		Gutter gutter = new RTextScrollPane(textArea).getGutter();
+		gutter.setBookmarkingEnabled(true);
+		Icon icon = new ImageIcon(new BufferedImage(1, 1,
+				BufferedImage.TYPE_INT_ARGB));
+		GutterIconInfo bookmark = gutter.addLineTrackingIcon(2, icon);
+
+		SearchContext context = new SearchContext("x");
+		context.setReplaceWith("YY");
+		int count = replaceAllImpl(context);
+		assertEquals(2, count);
+		assertEquals("YY\nline 2\nline 3\nYY", textArea.getText());
+
+		// The bookmark is still on the line it marked
+		assertEquals(textArea.getLineStartOffset(2), bookmark.getMarkedOffset());
+	}
+
+
+	@Test
+	public void testSearchEngineReplaceAll_caretAtEndOfLastReplacement() {
+
+		textArea.setText("aXbXc");
+		textArea.setCaretPosition(5);
+
+		SearchContext context = new SearchContext("x");
+		context.setReplaceWith("YY");
+		int count = replaceAllImpl(context);
+		assertEquals(2, count);
+		assertEquals("aYYbYYc", textArea.getText());
+		assertEquals(6, textArea.getCaretPosition());
+		assertResult(new SearchResult(new DocumentRange(6, 6), 2, 0));
+	}
+
+
+	@Test
+	public void testSearchEngineReplaceAll_notEditable() {
+
+		textArea.setText(text);
+		textArea.setEditable(false);
+
+		SearchContext context = new SearchContext("chuck");
+		context.setReplaceWith("FOOBAR");
+		int count = replaceAllImpl(context);
+		assertEquals(0, count);
+		assertEquals(text, textArea.getText());
+	}
+
+
+	@Test
+	public void testSearchEngineReplaceAll_singleUndo() {
+
+		textArea.setText(text);
+		textArea.discardAllEdits();
+
+		SearchContext context = new SearchContext("chuck");
+		context.setReplaceWith("FOOBAR");
+		int count = replaceAllImpl(context);
+		assertEquals(4, count);
+
+		textArea.undoLastAction();
+		assertEquals(text, textArea.getText());
+		assertFalse(textArea.canUndo());
+	}
+
+
+	@Test
+	public void testSearchEngineReplaceAll_tabsEmulated() {
+
+		textArea.setText("ab x\nx");
+		textArea.setTabSize(4);
+		textArea.setTabsEmulated(true);
+
+		SearchContext context = new SearchContext("x");
+		context.setReplaceWith("\ty");
+		int count = replaceAllImpl(context);
+		assertEquals(2, count);
+		assertEquals("ab  y\n    y", textArea.getText());
+		assertEquals(textArea.getDocument().getLength(),
+				textArea.getCaretPosition());
+
+		// Later replacements on a line start at columns moved by earlier ones
+		textArea.setText("ab x x\nz");
+		count = replaceAllImpl(context);
+		assertEquals(2, count);
+		assertEquals("ab  y   y\nz", textArea.getText());
+		assertEquals(9, textArea.getCaretPosition());
+	}
+
+
 	/**
 	 * Tests <code>SearchEngine.replaceAll()</code>.
 	 */
@@ -0,0 +1,300 @@
+/*
+ * 10/17/2026
+ *
+ * This library is distributed under a modified BSD license.  See the included
+ * LICENSE file for details.
+ */
+package org.fife.ui.rtextarea;
+
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+
+import org.fife.ui.rsyntaxtextarea.DocumentRange;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the {@link SearchSession} class.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class SearchSessionTest {
+
+
+	/**
+	 * Returns the matches {@link SearchEngine#markAll(RTextArea, SearchContext)}
+	 * finds for the text in a text area.
+	 */
+	private static List<DocumentRange> getExpectedMatches(RTextArea textArea,
+			SearchContext context) {
+		RSyntaxTextArea other = new RSyntaxTextArea(textArea.getText());
+		SearchContext copy = context.clone();
+		copy.setMarkAll(true);
+		SearchEngine.markAll(other, copy);
+		return other.getMarkAllHighlightRanges();
+	}
+
+
+	private static void flushEventQueue() throws Exception {
+		SwingUtilities.invokeAndWait(() -> { });
+	}
+
+
+	private static String randomString(Random random, String alphabet,
+			int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<length; i++) {
+			sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return sb.toString();
+	}
+
+
+	@Test
+	public void testDispose() throws Exception {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo");
+		SearchContext context = new SearchContext("foo");
+		SearchSession session = new SearchSession(textArea, context);
+		Assert.assertEquals(2, textArea.getMarkAllHighlightRanges().size());
+
+		session.dispose();
+		Assert.assertEquals(0, textArea.getMarkAllHighlightRanges().size());
+
+		// No longer tracks changes
+		context.setSearchFor("bar");
+		textArea.append(" foo");
+		flushEventQueue();
+		Assert.assertEquals(0, textArea.getMarkAllHighlightRanges().size());
+
+	}
+
+
+	@Test
+	public void testDocumentEdits_matchSearchEngine() {
+
+		String[] literals = { "ab", "a", "aba", "b a" };
+		String[] regexes = { "a+b", "^ab", "b$", "(?<=a)b", "b\\s+a", "a.b" };
+		Random random = new Random(0);
+
+		for (int i=0; i<literals.length+regexes.length; i++) {
+			for (int options=0; options<4; options++) {
+
+				boolean regex = i>=literals.length;
+				SearchContext context = new SearchContext(regex ?
+						regexes[i-literals.length] : literals[i]);
+				context.setRegularExpression(regex);
+				context.setMatchCase((options&1)!=0);
+				context.setWholeWord((options&2)!=0);
+				// Highlights are updated on the EDT while this thread edits
+				context.setMarkAll(false);
+
+				RSyntaxTextArea textArea = new RSyntaxTextArea(
+						randomString(random, "abA \n", 300));
+				SearchSession session = new SearchSession(textArea, context);
+
+				for (int edit=0; edit<100; edit++) {
+					int length = textArea.getDocument().getLength();
+					int offs = random.nextInt(length + 1);
+					if (random.nextBoolean() || length==0) {
+						textArea.insert(randomString(random, "abA \n",
+								1 + random.nextInt(4)), offs);
+					}
+					else {
+						int end = Math.min(offs + 1 + random.nextInt(6), length);
+						textArea.replaceRange(null, Math.min(offs, end - 1), end);
+					}
+					Assert.assertEquals(context.getSearchFor() + " " + options,
+							getExpectedMatches(textArea, context),
+							session.getMatches());
+				}
+
+				session.dispose();
+
+			}
+		}
+
+	}
+
+
+	@Test
+	public void testFind() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo bar foo");
+		SearchContext context = new SearchContext("foo");
+		context.setSearchWrap(true);
+		SearchSession session = new SearchSession(textArea, context);
+		textArea.setCaretPosition(2);
+
+		SearchResult result = session.find();
+		Assert.assertEquals(new SearchResult(new DocumentRange(8, 11), 1, 3),
+				result);
+		Assert.assertEquals(8, textArea.getSelectionStart());
+		Assert.assertEquals(11, textArea.getSelectionEnd());
+		session.find();
+		Assert.assertEquals(16, textArea.getSelectionStart());
+
+		// Wraps to the first match
+		result = session.find();
+		Assert.assertTrue(result.isWrapped());
+		Assert.assertEquals(0, textArea.getSelectionStart());
+
+		context.setSearchForward(false);
+		result = session.find();
+		Assert.assertTrue(result.isWrapped());
+		Assert.assertEquals(16, textArea.getSelectionStart());
+		session.find();
+		Assert.assertEquals(8, textArea.getSelectionStart());
+
+		context.setSearchWrap(false);
+		session.find();
+		Assert.assertFalse(session.find().wasFound());
+		Assert.assertEquals(0, textArea.getSelectionStart());
+
+	}
+
+
+	@Test
+	public void testFind_noMatches() {
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar");
+		SearchContext context = new SearchContext("xyz");
+		SearchSession session = new SearchSession(textArea, context);
+		Assert.assertFalse(session.find().wasFound());
+		Assert.assertEquals(0, session.getMatchCount());
+	}
+
+
+	@Test
+	public void testGetMatches_invalidRegex() {
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo (bar)");
+		SearchContext context = new SearchContext("(bar");
+		context.setRegularExpression(true);
+		SearchSession session = new SearchSession(textArea, context);
+		Assert.assertEquals(0, session.getMatchCount());
+		Assert.assertEquals(0, textArea.getMarkAllHighlightRanges().size());
+	}
+
+
+	@Test
+	public void testMarkAll_updatedAfterEdit() throws Exception {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo bar foo");
+		SearchContext context = new SearchContext("foo");
+		new SearchSession(textArea, context);
+		Assert.assertEquals(2, textArea.getMarkAllHighlightRanges().size());
+
+		textArea.insert("foo ", 4);
+		flushEventQueue();
+		Assert.assertEquals(3, textArea.getMarkAllHighlightRanges().size());
+		Assert.assertEquals(new DocumentRange(4, 7),
+				textArea.getMarkAllHighlightRanges().get(1));
+
+		context.setMarkAll(false);
+		Assert.assertEquals(0, textArea.getMarkAllHighlightRanges().size());
+
+	}
+
+
+	@Test
+	public void testSearchForChanged_afterEdit() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo fob");
+		SearchContext context = new SearchContext("fo");
+		context.setMarkAll(false);
+		SearchSession session = new SearchSession(textArea, context);
+		Assert.assertEquals(2, session.getMatchCount());
+
+		// Edits made after the search still count when it's narrowed
+		textArea.insert("fool ", 4);
+		textArea.replaceRange("", 0, 1);
+		Assert.assertEquals(2, session.getMatchCount());
+		context.setSearchFor("foo");
+		Assert.assertEquals(1, session.getMatchCount());
+		Assert.assertEquals(new DocumentRange(3, 6),
+				session.getMatches().get(0));
+
+	}
+
+
+	@Test
+	public void testSearchForChanged_matchesSearchEngine() {
+
+		Random random = new Random(0);
+		String alphabet = "abA \n";
+		RSyntaxTextArea textArea = new RSyntaxTextArea(
+				randomString(random, alphabet, 2000));
+
+		for (int options=0; options<4; options++) {
+
+			SearchContext context = new SearchContext("a");
+			context.setMatchCase((options&1)!=0);
+			context.setWholeWord((options&2)!=0);
+			SearchSession session = new SearchSession(textArea, context);
+
+			// Extending the search text narrows the matches; anything else
+			// searches again
+			for (int i=0; i<200; i++) {
+				String searchFor = context.getSearchFor();
+				if (searchFor.length()<5 && random.nextInt(4)!=0) {
+					searchFor += alphabet.charAt(random.nextInt(3));
+				}
+				else {
+					searchFor = randomString(random, alphabet, 1);
+				}
+				context.setSearchFor(searchFor);
+				Assert.assertEquals(searchFor + " " + options,
+						getExpectedMatches(textArea, context),
+						session.getMatches());
+			}
+
+			session.dispose();
+
+		}
+
+	}
+
+
+	@Test
+	public void testSearchForChanged_regex() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("ab abb abc");
+		SearchContext context = new SearchContext("ab");
+		context.setRegularExpression(true);
+		SearchSession session = new SearchSession(textArea, context);
+		Assert.assertEquals(3, session.getMatchCount());
+
+		// Extending a regex can add matches
+		context.setSearchFor("ab|c");
+		Assert.assertEquals(4, session.getMatchCount());
+
+		context.setRegularExpression(false);
+		Assert.assertEquals(0, session.getMatchCount());
+
+	}
+
+
+	@Test
+	public void testWholeWordChanged() {
+
+		RSyntaxTextArea textArea = new RSyntaxTextArea("foo foobar foo");
+		SearchContext context = new SearchContext("foo");
+		SearchSession session = new SearchSession(textArea, context);
+		Assert.assertEquals(3, session.getMatchCount());
+
+		context.setWholeWord(true);
+		Assert.assertEquals(2, session.getMatchCount());
+		Assert.assertEquals(new DocumentRange(11, 14),
+				session.getMatches().get(1));
+
+		context.setWholeWord(false);
+		Assert.assertEquals(3, session.getMatchCount());
+
+	}
+
+
+}